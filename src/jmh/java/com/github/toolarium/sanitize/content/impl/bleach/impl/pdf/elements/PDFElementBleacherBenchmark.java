@@ -0,0 +1,143 @@
+/*
+ * PDFElementBleacherBenchmark.java
+ *
+ * Copyright by toolarium, all rights reserved.
+ */
+package com.github.toolarium.sanitize.content.impl.bleach.impl.pdf.elements;
+
+import com.github.toolarium.sanitize.content.dto.SanitizeContentConfiguration;
+import com.github.toolarium.sanitize.content.exception.SanitizeContentException;
+import com.github.toolarium.sanitize.content.impl.ISanitizeContentThreatRegistry;
+import com.github.toolarium.sanitize.content.jmh.SyntheticPDFDocumentFactory;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+import org.apache.pdfbox.pdmodel.PDDocument;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+
+/**
+ * Benchmarks the PDF element bleachers on an in-memory synthetic document. The threats are only counted in scan mode, so the document
+ * stays unchanged and every invocation does the same work.
+ *
+ * @author Patrick Meier
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class PDFElementBleacherBenchmark {
+    @Param({"1", "50"})
+    private int pageCount;
+
+    @Param({"0", "200"})
+    private int annotationCount;
+
+    @Param({"0", "20"})
+    private int javaScriptActionCount;
+
+    private PDDocument document;
+
+
+    /**
+     * Create the synthetic document
+     *
+     * @throws IOException In case of an I/O error
+     */
+    @Setup
+    public void setup() throws IOException {
+        document = SyntheticPDFDocumentFactory.getInstance().createDocument(pageCount, annotationCount, javaScriptActionCount, 0);
+    }
+
+
+    /**
+     * Close the synthetic document
+     *
+     * @throws IOException In case of an I/O error
+     */
+    @TearDown
+    public void tearDown() throws IOException {
+        document.close();
+    }
+
+
+    /**
+     * Crawl the object graph of the document catalog
+     *
+     * @return the number of threats
+     * @throws SanitizeContentException In case an object limit is exceeded
+     */
+    @Benchmark
+    public int objectCrawl() throws SanitizeContentException {
+        ThreatCounter threatCounter = new ThreatCounter();
+        new PDFObjectBleacher(threatCounter).crawl(document.getDocumentCatalog().getCOSObject());
+        return threatCounter.count;
+    }
+
+
+    /**
+     * Sanitize the page actions and annotations
+     *
+     * @return the number of threats
+     */
+    @Benchmark
+    public int sanitizePageActions() {
+        ThreatCounter threatCounter = new ThreatCounter();
+        new PDFDocumentBleacher(threatCounter).sanitizePageActions(document.getPages());
+        return threatCounter.count;
+    }
+
+
+    /**
+     * Sanitize the page actions and annotations, the threats are detected in parallel
+     *
+     * @return the number of threats
+     */
+    @Benchmark
+    public int sanitizePageActionsParallel() {
+        SanitizeContentConfiguration configuration = new SanitizeContentConfiguration();
+        configuration.setPdfParallelPageThreshold(1);
+
+        ThreatCounter threatCounter = new ThreatCounter();
+        new PDFDocumentBleacher(threatCounter, new PDFObjectVisitor(), configuration).sanitizePageActions(document.getPages());
+        return threatCounter.count;
+    }
+
+
+    /**
+     * Counts the threats in scan mode.
+     */
+    private static class ThreatCounter implements ISanitizeContentThreatRegistry {
+        private int count;
+
+
+        /**
+         * @see com.github.toolarium.sanitize.content.impl.ISanitizeContentThreatRegistry#registerThreat(com.github.toolarium.sanitize.content.impl.ISanitizeContentThreatRegistry.ISection, java.lang.String, java.lang.String)
+         */
+        @Override
+        public void registerThreat(ISection section, String description, String action) {
+            count++;
+        }
+
+
+        /**
+         * @see com.github.toolarium.sanitize.content.impl.ISanitizeContentThreatRegistry#isScanOnly()
+         */
+        @Override
+        public boolean isScanOnly() {
+            return true;
+        }
+    }
+}
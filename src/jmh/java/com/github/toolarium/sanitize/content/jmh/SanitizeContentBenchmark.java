@@ -0,0 +1,112 @@
+/*
+ * SanitizeContentBenchmark.java
+ *
+ * Copyright by toolarium, all rights reserved.
+ */
+package com.github.toolarium.sanitize.content.jmh;
+
+import com.github.toolarium.sanitize.content.dto.SanitizeContentConfiguration;
+import com.github.toolarium.sanitize.content.dto.SanitizeContentResult;
+import com.github.toolarium.sanitize.content.exception.SanitizeContentException;
+import com.github.toolarium.sanitize.content.impl.SanitizeContentProcessorImpl;
+import com.github.toolarium.sanitize.content.impl.bleach.impl.pdf.PDFSanitizeContentBleacher;
+import com.github.toolarium.sanitize.content.impl.bleach.util.StreamUtils;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+
+/**
+ * Benchmarks the sanitizing of synthetic PDF documents from the processor down to the header check. The processor and the bleacher
+ * are created per invocation because they collect the threats of all calls.
+ *
+ * @author Patrick Meier
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class SanitizeContentBenchmark {
+    private static final byte[] PDF_HEADER = "%PDF".getBytes(StandardCharsets.US_ASCII);
+
+    @Param({"1", "50"})
+    private int pageCount;
+
+    @Param({"0", "200"})
+    private int annotationCount;
+
+    @Param({"0", "20"})
+    private int javaScriptActionCount;
+
+    @Param({"0", "5"})
+    private int embeddedFileCount;
+
+    private SanitizeContentConfiguration configuration;
+    private byte[] content;
+    private ByteArrayOutputStream outputStream;
+
+
+    /**
+     * Create the synthetic document
+     *
+     * @throws IOException In case of an I/O error
+     */
+    @Setup
+    public void setup() throws IOException {
+        configuration = new SanitizeContentConfiguration();
+        content = SyntheticPDFDocumentFactory.getInstance().createContent(pageCount, annotationCount, javaScriptActionCount, embeddedFileCount);
+        outputStream = new ByteArrayOutputStream(content.length);
+    }
+
+
+    /**
+     * Sanitize by the processor including the lookup of the bleacher
+     *
+     * @return the result
+     * @throws SanitizeContentException In case of a sanitize error
+     */
+    @Benchmark
+    public SanitizeContentResult processorSanitize() throws SanitizeContentException {
+        outputStream.reset();
+        return new SanitizeContentProcessorImpl(configuration).sanitize("benchmark.pdf", new ByteArrayInputStream(content), outputStream, null);
+    }
+
+
+    /**
+     * Bleach by the PDF bleacher
+     *
+     * @return the result
+     * @throws SanitizeContentException In case of a sanitize error
+     */
+    @Benchmark
+    public SanitizeContentResult pdfBleachContent() throws SanitizeContentException {
+        outputStream.reset();
+        return new PDFSanitizeContentBleacher(configuration).bleachContent("benchmark.pdf", new ByteArrayInputStream(content), outputStream, null);
+    }
+
+
+    /**
+     * Check the content header
+     *
+     * @return true if it has the header
+     */
+    @Benchmark
+    public boolean hasHeader() {
+        return StreamUtils.getInstance().hasHeader("benchmark.pdf", new ByteArrayInputStream(content), PDF_HEADER);
+    }
+}
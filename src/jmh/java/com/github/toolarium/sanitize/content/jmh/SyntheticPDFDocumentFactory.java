@@ -0,0 +1,176 @@
+/*
+ * SyntheticPDFDocumentFactory.java
+ *
+ * Copyright by toolarium, all rights reserved.
+ */
+package com.github.toolarium.sanitize.content.jmh;
+
+import com.github.toolarium.sanitize.content.impl.bleach.impl.pdf.PDFSanitizeContentBleacher;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import org.apache.pdfbox.pdmodel.PDDocument;
+import org.apache.pdfbox.pdmodel.PDDocumentNameDictionary;
+import org.apache.pdfbox.pdmodel.PDEmbeddedFilesNameTreeNode;
+import org.apache.pdfbox.pdmodel.PDPage;
+import org.apache.pdfbox.pdmodel.common.PDRectangle;
+import org.apache.pdfbox.pdmodel.common.filespecification.PDComplexFileSpecification;
+import org.apache.pdfbox.pdmodel.common.filespecification.PDEmbeddedFile;
+import org.apache.pdfbox.pdmodel.interactive.action.PDAction;
+import org.apache.pdfbox.pdmodel.interactive.action.PDActionJavaScript;
+import org.apache.pdfbox.pdmodel.interactive.action.PDActionURI;
+import org.apache.pdfbox.pdmodel.interactive.action.PDPageAdditionalActions;
+import org.apache.pdfbox.pdmodel.interactive.annotation.PDAnnotation;
+import org.apache.pdfbox.pdmodel.interactive.annotation.PDAnnotationLink;
+
+
+/**
+ * Creates the synthetic PDF documents of the benchmarks. The annotations are spread round robin over the pages. The script actions
+ * are set on the first annotations, the remaining ones as open action of the pages. Every embedded file is a PDF document with a
+ * script open action.
+ *
+ * @author Patrick Meier
+ */
+public final class SyntheticPDFDocumentFactory {
+    private static final String SCRIPT = "app.alert('benchmark');";
+
+
+    /**
+     * Private class, the only instance of the singelton which will be created by accessing the holder class.
+     *
+     * @author Patrick Meier
+     */
+    private static class HOLDER {
+        static final SyntheticPDFDocumentFactory INSTANCE = new SyntheticPDFDocumentFactory();
+    }
+
+
+    /**
+     * Constructor
+     */
+    private SyntheticPDFDocumentFactory() {
+        // NOP
+    }
+
+
+    /**
+     * Get the instance
+     *
+     * @return the instance
+     */
+    public static SyntheticPDFDocumentFactory getInstance() {
+        return HOLDER.INSTANCE;
+    }
+
+
+    /**
+     * Create a synthetic PDF document
+     *
+     * @param pageCount the number of pages, at least one page is created
+     * @param annotationCount the number of link annotations
+     * @param javaScriptActionCount the number of script actions, it is limited by the number of annotations and pages
+     * @param embeddedFileCount the number of embedded files
+     * @return the document, it must be closed by the caller
+     * @throws IOException In case of an I/O error
+     */
+    public PDDocument createDocument(int pageCount, int annotationCount, int javaScriptActionCount, int embeddedFileCount) throws IOException {
+        PDDocument document = new PDDocument();
+
+        List<PDPage> pageList = new ArrayList<PDPage>();
+        for (int i = 0; i < Math.max(1, pageCount); i++) {
+            PDPage page = new PDPage();
+            page.setAnnotations(new ArrayList<PDAnnotation>());
+            document.addPage(page);
+            pageList.add(page);
+        }
+
+        int scriptCount = 0;
+        for (int i = 0; i < annotationCount; i++) {
+            PDAction action;
+            if (scriptCount < javaScriptActionCount) {
+                action = new PDActionJavaScript(SCRIPT);
+                scriptCount++;
+            } else {
+                PDActionURI uriAction = new PDActionURI();
+                uriAction.setURI("https://github.com/toolarium/toolarium-sanitize-content/" + i);
+                action = uriAction;
+            }
+
+            PDAnnotationLink link = new PDAnnotationLink();
+            link.setRectangle(new PDRectangle(10, 10 + (i % 50) * 12, 200, 10));
+            link.setAction(action);
+            pageList.get(i % pageList.size()).getAnnotations().add(link);
+        }
+
+        for (int i = 0; scriptCount < javaScriptActionCount && i < pageList.size(); i++) {
+            PDPageAdditionalActions pageActions = new PDPageAdditionalActions();
+            pageActions.setO(new PDActionJavaScript(SCRIPT));
+            pageList.get(i).setActions(pageActions);
+            scriptCount++;
+        }
+
+        if (embeddedFileCount > 0) {
+            PDDocument embeddedDocument = new PDDocument();
+            embeddedDocument.addPage(new PDPage());
+            embeddedDocument.getDocumentCatalog().setOpenAction(new PDActionJavaScript(SCRIPT));
+            byte[] embeddedContent = toByteArray(embeddedDocument);
+
+            Map<String, PDComplexFileSpecification> nameMap = new LinkedHashMap<String, PDComplexFileSpecification>();
+            for (int i = 0; i < embeddedFileCount; i++) {
+                PDEmbeddedFile embeddedFile = new PDEmbeddedFile(document, new ByteArrayInputStream(embeddedContent));
+                embeddedFile.setSize(embeddedContent.length);
+                embeddedFile.setSubtype(PDFSanitizeContentBleacher.APPLICATION_PDF);
+
+                PDComplexFileSpecification spec = new PDComplexFileSpecification();
+                spec.setFile("embedded-" + i + ".pdf");
+                spec.setEmbeddedFile(embeddedFile);
+                nameMap.put(spec.getFile(), spec);
+            }
+
+            PDEmbeddedFilesNameTreeNode treeNode = new PDEmbeddedFilesNameTreeNode();
+            treeNode.setNames(nameMap);
+            PDDocumentNameDictionary documentNameDictionary = new PDDocumentNameDictionary(document.getDocumentCatalog());
+            documentNameDictionary.setEmbeddedFiles(treeNode);
+            document.getDocumentCatalog().setNames(documentNameDictionary);
+        }
+
+        return document;
+    }
+
+
+    /**
+     * Create the content of a synthetic PDF document
+     *
+     * @param pageCount the number of pages, at least one page is created
+     * @param annotationCount the number of link annotations
+     * @param javaScriptActionCount the number of script actions, it is limited by the number of annotations and pages
+     * @param embeddedFileCount the number of embedded files
+     * @return the content
+     * @throws IOException In case of an I/O error
+     */
+    public byte[] createContent(int pageCount, int annotationCount, int javaScriptActionCount, int embeddedFileCount) throws IOException {
+        return toByteArray(createDocument(pageCount, annotationCount, javaScriptActionCount, embeddedFileCount));
+    }
+
+
+    /**
+     * Save and close a document
+     *
+     * @param document the document
+     * @return the content
+     * @throws IOException In case of an I/O error
+     */
+    private byte[] toByteArray(PDDocument document) throws IOException {
+        try {
+            ByteArrayOutputStream output = new ByteArrayOutputStream();
+            document.save(output);
+            return output.toByteArray();
+        } finally {
+            document.close();
+        }
+    }
+}
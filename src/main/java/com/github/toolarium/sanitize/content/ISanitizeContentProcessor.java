@@ -5,10 +5,15 @@
  */
 package com.github.toolarium.sanitize.content;
 
+import com.github.toolarium.sanitize.content.dto.SanitizeContentJob;
 import com.github.toolarium.sanitize.content.dto.SanitizeContentResult;
 import com.github.toolarium.sanitize.content.exception.SanitizeContentException;
 import java.io.InputStream;
 import java.io.OutputStream;
+import java.nio.file.Path;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
 
 /**
  * Defines the sanitize content processor
@@ -41,4 +46,68 @@ public interface ISanitizeContentProcessor {
     SanitizeContentResult sanitize(String name, InputStream inputStream, OutputStream outputStream, ISanitizeContentCredentialAccess credentialAccess)
         throws SanitizeContentException;
 
+
+    /**
+     * Sanitize the content of a local file. The input file is accessed in place (memory-mapped) and not copied.
+     *
+     * @param inputPath the input file
+     * @param outputPath the output file
+     * @param credentialAccess the credential access or null
+     * @return the sanitize result
+     * @throws SanitizeContentException In case the content can't be sanitized.
+     */
+    SanitizeContentResult sanitize(Path inputPath, Path outputPath, ISanitizeContentCredentialAccess credentialAccess) throws SanitizeContentException;
+
+
+    /**
+     * Scan the content. The threats are detected but the content is not modified and not written.
+     *
+     * @param name the name of the content
+     * @param inputStream the input stream
+     * @param credentialAccess the credential access or null
+     * @return the sanitize result with the detected threats
+     * @throws SanitizeContentException In case the content can't be scanned.
+     */
+    SanitizeContentResult scan(String name, InputStream inputStream, ISanitizeContentCredentialAccess credentialAccess) throws SanitizeContentException;
+
+
+    /**
+     * Scan the content of a local file. The threats are detected but the content is not modified and not written.
+     *
+     * @param inputPath the input file
+     * @param credentialAccess the credential access or null
+     * @return the sanitize result with the detected threats
+     * @throws SanitizeContentException In case the content can't be scanned.
+     */
+    SanitizeContentResult scan(Path inputPath, ISanitizeContentCredentialAccess credentialAccess) throws SanitizeContentException;
+
+
+    /**
+     * Sanitize the content asynchronous. The streams are not closed.
+     *
+     * @param name the name of the content
+     * @param inputStream the input stream
+     * @param outputStream the output stream
+     * @param credentialAccess the credential access or null
+     * @return the future of the sanitize result, it completes exceptionally with a {@link SanitizeContentException} in case the content can't be sanitized.
+     */
+    CompletableFuture<SanitizeContentResult> sanitizeAsync(String name, InputStream inputStream, OutputStream outputStream, ISanitizeContentCredentialAccess credentialAccess);
+
+
+    /**
+     * Sanitize a job asynchronous. The number of concurrent jobs and their content bytes are limited by the configuration.
+     *
+     * @param job the job
+     * @return the future of the sanitize result, it completes exceptionally with a {@link SanitizeContentException} in case the content can't be sanitized.
+     */
+    CompletableFuture<SanitizeContentResult> sanitizeAsync(SanitizeContentJob job);
+
+
+    /**
+     * Sanitize a batch of jobs asynchronous. The jobs are started in the order of the collection.
+     *
+     * @param jobs the jobs
+     * @return the futures of the sanitize results in the order of the jobs
+     */
+    List<CompletableFuture<SanitizeContentResult>> sanitizeAll(Collection<SanitizeContentJob> jobs);
 }
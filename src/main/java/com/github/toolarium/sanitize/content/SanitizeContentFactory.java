@@ -5,7 +5,13 @@
  */
 package com.github.toolarium.sanitize.content;
 
+import com.github.toolarium.sanitize.content.dto.SanitizeContentConfiguration;
 import com.github.toolarium.sanitize.content.impl.SanitizeContentProcessorImpl;
+import com.github.toolarium.sanitize.content.impl.bleach.impl.pdf.PDFMemoryGovernor;
+import com.github.toolarium.sanitize.content.impl.bleach.impl.pdf.PDFObjectThreatRule;
+import com.github.toolarium.sanitize.content.impl.bleach.impl.pdf.PDFObjectThreatRuleTable;
+import java.util.LinkedHashMap;
+import java.util.Map;
 
 
 /**
@@ -14,6 +20,12 @@ import com.github.toolarium.sanitize.content.impl.SanitizeContentProcessorImpl;
  * @author Patrick Meier
  */
 public final class SanitizeContentFactory {
+    /** The maximum number of configurations of which the processor is kept */
+    public static final int MAX_PROCESSORS = 16;
+
+    private final ISanitizeContentProcessor defaultProcessor;
+    private final Map<SanitizeContentConfiguration, ISanitizeContentProcessor> processorMap;
+
 
     /**
      * Private class, the only instance of the singelton which will be created by accessing the holder class.
@@ -29,7 +41,8 @@ public final class SanitizeContentFactory {
      * Constructor
      */
     private SanitizeContentFactory() {
-        // NOP
+        defaultProcessor = new SanitizeContentProcessorImpl();
+        processorMap = new ProcessorMap();
     }
 
 
@@ -44,11 +57,85 @@ public final class SanitizeContentFactory {
 
 
     /**
-     * Get the sanitize content processor
+     * Get the sanitize content processor of the default configuration. The processor is thread safe and can be kept for the lifetime of
+     * the application.
      *
      * @return sanitize content processor
      */
     public ISanitizeContentProcessor getSanitizeContentProcessor() {
-        return new SanitizeContentProcessorImpl();
+        return defaultProcessor;
+    }
+
+
+    /**
+     * Get the sanitize content processor of a configuration. The processor is thread safe and shared by all callers with an equal
+     * configuration. It works on a copy of the configuration, a later modification of the configuration gets another processor. The
+     * processors of the last {@link #MAX_PROCESSORS} configurations are kept, an evicted processor can still be used by its callers.
+     *
+     * @param configuration the configuration
+     * @return sanitize content processor
+     */
+    public ISanitizeContentProcessor getSanitizeContentProcessor(SanitizeContentConfiguration configuration) {
+        if (configuration == null) {
+            return getSanitizeContentProcessor();
+        }
+
+        synchronized (processorMap) {
+            ISanitizeContentProcessor processor = processorMap.get(configuration);
+            if (processor == null) {
+                SanitizeContentConfiguration configurationCopy = new SanitizeContentConfiguration(configuration);
+                processor = new SanitizeContentProcessorImpl(configurationCopy);
+                processorMap.put(configurationCopy, processor);
+            }
+
+            return processor;
+        }
+    }
+
+
+    /**
+     * Sets the global main memory budget in bytes which is shared by all PDF documents in process. The default is a quarter of the maximum heap.
+     *
+     * @param maxMainMemoryBytes the budget in bytes
+     */
+    public void setPDFGlobalMaxMainMemoryBytes(long maxMainMemoryBytes) {
+        PDFMemoryGovernor.getInstance().setMaxMainMemoryBytes(maxMainMemoryBytes);
+    }
+
+
+    /**
+     * Register an additional threat rule of the PDF object crawl, e.g. {@link PDFObjectThreatRule#LAUNCH_ACTION}. The rules are applied
+     * by the deep object scan, see {@link SanitizeContentConfiguration#setPdfDeepObjectScan(boolean)}.
+     *
+     * @param rule the rule
+     */
+    public void registerPDFObjectThreatRule(PDFObjectThreatRule rule) {
+        PDFObjectThreatRuleTable.getInstance().register(rule);
+    }
+
+
+    /**
+     * Defines the processors of the recently used configurations, the least recently used one is evicted. The threads of a processor
+     * end when they are idle, an evicted processor is released as soon as it is no more used.
+     */
+    private static class ProcessorMap extends LinkedHashMap<SanitizeContentConfiguration, ISanitizeContentProcessor> {
+        private static final long serialVersionUID = -2718036207451963315L;
+
+
+        /**
+         * Constructor for ProcessorMap
+         */
+        ProcessorMap() {
+            super(MAX_PROCESSORS, 0.75f, true);
+        }
+
+
+        /**
+         * @see java.util.LinkedHashMap#removeEldestEntry(java.util.Map.Entry)
+         */
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<SanitizeContentConfiguration, ISanitizeContentProcessor> eldest) {
+            return size() > MAX_PROCESSORS;
+        }
     }
 }
@@ -0,0 +1,22 @@
+/*
+ * SanitizeContentAttachmentAction.java
+ *
+ * Copyright by toolarium, all rights reserved.
+ */
+package com.github.toolarium.sanitize.content.dto;
+
+/**
+ * The action of the attachment policy, it is decided on the metadata of an embedded file before it is decoded.
+ *
+ * @author Patrick Meier
+ */
+public enum SanitizeContentAttachmentAction {
+    /** The embedded file is kept as it is, it is not decoded */
+    KEEP,
+
+    /** The embedded file is decoded and sanitized by the bleacher of its content type */
+    BLEACH,
+
+    /** The embedded file is removed, it is not decoded */
+    STRIP;
+}
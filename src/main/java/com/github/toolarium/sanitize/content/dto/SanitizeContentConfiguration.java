@@ -0,0 +1,893 @@
+/*
+ * SanitizeContentConfiguration.java
+ *
+ * Copyright by toolarium, all rights reserved.
+ */
+package com.github.toolarium.sanitize.content.dto;
+
+import java.io.File;
+import java.util.HashSet;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+
+
+/**
+ * Defines the sanitize content configuration of a processor.
+ *
+ * @author Patrick Meier
+ */
+public class SanitizeContentConfiguration {
+    /** The default spill threshold: 1 MB */
+    public static final long DEFAULT_SPILL_THRESHOLD = 1024L * 1024L;
+    /** The default maximum in-flight bytes of the asynchronous sanitizing: 256 MB */
+    public static final long DEFAULT_MAX_IN_FLIGHT_BYTES = 256L * 1024L * 1024L;
+    /** The default main memory of a PDF document: 100 KB */
+    public static final long DEFAULT_PDF_MAX_MAIN_MEMORY_BYTES = 1024L * 100L;
+    /** The default maximum bytes of the on-disk tier of the result cache: 1 GB */
+    public static final long DEFAULT_RESULT_CACHE_MAX_DISK_BYTES = 1024L * 1024L * 1024L;
+    /** The default maximum nesting depth of the crawled PDF objects */
+    public static final int DEFAULT_PDF_MAX_OBJECT_DEPTH = 100;
+    /** The default maximum number of crawled PDF objects */
+    public static final int DEFAULT_PDF_MAX_CRAWLED_OBJECTS = 1000000;
+    /** The default maximum nesting depth of embedded contents */
+    public static final int DEFAULT_MAX_NESTING_DEPTH = 5;
+    /** The default scan budget of the lenient PDF parser as multiple of the document length */
+    public static final int DEFAULT_PDF_PARSE_SCAN_BUDGET_FACTOR = 4;
+    /** The default maximum decoded size of a stream: 512 MB */
+    public static final long DEFAULT_MAX_DECODED_STREAM_SIZE = 512L * 1024L * 1024L;
+    /** The default maximum decoded size of all streams of a document: 2 GB */
+    public static final long DEFAULT_MAX_DECODED_DOCUMENT_SIZE = 2L * 1024L * 1024L * 1024L;
+    /** The default maximum ratio of the decoded to the encoded size */
+    public static final int DEFAULT_MAX_DECODING_RATIO = 200;
+
+    private long spillThreshold;
+    private File tempDirectory;
+    private int maxConcurrentSanitizing;
+    private long maxInFlightBytes;
+    private long pdfMaxMainMemoryBytes;
+    private long pdfMaxStorageBytes;
+    private File pdfScratchDirectory;
+    private long resultCacheMaxMemoryBytes;
+    private File resultCacheDirectory;
+    private long resultCacheMaxDiskBytes;
+    private boolean copyCleanContent;
+    private boolean pdfDeepObjectScan;
+    private int pdfMaxObjectDepth;
+    private int pdfMaxCrawledObjects;
+    private boolean pdfFailOnObjectLimit;
+    private boolean pdfPrefilter;
+    private int pdfParallelPageThreshold;
+    private int pdfEmbeddedFileParallelism;
+    private int maxNestingDepth;
+    private boolean pdfCopyUnmodifiedObjects;
+    private boolean pdfIncrementalUpdate;
+    private SanitizeContentParsePolicy pdfParsePolicy;
+    private int pdfParseScanBudgetFactor;
+    private long maxDecodedStreamSize;
+    private long maxDecodedDocumentSize;
+    private int maxDecodingRatio;
+    private long pdfAttachmentMaxSize;
+    private Set<String> pdfAttachmentStripTypes;
+    private Set<String> pdfAttachmentKeepTypes;
+
+
+    /**
+     * Constructor for SanitizeContentConfiguration
+     */
+    public SanitizeContentConfiguration() {
+        spillThreshold = DEFAULT_SPILL_THRESHOLD;
+        tempDirectory = null;
+        maxConcurrentSanitizing = Runtime.getRuntime().availableProcessors();
+        maxInFlightBytes = DEFAULT_MAX_IN_FLIGHT_BYTES;
+        pdfMaxMainMemoryBytes = DEFAULT_PDF_MAX_MAIN_MEMORY_BYTES;
+        pdfMaxStorageBytes = -1;
+        pdfScratchDirectory = null;
+        resultCacheMaxMemoryBytes = 0;
+        resultCacheDirectory = null;
+        resultCacheMaxDiskBytes = DEFAULT_RESULT_CACHE_MAX_DISK_BYTES;
+        copyCleanContent = false;
+        pdfDeepObjectScan = false;
+        pdfMaxObjectDepth = DEFAULT_PDF_MAX_OBJECT_DEPTH;
+        pdfMaxCrawledObjects = DEFAULT_PDF_MAX_CRAWLED_OBJECTS;
+        pdfFailOnObjectLimit = false;
+        pdfPrefilter = false;
+        pdfParallelPageThreshold = 0;
+        pdfEmbeddedFileParallelism = 1;
+        maxNestingDepth = DEFAULT_MAX_NESTING_DEPTH;
+        pdfCopyUnmodifiedObjects = false;
+        pdfIncrementalUpdate = false;
+        pdfParsePolicy = SanitizeContentParsePolicy.LENIENT;
+        pdfParseScanBudgetFactor = DEFAULT_PDF_PARSE_SCAN_BUDGET_FACTOR;
+        maxDecodedStreamSize = DEFAULT_MAX_DECODED_STREAM_SIZE;
+        maxDecodedDocumentSize = DEFAULT_MAX_DECODED_DOCUMENT_SIZE;
+        maxDecodingRatio = DEFAULT_MAX_DECODING_RATIO;
+        pdfAttachmentMaxSize = -1;
+        pdfAttachmentStripTypes = new HashSet<String>();
+        pdfAttachmentKeepTypes = new HashSet<String>();
+    }
+
+
+    /**
+     * Constructor for SanitizeContentConfiguration, it copies a configuration
+     *
+     * @param configuration the configuration to copy
+     */
+    public SanitizeContentConfiguration(SanitizeContentConfiguration configuration) {
+        spillThreshold = configuration.spillThreshold;
+        tempDirectory = configuration.tempDirectory;
+        maxConcurrentSanitizing = configuration.maxConcurrentSanitizing;
+        maxInFlightBytes = configuration.maxInFlightBytes;
+        pdfMaxMainMemoryBytes = configuration.pdfMaxMainMemoryBytes;
+        pdfMaxStorageBytes = configuration.pdfMaxStorageBytes;
+        pdfScratchDirectory = configuration.pdfScratchDirectory;
+        resultCacheMaxMemoryBytes = configuration.resultCacheMaxMemoryBytes;
+        resultCacheDirectory = configuration.resultCacheDirectory;
+        resultCacheMaxDiskBytes = configuration.resultCacheMaxDiskBytes;
+        copyCleanContent = configuration.copyCleanContent;
+        pdfDeepObjectScan = configuration.pdfDeepObjectScan;
+        pdfMaxObjectDepth = configuration.pdfMaxObjectDepth;
+        pdfMaxCrawledObjects = configuration.pdfMaxCrawledObjects;
+        pdfFailOnObjectLimit = configuration.pdfFailOnObjectLimit;
+        pdfPrefilter = configuration.pdfPrefilter;
+        pdfParallelPageThreshold = configuration.pdfParallelPageThreshold;
+        pdfEmbeddedFileParallelism = configuration.pdfEmbeddedFileParallelism;
+        maxNestingDepth = configuration.maxNestingDepth;
+        pdfCopyUnmodifiedObjects = configuration.pdfCopyUnmodifiedObjects;
+        pdfIncrementalUpdate = configuration.pdfIncrementalUpdate;
+        pdfParsePolicy = configuration.pdfParsePolicy;
+        pdfParseScanBudgetFactor = configuration.pdfParseScanBudgetFactor;
+        maxDecodedStreamSize = configuration.maxDecodedStreamSize;
+        maxDecodedDocumentSize = configuration.maxDecodedDocumentSize;
+        maxDecodingRatio = configuration.maxDecodingRatio;
+        pdfAttachmentMaxSize = configuration.pdfAttachmentMaxSize;
+        pdfAttachmentStripTypes = copy(configuration.pdfAttachmentStripTypes);
+        pdfAttachmentKeepTypes = copy(configuration.pdfAttachmentKeepTypes);
+    }
+
+
+    /**
+     * Gets the number of bytes which are buffered in memory between two bleachers before the content is spilled to a temp file.
+     *
+     * @return the spill threshold in bytes
+     */
+    public long getSpillThreshold() {
+        return spillThreshold;
+    }
+
+
+    /**
+     * Sets the number of bytes which are buffered in memory between two bleachers before the content is spilled to a temp file.
+     *
+     * @param spillThreshold the spill threshold in bytes
+     */
+    public void setSpillThreshold(long spillThreshold) {
+        this.spillThreshold = spillThreshold;
+    }
+
+
+    /**
+     * Gets the temp directory or null to use the default temp directory.
+     *
+     * @return the temp directory
+     */
+    public File getTempDirectory() {
+        return tempDirectory;
+    }
+
+
+    /**
+     * Sets the temp directory or null to use the default temp directory.
+     *
+     * @param tempDirectory the temp directory to set
+     */
+    public void setTempDirectory(File tempDirectory) {
+        this.tempDirectory = tempDirectory;
+    }
+
+
+    /**
+     * Gets the maximum number of asynchronous sanitizing jobs which are processed concurrently.
+     *
+     * @return the maxConcurrentSanitizing
+     */
+    public int getMaxConcurrentSanitizing() {
+        return maxConcurrentSanitizing;
+    }
+
+
+    /**
+     * Sets the maximum number of asynchronous sanitizing jobs which are processed concurrently.
+     *
+     * @param maxConcurrentSanitizing the maxConcurrentSanitizing to set
+     */
+    public void setMaxConcurrentSanitizing(int maxConcurrentSanitizing) {
+        this.maxConcurrentSanitizing = maxConcurrentSanitizing;
+    }
+
+
+    /**
+     * Gets the maximum number of content bytes of the asynchronous sanitizing jobs which are processed concurrently. A job which exceeds it alone is processed when no other job is in flight.
+     *
+     * @return the maxInFlightBytes
+     */
+    public long getMaxInFlightBytes() {
+        return maxInFlightBytes;
+    }
+
+
+    /**
+     * Sets the maximum number of content bytes of the asynchronous sanitizing jobs which are processed concurrently. A job which exceeds it alone is processed when no other job is in flight.
+     *
+     * @param maxInFlightBytes the maxInFlightBytes to set
+     */
+    public void setMaxInFlightBytes(long maxInFlightBytes) {
+        this.maxInFlightBytes = maxInFlightBytes;
+    }
+
+
+    /**
+     * Gets the main memory in bytes which a PDF document may use while it is parsed. Above it the document is buffered in scratch files. The memory is additionally limited by the global PDF memory governor.
+     *
+     * @return the pdfMaxMainMemoryBytes
+     */
+    public long getPdfMaxMainMemoryBytes() {
+        return pdfMaxMainMemoryBytes;
+    }
+
+
+    /**
+     * Sets the main memory in bytes which a PDF document may use while it is parsed. Above it the document is buffered in scratch files. The memory is additionally limited by the global PDF memory governor.
+     *
+     * @param pdfMaxMainMemoryBytes the pdfMaxMainMemoryBytes to set
+     */
+    public void setPdfMaxMainMemoryBytes(long pdfMaxMainMemoryBytes) {
+        this.pdfMaxMainMemoryBytes = pdfMaxMainMemoryBytes;
+    }
+
+
+    /**
+     * Gets the maximum size in bytes of the scratch files of a PDF document or -1 for no limit.
+     *
+     * @return the pdfMaxStorageBytes
+     */
+    public long getPdfMaxStorageBytes() {
+        return pdfMaxStorageBytes;
+    }
+
+
+    /**
+     * Sets the maximum size in bytes of the scratch files of a PDF document or -1 for no limit.
+     *
+     * @param pdfMaxStorageBytes the pdfMaxStorageBytes to set
+     */
+    public void setPdfMaxStorageBytes(long pdfMaxStorageBytes) {
+        this.pdfMaxStorageBytes = pdfMaxStorageBytes;
+    }
+
+
+    /**
+     * Gets the directory of the PDF scratch files or null to use the temp directory.
+     *
+     * @return the pdfScratchDirectory
+     */
+    public File getPdfScratchDirectory() {
+        return pdfScratchDirectory;
+    }
+
+
+    /**
+     * Sets the directory of the PDF scratch files or null to use the temp directory.
+     *
+     * @param pdfScratchDirectory the pdfScratchDirectory to set
+     */
+    public void setPdfScratchDirectory(File pdfScratchDirectory) {
+        this.pdfScratchDirectory = pdfScratchDirectory;
+    }
+
+
+    /**
+     * Gets the maximum bytes of the in-memory tier of the result cache, 0 disables it. The cache is keyed by the digest of the input content and the sanitize options, duplicates are not parsed again.
+     *
+     * @return the resultCacheMaxMemoryBytes
+     */
+    public long getResultCacheMaxMemoryBytes() {
+        return resultCacheMaxMemoryBytes;
+    }
+
+
+    /**
+     * Sets the maximum bytes of the in-memory tier of the result cache, 0 disables it. The cache is keyed by the digest of the input content and the sanitize options, duplicates are not parsed again.
+     *
+     * @param resultCacheMaxMemoryBytes the resultCacheMaxMemoryBytes to set
+     */
+    public void setResultCacheMaxMemoryBytes(long resultCacheMaxMemoryBytes) {
+        this.resultCacheMaxMemoryBytes = resultCacheMaxMemoryBytes;
+    }
+
+
+    /**
+     * Gets the directory of the on-disk tier of the result cache or null to disable it.
+     *
+     * @return the resultCacheDirectory
+     */
+    public File getResultCacheDirectory() {
+        return resultCacheDirectory;
+    }
+
+
+    /**
+     * Sets the directory of the on-disk tier of the result cache or null to disable it.
+     *
+     * @param resultCacheDirectory the resultCacheDirectory to set
+     */
+    public void setResultCacheDirectory(File resultCacheDirectory) {
+        this.resultCacheDirectory = resultCacheDirectory;
+    }
+
+
+    /**
+     * Gets the maximum bytes of the on-disk tier of the result cache.
+     *
+     * @return the resultCacheMaxDiskBytes
+     */
+    public long getResultCacheMaxDiskBytes() {
+        return resultCacheMaxDiskBytes;
+    }
+
+
+    /**
+     * Sets the maximum bytes of the on-disk tier of the result cache.
+     *
+     * @param resultCacheMaxDiskBytes the resultCacheMaxDiskBytes to set
+     */
+    public void setResultCacheMaxDiskBytes(long resultCacheMaxDiskBytes) {
+        this.resultCacheMaxDiskBytes = resultCacheMaxDiskBytes;
+    }
+
+
+    /**
+     * Gets true if the original bytes of a clean document are written instead to serialize the document again. Encrypted documents are always serialized.
+     *
+     * @return the copyCleanContent
+     */
+    public boolean isCopyCleanContent() {
+        return copyCleanContent;
+    }
+
+
+    /**
+     * Sets true if the original bytes of a clean document are written instead to serialize the document again. Encrypted documents are always serialized.
+     *
+     * @param copyCleanContent the copyCleanContent to set
+     */
+    public void setCopyCleanContent(boolean copyCleanContent) {
+        this.copyCleanContent = copyCleanContent;
+    }
+
+
+    /**
+     * Gets true if the indirect objects of a PDF document which are not handled by a section handler are crawled, every object is visited once.
+     *
+     * @return the pdfDeepObjectScan
+     */
+    public boolean isPdfDeepObjectScan() {
+        return pdfDeepObjectScan;
+    }
+
+
+    /**
+     * Sets true if the indirect objects of a PDF document which are not handled by a section handler are crawled, every object is visited once.
+     *
+     * @param pdfDeepObjectScan the pdfDeepObjectScan to set
+     */
+    public void setPdfDeepObjectScan(boolean pdfDeepObjectScan) {
+        this.pdfDeepObjectScan = pdfDeepObjectScan;
+    }
+
+
+    /**
+     * Gets the maximum nesting depth of the direct objects which are crawled by the deep object scan.
+     *
+     * @return the pdfMaxObjectDepth
+     */
+    public int getPdfMaxObjectDepth() {
+        return pdfMaxObjectDepth;
+    }
+
+
+    /**
+     * Sets the maximum nesting depth of the direct objects which are crawled by the deep object scan.
+     *
+     * @param pdfMaxObjectDepth the pdfMaxObjectDepth to set
+     */
+    public void setPdfMaxObjectDepth(int pdfMaxObjectDepth) {
+        this.pdfMaxObjectDepth = pdfMaxObjectDepth;
+    }
+
+
+    /**
+     * Gets the maximum number of dictionaries and arrays of a document which are crawled by the deep object scan.
+     *
+     * @return the pdfMaxCrawledObjects
+     */
+    public int getPdfMaxCrawledObjects() {
+        return pdfMaxCrawledObjects;
+    }
+
+
+    /**
+     * Sets the maximum number of dictionaries and arrays of a document which are crawled by the deep object scan.
+     *
+     * @param pdfMaxCrawledObjects the pdfMaxCrawledObjects to set
+     */
+    public void setPdfMaxCrawledObjects(int pdfMaxCrawledObjects) {
+        this.pdfMaxCrawledObjects = pdfMaxCrawledObjects;
+    }
+
+
+    /**
+     * Gets true if the sanitizing fails in case an object limit of the deep object scan is exceeded, otherwise the limit is registered as threat.
+     *
+     * @return the pdfFailOnObjectLimit
+     */
+    public boolean isPdfFailOnObjectLimit() {
+        return pdfFailOnObjectLimit;
+    }
+
+
+    /**
+     * Sets true if the sanitizing fails in case an object limit of the deep object scan is exceeded, otherwise the limit is registered as threat.
+     *
+     * @param pdfFailOnObjectLimit the pdfFailOnObjectLimit to set
+     */
+    public void setPdfFailOnObjectLimit(boolean pdfFailOnObjectLimit) {
+        this.pdfFailOnObjectLimit = pdfFailOnObjectLimit;
+    }
+
+
+    /**
+     * Gets true if the raw bytes of a PDF document are prefiltered, the section handlers and the object crawl are skipped if no threat token matches.
+     * The document is still parsed before the verdict is known, the object streams are found by its cross reference.
+     *
+     * @return the pdfPrefilter
+     */
+    public boolean isPdfPrefilter() {
+        return pdfPrefilter;
+    }
+
+
+    /**
+     * Sets true if the raw bytes of a PDF document are prefiltered, the section handlers and the object crawl are skipped if no threat token matches.
+     * The document is still parsed before the verdict is known, the object streams are found by its cross reference.
+     *
+     * @param pdfPrefilter the pdfPrefilter to set
+     */
+    public void setPdfPrefilter(boolean pdfPrefilter) {
+        this.pdfPrefilter = pdfPrefilter;
+    }
+
+
+    /**
+     * Gets the minimum number of pages of a PDF document to detect the page threats in parallel, 0 disables the parallel detection.
+     *
+     * @return the pdfParallelPageThreshold
+     */
+    public int getPdfParallelPageThreshold() {
+        return pdfParallelPageThreshold;
+    }
+
+
+    /**
+     * Sets the minimum number of pages of a PDF document to detect the page threats in parallel, 0 disables the parallel detection.
+     *
+     * @param pdfParallelPageThreshold the pdfParallelPageThreshold to set
+     */
+    public void setPdfParallelPageThreshold(int pdfParallelPageThreshold) {
+        this.pdfParallelPageThreshold = pdfParallelPageThreshold;
+    }
+
+
+    /**
+     * Gets the maximum number of embedded files which are sanitized concurrently, 1 sanitizes them one after another. The embedded files of
+     * all PDF documents of a processor share its bounded pool.
+     *
+     * @return the pdfEmbeddedFileParallelism
+     */
+    public int getPdfEmbeddedFileParallelism() {
+        return pdfEmbeddedFileParallelism;
+    }
+
+
+    /**
+     * Sets the maximum number of embedded files which are sanitized concurrently, 1 sanitizes them one after another. The embedded files of
+     * all PDF documents of a processor share its bounded pool.
+     *
+     * @param pdfEmbeddedFileParallelism the pdfEmbeddedFileParallelism to set
+     */
+    public void setPdfEmbeddedFileParallelism(int pdfEmbeddedFileParallelism) {
+        this.pdfEmbeddedFileParallelism = pdfEmbeddedFileParallelism;
+    }
+
+
+    /**
+     * Gets the maximum nesting depth of embedded contents, a content which is nested deeper is removed without to parse it.
+     *
+     * @return the maxNestingDepth
+     */
+    public int getMaxNestingDepth() {
+        return maxNestingDepth;
+    }
+
+
+    /**
+     * Sets the maximum nesting depth of embedded contents, a content which is nested deeper is removed without to parse it.
+     *
+     * @param maxNestingDepth the maxNestingDepth to set
+     */
+    public void setMaxNestingDepth(int maxNestingDepth) {
+        this.maxNestingDepth = maxNestingDepth;
+    }
+
+
+    /**
+     * Gets true if the unmodified objects of an unencrypted document are copied from the source and only the modified objects are serialized again.
+     *
+     * @return the pdfCopyUnmodifiedObjects
+     */
+    public boolean isPdfCopyUnmodifiedObjects() {
+        return pdfCopyUnmodifiedObjects;
+    }
+
+
+    /**
+     * Sets true if the unmodified objects of an unencrypted document are copied from the source and only the modified objects are serialized again.
+     *
+     * @param pdfCopyUnmodifiedObjects the pdfCopyUnmodifiedObjects to set
+     */
+    public void setPdfCopyUnmodifiedObjects(boolean pdfCopyUnmodifiedObjects) {
+        this.pdfCopyUnmodifiedObjects = pdfCopyUnmodifiedObjects;
+    }
+
+
+    /**
+     * Gets true if the neutralized objects of a document are written as incremental update, the original revisions and their signatures are kept.
+     *
+     * @return the pdfIncrementalUpdate
+     */
+    public boolean isPdfIncrementalUpdate() {
+        return pdfIncrementalUpdate;
+    }
+
+
+    /**
+     * Sets true if the neutralized objects of a document are written as incremental update, the original revisions and their signatures are kept.
+     *
+     * @param pdfIncrementalUpdate the pdfIncrementalUpdate to set
+     */
+    public void setPdfIncrementalUpdate(boolean pdfIncrementalUpdate) {
+        this.pdfIncrementalUpdate = pdfIncrementalUpdate;
+    }
+
+
+    /**
+     * Gets the parse policy of a malformed PDF document.
+     *
+     * @return the pdfParsePolicy
+     */
+    public SanitizeContentParsePolicy getPdfParsePolicy() {
+        return pdfParsePolicy;
+    }
+
+
+    /**
+     * Sets the parse policy of a malformed PDF document.
+     *
+     * @param pdfParsePolicy the pdfParsePolicy to set
+     */
+    public void setPdfParsePolicy(SanitizeContentParsePolicy pdfParsePolicy) {
+        this.pdfParsePolicy = pdfParsePolicy;
+    }
+
+
+    /**
+     * Gets the scan budget of the lenient PDF parser with budget, it is a multiple of the document length.
+     *
+     * @return the pdfParseScanBudgetFactor
+     */
+    public int getPdfParseScanBudgetFactor() {
+        return pdfParseScanBudgetFactor;
+    }
+
+
+    /**
+     * Sets the scan budget of the lenient PDF parser with budget, it is a multiple of the document length.
+     *
+     * @param pdfParseScanBudgetFactor the pdfParseScanBudgetFactor to set
+     */
+    public void setPdfParseScanBudgetFactor(int pdfParseScanBudgetFactor) {
+        this.pdfParseScanBudgetFactor = pdfParseScanBudgetFactor;
+    }
+
+
+    /**
+     * Gets the maximum decoded size of a stream.
+     *
+     * @return the maxDecodedStreamSize
+     */
+    public long getMaxDecodedStreamSize() {
+        return maxDecodedStreamSize;
+    }
+
+
+    /**
+     * Sets the maximum decoded size of a stream.
+     *
+     * @param maxDecodedStreamSize the maxDecodedStreamSize to set
+     */
+    public void setMaxDecodedStreamSize(long maxDecodedStreamSize) {
+        this.maxDecodedStreamSize = maxDecodedStreamSize;
+    }
+
+
+    /**
+     * Gets the maximum decoded size of all streams of a document.
+     *
+     * @return the maxDecodedDocumentSize
+     */
+    public long getMaxDecodedDocumentSize() {
+        return maxDecodedDocumentSize;
+    }
+
+
+    /**
+     * Sets the maximum decoded size of all streams of a document.
+     *
+     * @param maxDecodedDocumentSize the maxDecodedDocumentSize to set
+     */
+    public void setMaxDecodedDocumentSize(long maxDecodedDocumentSize) {
+        this.maxDecodedDocumentSize = maxDecodedDocumentSize;
+    }
+
+
+    /**
+     * Gets the maximum ratio of the decoded to the encoded size of a stream and of a document.
+     *
+     * @return the maxDecodingRatio
+     */
+    public int getMaxDecodingRatio() {
+        return maxDecodingRatio;
+    }
+
+
+    /**
+     * Sets the maximum ratio of the decoded to the encoded size of a stream and of a document.
+     *
+     * @param maxDecodingRatio the maxDecodingRatio to set
+     */
+    public void setMaxDecodingRatio(int maxDecodingRatio) {
+        this.maxDecodingRatio = maxDecodingRatio;
+    }
+
+
+    /**
+     * Gets the maximum declared size of an embedded file, a larger embedded file is stripped without to decode it, -1 is unlimited.
+     *
+     * @return the pdfAttachmentMaxSize
+     */
+    public long getPdfAttachmentMaxSize() {
+        return pdfAttachmentMaxSize;
+    }
+
+
+    /**
+     * Sets the maximum declared size of an embedded file, a larger embedded file is stripped without to decode it, -1 is unlimited.
+     *
+     * @param pdfAttachmentMaxSize the pdfAttachmentMaxSize to set
+     */
+    public void setPdfAttachmentMaxSize(long pdfAttachmentMaxSize) {
+        this.pdfAttachmentMaxSize = pdfAttachmentMaxSize;
+    }
+
+
+    /**
+     * Gets the types of the embedded files which are stripped without to decode them, a type is a file name extension like .exe or a mime type.
+     *
+     * @return the pdfAttachmentStripTypes
+     */
+    public Set<String> getPdfAttachmentStripTypes() {
+        return pdfAttachmentStripTypes;
+    }
+
+
+    /**
+     * Sets the types of the embedded files which are stripped without to decode them, a type is a file name extension like .exe or a mime type.
+     *
+     * @param pdfAttachmentStripTypes the pdfAttachmentStripTypes to set
+     */
+    public void setPdfAttachmentStripTypes(Set<String> pdfAttachmentStripTypes) {
+        this.pdfAttachmentStripTypes = pdfAttachmentStripTypes;
+    }
+
+
+    /**
+     * Gets the types of the embedded files which are kept without to decode them, a type is a file name extension like .txt or a mime type.
+     *
+     * @return the pdfAttachmentKeepTypes
+     */
+    public Set<String> getPdfAttachmentKeepTypes() {
+        return pdfAttachmentKeepTypes;
+    }
+
+
+    /**
+     * Sets the types of the embedded files which are kept without to decode them, a type is a file name extension like .txt or a mime type.
+     *
+     * @param pdfAttachmentKeepTypes the pdfAttachmentKeepTypes to set
+     */
+    public void setPdfAttachmentKeepTypes(Set<String> pdfAttachmentKeepTypes) {
+        this.pdfAttachmentKeepTypes = pdfAttachmentKeepTypes;
+    }
+
+
+    /**
+     * Get the fingerprint of the fields which change the output of a content, it is part of the key of a cached result. The fields are
+     * sorted by name and the types are sorted ignoring the case. The directories, the thresholds and the parallelism don't change the
+     * output and are not part of it.
+     *
+     * @return the fingerprint
+     */
+    public String getOutputFingerprint() {
+        Map<String, Object> fieldMap = new TreeMap<String, Object>();
+        fieldMap.put("copyCleanContent", copyCleanContent);
+        fieldMap.put("maxDecodedDocumentSize", maxDecodedDocumentSize);
+        fieldMap.put("maxDecodedStreamSize", maxDecodedStreamSize);
+        fieldMap.put("maxDecodingRatio", maxDecodingRatio);
+        fieldMap.put("maxNestingDepth", maxNestingDepth);
+        fieldMap.put("pdfAttachmentKeepTypes", sort(pdfAttachmentKeepTypes));
+        fieldMap.put("pdfAttachmentMaxSize", pdfAttachmentMaxSize);
+        fieldMap.put("pdfAttachmentStripTypes", sort(pdfAttachmentStripTypes));
+        fieldMap.put("pdfCopyUnmodifiedObjects", pdfCopyUnmodifiedObjects);
+        fieldMap.put("pdfDeepObjectScan", pdfDeepObjectScan);
+        fieldMap.put("pdfFailOnObjectLimit", pdfFailOnObjectLimit);
+        fieldMap.put("pdfIncrementalUpdate", pdfIncrementalUpdate);
+        fieldMap.put("pdfMaxCrawledObjects", pdfMaxCrawledObjects);
+        fieldMap.put("pdfMaxObjectDepth", pdfMaxObjectDepth);
+        fieldMap.put("pdfParsePolicy", pdfParsePolicy);
+        fieldMap.put("pdfParseScanBudgetFactor", pdfParseScanBudgetFactor);
+        fieldMap.put("pdfPrefilter", pdfPrefilter);
+        return fieldMap.toString();
+    }
+
+
+    /**
+     * Sort a set of types ignoring the case
+     *
+     * @param typeSet the types or null
+     * @return the sorted types
+     */
+    private static Set<String> sort(Set<String> typeSet) {
+        Set<String> sortedTypeSet = new TreeSet<String>();
+        if (typeSet != null) {
+            for (String type : typeSet) {
+                if (type != null) {
+                    sortedTypeSet.add(type.toLowerCase(Locale.ROOT));
+                }
+            }
+        }
+
+        return sortedTypeSet;
+    }
+
+
+    /**
+     * Copy a set of types
+     *
+     * @param typeSet the types or null
+     * @return the copy or null
+     */
+    private static Set<String> copy(Set<String> typeSet) {
+        if (typeSet == null) {
+            return null;
+        }
+
+        return new HashSet<String>(typeSet);
+    }
+
+
+    /**
+     * @see java.lang.Object#hashCode()
+     */
+    @Override
+    public int hashCode() {
+        return Objects.hash(spillThreshold, tempDirectory, maxConcurrentSanitizing, maxInFlightBytes, pdfMaxMainMemoryBytes, pdfMaxStorageBytes, pdfScratchDirectory, resultCacheMaxMemoryBytes, resultCacheDirectory, resultCacheMaxDiskBytes, copyCleanContent, pdfDeepObjectScan, pdfMaxObjectDepth, pdfMaxCrawledObjects, pdfFailOnObjectLimit, pdfPrefilter, pdfParallelPageThreshold, pdfEmbeddedFileParallelism, maxNestingDepth, pdfCopyUnmodifiedObjects, pdfIncrementalUpdate, pdfParsePolicy, pdfParseScanBudgetFactor, maxDecodedStreamSize, maxDecodedDocumentSize, maxDecodingRatio, pdfAttachmentMaxSize, pdfAttachmentStripTypes, pdfAttachmentKeepTypes);
+    }
+
+
+    /**
+     * @see java.lang.Object#equals(java.lang.Object)
+     */
+    @Override
+    public boolean equals(Object obj) {
+        if (this == obj) {
+            return true;
+        }
+
+        if (obj == null) {
+            return false;
+        }
+
+        if (getClass() != obj.getClass()) {
+            return false;
+        }
+
+        SanitizeContentConfiguration other = (SanitizeContentConfiguration) obj;
+        return spillThreshold == other.spillThreshold && Objects.equals(tempDirectory, other.tempDirectory)
+                && maxConcurrentSanitizing == other.maxConcurrentSanitizing
+                && maxInFlightBytes == other.maxInFlightBytes
+                && pdfMaxMainMemoryBytes == other.pdfMaxMainMemoryBytes
+                && pdfMaxStorageBytes == other.pdfMaxStorageBytes
+                && Objects.equals(pdfScratchDirectory, other.pdfScratchDirectory)
+                && resultCacheMaxMemoryBytes == other.resultCacheMaxMemoryBytes
+                && Objects.equals(resultCacheDirectory, other.resultCacheDirectory)
+                && resultCacheMaxDiskBytes == other.resultCacheMaxDiskBytes
+                && copyCleanContent == other.copyCleanContent
+                && pdfDeepObjectScan == other.pdfDeepObjectScan
+                && pdfMaxObjectDepth == other.pdfMaxObjectDepth
+                && pdfMaxCrawledObjects == other.pdfMaxCrawledObjects
+                && pdfFailOnObjectLimit == other.pdfFailOnObjectLimit
+                && pdfPrefilter == other.pdfPrefilter
+                && pdfParallelPageThreshold == other.pdfParallelPageThreshold
+                && pdfEmbeddedFileParallelism == other.pdfEmbeddedFileParallelism
+                && maxNestingDepth == other.maxNestingDepth
+                && pdfCopyUnmodifiedObjects == other.pdfCopyUnmodifiedObjects
+                && pdfIncrementalUpdate == other.pdfIncrementalUpdate
+                && Objects.equals(pdfParsePolicy, other.pdfParsePolicy)
+                && pdfParseScanBudgetFactor == other.pdfParseScanBudgetFactor
+                && maxDecodedStreamSize == other.maxDecodedStreamSize
+                && maxDecodedDocumentSize == other.maxDecodedDocumentSize
+                && maxDecodingRatio == other.maxDecodingRatio
+                && pdfAttachmentMaxSize == other.pdfAttachmentMaxSize
+                && Objects.equals(pdfAttachmentStripTypes, other.pdfAttachmentStripTypes)
+                && Objects.equals(pdfAttachmentKeepTypes, other.pdfAttachmentKeepTypes);
+    }
+
+
+    /**
+     * @see java.lang.Object#toString()
+     */
+    @Override
+    public String toString() {
+        return "SanitizeContentConfiguration [spillThreshold=" + spillThreshold + ", tempDirectory=" + tempDirectory
+                + ", maxConcurrentSanitizing=" + maxConcurrentSanitizing
+                + ", maxInFlightBytes=" + maxInFlightBytes
+                + ", pdfMaxMainMemoryBytes=" + pdfMaxMainMemoryBytes
+                + ", pdfMaxStorageBytes=" + pdfMaxStorageBytes
+                + ", pdfScratchDirectory=" + pdfScratchDirectory
+                + ", resultCacheMaxMemoryBytes=" + resultCacheMaxMemoryBytes
+                + ", resultCacheDirectory=" + resultCacheDirectory
+                + ", resultCacheMaxDiskBytes=" + resultCacheMaxDiskBytes
+                + ", copyCleanContent=" + copyCleanContent
+                + ", pdfDeepObjectScan=" + pdfDeepObjectScan
+                + ", pdfMaxObjectDepth=" + pdfMaxObjectDepth
+                + ", pdfMaxCrawledObjects=" + pdfMaxCrawledObjects
+                + ", pdfFailOnObjectLimit=" + pdfFailOnObjectLimit
+                + ", pdfPrefilter=" + pdfPrefilter
+                + ", pdfParallelPageThreshold=" + pdfParallelPageThreshold
+                + ", pdfEmbeddedFileParallelism=" + pdfEmbeddedFileParallelism
+                + ", maxNestingDepth=" + maxNestingDepth
+                + ", pdfCopyUnmodifiedObjects=" + pdfCopyUnmodifiedObjects
+                + ", pdfIncrementalUpdate=" + pdfIncrementalUpdate
+                + ", pdfParsePolicy=" + pdfParsePolicy
+                + ", pdfParseScanBudgetFactor=" + pdfParseScanBudgetFactor
+                + ", maxDecodedStreamSize=" + maxDecodedStreamSize
+                + ", maxDecodedDocumentSize=" + maxDecodedDocumentSize
+                + ", maxDecodingRatio=" + maxDecodingRatio
+                + ", pdfAttachmentMaxSize=" + pdfAttachmentMaxSize
+                + ", pdfAttachmentStripTypes=" + pdfAttachmentStripTypes
+                + ", pdfAttachmentKeepTypes=" + pdfAttachmentKeepTypes + "]";
+    }
+}
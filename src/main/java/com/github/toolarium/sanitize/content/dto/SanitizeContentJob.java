@@ -0,0 +1,167 @@
+/*
+ * SanitizeContentJob.java
+ *
+ * Copyright by toolarium, all rights reserved.
+ */
+package com.github.toolarium.sanitize.content.dto;
+
+import com.github.toolarium.sanitize.content.ISanitizeContentCredentialAccess;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Path;
+
+
+/**
+ * Defines a sanitize content job which is processed asynchronous. A job is either stream or file based.
+ *
+ * @author Patrick Meier
+ */
+public class SanitizeContentJob {
+    private final String name;
+    private final InputStream inputStream;
+    private final OutputStream outputStream;
+    private final Path inputPath;
+    private final Path outputPath;
+    private final ISanitizeContentCredentialAccess credentialAccess;
+    private final long contentLength;
+
+
+    /**
+     * Constructor for a stream based SanitizeContentJob with unknown content length
+     *
+     * @param name the name of the content
+     * @param inputStream the input stream
+     * @param outputStream the output stream
+     * @param credentialAccess the credential access or null
+     */
+    public SanitizeContentJob(String name, InputStream inputStream, OutputStream outputStream, ISanitizeContentCredentialAccess credentialAccess) {
+        this(name, inputStream, outputStream, credentialAccess, -1);
+    }
+
+
+    /**
+     * Constructor for a stream based SanitizeContentJob
+     *
+     * @param name the name of the content
+     * @param inputStream the input stream
+     * @param outputStream the output stream
+     * @param credentialAccess the credential access or null
+     * @param contentLength the length of the content in bytes or -1 if it is unknown
+     */
+    public SanitizeContentJob(String name, InputStream inputStream, OutputStream outputStream, ISanitizeContentCredentialAccess credentialAccess, long contentLength) {
+        this.name = name;
+        this.inputStream = inputStream;
+        this.outputStream = outputStream;
+        this.inputPath = null;
+        this.outputPath = null;
+        this.credentialAccess = credentialAccess;
+        this.contentLength = contentLength;
+    }
+
+
+    /**
+     * Constructor for a file based SanitizeContentJob
+     *
+     * @param inputPath the input file
+     * @param outputPath the output file
+     * @param credentialAccess the credential access or null
+     */
+    public SanitizeContentJob(Path inputPath, Path outputPath, ISanitizeContentCredentialAccess credentialAccess) {
+        this.name = "" + inputPath.getFileName();
+        this.inputStream = null;
+        this.outputStream = null;
+        this.inputPath = inputPath;
+        this.outputPath = outputPath;
+        this.credentialAccess = credentialAccess;
+        this.contentLength = inputPath.toFile().length();
+    }
+
+
+    /**
+     * Gets the name of the content.
+     *
+     * @return the name
+     */
+    public String getName() {
+        return name;
+    }
+
+
+    /**
+     * Gets the input stream or null if it is a file based job.
+     *
+     * @return the input stream
+     */
+    public InputStream getInputStream() {
+        return inputStream;
+    }
+
+
+    /**
+     * Gets the output stream or null if it is a file based job.
+     *
+     * @return the output stream
+     */
+    public OutputStream getOutputStream() {
+        return outputStream;
+    }
+
+
+    /**
+     * Gets the input file or null if it is a stream based job.
+     *
+     * @return the input file
+     */
+    public Path getInputPath() {
+        return inputPath;
+    }
+
+
+    /**
+     * Gets the output file or null if it is a stream based job.
+     *
+     * @return the output file
+     */
+    public Path getOutputPath() {
+        return outputPath;
+    }
+
+
+    /**
+     * Check if it is a file based job
+     *
+     * @return true if it is file based
+     */
+    public boolean isFileBased() {
+        return inputPath != null;
+    }
+
+
+    /**
+     * Gets the credential access.
+     *
+     * @return the credential access or null
+     */
+    public ISanitizeContentCredentialAccess getCredentialAccess() {
+        return credentialAccess;
+    }
+
+
+    /**
+     * Gets the length of the content in bytes.
+     *
+     * @return the content length or -1 if it is unknown
+     */
+    public long getContentLength() {
+        return contentLength;
+    }
+
+
+    /**
+     * @see java.lang.Object#toString()
+     */
+    @Override
+    public String toString() {
+        return "SanitizeContentJob [name=" + name + ", inputPath=" + inputPath + ", outputPath=" + outputPath + ", contentLength=" + contentLength + "]";
+    }
+}
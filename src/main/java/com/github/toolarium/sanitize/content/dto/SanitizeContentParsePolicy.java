@@ -0,0 +1,22 @@
+/*
+ * SanitizeContentParsePolicy.java
+ *
+ * Copyright by toolarium, all rights reserved.
+ */
+package com.github.toolarium.sanitize.content.dto;
+
+/**
+ * The parse policy of a malformed content, e.g. a PDF document with a broken cross reference.
+ *
+ * @author Patrick Meier
+ */
+public enum SanitizeContentParsePolicy {
+    /** A malformed content is rejected, it is not repaired */
+    STRICT,
+
+    /** A malformed content is repaired, e.g. by a scan of the whole content */
+    LENIENT,
+
+    /** A malformed content is repaired as long as the parser doesn't exceed its scan budget */
+    LENIENT_WITH_BUDGET;
+}
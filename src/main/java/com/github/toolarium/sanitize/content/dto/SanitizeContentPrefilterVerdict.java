@@ -0,0 +1,22 @@
+/*
+ * SanitizeContentPrefilterVerdict.java
+ *
+ * Copyright by toolarium, all rights reserved.
+ */
+package com.github.toolarium.sanitize.content.dto;
+
+/**
+ * The verdict of the raw byte prefilter.
+ *
+ * @author Patrick Meier
+ */
+public enum SanitizeContentPrefilterVerdict {
+    /** The content is not prefiltered */
+    NOT_APPLIED,
+
+    /** No threat token matched, the content is not bleached further */
+    CLEAN,
+
+    /** A threat token matched, the content is bleached */
+    SUSPICIOUS;
+}
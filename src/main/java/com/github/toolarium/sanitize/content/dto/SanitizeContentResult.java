@@ -19,7 +19,12 @@ public class SanitizeContentResult implements Serializable {
     private static final long serialVersionUID = 6841213499153479622L;
     private String contentType;
     private boolean modifiedContent;
+    private long copiedBytes;
+    private SanitizeContentPrefilterVerdict prefilterVerdict;
+    private String prefilterMatch;
     private List<SanitizeContentThreatInformation> threadInformationList;
+    private String name;
+    private List<SanitizeContentResult> nestedResultList;
 
 
     /**
@@ -28,7 +33,12 @@ public class SanitizeContentResult implements Serializable {
     public SanitizeContentResult() {
         contentType = null;
         modifiedContent = false;
+        copiedBytes = 0;
+        prefilterVerdict = SanitizeContentPrefilterVerdict.NOT_APPLIED;
+        prefilterMatch = null;
         threadInformationList = new ArrayList<SanitizeContentThreatInformation>();
+        name = null;
+        nestedResultList = new ArrayList<SanitizeContentResult>();
     }
 
 
@@ -46,6 +56,16 @@ public class SanitizeContentResult implements Serializable {
         }
 
         modifiedContent = modifiedContent || result.isModifiedContent();
+        copiedBytes += result.getCopiedBytes();
+
+        // the most suspicious verdict wins
+        if (result.getPrefilterVerdict() != null && (prefilterVerdict == null || result.getPrefilterVerdict().compareTo(prefilterVerdict) > 0)) {
+            prefilterVerdict = result.getPrefilterVerdict();
+        }
+
+        if (prefilterMatch == null) {
+            prefilterMatch = result.getPrefilterMatch();
+        }
 
         if (result.getThreadInformationList() != null) {
             if (threadInformationList == null) {
@@ -54,6 +74,14 @@ public class SanitizeContentResult implements Serializable {
 
             threadInformationList.addAll(result.getThreadInformationList());
         }
+
+        if (result.getNestedResultList() != null) {
+            if (nestedResultList == null) {
+                nestedResultList = new ArrayList<SanitizeContentResult>();
+            }
+
+            nestedResultList.addAll(result.getNestedResultList());
+        }
     }
 
 
@@ -97,6 +125,76 @@ public class SanitizeContentResult implements Serializable {
     }
 
 
+    /**
+     * Gets the number of bytes which are copied unchanged from the input to the output (pass-through).
+     *
+     * @return the number of copied bytes
+     */
+    public long getCopiedBytes() {
+        return copiedBytes;
+    }
+
+
+    /**
+     * Sets the number of bytes which are copied unchanged from the input to the output (pass-through).
+     *
+     * @param copiedBytes the number of copied bytes
+     */
+    public void setCopiedBytes(long copiedBytes) {
+        this.copiedBytes = copiedBytes;
+    }
+
+
+    /**
+     * Gets the verdict of the raw byte prefilter.
+     *
+     * @return the prefilter verdict
+     */
+    public SanitizeContentPrefilterVerdict getPrefilterVerdict() {
+        return prefilterVerdict;
+    }
+
+
+    /**
+     * Sets the verdict of the raw byte prefilter.
+     *
+     * @param prefilterVerdict the prefilter verdict to set
+     */
+    public void setPrefilterVerdict(SanitizeContentPrefilterVerdict prefilterVerdict) {
+        this.prefilterVerdict = prefilterVerdict;
+    }
+
+
+    /**
+     * Gets the token which matched in the raw byte prefilter.
+     *
+     * @return the matching token or null
+     */
+    public String getPrefilterMatch() {
+        return prefilterMatch;
+    }
+
+
+    /**
+     * Sets the token which matched in the raw byte prefilter.
+     *
+     * @param prefilterMatch the matching token to set
+     */
+    public void setPrefilterMatch(String prefilterMatch) {
+        this.prefilterMatch = prefilterMatch;
+    }
+
+
+    /**
+     * Check if the raw byte prefilter hit, in this case the content was bleached.
+     *
+     * @return true if the prefilter hit
+     */
+    public boolean isPrefilterHit() {
+        return prefilterVerdict == SanitizeContentPrefilterVerdict.SUSPICIOUS;
+    }
+
+
     /**
      * Gets the thread information list.
      *
@@ -117,12 +215,52 @@ public class SanitizeContentResult implements Serializable {
     }
 
 
+    /**
+     * Gets the name of a nested content.
+     *
+     * @return the name or null
+     */
+    public String getName() {
+        return name;
+    }
+
+
+    /**
+     * Sets the name of a nested content.
+     *
+     * @param name the name to set
+     */
+    public void setName(String name) {
+        this.name = name;
+    }
+
+
+    /**
+     * Gets the results of the nested contents, e.g. the embedded files. Their threats are part of the thread information list as well.
+     *
+     * @return the nested result list
+     */
+    public List<SanitizeContentResult> getNestedResultList() {
+        return nestedResultList;
+    }
+
+
+    /**
+     * Sets the results of the nested contents.
+     *
+     * @param nestedResultList the nested result list to set
+     */
+    public void setNestedResultList(List<SanitizeContentResult> nestedResultList) {
+        this.nestedResultList = nestedResultList;
+    }
+
+
     /**
      * @see java.lang.Object#hashCode()
      */
     @Override
     public int hashCode() {
-        return Objects.hash(contentType, modifiedContent, threadInformationList);
+        return Objects.hash(contentType, modifiedContent, copiedBytes, prefilterVerdict, prefilterMatch, threadInformationList, name, nestedResultList);
     }
 
 
@@ -141,8 +279,10 @@ public class SanitizeContentResult implements Serializable {
             return false;
         }
         SanitizeContentResult other = (SanitizeContentResult) obj;
-        return Objects.equals(contentType, other.contentType) && modifiedContent == other.modifiedContent
-                && Objects.equals(threadInformationList, other.threadInformationList);
+        return Objects.equals(contentType, other.contentType) && modifiedContent == other.modifiedContent && copiedBytes == other.copiedBytes
+                && prefilterVerdict == other.prefilterVerdict && Objects.equals(prefilterMatch, other.prefilterMatch)
+                && Objects.equals(threadInformationList, other.threadInformationList) && Objects.equals(name, other.name)
+                && Objects.equals(nestedResultList, other.nestedResultList);
     }
 
 
@@ -151,7 +291,8 @@ public class SanitizeContentResult implements Serializable {
      */
     @Override
     public String toString() {
-        return "SanitizeContentResult [contentType=" + contentType + ", modifiedContent=" + modifiedContent
-                + ", threadInformationList=" + threadInformationList + "]";
+        return "SanitizeContentResult [contentType=" + contentType + ", modifiedContent=" + modifiedContent + ", copiedBytes=" + copiedBytes
+                + ", prefilterVerdict=" + prefilterVerdict + ", prefilterMatch=" + prefilterMatch + ", threadInformationList=" + threadInformationList
+                + ", name=" + name + ", nestedResultList=" + nestedResultList + "]";
     }
 }
@@ -5,6 +5,7 @@
  */
 package com.github.toolarium.sanitize.content.dto;
 
+import java.io.Serializable;
 import java.util.Objects;
 
 /**
@@ -12,7 +13,8 @@ import java.util.Objects;
  *
  * @author Patrick Meier
  */
-public class SanitizeContentThreatInformation {
+public class SanitizeContentThreatInformation implements Serializable {
+    private static final long serialVersionUID = -3157361829513648672L;
     private String section;
     private String description;
     private String actionCode;
@@ -14,6 +14,7 @@ import java.io.IOException;
  */
 public class SanitizeContentException extends IOException {
     private static final long serialVersionUID = 7281614526616647879L;
+    private final SanitizeContentExceptionReason reason;
 
 
     /**
@@ -22,7 +23,19 @@ public class SanitizeContentException extends IOException {
      * @param message the message
      */
     public SanitizeContentException(String message) {
+        this(message, SanitizeContentExceptionReason.GENERAL);
+    }
+
+
+    /**
+     * Constructor for SanitizeContentException
+     *
+     * @param message the message
+     * @param reason the reason
+     */
+    public SanitizeContentException(String message, SanitizeContentExceptionReason reason) {
         super(message);
+        this.reason = reason;
     }
 
 
@@ -32,6 +45,28 @@ public class SanitizeContentException extends IOException {
      * @param e the exception
      */
     public SanitizeContentException(IOException e) {
+        this(e, SanitizeContentExceptionReason.GENERAL);
+    }
+
+
+    /**
+     * Constructor for SanitizeContentException
+     *
+     * @param e the exception
+     * @param reason the reason
+     */
+    public SanitizeContentException(IOException e, SanitizeContentExceptionReason reason) {
         super(e);
+        this.reason = reason;
+    }
+
+
+    /**
+     * Get the reason
+     *
+     * @return the reason
+     */
+    public SanitizeContentExceptionReason getReason() {
+        return reason;
     }
 }
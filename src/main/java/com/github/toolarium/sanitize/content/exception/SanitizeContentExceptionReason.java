@@ -0,0 +1,25 @@
+/*
+ * SanitizeContentExceptionReason.java
+ *
+ * Copyright by toolarium, all rights reserved.
+ */
+package com.github.toolarium.sanitize.content.exception;
+
+/**
+ * The reason of a {@link SanitizeContentException}, it lets the caller decide to reject a content.
+ *
+ * @author Patrick Meier
+ */
+public enum SanitizeContentExceptionReason {
+    /** The content can't be sanitized */
+    GENERAL,
+
+    /** The content is malformed, the strict parse policy doesn't repair it */
+    MALFORMED_CONTENT,
+
+    /** The parser exceeded its scan budget to repair a malformed content */
+    SCAN_BUDGET_EXCEEDED,
+
+    /** The decoding of a stream exceeded the maximum decoded size or the maximum decoding ratio */
+    DECODING_LIMIT_EXCEEDED;
+}
@@ -22,6 +22,14 @@ public interface ISanitizeContentThreatRegistry {
     void registerThreat(ISection section, String description, String action);
 
 
+    /**
+     * Check if the content is only scanned. In this case the threats are registered but the content must not be modified.
+     *
+     * @return true if the content is only scanned
+     */
+    boolean isScanOnly();
+
+
     /**
      * Defines the section interface
      */
@@ -0,0 +1,203 @@
+/*
+ * SanitizeContentContext.java
+ *
+ * Copyright by toolarium, all rights reserved.
+ */
+package com.github.toolarium.sanitize.content.impl;
+
+import com.github.toolarium.sanitize.content.ISanitizeContentCredentialAccess;
+import com.github.toolarium.sanitize.content.dto.SanitizeContentThreatInformation;
+import com.github.toolarium.sanitize.content.impl.bleach.SanitizeContentNestedContentDispatcher;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+
+/**
+ * Defines the context of one sanitize invocation. It keeps the state of the content, e.g. the detected threats, therefore the bleachers
+ * and the processor are stateless and can be shared by concurrent invocations. A nested content, e.g. an embedded file, is sanitized
+ * in its own context.
+ *
+ * @author Patrick Meier
+ */
+public class SanitizeContentContext implements ISanitizeContentThreatRegistry {
+    private static final Logger LOG = LoggerFactory.getLogger(SanitizeContentContext.class);
+    private final String name;
+    private final ISanitizeContentCredentialAccess credentialAccess;
+    private final boolean scanOnly;
+    private final int nestingDepth;
+    private final SanitizeContentNestedContentDispatcher nestedContentDispatcher;
+    private final ExecutorService nestedContentExecutor;
+    private final List<SanitizeContentThreatInformation> threatInformationList;
+
+
+    /**
+     * Constructor for SanitizeContentContext
+     *
+     * @param name the name of the content
+     * @param credentialAccess the credential access or null
+     * @param scanOnly true if the content is only scanned
+     */
+    public SanitizeContentContext(String name, ISanitizeContentCredentialAccess credentialAccess, boolean scanOnly) {
+        this(name, credentialAccess, scanOnly, 0, null, null);
+    }
+
+
+    /**
+     * Constructor for SanitizeContentContext
+     *
+     * @param name the name of the content
+     * @param credentialAccess the credential access or null
+     * @param scanOnly true if the content is only scanned
+     * @param nestingDepth the nesting depth of the content, the top level content has the depth 0
+     * @param nestedContentDispatcher the dispatcher of the processor which dispatches the nested contents to its bleachers or null
+     * @param nestedContentExecutor the executor of the processor which sanitizes the nested contents concurrently or null
+     */
+    public SanitizeContentContext(String name, ISanitizeContentCredentialAccess credentialAccess, boolean scanOnly, int nestingDepth, SanitizeContentNestedContentDispatcher nestedContentDispatcher, ExecutorService nestedContentExecutor) {
+        this.name = name;
+        this.credentialAccess = credentialAccess;
+        this.scanOnly = scanOnly;
+        this.nestingDepth = nestingDepth;
+        this.nestedContentDispatcher = nestedContentDispatcher;
+        this.nestedContentExecutor = nestedContentExecutor;
+
+        // the threats of embedded contents can be registered concurrently
+        this.threatInformationList = Collections.synchronizedList(new ArrayList<SanitizeContentThreatInformation>());
+    }
+
+
+    /**
+     * Create the context of a nested content, it has no credentials
+     *
+     * @param nestedName the name of the nested content
+     * @return the context of the nested content
+     */
+    public SanitizeContentContext createNestedContext(String nestedName) {
+        return new SanitizeContentContext(nestedName, null, scanOnly, nestingDepth + 1, nestedContentDispatcher, nestedContentExecutor);
+    }
+
+
+    /**
+     * Create the context of a nested content which is sanitized by a task of the executor. Its own nested contents are sanitized
+     * on the thread of the task, a task never waits for another task of the bounded executor.
+     *
+     * @param nestedName the name of the nested content
+     * @return the context of the nested content
+     */
+    public SanitizeContentContext createConcurrentNestedContext(String nestedName) {
+        return new SanitizeContentContext(nestedName, null, scanOnly, nestingDepth + 1, nestedContentDispatcher, null);
+    }
+
+
+    /**
+     * Get the name of the content
+     *
+     * @return the name
+     */
+    public String getName() {
+        return name;
+    }
+
+
+    /**
+     * Get the credential access
+     *
+     * @return the credential access or null
+     */
+    public ISanitizeContentCredentialAccess getCredentialAccess() {
+        return credentialAccess;
+    }
+
+
+    /**
+     * Get the credentials
+     *
+     * @return the credentials, empty if there is no credential access
+     */
+    public String getCredentials() {
+        if (credentialAccess == null) {
+            return "";
+        }
+
+        return credentialAccess.getCredentials();
+    }
+
+
+    /**
+     * @see com.github.toolarium.sanitize.content.impl.ISanitizeContentThreatRegistry#isScanOnly()
+     */
+    @Override
+    public boolean isScanOnly() {
+        return scanOnly;
+    }
+
+
+    /**
+     * Get the nesting depth of the content, the top level content has the depth 0
+     *
+     * @return the nesting depth
+     */
+    public int getNestingDepth() {
+        return nestingDepth;
+    }
+
+
+    /**
+     * Get the dispatcher of the processor which dispatches the nested contents to its bleachers
+     *
+     * @return the dispatcher or null if the content is not sanitized by a processor
+     */
+    public SanitizeContentNestedContentDispatcher getNestedContentDispatcher() {
+        return nestedContentDispatcher;
+    }
+
+
+    /**
+     * Get the executor of the processor which sanitizes the nested contents concurrently
+     *
+     * @return the executor or null if the nested contents are sanitized one after another
+     */
+    public ExecutorService getNestedContentExecutor() {
+        return nestedContentExecutor;
+    }
+
+
+    /**
+     * @see com.github.toolarium.sanitize.content.impl.ISanitizeContentThreatRegistry#registerThreat(com.github.toolarium.sanitize.content.impl.ISanitizeContentThreatRegistry.ISection, java.lang.String, java.lang.String)
+     */
+    @Override
+    public void registerThreat(ISanitizeContentThreatRegistry.ISection section, String description, String action) {
+        synchronized (threatInformationList) {
+            LOG.debug("Threat found in " + name + " #" + (threatInformationList.size() + 1) + ": [" + section + "] / [" + description + "]");
+            threatInformationList.add(new SanitizeContentThreatInformation(section.name(), description, action));
+        }
+    }
+
+
+    /**
+     * Register the threats of a nested content which was sanitized in its own context
+     *
+     * @param nestedThreatInformationList the threat information list of the nested content
+     */
+    public void registerThreats(List<SanitizeContentThreatInformation> nestedThreatInformationList) {
+        if (nestedThreatInformationList == null || nestedThreatInformationList.isEmpty()) {
+            return;
+        }
+
+        LOG.debug("Threats found in nested content of " + name + ": " + nestedThreatInformationList.size());
+        threatInformationList.addAll(nestedThreatInformationList);
+    }
+
+
+    /**
+     * Get the threat information list
+     *
+     * @return the threat information list
+     */
+    public List<SanitizeContentThreatInformation> getThreatInformationList() {
+        return threatInformationList;
+    }
+}
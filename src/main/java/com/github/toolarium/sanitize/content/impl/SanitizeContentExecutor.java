@@ -0,0 +1,267 @@
+/*
+ * SanitizeContentExecutor.java
+ *
+ * Copyright by toolarium, all rights reserved.
+ */
+package com.github.toolarium.sanitize.content.impl;
+
+import com.github.toolarium.sanitize.content.dto.SanitizeContentResult;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+
+/**
+ * Executes the asynchronous sanitizing jobs. The jobs are started in FIFO order as long as the number of running jobs and
+ * the sum of their content bytes are below the configured limits. The jobs are executed on a cached pool of daemon threads,
+ * no thread is blocked while a job waits. A cancelled job is removed from the queue or interrupted and releases its limits.
+ *
+ * @author Patrick Meier
+ */
+public class SanitizeContentExecutor {
+    private static final Logger LOG = LoggerFactory.getLogger(SanitizeContentExecutor.class);
+    private final int maxConcurrent;
+    private final long maxInFlightBytes;
+    private final Deque<Task> pendingTasks;
+    private int running;
+    private long inFlightBytes;
+
+
+    /**
+     * Private class, the only instance of the executor service which will be created by accessing the holder class.
+     *
+     * @author Patrick Meier
+     */
+    private static class HOLDER {
+        static final ExecutorService INSTANCE = createExecutorService();
+    }
+
+
+    /**
+     * Constructor for SanitizeContentExecutor
+     *
+     * @param maxConcurrent the maximum number of concurrent running jobs
+     * @param maxInFlightBytes the maximum number of content bytes of the running jobs
+     */
+    public SanitizeContentExecutor(int maxConcurrent, long maxInFlightBytes) {
+        this.maxConcurrent = Math.max(1, maxConcurrent);
+        this.maxInFlightBytes = Math.max(1, maxInFlightBytes);
+        this.pendingTasks = new ArrayDeque<Task>();
+        this.running = 0;
+        this.inFlightBytes = 0;
+    }
+
+
+    /**
+     * Submit a job
+     *
+     * @param contentLength the content length in bytes which is charged against the in-flight limit
+     * @param job the job
+     * @return the future of the result
+     */
+    public CompletableFuture<SanitizeContentResult> submit(long contentLength, Callable<SanitizeContentResult> job) {
+        Task task = new Task(Math.max(0, contentLength), job);
+        synchronized (this) {
+            pendingTasks.addLast(task);
+        }
+
+        task.future.whenComplete((result, e) -> {
+            if (task.future.isCancelled()) {
+                cancel(task);
+            }
+        });
+
+        dispatch();
+        return task.future;
+    }
+
+
+    /**
+     * Get the number of running jobs
+     *
+     * @return the number of running jobs
+     */
+    public synchronized int getRunning() {
+        return running;
+    }
+
+
+    /**
+     * Get the content bytes of the running jobs
+     *
+     * @return the in-flight bytes
+     */
+    public synchronized long getInFlightBytes() {
+        return inFlightBytes;
+    }
+
+
+    /**
+     * Start the pending jobs as long as the limits allow it
+     */
+    private void dispatch() {
+        while (true) {
+            Task task;
+            synchronized (this) {
+                task = pendingTasks.peekFirst();
+                if (task == null || running >= maxConcurrent) {
+                    return;
+                }
+
+                // a job which exceeds the in-flight limit alone is started as soon as no other job is running
+                if (running > 0 && inFlightBytes + task.contentLength > maxInFlightBytes) {
+                    return;
+                }
+
+                pendingTasks.removeFirst();
+                running++;
+                inFlightBytes += task.contentLength;
+                task.started = true;
+            }
+
+            try {
+                HOLDER.INSTANCE.execute(() -> run(task));
+            } catch (RejectedExecutionException e) {
+                release(task);
+                task.future.completeExceptionally(e);
+            }
+        }
+    }
+
+
+    /**
+     * Run a job
+     *
+     * @param task the task
+     */
+    private void run(Task task) {
+        synchronized (this) {
+            if (task.released) {
+                // the job was cancelled before it was started
+                return;
+            }
+
+            task.thread = Thread.currentThread();
+        }
+
+        SanitizeContentResult result = null;
+        Exception exception = null;
+        try {
+            result = task.job.call();
+        } catch (Exception e) {
+            exception = e;
+        } finally {
+            synchronized (this) {
+                task.thread = null;
+            }
+
+            // the interrupt of a cancelled job doesn't remain on the pooled thread
+            Thread.interrupted();
+
+            // release the limits before the caller is notified
+            release(task);
+        }
+
+        if (exception != null) {
+            task.future.completeExceptionally(exception);
+        } else {
+            task.future.complete(result);
+        }
+
+        dispatch();
+    }
+
+
+    /**
+     * Cancel a task, a pending task is removed from the queue and a running task is interrupted. The limits of a running task are
+     * released at once, even if its job doesn't react on the interrupt.
+     *
+     * @param task the task
+     */
+    private void cancel(Task task) {
+        synchronized (this) {
+            LOG.debug("Cancel sanitize job (started: " + task.started + ")");
+            if (!task.started) {
+                pendingTasks.remove(task);
+            } else {
+                if (task.thread != null) {
+                    task.thread.interrupt();
+                }
+
+                release(task);
+            }
+        }
+
+        dispatch();
+    }
+
+
+    /**
+     * Release the limits of a task, they are released only once
+     *
+     * @param task the task
+     */
+    private synchronized void release(Task task) {
+        if (task.released) {
+            return;
+        }
+
+        task.released = true;
+        running--;
+        inFlightBytes -= task.contentLength;
+    }
+
+
+    /**
+     * Create the executor service
+     *
+     * @return the executor service
+     */
+    private static ExecutorService createExecutorService() {
+        final AtomicInteger counter = new AtomicInteger();
+        ThreadFactory threadFactory = runnable -> {
+            Thread thread = new Thread(runnable, "sanitize-content-" + counter.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        };
+
+        return Executors.newCachedThreadPool(threadFactory);
+    }
+
+
+    /**
+     * Defines a pending or running task.
+     */
+    private static class Task {
+        private final long contentLength;
+        private final Callable<SanitizeContentResult> job;
+        private final CompletableFuture<SanitizeContentResult> future;
+        private boolean started;
+        private boolean released;
+        private Thread thread;
+
+
+        /**
+         * Constructor for Task
+         *
+         * @param contentLength the content length
+         * @param job the job
+         */
+        Task(long contentLength, Callable<SanitizeContentResult> job) {
+            this.contentLength = contentLength;
+            this.job = job;
+            this.future = new CompletableFuture<SanitizeContentResult>();
+            this.started = false;
+            this.released = false;
+            this.thread = null;
+        }
+    }
+}
@@ -7,40 +7,92 @@ package com.github.toolarium.sanitize.content.impl;
 
 import com.github.toolarium.sanitize.content.ISanitizeContentCredentialAccess;
 import com.github.toolarium.sanitize.content.ISanitizeContentProcessor;
+import com.github.toolarium.sanitize.content.dto.SanitizeContentConfiguration;
+import com.github.toolarium.sanitize.content.dto.SanitizeContentJob;
 import com.github.toolarium.sanitize.content.dto.SanitizeContentResult;
 import com.github.toolarium.sanitize.content.exception.SanitizeContentException;
 import com.github.toolarium.sanitize.content.impl.bleach.ISanitizeContentBleacher;
-import com.github.toolarium.sanitize.content.impl.bleach.impl.pdf.PDFSanitizeContentBleacher;
+import com.github.toolarium.sanitize.content.impl.bleach.ISanitizeContentBleacherProvider;
+import com.github.toolarium.sanitize.content.impl.bleach.SanitizeContentBleacherRegistry;
+import com.github.toolarium.sanitize.content.impl.bleach.SanitizeContentNestedContentDispatcher;
+import com.github.toolarium.sanitize.content.impl.bleach.impl.pdf.PDFObjectThreatRuleTable;
+import com.github.toolarium.sanitize.content.impl.bleach.util.BufferPool;
 import com.github.toolarium.sanitize.content.impl.bleach.util.CloseShieldInputStream;
+import com.github.toolarium.sanitize.content.impl.bleach.util.CloseShieldOutputStream;
+import com.github.toolarium.sanitize.content.impl.bleach.util.ContentHandOffBuffer;
 import com.github.toolarium.sanitize.content.impl.bleach.util.StreamUtils;
-import java.io.BufferedInputStream;
-import java.io.ByteArrayInputStream;
-import java.io.ByteArrayOutputStream;
+import com.github.toolarium.sanitize.content.impl.bleach.util.TeeOutputStream;
+import java.io.BufferedOutputStream;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
+import java.nio.file.Path;
+import java.security.DigestInputStream;
+import java.security.MessageDigest;
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 
 /**
- * Implements the {@link ISanitizeContentProcessor}.
+ * Implements the {@link ISanitizeContentProcessor}. The processor and its bleachers are stateless, the state of an invocation is kept by
+ * its {@link SanitizeContentContext}, therefore one instance can be shared by concurrent invocations.
  *
  * @author Patrick Meier
  */
 public class SanitizeContentProcessorImpl implements ISanitizeContentProcessor {
     private static final Logger LOG = LoggerFactory.getLogger(SanitizeContentProcessorImpl.class);
-    private List<ISanitizeContentBleacher> contentBleachSupportList;
+    private static final AtomicInteger THREAD_COUNTER = new AtomicInteger();
+    private static final long NESTED_CONTENT_KEEP_ALIVE_SECONDS = 60;
+    private final SanitizeContentConfiguration configuration;
+    private final SanitizeContentBleacherRegistry registry;
+    private final SanitizeContentExecutor executor;
+    private final SanitizeContentResultCache resultCache;
+    private final ExecutorService nestedContentExecutor;
+    private final SanitizeContentNestedContentDispatcher nestedContentDispatcher;
 
 
     /**
      * Constructor for SanitizeContentProcessorImpl
      */
     public SanitizeContentProcessorImpl() {
-        contentBleachSupportList = new ArrayList<ISanitizeContentBleacher>();
-        contentBleachSupportList.add(new PDFSanitizeContentBleacher());
+        this(new SanitizeContentConfiguration());
+    }
+
+
+    /**
+     * Constructor for SanitizeContentProcessorImpl
+     *
+     * @param configuration the configuration
+     */
+    public SanitizeContentProcessorImpl(SanitizeContentConfiguration configuration) {
+        this(configuration, SanitizeContentBleacherRegistry.getInstance());
+    }
+
+
+    /**
+     * Constructor for SanitizeContentProcessorImpl
+     *
+     * @param configuration the configuration
+     * @param registry the bleacher registry
+     */
+    public SanitizeContentProcessorImpl(SanitizeContentConfiguration configuration, SanitizeContentBleacherRegistry registry) {
+        this.configuration = configuration;
+        this.registry = registry;
+        this.executor = new SanitizeContentExecutor(configuration.getMaxConcurrentSanitizing(), configuration.getMaxInFlightBytes());
+        this.resultCache = SanitizeContentResultCache.getInstance(configuration.getResultCacheMaxMemoryBytes(), configuration.getResultCacheDirectory(), configuration.getResultCacheMaxDiskBytes());
+        this.nestedContentExecutor = createNestedContentExecutor(configuration.getPdfEmbeddedFileParallelism());
+        this.nestedContentDispatcher = new SanitizeContentNestedContentDispatcher(configuration, registry);
     }
 
 
@@ -49,13 +101,7 @@ public class SanitizeContentProcessorImpl implements ISanitizeContentProcessor {
      */
     @Override
     public boolean supportContent(String name, InputStream inputStream) throws SanitizeContentException {
-        for (ISanitizeContentBleacher contentBleacher : contentBleachSupportList) {
-            if (contentBleacher.supportContent(name, inputStream)) {
-                return true;
-            }
-        }
-
-        return false;
+        return !lookup(name, inputStream).isEmpty();
     }
 
 
@@ -64,52 +110,351 @@ public class SanitizeContentProcessorImpl implements ISanitizeContentProcessor {
      */
     @Override
     public SanitizeContentResult sanitize(String name, InputStream inputStream, OutputStream outputStream, ISanitizeContentCredentialAccess credentialAccess) throws SanitizeContentException {
+        CloseShieldInputStream is = new CloseShieldInputStream(inputStream);
+        return sanitizeCached(name, null, is, lookup(name, is), outputStream, credentialAccess);
+    }
+
 
-        ByteArrayOutputStream os = null;
+    /**
+     * @see com.github.toolarium.sanitize.content.ISanitizeContentProcessor#sanitize(java.nio.file.Path, java.nio.file.Path, com.github.toolarium.sanitize.content.ISanitizeContentCredentialAccess)
+     */
+    @Override
+    public SanitizeContentResult sanitize(Path inputPath, Path outputPath, ISanitizeContentCredentialAccess credentialAccess) throws SanitizeContentException {
+        String name = "" + inputPath.getFileName();
+
+        try (FileInputStream fis = new FileInputStream(inputPath.toFile()); FileOutputStream fos = new FileOutputStream(outputPath.toFile())) {
+            CloseShieldInputStream is = new CloseShieldInputStream(fis);
+            List<ISanitizeContentBleacherProvider> providerList = lookup(name, is);
+            if (providerList.isEmpty()) {
+                // no bleach is able to handle this file, pass-through by the file channels
+                SanitizeContentResult result = new SanitizeContentResult();
+                result.setCopiedBytes(StreamUtils.getInstance().transfer(is, fos));
+                return result;
+            }
+
+            BufferedOutputStream os = new BufferedOutputStream(fos, BufferPool.BUFFER_SIZE);
+            SanitizeContentResult result = sanitizeCached(name, inputPath, is, providerList, os, credentialAccess);
+            os.flush();
+            return result;
+        } catch (IOException e) {
+            throw toSanitizeContentException(e);
+        }
+    }
+
+
+    /**
+     * @see com.github.toolarium.sanitize.content.ISanitizeContentProcessor#scan(java.lang.String, java.io.InputStream, com.github.toolarium.sanitize.content.ISanitizeContentCredentialAccess)
+     */
+    @Override
+    public SanitizeContentResult scan(String name, InputStream inputStream, ISanitizeContentCredentialAccess credentialAccess) throws SanitizeContentException {
         CloseShieldInputStream is = new CloseShieldInputStream(inputStream);
-        SanitizeContentResult result = new SanitizeContentResult();
+        List<ISanitizeContentBleacherProvider> providerList = lookup(name, is);
+        if (providerList.isEmpty()) {
+            return new SanitizeContentResult();
+        }
 
-        for (ISanitizeContentBleacher contentBleacher : contentBleachSupportList) {
-            if (os != null && is == null) {
-                // check if "is" is null to prevent useless object creation
-                ByteArrayInputStream bais = new ByteArrayInputStream(os.toByteArray());
-                is = new CloseShieldInputStream(new BufferedInputStream(bais, bais.available()));
+        // the content is not modified, therefore the most specific bleacher is sufficient
+        return getBleacher(providerList.get(0)).bleachContent(createContext(name, credentialAccess, true), is, OutputStream.nullOutputStream());
+    }
 
-                try {
-                    os.close();
-                } catch (IOException e) {
-                    LOG.warn("Could not close output stream: " + e.getMessage());
-                }
+
+    /**
+     * @see com.github.toolarium.sanitize.content.ISanitizeContentProcessor#scan(java.nio.file.Path, com.github.toolarium.sanitize.content.ISanitizeContentCredentialAccess)
+     */
+    @Override
+    public SanitizeContentResult scan(Path inputPath, ISanitizeContentCredentialAccess credentialAccess) throws SanitizeContentException {
+        String name = "" + inputPath.getFileName();
+
+        List<ISanitizeContentBleacherProvider> providerList;
+        try (FileInputStream fis = new FileInputStream(inputPath.toFile())) {
+            providerList = lookup(name, new CloseShieldInputStream(fis));
+        } catch (IOException e) {
+            throw toSanitizeContentException(e);
+        }
+
+        if (providerList.isEmpty()) {
+            return new SanitizeContentResult();
+        }
+
+        return getBleacher(providerList.get(0)).bleachContent(createContext(name, credentialAccess, true), inputPath, OutputStream.nullOutputStream());
+    }
+
+
+    /**
+     * @see com.github.toolarium.sanitize.content.ISanitizeContentProcessor#sanitizeAsync(java.lang.String, java.io.InputStream, java.io.OutputStream, com.github.toolarium.sanitize.content.ISanitizeContentCredentialAccess)
+     */
+    @Override
+    public CompletableFuture<SanitizeContentResult> sanitizeAsync(String name, InputStream inputStream, OutputStream outputStream, ISanitizeContentCredentialAccess credentialAccess) {
+        return sanitizeAsync(new SanitizeContentJob(name, inputStream, outputStream, credentialAccess));
+    }
+
+
+    /**
+     * @see com.github.toolarium.sanitize.content.ISanitizeContentProcessor#sanitizeAsync(com.github.toolarium.sanitize.content.dto.SanitizeContentJob)
+     */
+    @Override
+    public CompletableFuture<SanitizeContentResult> sanitizeAsync(SanitizeContentJob job) {
+        long contentLength = job.getContentLength();
+        if (contentLength < 0) {
+            // unknown length, at least the hand-off buffer is kept in memory
+            contentLength = configuration.getSpillThreshold();
+        }
+
+        return executor.submit(contentLength, () -> {
+            // the bleachers are stateless, the jobs share them
+            if (job.isFileBased()) {
+                return sanitize(job.getInputPath(), job.getOutputPath(), job.getCredentialAccess());
             }
 
-            if (!contentBleacher.supportContent(name, is)) {
-                continue;
+            return sanitize(job.getName(), job.getInputStream(), job.getOutputStream(), job.getCredentialAccess());
+        });
+    }
+
+
+    /**
+     * @see com.github.toolarium.sanitize.content.ISanitizeContentProcessor#sanitizeAll(java.util.Collection)
+     */
+    @Override
+    public List<CompletableFuture<SanitizeContentResult>> sanitizeAll(Collection<SanitizeContentJob> jobs) {
+        List<CompletableFuture<SanitizeContentResult>> result = new ArrayList<CompletableFuture<SanitizeContentResult>>();
+        if (jobs == null) {
+            return result;
+        }
+
+        for (SanitizeContentJob job : jobs) {
+            result.add(sanitizeAsync(job));
+        }
+
+        return result;
+    }
+
+
+    /**
+     * Sanitize the content by the result cache. The content is identified by its digest, a cached result is returned without to parse the content again.
+     *
+     * @param name the name of the content
+     * @param inputPath the input file or null
+     * @param inputStream the input stream
+     * @param providerList the providers of the content
+     * @param outputStream the output stream
+     * @param credentialAccess the credential access or null
+     * @return the sanitize result
+     * @throws SanitizeContentException In case the content can't be sanitized.
+     */
+    protected SanitizeContentResult sanitizeCached(String name,
+                                                   Path inputPath,
+                                                   CloseShieldInputStream inputStream,
+                                                   List<ISanitizeContentBleacherProvider> providerList,
+                                                   OutputStream outputStream,
+                                                   ISanitizeContentCredentialAccess credentialAccess)
+            throws SanitizeContentException {
+        if (resultCache == null || providerList.isEmpty()) {
+            return sanitize(name, inputPath, inputStream, providerList, outputStream, credentialAccess);
+        }
+
+        ContentHandOffBuffer inputBuffer = null;
+        ContentHandOffBuffer outputBuffer = new ContentHandOffBuffer(configuration.getSpillThreshold(), configuration.getTempDirectory());
+        try {
+            String credentials = "";
+            if (credentialAccess != null) {
+                credentials = credentialAccess.getCredentials();
             }
 
-            LOG.debug("Using bleach: {}", contentBleacher.getClass().getName());
-            os = new ByteArrayOutputStream();
+            // the processors of different registries share the cache and a registered threat rule changes the result of the same content
+            MessageDigest digest = resultCache.createDigest(configuration.getOutputFingerprint() + "|" + registry.getFingerprint() + "|" + PDFObjectThreatRuleTable.getInstance().getFingerprint() + "|" + credentials);
+            CloseShieldInputStream is = inputStream;
+            if (inputPath != null) {
+                resultCache.update(digest, inputPath);
+            } else {
+                // the stream can be read only once, it is buffered while the digest is calculated
+                inputBuffer = new ContentHandOffBuffer(configuration.getSpillThreshold(), configuration.getTempDirectory());
+                StreamUtils.getInstance().copy(new DigestInputStream(inputStream, digest), inputBuffer);
+                is = new CloseShieldInputStream(inputBuffer.getInputStream());
+            }
 
-            result.add(contentBleacher.bleachContent(name, is, os, credentialAccess));
+            String key = resultCache.toKey(digest);
+            SanitizeContentResult result = resultCache.get(key, outputStream);
+            if (result != null) {
+                return result;
+            }
 
-            try {
-                is.close();
-                is = null;
-            } catch (IOException e) {
-                LOG.warn("Could not close input stream: " + e.getMessage());
+            result = sanitize(name, inputPath, is, providerList, new TeeOutputStream(outputStream, outputBuffer), credentialAccess);
+            resultCache.put(key, result, outputBuffer);
+            return result;
+        } catch (IOException e) {
+            throw toSanitizeContentException(e);
+        } finally {
+            outputBuffer.release();
+            if (inputBuffer != null) {
+                inputBuffer.release();
             }
         }
+    }
+
+
+    /**
+     * Sanitize the content
+     *
+     * @param name the name of the content
+     * @param inputPath the input file or null; if it is set the first bleacher reads the file directly
+     * @param inputStream the input stream
+     * @param providerList the providers of the content
+     * @param outputStream the output stream
+     * @param credentialAccess the credential access or null
+     * @return the sanitize result
+     * @throws SanitizeContentException In case the content can't be sanitized.
+     */
+    protected SanitizeContentResult sanitize(String name,
+                                             Path inputPath,
+                                             CloseShieldInputStream inputStream,
+                                             List<ISanitizeContentBleacherProvider> providerList,
+                                             OutputStream outputStream,
+                                             ISanitizeContentCredentialAccess credentialAccess)
+            throws SanitizeContentException {
+
+        CloseShieldInputStream is = inputStream;
+        ContentHandOffBuffer handOffBuffer = null;
+        SanitizeContentResult result = new SanitizeContentResult();
+        boolean bleached = false;
 
         try {
-            if (os == null) {
-                // no bleach is able to handle this file
-                StreamUtils.getInstance().copy(is, outputStream);
-            } else {
-                os.writeTo(outputStream);
+            for (int i = 0; i < providerList.size(); i++) {
+                ISanitizeContentBleacher contentBleacher = getBleacher(providerList.get(i));
+
+                // a bleacher keeps the content type, the output of the last bleacher is written directly
+                ContentHandOffBuffer outputBuffer = null;
+                OutputStream os;
+                if (i + 1 < providerList.size()) {
+                    outputBuffer = new ContentHandOffBuffer(configuration.getSpillThreshold(), configuration.getTempDirectory());
+                    os = outputBuffer;
+                } else {
+                    os = new CloseShieldOutputStream(outputStream);
+                }
+
+                LOG.debug("Using bleach: {}", contentBleacher.getClass().getName());
+                try {
+                    // every bleacher of the chain registers its threats in its own context
+                    if (!bleached && inputPath != null) {
+                        result.add(contentBleacher.bleachContent(createContext(name, credentialAccess, false), inputPath, os));
+                    } else {
+                        result.add(contentBleacher.bleachContent(createContext(name, credentialAccess, false), is, os));
+                    }
+
+                    os.flush();
+                } catch (IOException e) {
+                    if (outputBuffer != null) {
+                        outputBuffer.release();
+                    }
+
+                    throw toSanitizeContentException(e);
+                } finally {
+                    if (handOffBuffer != null) {
+                        handOffBuffer.release();
+                    }
+
+                    handOffBuffer = outputBuffer;
+                }
+
+                bleached = true;
+                if (handOffBuffer == null) {
+                    break;
+                }
+
+                is = new CloseShieldInputStream(handOffBuffer.getInputStream());
             }
+
+            if (!bleached) {
+                // no bleach is able to handle this file, pass-through
+                result.setCopiedBytes(StreamUtils.getInstance().transfer(is, outputStream));
+            } else if (handOffBuffer != null) {
+                // no following bleacher accepted the output of the last bleacher
+                StreamUtils.getInstance().transfer(is, outputStream);
+            }
+        } catch (SanitizeContentException e) {
+            throw e;
         } catch (IOException e) {
             LOG.warn("Could not copy streams: " + e.getMessage(), e);
+        } finally {
+            if (handOffBuffer != null) {
+                handOffBuffer.release();
+            }
         }
 
         return result;
     }
+
+
+    /**
+     * Lookup the providers of the content by its leading bytes
+     *
+     * @param name the name of the content
+     * @param is the input stream
+     * @return the providers, empty if the content is not supported
+     */
+    private List<ISanitizeContentBleacherProvider> lookup(String name, InputStream is) {
+        byte[] header = new byte[registry.getSignatureLength()];
+        int length = StreamUtils.getInstance().peek(name, is, header);
+        return registry.lookup(header, length);
+    }
+
+
+    /**
+     * Get the bleacher of a provider, it is created on first use and shared by all invocations and their nested contents
+     *
+     * @param provider the provider
+     * @return the bleacher
+     */
+    private ISanitizeContentBleacher getBleacher(ISanitizeContentBleacherProvider provider) {
+        return nestedContentDispatcher.getBleacher(provider);
+    }
+
+
+    /**
+     * Create the context of an invocation, the nested contents are dispatched to the bleachers of the processor
+     *
+     * @param name the name of the content
+     * @param credentialAccess the credential access or null
+     * @param scanOnly true if the content is only scanned
+     * @return the context
+     */
+    private SanitizeContentContext createContext(String name, ISanitizeContentCredentialAccess credentialAccess, boolean scanOnly) {
+        return new SanitizeContentContext(name, credentialAccess, scanOnly, 0, nestedContentDispatcher, nestedContentExecutor);
+    }
+
+
+    /**
+     * Create the executor which sanitizes the nested contents of all invocations concurrently. It is bounded by the parallelism, its
+     * threads end when they are idle.
+     *
+     * @param parallelism the parallelism
+     * @return the executor or null if the nested contents are sanitized one after another
+     */
+    private static ExecutorService createNestedContentExecutor(int parallelism) {
+        if (parallelism <= 1) {
+            return null;
+        }
+
+        ThreadPoolExecutor executor = new ThreadPoolExecutor(parallelism, parallelism, NESTED_CONTENT_KEEP_ALIVE_SECONDS, TimeUnit.SECONDS, new LinkedBlockingQueue<Runnable>(), runnable -> {
+            Thread thread = new Thread(runnable, "sanitize-nested-content-" + THREAD_COUNTER.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        executor.allowCoreThreadTimeOut(true);
+        return executor;
+    }
+
+
+    /**
+     * Convert an exception
+     *
+     * @param e the exception
+     * @return the sanitize content exception
+     */
+    private SanitizeContentException toSanitizeContentException(IOException e) {
+        if (e instanceof SanitizeContentException) {
+            return (SanitizeContentException) e;
+        }
+
+        return new SanitizeContentException(e);
+    }
 }
@@ -0,0 +1,513 @@
+/*
+ * SanitizeContentResultCache.java
+ *
+ * Copyright by toolarium, all rights reserved.
+ */
+package com.github.toolarium.sanitize.content.impl;
+
+import com.github.toolarium.sanitize.content.dto.SanitizeContentPrefilterVerdict;
+import com.github.toolarium.sanitize.content.dto.SanitizeContentResult;
+import com.github.toolarium.sanitize.content.dto.SanitizeContentThreatInformation;
+import com.github.toolarium.sanitize.content.impl.bleach.util.BufferPool;
+import com.github.toolarium.sanitize.content.impl.bleach.util.ContentHandOffBuffer;
+import com.github.toolarium.sanitize.content.impl.bleach.util.StreamUtils;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.ObjectInputFilter;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+
+/**
+ * Caches the sanitized content and its result by the SHA-256 digest of the input content and the sanitize options. The cache has a
+ * size-bounded in-memory LRU tier and an optional on-disk tier. The caches are shared by all processors with the same cache settings.
+ *
+ * @author Patrick Meier
+ */
+public class SanitizeContentResultCache {
+    private static final Logger LOG = LoggerFactory.getLogger(SanitizeContentResultCache.class);
+    private static final Map<String, SanitizeContentResultCache> CACHE_MAP = new HashMap<String, SanitizeContentResultCache>();
+    private static final String DIGEST_ALGORITHM = "SHA-256";
+    private static final String CONTENT_SUFFIX = ".content";
+    private static final String RESULT_SUFFIX = ".result";
+    private static final char[] HEX = "0123456789abcdef".toCharArray();
+
+    // the on-disk tier is read back, only the classes of a result are deserialized
+    private static final ObjectInputFilter RESULT_FILTER = ObjectInputFilter.Config.createFilter(
+            SanitizeContentResult.class.getName() + ";"
+            + SanitizeContentThreatInformation.class.getName() + ";"
+            + SanitizeContentPrefilterVerdict.class.getName() + ";"
+            + "java.lang.Enum;java.util.ArrayList;java.lang.Object;maxdepth=64;!*");
+    private final long maxMemoryBytes;
+    private final File directory;
+    private final long maxDiskBytes;
+    private final LinkedHashMap<String, MemoryEntry> memoryEntryMap;
+    private long memoryBytes;
+    private long diskBytes;
+    private long hitCount;
+    private long missCount;
+
+
+    /**
+     * Constructor for SanitizeContentResultCache
+     *
+     * @param maxMemoryBytes the maximum bytes of the in-memory tier, 0 to disable it
+     * @param directory the directory of the on-disk tier or null to disable it
+     * @param maxDiskBytes the maximum bytes of the on-disk tier
+     */
+    public SanitizeContentResultCache(long maxMemoryBytes, File directory, long maxDiskBytes) {
+        this.maxMemoryBytes = Math.max(0, maxMemoryBytes);
+        this.directory = directory;
+        this.maxDiskBytes = maxDiskBytes;
+        this.memoryEntryMap = new LinkedHashMap<String, MemoryEntry>(16, 0.75f, true);
+        this.memoryBytes = 0;
+        this.diskBytes = 0;
+        this.hitCount = 0;
+        this.missCount = 0;
+
+        if (directory != null) {
+            directory.mkdirs();
+            File[] files = directory.listFiles();
+            if (files != null) {
+                for (File file : files) {
+                    diskBytes += file.length();
+                }
+            }
+        }
+    }
+
+
+    /**
+     * Get the shared cache of the given settings
+     *
+     * @param maxMemoryBytes the maximum bytes of the in-memory tier, 0 to disable it
+     * @param directory the directory of the on-disk tier or null to disable it
+     * @param maxDiskBytes the maximum bytes of the on-disk tier
+     * @return the cache or null if both tiers are disabled
+     */
+    public static SanitizeContentResultCache getInstance(long maxMemoryBytes, File directory, long maxDiskBytes) {
+        if (maxMemoryBytes <= 0 && directory == null) {
+            return null;
+        }
+
+        String name = maxMemoryBytes + "|" + directory + "|" + maxDiskBytes;
+        synchronized (CACHE_MAP) {
+            SanitizeContentResultCache cache = CACHE_MAP.get(name);
+            if (cache == null) {
+                cache = new SanitizeContentResultCache(maxMemoryBytes, directory, maxDiskBytes);
+                CACHE_MAP.put(name, cache);
+            }
+
+            return cache;
+        }
+    }
+
+
+    /**
+     * Create the digest of a content, it is initialized with the sanitize options
+     *
+     * @param options the sanitize options which influence the sanitized content
+     * @return the digest
+     * @throws IOException In case the digest is not supported
+     */
+    public MessageDigest createDigest(String options) throws IOException {
+        try {
+            MessageDigest digest = MessageDigest.getInstance(DIGEST_ALGORITHM);
+            if (options != null) {
+                digest.update(options.getBytes(StandardCharsets.UTF_8));
+            }
+
+            digest.update((byte) 0);
+            return digest;
+        } catch (NoSuchAlgorithmException e) {
+            throw new IOException(e);
+        }
+    }
+
+
+    /**
+     * Update the digest with the content of a file
+     *
+     * @param digest the digest
+     * @param path the file
+     * @throws IOException In case of an I/O error
+     */
+    public void update(MessageDigest digest, Path path) throws IOException {
+        byte[] buffer = BufferPool.getInstance().acquire();
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            ByteBuffer byteBuffer = ByteBuffer.wrap(buffer);
+            while (channel.read(byteBuffer) >= 0) {
+                byteBuffer.flip();
+                digest.update(byteBuffer);
+                byteBuffer.clear();
+            }
+        } finally {
+            BufferPool.getInstance().release(buffer);
+        }
+    }
+
+
+    /**
+     * Get the key of a digest
+     *
+     * @param digest the digest
+     * @return the key
+     */
+    public String toKey(MessageDigest digest) {
+        byte[] hash = digest.digest();
+        char[] result = new char[hash.length * 2];
+        for (int i = 0; i < hash.length; i++) {
+            result[i * 2] = HEX[(hash[i] >> 4) & 0xf];
+            result[i * 2 + 1] = HEX[hash[i] & 0xf];
+        }
+
+        return new String(result);
+    }
+
+
+    /**
+     * Get a cached result and write its sanitized content into the output stream.
+     *
+     * @param key the key
+     * @param outputStream the output stream
+     * @return the result or null if it is not cached
+     * @throws IOException In case of an I/O error
+     */
+    public SanitizeContentResult get(String key, OutputStream outputStream) throws IOException {
+        MemoryEntry entry;
+        synchronized (this) {
+            entry = memoryEntryMap.get(key);
+        }
+
+        SanitizeContentResult result = null;
+        if (entry != null) {
+            result = toResult(entry.result);
+            if (result != null) {
+                outputStream.write(entry.content);
+            }
+        } else if (directory != null) {
+            result = readDiskEntry(key, outputStream);
+        }
+
+        synchronized (this) {
+            if (result != null) {
+                hitCount++;
+            } else {
+                missCount++;
+            }
+        }
+
+        if (result == null && entry != null) {
+            remove(key);
+        }
+
+        LOG.debug("Sanitize result cache {}: {}", result != null, key);
+        return result;
+    }
+
+
+    /**
+     * Put a result into the cache
+     *
+     * @param key the key
+     * @param result the result
+     * @param content the sanitized content
+     * @throws IOException In case of an I/O error
+     */
+    public void put(String key, SanitizeContentResult result, ContentHandOffBuffer content) throws IOException {
+        byte[] resultBytes = toBytes(result);
+        long size = content.size() + resultBytes.length;
+
+        if (size <= maxMemoryBytes && !content.isSpilled()) {
+            ByteArrayOutputStream os = new ByteArrayOutputStream((int) content.size());
+            StreamUtils.getInstance().transfer(content.getInputStream(), os);
+            putMemoryEntry(key, new MemoryEntry(os.toByteArray(), resultBytes));
+        }
+
+        if (directory != null && size <= maxDiskBytes) {
+            writeDiskEntry(key, resultBytes, content);
+        }
+    }
+
+
+    /**
+     * Remove an entry
+     *
+     * @param key the key
+     */
+    public void remove(String key) {
+        synchronized (this) {
+            MemoryEntry entry = memoryEntryMap.remove(key);
+            if (entry != null) {
+                memoryBytes -= entry.size();
+            }
+        }
+
+        if (directory != null) {
+            deleteDiskEntry(key);
+        }
+    }
+
+
+    /**
+     * Get the number of cache hits
+     *
+     * @return the number of cache hits
+     */
+    public synchronized long getHitCount() {
+        return hitCount;
+    }
+
+
+    /**
+     * Get the number of cache misses
+     *
+     * @return the number of cache misses
+     */
+    public synchronized long getMissCount() {
+        return missCount;
+    }
+
+
+    /**
+     * Get the bytes of the in-memory tier
+     *
+     * @return the bytes of the in-memory tier
+     */
+    public synchronized long getMemoryBytes() {
+        return memoryBytes;
+    }
+
+
+    /**
+     * Put an entry into the in-memory tier, the least recently used entries are evicted
+     *
+     * @param key the key
+     * @param entry the entry
+     */
+    private synchronized void putMemoryEntry(String key, MemoryEntry entry) {
+        MemoryEntry previous = memoryEntryMap.put(key, entry);
+        memoryBytes += entry.size();
+        if (previous != null) {
+            memoryBytes -= previous.size();
+        }
+
+        Iterator<Map.Entry<String, MemoryEntry>> it = memoryEntryMap.entrySet().iterator();
+        while (memoryBytes > maxMemoryBytes && it.hasNext()) {
+            Map.Entry<String, MemoryEntry> eldest = it.next();
+            memoryBytes -= eldest.getValue().size();
+            it.remove();
+        }
+    }
+
+
+    /**
+     * Read an entry of the on-disk tier and write its sanitized content into the output stream. Small entries are promoted into the in-memory tier.
+     *
+     * @param key the key
+     * @param outputStream the output stream
+     * @return the result or null
+     * @throws IOException In case the content can't be written
+     */
+    private SanitizeContentResult readDiskEntry(String key, OutputStream outputStream) throws IOException {
+        File resultFile = new File(directory, key + RESULT_SUFFIX);
+        File contentFile = new File(directory, key + CONTENT_SUFFIX);
+        if (!resultFile.isFile() || !contentFile.isFile()) {
+            return null;
+        }
+
+        byte[] resultBytes;
+        try {
+            resultBytes = Files.readAllBytes(resultFile.toPath());
+        } catch (IOException e) {
+            LOG.warn("Could not read cached result " + key + ": " + e.getMessage());
+            return null;
+        }
+
+        SanitizeContentResult result = toResult(resultBytes);
+        if (result == null) {
+            deleteDiskEntry(key);
+            return null;
+        }
+
+        long now = System.currentTimeMillis();
+        resultFile.setLastModified(now);
+        contentFile.setLastModified(now);
+
+        if (contentFile.length() + resultBytes.length <= maxMemoryBytes) {
+            MemoryEntry entry = new MemoryEntry(Files.readAllBytes(contentFile.toPath()), resultBytes);
+            putMemoryEntry(key, entry);
+            outputStream.write(entry.content);
+        } else {
+            try (InputStream is = new FileInputStream(contentFile)) {
+                StreamUtils.getInstance().transfer(is, outputStream);
+            }
+        }
+
+        return result;
+    }
+
+
+    /**
+     * Write an entry of the on-disk tier. The result file is written last, an entry is only complete if it exists.
+     *
+     * @param key the key
+     * @param resultBytes the serialized result
+     * @param content the sanitized content
+     * @throws IOException In case of an I/O error
+     */
+    private void writeDiskEntry(String key, byte[] resultBytes, ContentHandOffBuffer content) throws IOException {
+        File contentFile = new File(directory, key + CONTENT_SUFFIX);
+        File resultFile = new File(directory, key + RESULT_SUFFIX);
+        if (resultFile.isFile()) {
+            return;
+        }
+
+        File contentTempFile = File.createTempFile(key, ".tmp", directory);
+        File resultTempFile = File.createTempFile(key, ".tmp", directory);
+        try {
+            try (InputStream is = content.getInputStream(); OutputStream os = new FileOutputStream(contentTempFile)) {
+                StreamUtils.getInstance().transfer(is, os);
+            }
+
+            Files.write(resultTempFile.toPath(), resultBytes);
+            Files.move(contentTempFile.toPath(), contentFile.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            Files.move(resultTempFile.toPath(), resultFile.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            Files.deleteIfExists(contentTempFile.toPath());
+            Files.deleteIfExists(resultTempFile.toPath());
+        }
+
+        synchronized (this) {
+            diskBytes += content.size() + resultBytes.length;
+            if (diskBytes > maxDiskBytes) {
+                evictDiskEntries();
+            }
+        }
+    }
+
+
+    /**
+     * Evict the least recently used entries of the on-disk tier
+     */
+    private void evictDiskEntries() {
+        File[] resultFiles = directory.listFiles((dir, name) -> name.endsWith(RESULT_SUFFIX));
+        if (resultFiles == null) {
+            return;
+        }
+
+        Arrays.sort(resultFiles, Comparator.comparingLong(File::lastModified));
+        for (int i = 0; i < resultFiles.length && diskBytes > maxDiskBytes; i++) {
+            String name = resultFiles[i].getName();
+            deleteDiskEntry(name.substring(0, name.length() - RESULT_SUFFIX.length()));
+        }
+    }
+
+
+    /**
+     * Delete an entry of the on-disk tier
+     *
+     * @param key the key
+     */
+    private synchronized void deleteDiskEntry(String key) {
+        for (String suffix : new String[] {RESULT_SUFFIX, CONTENT_SUFFIX}) {
+            File file = new File(directory, key + suffix);
+            long length = file.length();
+            try {
+                if (Files.deleteIfExists(file.toPath())) {
+                    diskBytes -= length;
+                }
+            } catch (IOException e) {
+                LOG.warn("Could not delete cached result " + file + ": " + e.getMessage());
+            }
+        }
+    }
+
+
+    /**
+     * Serialize a result
+     *
+     * @param result the result
+     * @return the serialized result
+     * @throws IOException In case of an I/O error
+     */
+    private byte[] toBytes(SanitizeContentResult result) throws IOException {
+        ByteArrayOutputStream os = new ByteArrayOutputStream();
+        try (ObjectOutputStream oos = new ObjectOutputStream(os)) {
+            oos.writeObject(result);
+        }
+
+        return os.toByteArray();
+    }
+
+
+    /**
+     * Deserialize a result, every caller gets its own copy. Only the classes of a result pass the filter.
+     *
+     * @param resultBytes the serialized result
+     * @return the result or null if it can't be read
+     */
+    private SanitizeContentResult toResult(byte[] resultBytes) {
+        try (ObjectInputStream ois = new ObjectInputStream(new ByteArrayInputStream(resultBytes))) {
+            ois.setObjectInputFilter(RESULT_FILTER);
+            return (SanitizeContentResult) ois.readObject();
+        } catch (IOException | ClassNotFoundException | ClassCastException e) {
+            LOG.warn("Could not read cached result: " + e.getMessage());
+            return null;
+        }
+    }
+
+
+    /**
+     * Defines an entry of the in-memory tier.
+     */
+    private static class MemoryEntry {
+        private final byte[] content;
+        private final byte[] result;
+
+
+        /**
+         * Constructor for MemoryEntry
+         *
+         * @param content the sanitized content
+         * @param result the serialized result
+         */
+        MemoryEntry(byte[] content, byte[] result) {
+            this.content = content;
+            this.result = result;
+        }
+
+
+        /**
+         * Get the size of the entry
+         *
+         * @return the size in bytes
+         */
+        long size() {
+            return content.length + result.length;
+        }
+    }
+}
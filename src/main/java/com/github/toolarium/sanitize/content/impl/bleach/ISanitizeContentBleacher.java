@@ -5,14 +5,15 @@
  */
 package com.github.toolarium.sanitize.content.impl.bleach;
 
-import com.github.toolarium.sanitize.content.ISanitizeContentCredentialAccess;
 import com.github.toolarium.sanitize.content.dto.SanitizeContentResult;
 import com.github.toolarium.sanitize.content.exception.SanitizeContentException;
+import com.github.toolarium.sanitize.content.impl.SanitizeContentContext;
 import java.io.InputStream;
 import java.io.OutputStream;
+import java.nio.file.Path;
 
 /**
- * Defines the sanitize content bleacher interface.
+ * Defines the sanitize content bleacher interface. A bleacher is stateless and can be shared by concurrent invocations.
  *
  * @author Patrick Meier
  */
@@ -30,15 +31,25 @@ public interface ISanitizeContentBleacher {
 
 
     /**
-     * Bleach content
+     * Bleach content. A bleacher is stateless, the state of the content is kept by the context.
      *
-     * @param name the name of the content
+     * @param context the context of the content
      * @param inputStream the input stream
-     * @param outputStream the output stream
-     * @param credentialAccess the credential access
+     * @param outputStream the output stream, in scan only mode the content is not written
+     * @return the sanitize content result
+     * @throws SanitizeContentException In case the content can't be sanitized.
+     */
+    SanitizeContentResult bleachContent(SanitizeContentContext context, InputStream inputStream, OutputStream outputStream) throws SanitizeContentException;
+
+
+    /**
+     * Bleach the content of a local file. The file can be accessed randomly without to copy it.
+     *
+     * @param context the context of the content
+     * @param inputPath the input file
+     * @param outputStream the output stream, in scan only mode the content is not written
      * @return the sanitize content result
      * @throws SanitizeContentException In case the content can't be sanitized.
      */
-    SanitizeContentResult bleachContent(String name, InputStream inputStream, OutputStream outputStream, ISanitizeContentCredentialAccess credentialAccess)
-        throws SanitizeContentException;
+    SanitizeContentResult bleachContent(SanitizeContentContext context, Path inputPath, OutputStream outputStream) throws SanitizeContentException;
 }
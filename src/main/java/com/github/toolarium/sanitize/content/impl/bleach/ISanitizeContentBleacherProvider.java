@@ -0,0 +1,42 @@
+/*
+ * ISanitizeContentBleacherProvider.java
+ *
+ * Copyright by toolarium, all rights reserved.
+ */
+package com.github.toolarium.sanitize.content.impl.bleach;
+
+import com.github.toolarium.sanitize.content.dto.SanitizeContentConfiguration;
+import java.util.List;
+
+/**
+ * Defines the sanitize content bleacher provider. The providers are discovered by the {@link java.util.ServiceLoader}, they must be lightweight:
+ * the bleacher and its dependencies are only loaded as soon as the first content with one of the magic signatures is sanitized.
+ *
+ * @author Patrick Meier
+ */
+public interface ISanitizeContentBleacherProvider {
+
+    /**
+     * Get the content type of the bleacher
+     *
+     * @return the content type
+     */
+    String getContentType();
+
+
+    /**
+     * Get the magic signatures, the leading bytes of the supported content. A signature has at most {@link SanitizeContentBleacherRegistry#MAX_SIGNATURE_LENGTH} bytes.
+     *
+     * @return the magic signatures
+     */
+    List<byte[]> getMagicSignatures();
+
+
+    /**
+     * Create a new bleacher
+     *
+     * @param configuration the configuration
+     * @return the bleacher
+     */
+    ISanitizeContentBleacher createBleacher(SanitizeContentConfiguration configuration);
+}
@@ -0,0 +1,213 @@
+/*
+ * SanitizeContentBleacherRegistry.java
+ *
+ * Copyright by toolarium, all rights reserved.
+ */
+package com.github.toolarium.sanitize.content.impl.bleach;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.ServiceLoader;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+
+/**
+ * The registry of the {@link ISanitizeContentBleacherProvider}. The magic signatures of all providers are compiled into one prefix table,
+ * the providers of a content are found by one walk over its leading bytes.
+ *
+ * @author Patrick Meier
+ */
+public class SanitizeContentBleacherRegistry {
+    /** The maximum length of a magic signature, it is limited by the pushback buffer of the input stream */
+    public static final int MAX_SIGNATURE_LENGTH = 64;
+
+    private static final Logger LOG = LoggerFactory.getLogger(SanitizeContentBleacherRegistry.class);
+    private final List<ISanitizeContentBleacherProvider> providerList;
+    private final PrefixNode root;
+    private final int signatureLength;
+
+
+    /**
+     * Private class, the only instance of the singelton which will be created by accessing the holder class.
+     *
+     * @author Patrick Meier
+     */
+    private static class HOLDER {
+        static final SanitizeContentBleacherRegistry INSTANCE = new SanitizeContentBleacherRegistry(loadProviders());
+    }
+
+
+    /**
+     * Constructor for SanitizeContentBleacherRegistry
+     *
+     * @param providerList the providers in order of their priority
+     */
+    public SanitizeContentBleacherRegistry(List<ISanitizeContentBleacherProvider> providerList) {
+        this.providerList = Collections.unmodifiableList(new ArrayList<ISanitizeContentBleacherProvider>(providerList));
+        this.root = new PrefixNode();
+
+        int maxLength = 0;
+        for (ISanitizeContentBleacherProvider provider : this.providerList) {
+            for (byte[] signature : provider.getMagicSignatures()) {
+                if (signature == null || signature.length == 0 || signature.length > MAX_SIGNATURE_LENGTH) {
+                    LOG.warn("Ignore invalid magic signature of " + provider.getClass().getName());
+                    continue;
+                }
+
+                PrefixNode node = root;
+                for (byte b : signature) {
+                    node = node.getOrCreateChild(b);
+                }
+
+                if (!node.providers.contains(provider)) {
+                    node.providers.add(provider);
+                }
+
+                maxLength = Math.max(maxLength, signature.length);
+            }
+        }
+
+        this.signatureLength = maxLength;
+    }
+
+
+    /**
+     * Get the instance with the providers of the {@link ServiceLoader}
+     *
+     * @return the instance
+     */
+    public static SanitizeContentBleacherRegistry getInstance() {
+        return HOLDER.INSTANCE;
+    }
+
+
+    /**
+     * Get all registered providers
+     *
+     * @return the providers
+     */
+    public List<ISanitizeContentBleacherProvider> getProviderList() {
+        return providerList;
+    }
+
+
+    /**
+     * Get the fingerprint of the registry, it is part of the key of a cached result. It lists the classes and the content types of the
+     * providers in order of their priority.
+     *
+     * @return the fingerprint
+     */
+    public String getFingerprint() {
+        StringBuilder fingerprint = new StringBuilder();
+        for (ISanitizeContentBleacherProvider provider : providerList) {
+            fingerprint.append(provider.getClass().getName()).append('=').append(provider.getContentType()).append(';');
+        }
+
+        return fingerprint.toString();
+    }
+
+
+    /**
+     * Get the number of leading bytes which are needed for a lookup
+     *
+     * @return the length of the longest signature
+     */
+    public int getSignatureLength() {
+        return signatureLength;
+    }
+
+
+    /**
+     * Get the providers of a content. The providers of the longest matching signature come first.
+     *
+     * @param header the leading bytes of the content
+     * @param length the number of valid bytes in the header
+     * @return the matching providers, empty if the content is not supported
+     */
+    public List<ISanitizeContentBleacherProvider> lookup(byte[] header, int length) {
+        List<ISanitizeContentBleacherProvider> result = Collections.emptyList();
+        PrefixNode node = root;
+        for (int i = 0; i < length && node != null; i++) {
+            node = node.getChild(header[i]);
+            if (node != null && !node.providers.isEmpty()) {
+                if (result.isEmpty()) {
+                    result = Collections.unmodifiableList(node.providers);
+                } else {
+                    List<ISanitizeContentBleacherProvider> list = new ArrayList<ISanitizeContentBleacherProvider>(node.providers);
+                    for (ISanitizeContentBleacherProvider provider : result) {
+                        if (!list.contains(provider)) {
+                            list.add(provider);
+                        }
+                    }
+
+                    result = list;
+                }
+            }
+        }
+
+        return result;
+    }
+
+
+    /**
+     * Load the providers
+     *
+     * @return the providers
+     */
+    private static List<ISanitizeContentBleacherProvider> loadProviders() {
+        List<ISanitizeContentBleacherProvider> result = new ArrayList<ISanitizeContentBleacherProvider>();
+        for (ISanitizeContentBleacherProvider provider : ServiceLoader.load(ISanitizeContentBleacherProvider.class, SanitizeContentBleacherRegistry.class.getClassLoader())) {
+            LOG.debug("Register bleacher provider {} ({})", provider.getClass().getName(), provider.getContentType());
+            result.add(provider);
+        }
+
+        return result;
+    }
+
+
+    /**
+     * Defines a node of the prefix table.
+     */
+    private static class PrefixNode {
+        private final List<ISanitizeContentBleacherProvider> providers = new ArrayList<ISanitizeContentBleacherProvider>();
+        private PrefixNode[] children;
+
+
+        /**
+         * Get a child
+         *
+         * @param b the byte
+         * @return the child or null
+         */
+        PrefixNode getChild(byte b) {
+            if (children == null) {
+                return null;
+            }
+
+            return children[b & 0xff];
+        }
+
+
+        /**
+         * Get or create a child
+         *
+         * @param b the byte
+         * @return the child
+         */
+        PrefixNode getOrCreateChild(byte b) {
+            if (children == null) {
+                children = new PrefixNode[256];
+            }
+
+            PrefixNode child = children[b & 0xff];
+            if (child == null) {
+                child = new PrefixNode();
+                children[b & 0xff] = child;
+            }
+
+            return child;
+        }
+    }
+}
@@ -0,0 +1,116 @@
+/*
+ * SanitizeContentNestedContentDispatcher.java
+ *
+ * Copyright by toolarium, all rights reserved.
+ */
+package com.github.toolarium.sanitize.content.impl.bleach;
+
+import com.github.toolarium.sanitize.content.dto.SanitizeContentConfiguration;
+import com.github.toolarium.sanitize.content.dto.SanitizeContentResult;
+import com.github.toolarium.sanitize.content.exception.SanitizeContentException;
+import com.github.toolarium.sanitize.content.impl.SanitizeContentContext;
+import com.github.toolarium.sanitize.content.impl.bleach.util.StreamUtils;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+
+/**
+ * Dispatches a nested content, e.g. an embedded file, by its leading bytes to the bleacher of its content type. Every nested content
+ * is sanitized in its own context which knows its nesting depth, a content which is nested deeper than the maximum nesting depth is
+ * rejected before it is parsed. A content which is not supported by a registered bleacher is not parsed at all. The bleacher of a
+ * content type is created on first use and shared by all contents, the processor dispatches its own contents by the same bleachers.
+ *
+ * @author Patrick Meier
+ */
+public class SanitizeContentNestedContentDispatcher {
+    private static final Logger LOG = LoggerFactory.getLogger(SanitizeContentNestedContentDispatcher.class);
+    private final SanitizeContentConfiguration configuration;
+    private final SanitizeContentBleacherRegistry registry;
+    private final Map<ISanitizeContentBleacherProvider, ISanitizeContentBleacher> bleacherMap;
+
+
+    /**
+     * Constructor for SanitizeContentNestedContentDispatcher
+     *
+     * @param configuration the configuration
+     * @param registry the bleacher registry
+     */
+    public SanitizeContentNestedContentDispatcher(SanitizeContentConfiguration configuration, SanitizeContentBleacherRegistry registry) {
+        this.configuration = configuration;
+        this.registry = registry;
+        this.bleacherMap = new ConcurrentHashMap<ISanitizeContentBleacherProvider, ISanitizeContentBleacher>();
+    }
+
+
+    /**
+     * Check if a nesting depth exceeds the maximum nesting depth
+     *
+     * @param nestingDepth the nesting depth
+     * @return true if the nesting depth is exceeded
+     */
+    public boolean isNestingDepthExceeded(int nestingDepth) {
+        return nestingDepth > configuration.getMaxNestingDepth();
+    }
+
+
+    /**
+     * Lookup the provider of a nested content by its leading bytes. The stream must support mark or pushback.
+     *
+     * @param name the name of the content
+     * @param inputStream the input stream
+     * @return the provider or null if the content is not supported
+     */
+    public ISanitizeContentBleacherProvider lookup(String name, InputStream inputStream) {
+        byte[] header = new byte[registry.getSignatureLength()];
+        int length = StreamUtils.getInstance().peek(name, inputStream, header);
+        List<ISanitizeContentBleacherProvider> providerList = registry.lookup(header, length);
+        if (providerList.isEmpty()) {
+            LOG.debug("No bleacher supports the nested content " + name);
+            return null;
+        }
+
+        return providerList.get(0);
+    }
+
+
+    /**
+     * Get the bleacher of a provider, it is created on first use and shared by all invocations
+     *
+     * @param provider the provider
+     * @return the bleacher
+     */
+    public ISanitizeContentBleacher getBleacher(ISanitizeContentBleacherProvider provider) {
+        return bleacherMap.computeIfAbsent(provider, p -> {
+            LOG.debug("Create bleacher of {}", p.getContentType());
+            return p.createBleacher(configuration);
+        });
+    }
+
+
+    /**
+     * Bleach a nested content by a bleacher of the provider
+     *
+     * @param provider the provider of the content
+     * @param context the context of the nested content
+     * @param inputStream the input stream
+     * @param outputStream the output stream, in scan only mode the content is not written
+     * @return the result of the nested content
+     * @throws SanitizeContentException In case the content can't be sanitized or the maximum nesting depth is exceeded
+     */
+    public SanitizeContentResult bleachContent(ISanitizeContentBleacherProvider provider, SanitizeContentContext context, InputStream inputStream, OutputStream outputStream)
+            throws SanitizeContentException {
+        if (isNestingDepthExceeded(context.getNestingDepth())) {
+            throw new SanitizeContentException("Maximum nesting depth of " + configuration.getMaxNestingDepth() + " exceeded by " + context.getName() + "!");
+        }
+
+        LOG.debug("Bleach nested content " + context.getName() + " (" + provider.getContentType() + ", depth " + context.getNestingDepth() + ")");
+        SanitizeContentResult result = getBleacher(provider).bleachContent(context, inputStream, outputStream);
+        result.setName(context.getName());
+        return result;
+    }
+}
@@ -5,60 +5,103 @@
  */
 package com.github.toolarium.sanitize.content.impl.bleach.impl;
 
-import com.github.toolarium.sanitize.content.dto.SanitizeContentThreatInformation;
-import com.github.toolarium.sanitize.content.impl.ISanitizeContentThreatRegistry;
+import com.github.toolarium.sanitize.content.ISanitizeContentCredentialAccess;
+import com.github.toolarium.sanitize.content.dto.SanitizeContentResult;
+import com.github.toolarium.sanitize.content.exception.SanitizeContentException;
+import com.github.toolarium.sanitize.content.impl.SanitizeContentContext;
 import com.github.toolarium.sanitize.content.impl.bleach.ISanitizeContentBleacher;
-import java.util.ArrayList;
-import java.util.List;
-import org.slf4j.Logger;
-import org.slf4j.LoggerFactory;
+import java.io.BufferedInputStream;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Path;
 
 
 /**
- * Defines the abstract content bleacher
+ * Defines the abstract content bleacher. The bleacher has no state, the threats are registered in the context of the content.
  *
  * @author Patrick Meier
  */
-public abstract class AbstractSanitizeContentBleacher implements ISanitizeContentBleacher, ISanitizeContentThreatRegistry {
-    private static final Logger LOG = LoggerFactory.getLogger(AbstractSanitizeContentBleacher.class);
-    private List<SanitizeContentThreatInformation> threatInformationList;
-    private String name;
-
+public abstract class AbstractSanitizeContentBleacher implements ISanitizeContentBleacher {
 
     /**
      * Constructor for AbstractContentBleacher
      */
     public AbstractSanitizeContentBleacher() {
-        threatInformationList = new ArrayList<SanitizeContentThreatInformation>();
+        // NOP
+    }
+
+
+    /**
+     * @see com.github.toolarium.sanitize.content.impl.bleach.ISanitizeContentBleacher#bleachContent(com.github.toolarium.sanitize.content.impl.SanitizeContentContext, java.nio.file.Path, java.io.OutputStream)
+     */
+    @Override
+    public SanitizeContentResult bleachContent(SanitizeContentContext context, Path inputPath, OutputStream outputStream) throws SanitizeContentException {
+        try (InputStream inputStream = new BufferedInputStream(new FileInputStream(inputPath.toFile()))) {
+            return bleachContent(context, inputStream, outputStream);
+        } catch (SanitizeContentException e) {
+            throw e;
+        } catch (IOException e) {
+            throw new SanitizeContentException(e);
+        }
     }
 
 
     /**
-     * Set the name
+     * Bleach content in a new context
      *
-     * @param name the name
+     * @param name the name of the content
+     * @param inputStream the input stream
+     * @param outputStream the output stream
+     * @param credentialAccess the credential access
+     * @return the sanitize content result
+     * @throws SanitizeContentException In case the content can't be sanitized.
      */
-    protected void setName(String name) {
-        this.name = name;
+    public SanitizeContentResult bleachContent(String name, InputStream inputStream, OutputStream outputStream, ISanitizeContentCredentialAccess credentialAccess) throws SanitizeContentException {
+        return bleachContent(new SanitizeContentContext(name, credentialAccess, false), inputStream, outputStream);
     }
 
 
     /**
-     * @see com.github.toolarium.sanitize.content.impl.ISanitizeContentThreatRegistry#registerThreat(com.github.toolarium.sanitize.content.impl.ISanitizeContentThreatRegistry.ISection, java.lang.String, java.lang.String)
+     * Bleach the content of a local file in a new context
+     *
+     * @param name the name of the content
+     * @param inputPath the input file
+     * @param outputStream the output stream
+     * @param credentialAccess the credential access
+     * @return the sanitize content result
+     * @throws SanitizeContentException In case the content can't be sanitized.
      */
-    @Override
-    public void registerThreat(ISanitizeContentThreatRegistry.ISection section, String description, String action) {
-        LOG.debug("Threat found in " + name + " #" + (threatInformationList.size() + 1) + ": [" + section + "] / [" + description + "]");
-        threatInformationList.add(new SanitizeContentThreatInformation(section.name(), description, action));
+    public SanitizeContentResult bleachContent(String name, Path inputPath, OutputStream outputStream, ISanitizeContentCredentialAccess credentialAccess) throws SanitizeContentException {
+        return bleachContent(new SanitizeContentContext(name, credentialAccess, false), inputPath, outputStream);
+    }
+
+
+    /**
+     * Scan content in a new context, the threats are detected but the content is not modified and no output is written.
+     *
+     * @param name the name of the content
+     * @param inputStream the input stream
+     * @param credentialAccess the credential access
+     * @return the sanitize content result with the detected threats
+     * @throws SanitizeContentException In case the content can't be scanned.
+     */
+    public SanitizeContentResult scanContent(String name, InputStream inputStream, ISanitizeContentCredentialAccess credentialAccess) throws SanitizeContentException {
+        return bleachContent(new SanitizeContentContext(name, credentialAccess, true), inputStream, OutputStream.nullOutputStream());
     }
 
 
     /**
-     * Get the threat information list
+     * Scan the content of a local file in a new context, the threats are detected but the content is not modified and no output is written.
      *
-     * @return the threat information list
+     * @param name the name of the content
+     * @param inputPath the input file
+     * @param credentialAccess the credential access
+     * @return the sanitize content result with the detected threats
+     * @throws SanitizeContentException In case the content can't be scanned.
      */
-    protected List<SanitizeContentThreatInformation> getThreatInformationList() {
-        return threatInformationList;
+    public SanitizeContentResult scanContent(String name, Path inputPath, ISanitizeContentCredentialAccess credentialAccess) throws SanitizeContentException {
+        return bleachContent(new SanitizeContentContext(name, credentialAccess, true), inputPath, OutputStream.nullOutputStream());
     }
 }
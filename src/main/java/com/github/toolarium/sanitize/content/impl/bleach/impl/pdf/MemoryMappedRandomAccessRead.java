@@ -0,0 +1,238 @@
+/*
+ * MemoryMappedRandomAccessRead.java
+ *
+ * Copyright by toolarium, all rights reserved.
+ */
+package com.github.toolarium.sanitize.content.impl.bleach.impl.pdf;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import org.apache.pdfbox.io.RandomAccessRead;
+
+
+/**
+ * Implements a read only {@link RandomAccessRead} over a memory-mapped file. The file is read in place,
+ * there is no copy into a temp file or into the heap. Files above 1 GB are mapped in several segments.
+ *
+ * @author Patrick Meier
+ */
+public class MemoryMappedRandomAccessRead implements RandomAccessRead {
+    private static final int SEGMENT_SHIFT = 30;
+    private static final long SEGMENT_SIZE = 1L << SEGMENT_SHIFT;
+    private static final long SEGMENT_MASK = SEGMENT_SIZE - 1;
+    private MappedByteBuffer[] segments;
+    private final long length;
+    private long position;
+    private boolean closed;
+
+
+    /**
+     * Constructor for MemoryMappedRandomAccessRead
+     *
+     * @param path the file to map
+     * @throws IOException In case the file can't be mapped
+     */
+    public MemoryMappedRandomAccessRead(Path path) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            // the mapping stays valid after the channel is closed
+            length = channel.size();
+            segments = new MappedByteBuffer[(int) ((length + SEGMENT_SIZE - 1) >> SEGMENT_SHIFT)];
+            for (int i = 0; i < segments.length; i++) {
+                long offset = i * SEGMENT_SIZE;
+                segments[i] = channel.map(FileChannel.MapMode.READ_ONLY, offset, Math.min(SEGMENT_SIZE, length - offset));
+            }
+        }
+
+        position = 0;
+        closed = false;
+    }
+
+
+    /**
+     * @see org.apache.pdfbox.io.RandomAccessRead#read()
+     */
+    @Override
+    public int read() throws IOException {
+        checkClosed();
+        if (position >= length) {
+            return -1;
+        }
+
+        int b = segments[(int) (position >> SEGMENT_SHIFT)].get((int) (position & SEGMENT_MASK)) & 0xff;
+        position++;
+        return b;
+    }
+
+
+    /**
+     * @see org.apache.pdfbox.io.RandomAccessRead#read(byte[])
+     */
+    @Override
+    public int read(byte[] b) throws IOException {
+        return read(b, 0, b.length);
+    }
+
+
+    /**
+     * @see org.apache.pdfbox.io.RandomAccessRead#read(byte[], int, int)
+     */
+    @Override
+    public int read(byte[] b, int offset, int len) throws IOException {
+        checkClosed();
+        if (len == 0) {
+            return 0;
+        }
+
+        if (position >= length) {
+            return -1;
+        }
+
+        int count = (int) Math.min(len, length - position);
+        int read = 0;
+        while (read < count) {
+            MappedByteBuffer segment = segments[(int) (position >> SEGMENT_SHIFT)];
+            int segmentPosition = (int) (position & SEGMENT_MASK);
+            int n = Math.min(count - read, segment.limit() - segmentPosition);
+            segment.position(segmentPosition);
+            segment.get(b, offset + read, n);
+            read += n;
+            position += n;
+        }
+
+        return read;
+    }
+
+
+    /**
+     * @see org.apache.pdfbox.io.RandomAccessRead#getPosition()
+     */
+    @Override
+    public long getPosition() throws IOException {
+        checkClosed();
+        return position;
+    }
+
+
+    /**
+     * @see org.apache.pdfbox.io.RandomAccessRead#seek(long)
+     */
+    @Override
+    public void seek(long newPosition) throws IOException {
+        checkClosed();
+        if (newPosition < 0) {
+            throw new IOException("Invalid position " + newPosition);
+        }
+
+        position = newPosition;
+    }
+
+
+    /**
+     * @see org.apache.pdfbox.io.RandomAccessRead#length()
+     */
+    @Override
+    public long length() throws IOException {
+        checkClosed();
+        return length;
+    }
+
+
+    /**
+     * @see org.apache.pdfbox.io.RandomAccessRead#isClosed()
+     */
+    @Override
+    public boolean isClosed() {
+        return closed;
+    }
+
+
+    /**
+     * @see org.apache.pdfbox.io.RandomAccessRead#peek()
+     */
+    @Override
+    public int peek() throws IOException {
+        int result = read();
+        if (result != -1) {
+            rewind(1);
+        }
+
+        return result;
+    }
+
+
+    /**
+     * @see org.apache.pdfbox.io.RandomAccessRead#rewind(int)
+     */
+    @Override
+    public void rewind(int bytes) throws IOException {
+        seek(getPosition() - bytes);
+    }
+
+
+    /**
+     * @see org.apache.pdfbox.io.RandomAccessRead#readFully(int)
+     */
+    @Override
+    @Deprecated
+    public byte[] readFully(int len) throws IOException {
+        byte[] b = new byte[len];
+        int read = 0;
+        while (read < len) {
+            int n = read(b, read, len - read);
+            if (n < 0) {
+                throw new EOFException();
+            }
+
+            read += n;
+        }
+
+        return b;
+    }
+
+
+    /**
+     * @see org.apache.pdfbox.io.RandomAccessRead#isEOF()
+     */
+    @Override
+    public boolean isEOF() throws IOException {
+        checkClosed();
+        return position >= length;
+    }
+
+
+    /**
+     * @see org.apache.pdfbox.io.RandomAccessRead#available()
+     */
+    @Override
+    public int available() throws IOException {
+        checkClosed();
+        return (int) Math.min(Math.max(length - position, 0), Integer.MAX_VALUE);
+    }
+
+
+    /**
+     * @see java.io.Closeable#close()
+     */
+    @Override
+    public void close() throws IOException {
+        // the mapping is released by the garbage collector
+        closed = true;
+        segments = null;
+    }
+
+
+    /**
+     * Check if the source is already closed
+     *
+     * @throws IOException In case it is closed
+     */
+    private void checkClosed() throws IOException {
+        if (closed) {
+            throw new IOException("MemoryMappedRandomAccessRead already closed");
+        }
+    }
+}
@@ -0,0 +1,118 @@
+/*
+ * PDFAttachmentPolicy.java
+ *
+ * Copyright by toolarium, all rights reserved.
+ */
+package com.github.toolarium.sanitize.content.impl.bleach.impl.pdf;
+
+import com.github.toolarium.sanitize.content.dto.SanitizeContentAttachmentAction;
+import com.github.toolarium.sanitize.content.dto.SanitizeContentConfiguration;
+import java.util.Set;
+import org.apache.pdfbox.pdmodel.common.filespecification.PDEmbeddedFile;
+
+
+/**
+ * The attachment policy decides on the metadata of an embedded file what happens with it: the declared size of the parameters, the
+ * decoded and the encoded length of the stream, the subtype and the file name extension. The embedded file is not decoded, the
+ * decision takes constant time even for a huge embedded file. A declared size above the maximum or a strip type strips the embedded
+ * file, a keep type keeps it and any other embedded file is bleached.
+ *
+ * @author Patrick Meier
+ */
+public class PDFAttachmentPolicy {
+    private final SanitizeContentConfiguration configuration;
+
+
+    /**
+     * Constructor for PDFAttachmentPolicy
+     *
+     * @param configuration the configuration
+     */
+    public PDFAttachmentPolicy(SanitizeContentConfiguration configuration) {
+        this.configuration = configuration;
+    }
+
+
+    /**
+     * Evaluate the action of an embedded file
+     *
+     * @param filename the filename or null
+     * @param file the embedded file
+     * @return the action
+     */
+    public SanitizeContentAttachmentAction evaluate(String filename, PDEmbeddedFile file) {
+        if (configuration.getPdfAttachmentMaxSize() >= 0 && getDeclaredSize(file) > configuration.getPdfAttachmentMaxSize()) {
+            return SanitizeContentAttachmentAction.STRIP;
+        }
+
+        String extension = getExtension(filename);
+        String subtype = file.getSubtype();
+        if (matches(configuration.getPdfAttachmentStripTypes(), extension, subtype)) {
+            return SanitizeContentAttachmentAction.STRIP;
+        }
+
+        if (matches(configuration.getPdfAttachmentKeepTypes(), extension, subtype)) {
+            return SanitizeContentAttachmentAction.KEEP;
+        }
+
+        return SanitizeContentAttachmentAction.BLEACH;
+    }
+
+
+    /**
+     * Get the declared size of an embedded file, it is the largest of the size parameter, the decoded and the encoded length of the
+     * stream. A forged size parameter doesn't hide a long stream.
+     *
+     * @param file the embedded file
+     * @return the declared size
+     */
+    public static long getDeclaredSize(PDEmbeddedFile file) {
+        long size = Math.max(0, file.getSize());
+        size = Math.max(size, file.getDecodedStreamLength());
+        size = Math.max(size, file.getLength());
+        return size;
+    }
+
+
+    /**
+     * Get the file name extension including the dot
+     *
+     * @param filename the filename or null
+     * @return the extension or null
+     */
+    private static String getExtension(String filename) {
+        if (filename == null) {
+            return null;
+        }
+
+        int index = filename.lastIndexOf('.');
+        if (index < 0 || index < Math.max(filename.lastIndexOf('/'), filename.lastIndexOf('\\'))) {
+            return null;
+        }
+
+        return filename.substring(index);
+    }
+
+
+    /**
+     * Check if an extension or a subtype matches a type, the types are compared ignoring the case
+     *
+     * @param typeSet the types
+     * @param extension the extension or null
+     * @param subtype the subtype or null
+     * @return true if a type matches
+     */
+    private static boolean matches(Set<String> typeSet, String extension, String subtype) {
+        if (typeSet == null || typeSet.isEmpty()) {
+            return false;
+        }
+
+        for (String type : typeSet) {
+            if (type != null && (type.equalsIgnoreCase(extension) || type.equalsIgnoreCase(subtype))) {
+                return true;
+            }
+        }
+
+        return false;
+    }
+}
@@ -76,7 +76,7 @@ public final class PDFContentUtil {
             return convert((PDPageFitDestination)action);
         }
 
-        return "" + action;
+        return convertType(action);
     }
 
     
@@ -176,7 +176,7 @@ public final class PDFContentUtil {
             return convert((PDActionGoTo)action);
         }
 
-        return "" + action;
+        return convertType(action);
     }
 
 
@@ -194,7 +194,7 @@ public final class PDFContentUtil {
         try {
             return convert(action.getDestination());
         } catch (IOException e) {
-            return "" + action;
+            return convertType(action);
         }
     }
 
@@ -228,7 +228,7 @@ public final class PDFContentUtil {
         try {
             return convert(action.getFile());
         } catch (IOException e) {
-            return "" + action;
+            return convertType(action);
         }
     }
 
@@ -247,7 +247,7 @@ public final class PDFContentUtil {
         try {
             return convert(action.getFile());
         } catch (IOException e) {
-            return "" + action;
+            return convertType(action);
         }
     }
 
@@ -266,7 +266,7 @@ public final class PDFContentUtil {
         try {
             return convert(action.getFile());
         } catch (IOException e) {
-            return "" + action;
+            return convertType(action);
         }
     }
 
@@ -285,7 +285,7 @@ public final class PDFContentUtil {
         try {
             return convert(action.getFile());
         } catch (IOException e) {
-            return "" + action;
+            return convertType(action);
         }
     }
 
@@ -319,7 +319,7 @@ public final class PDFContentUtil {
         try {
             return convert(action.getFile());
         } catch (IOException e) {
-            return "" + action;
+            return convertType(action);
         }
     }
 
@@ -338,7 +338,7 @@ public final class PDFContentUtil {
         try {
             return convert(action.getDestination());
         } catch (IOException e) {
-            return "" + action;
+            return convertType(action);
         }
     }
 
@@ -369,7 +369,8 @@ public final class PDFContentUtil {
             return null;
         }
 
-        return "" + dest;
+        // a destination has no content, the array or the name of it is stable
+        return "" + dest.getCOSObject();
     }
 
 
@@ -386,4 +387,19 @@ public final class PDFContentUtil {
 
         return "" + value;
     }
+
+
+    /**
+     * Convert an action without content into its type, the object itself has no stable string representation
+     *
+     * @param action the action
+     * @return the string representation
+     */
+    private String convertType(PDDestinationOrAction action) {
+        if (action instanceof PDAction) {
+            return ((PDAction)action).getSubType();
+        }
+
+        return "" + action.getCOSObject();
+    }
 }
@@ -0,0 +1,221 @@
+/*
+ * PDFIncrementalUpdateWriter.java
+ *
+ * Copyright by toolarium, all rights reserved.
+ */
+package com.github.toolarium.sanitize.content.impl.bleach.impl.pdf;
+
+import com.github.toolarium.sanitize.content.dto.SanitizeContentConfiguration;
+import com.github.toolarium.sanitize.content.impl.ISanitizeContentThreatRegistry;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import org.apache.pdfbox.cos.COSArray;
+import org.apache.pdfbox.cos.COSBase;
+import org.apache.pdfbox.cos.COSDictionary;
+import org.apache.pdfbox.cos.COSName;
+import org.apache.pdfbox.cos.COSNull;
+import org.apache.pdfbox.cos.COSObject;
+import org.apache.pdfbox.cos.COSObjectKey;
+import org.apache.pdfbox.cos.COSUpdateInfo;
+import org.apache.pdfbox.io.RandomAccessRead;
+import org.apache.pdfbox.pdmodel.PDDocument;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+
+/**
+ * Writes the neutralized objects of a document as incremental update, the original revisions and therefore its signatures are kept
+ * unchanged. The incremental writer of PDFBox 2 only writes the objects which need to be updated and which are reachable over updated
+ * objects from the trailer, therefore every modified object is marked together with the objects on its path from the trailer. The
+ * modified objects are detected by the {@link PDFObjectModificationTracker}.
+ *
+ * <p>The original revisions are part of the output, the active content which is neutralized in the update remains in them. The guard
+ * {@link #checkOriginalRevisions(ISanitizeContentThreatRegistry, boolean)} reports such a document.</p>
+ *
+ * @author Patrick Meier
+ */
+public class PDFIncrementalUpdateWriter {
+    /** The name tokens of the active content which is reported in the original revisions */
+    public static final List<String> ACTIVE_CONTENT_TOKENS = Collections.unmodifiableList(Arrays.asList(
+            "/JS", "/JavaScript", "/OpenAction", "/AA", "/Launch", "/EmbeddedFile"));
+
+    private static final Logger LOG = LoggerFactory.getLogger(PDFIncrementalUpdateWriter.class);
+    private static final PDFThreatPrefilter ACTIVE_CONTENT_PREFILTER = new PDFThreatPrefilter(ACTIVE_CONTENT_TOKENS);
+    private static final COSName[] TRAILER_KEYS = {COSName.ROOT, COSName.INFO};
+    private final SanitizeContentConfiguration configuration;
+    private final PDDocument document;
+    private final RandomAccessRead source;
+    private final PDFObjectModificationTracker modificationTracker;
+    private final Map<COSObjectKey, COSObject> objectMap;
+    private final Map<COSObjectKey, COSObjectKey> parentMap;
+
+
+    /**
+     * Constructor for PDFIncrementalUpdateWriter
+     *
+     * @param configuration the configuration
+     * @param document the parsed document, it must not be protected again
+     * @param source the source of the document
+     * @throws IOException In case the fingerprint can't be created
+     */
+    public PDFIncrementalUpdateWriter(SanitizeContentConfiguration configuration, PDDocument document, RandomAccessRead source) throws IOException {
+        this.configuration = configuration;
+        this.document = document;
+        this.source = source;
+        this.modificationTracker = new PDFObjectModificationTracker(configuration, document.getDocument());
+        this.objectMap = new LinkedHashMap<COSObjectKey, COSObject>();
+        this.parentMap = new HashMap<COSObjectKey, COSObjectKey>();
+    }
+
+
+    /**
+     * Take the snapshot of the parsed document, it must be taken before the document is modified
+     *
+     * @return the number of fingerprinted objects
+     * @throws IOException In case of an I/O error
+     */
+    public int snapshot() throws IOException {
+        return modificationTracker.snapshot();
+    }
+
+
+    /**
+     * Check if the original revisions contain active content. The raw bytes are matched by the active content tokens, a neutralized
+     * object without such a token was compressed in an object stream.
+     *
+     * @param threatRegistry the threat registry
+     * @param neutralized true if threats are neutralized in the update
+     * @return true if active content remains in the original revisions
+     * @throws IOException In case of an I/O error
+     */
+    public boolean checkOriginalRevisions(ISanitizeContentThreatRegistry threatRegistry, boolean neutralized) throws IOException {
+        PDFThreatPrefilter.Scan scan = ACTIVE_CONTENT_PREFILTER.scan(source);
+
+        String match = null;
+        if (scan.isMatched()) {
+            match = scan.getMatch();
+        } else if (neutralized) {
+            match = PDFThreatPrefilter.OBJECT_STREAM;
+        }
+
+        if (match == null) {
+            return false;
+        }
+
+        threatRegistry.registerThreat(PDFSanitizeSections.ORIGINAL_REVISION, "Active content remains in the original revision", match);
+        return true;
+    }
+
+
+    /**
+     * Write the incremental update, the output stream starts with the original revisions
+     *
+     * @param outputStream the output stream
+     * @return the number of modified objects
+     * @throws IOException In case of an I/O error
+     */
+    public int write(OutputStream outputStream) throws IOException {
+        int count = markModifiedObjects();
+        document.saveIncremental(outputStream);
+        return count;
+    }
+
+
+    /**
+     * Mark the modified objects and the objects on their path from the trailer
+     *
+     * @return the number of modified objects
+     * @throws IOException In case the maximum object depth is exceeded
+     */
+    private int markModifiedObjects() throws IOException {
+        objectMap.clear();
+        parentMap.clear();
+
+        Deque<COSObjectKey> queue = new ArrayDeque<COSObjectKey>();
+        COSDictionary trailer = document.getDocument().getTrailer();
+        for (COSName name : TRAILER_KEYS) {
+            addReferences(null, trailer.getItem(name), queue, 0);
+        }
+
+        COSObjectKey key;
+        while ((key = queue.poll()) != null) {
+            addReferences(key, objectMap.get(key).getObject(), queue, 0);
+        }
+
+        int count = 0;
+        Set<COSObjectKey> markedKeySet = new HashSet<COSObjectKey>();
+        for (Map.Entry<COSObjectKey, COSObject> entry : objectMap.entrySet()) {
+            if (modificationTracker.isModified(entry.getKey(), entry.getValue().getObject())) {
+                count++;
+
+                COSObjectKey pathKey = entry.getKey();
+                while (pathKey != null && markedKeySet.add(pathKey)) {
+                    COSObject object = objectMap.get(pathKey);
+                    object.setNeedToBeUpdated(true);
+                    if (object.getObject() instanceof COSUpdateInfo) {
+                        ((COSUpdateInfo) object.getObject()).setNeedToBeUpdated(true);
+                    }
+
+                    pathKey = parentMap.get(pathKey);
+                }
+            }
+        }
+
+        LOG.debug("Modified objects: " + count + ", updated objects: " + markedKeySet.size());
+        return count;
+    }
+
+
+    /**
+     * Add the objects which are referenced by a value, an object keeps the parent over which it is reached first
+     *
+     * @param parentKey the key of the parent object or null
+     * @param value the value
+     * @param queue the queue of the objects which are not yet traversed
+     * @param depth the depth of the value
+     * @throws IOException In case the maximum object depth is exceeded
+     */
+    private void addReferences(COSObjectKey parentKey, COSBase value, Deque<COSObjectKey> queue, int depth) throws IOException {
+        if (depth > configuration.getPdfMaxObjectDepth()) {
+            throw new IOException("Maximum object depth of " + configuration.getPdfMaxObjectDepth() + " exceeded!");
+        }
+
+        if (value instanceof COSObject) {
+            // a new object has no number, it is written with its modified parent
+            COSObjectKey key = PDFObjectSerializer.getObjectKey(value);
+            COSBase object = ((COSObject) value).getObject();
+            if (object == null || object instanceof COSNull) {
+                return;
+            }
+
+            if (key == null) {
+                addReferences(parentKey, object, queue, depth + 1);
+            } else if (!objectMap.containsKey(key)) {
+                objectMap.put(key, (COSObject) value);
+                if (parentKey != null) {
+                    parentMap.put(key, parentKey);
+                }
+
+                queue.add(key);
+            }
+        } else if (value instanceof COSDictionary) {
+            for (COSBase element : ((COSDictionary) value).getValues()) {
+                addReferences(parentKey, element, queue, depth + 1);
+            }
+        } else if (value instanceof COSArray) {
+            for (COSBase element : (COSArray) value) {
+                addReferences(parentKey, element, queue, depth + 1);
+            }
+        }
+    }
+}
@@ -0,0 +1,113 @@
+/*
+ * PDFMemoryGovernor.java
+ *
+ * Copyright by toolarium, all rights reserved.
+ */
+package com.github.toolarium.sanitize.content.impl.bleach.impl.pdf;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+
+/**
+ * Caps the total main memory which is held by the scratch files of all PDF documents in process. A document reserves its main
+ * memory before it is parsed and releases it after the document is closed. In case the budget is exhausted a document gets less
+ * or no main memory and its scratch file falls back to temp files.
+ *
+ * @author Patrick Meier
+ */
+public final class PDFMemoryGovernor {
+    /** The default global main memory budget: a quarter of the maximum heap */
+    public static final long DEFAULT_MAX_MAIN_MEMORY_BYTES = Runtime.getRuntime().maxMemory() / 4;
+
+    private static final Logger LOG = LoggerFactory.getLogger(PDFMemoryGovernor.class);
+    private long maxMainMemoryBytes;
+    private long reservedMainMemoryBytes;
+
+
+    /**
+     * Private class, the only instance of the singelton which will be created by accessing the holder class.
+     *
+     * @author Patrick Meier
+     */
+    private static class HOLDER {
+        static final PDFMemoryGovernor INSTANCE = new PDFMemoryGovernor();
+    }
+
+
+    /**
+     * Constructor
+     */
+    private PDFMemoryGovernor() {
+        maxMainMemoryBytes = DEFAULT_MAX_MAIN_MEMORY_BYTES;
+        reservedMainMemoryBytes = 0;
+    }
+
+
+    /**
+     * Get the instance
+     *
+     * @return the instance
+     */
+    public static PDFMemoryGovernor getInstance() {
+        return HOLDER.INSTANCE;
+    }
+
+
+    /**
+     * Gets the global main memory budget of all PDF scratch files.
+     *
+     * @return the budget in bytes
+     */
+    public synchronized long getMaxMainMemoryBytes() {
+        return maxMainMemoryBytes;
+    }
+
+
+    /**
+     * Sets the global main memory budget of all PDF scratch files. It is applied to the following reservations.
+     *
+     * @param maxMainMemoryBytes the budget in bytes
+     */
+    public synchronized void setMaxMainMemoryBytes(long maxMainMemoryBytes) {
+        this.maxMainMemoryBytes = Math.max(0, maxMainMemoryBytes);
+    }
+
+
+    /**
+     * Gets the currently reserved main memory.
+     *
+     * @return the reserved bytes
+     */
+    public synchronized long getReservedMainMemoryBytes() {
+        return reservedMainMemoryBytes;
+    }
+
+
+    /**
+     * Reserve main memory. The reservation doesn't block, it grants at most the remaining budget.
+     *
+     * @param requestedBytes the requested bytes
+     * @return the granted bytes, it must be released by {@link #release(long)}
+     */
+    public synchronized long reserve(long requestedBytes) {
+        long grantedBytes = Math.max(0, Math.min(requestedBytes, maxMainMemoryBytes - reservedMainMemoryBytes));
+        reservedMainMemoryBytes += grantedBytes;
+
+        if (grantedBytes < requestedBytes) {
+            LOG.debug("PDF main memory budget exhausted, granted {} of {} bytes.", grantedBytes, requestedBytes);
+        }
+
+        return grantedBytes;
+    }
+
+
+    /**
+     * Release reserved main memory
+     *
+     * @param grantedBytes the granted bytes of {@link #reserve(long)}
+     */
+    public synchronized void release(long grantedBytes) {
+        reservedMainMemoryBytes = Math.max(0, reservedMainMemoryBytes - grantedBytes);
+    }
+}
@@ -0,0 +1,81 @@
+/*
+ * PDFObjectModificationTracker.java
+ *
+ * Copyright by toolarium, all rights reserved.
+ */
+package com.github.toolarium.sanitize.content.impl.bleach.impl.pdf;
+
+import com.github.toolarium.sanitize.content.dto.SanitizeContentConfiguration;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import org.apache.pdfbox.cos.COSBase;
+import org.apache.pdfbox.cos.COSDocument;
+import org.apache.pdfbox.cos.COSNull;
+import org.apache.pdfbox.cos.COSObject;
+import org.apache.pdfbox.cos.COSObjectKey;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+
+/**
+ * Tracks the modified objects of a document. PDFBox 2 keeps no modification state, therefore the direct content of every object is
+ * fingerprinted before the document is bleached and compared after. A stream is only written by an output stream which updates its
+ * length, a modified stream has a modified fingerprint too.
+ *
+ * @author Patrick Meier
+ */
+public class PDFObjectModificationTracker {
+    private static final Logger LOG = LoggerFactory.getLogger(PDFObjectModificationTracker.class);
+    private final COSDocument document;
+    private final PDFObjectSerializer serializer;
+    private final Map<COSObjectKey, byte[]> fingerprintMap;
+
+
+    /**
+     * Constructor for PDFObjectModificationTracker
+     *
+     * @param configuration the configuration
+     * @param document the parsed document
+     * @throws IOException In case the fingerprint can't be created
+     */
+    public PDFObjectModificationTracker(SanitizeContentConfiguration configuration, COSDocument document) throws IOException {
+        this.document = document;
+        this.serializer = new PDFObjectSerializer(configuration.getPdfMaxObjectDepth());
+        this.fingerprintMap = new HashMap<COSObjectKey, byte[]>();
+    }
+
+
+    /**
+     * Fingerprint the objects of the parsed document, it must be taken before the document is modified
+     *
+     * @return the number of fingerprinted objects
+     * @throws IOException In case of an I/O error
+     */
+    public int snapshot() throws IOException {
+        for (COSObjectKey key : document.getXrefTable().keySet()) {
+            COSObject object = document.getObjectFromPool(key);
+            if (object != null && object.getObject() != null && !(object.getObject() instanceof COSNull)) {
+                fingerprintMap.put(key, serializer.fingerprint(object.getObject()));
+            }
+        }
+
+        LOG.debug("Fingerprinted objects: " + fingerprintMap.size());
+        return fingerprintMap.size();
+    }
+
+
+    /**
+     * Check if an object is modified, an object without fingerprint is new
+     *
+     * @param key the key of the object
+     * @param object the object
+     * @return true if the object is modified or new
+     * @throws IOException In case the maximum object depth is exceeded
+     */
+    public boolean isModified(COSObjectKey key, COSBase object) throws IOException {
+        byte[] fingerprint = fingerprintMap.get(key);
+        return fingerprint == null || !Arrays.equals(fingerprint, serializer.fingerprint(object));
+    }
+}
@@ -0,0 +1,219 @@
+/*
+ * PDFObjectSerializer.java
+ *
+ * Copyright by toolarium, all rights reserved.
+ */
+package com.github.toolarium.sanitize.content.impl.bleach.impl.pdf;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.security.DigestOutputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Map;
+import java.util.function.Function;
+import org.apache.pdfbox.cos.COSArray;
+import org.apache.pdfbox.cos.COSBase;
+import org.apache.pdfbox.cos.COSBoolean;
+import org.apache.pdfbox.cos.COSDictionary;
+import org.apache.pdfbox.cos.COSFloat;
+import org.apache.pdfbox.cos.COSInteger;
+import org.apache.pdfbox.cos.COSName;
+import org.apache.pdfbox.cos.COSNull;
+import org.apache.pdfbox.cos.COSObject;
+import org.apache.pdfbox.cos.COSObjectKey;
+import org.apache.pdfbox.cos.COSStream;
+import org.apache.pdfbox.cos.COSString;
+import org.apache.pdfbox.pdfwriter.COSWriter;
+
+
+/**
+ * Serializes the direct content of an object in the PDF syntax. An indirect object and a stream are written as reference, the key of
+ * the reference is resolved by the caller. The serializer fingerprints the direct content of an object as well, it is not thread safe.
+ *
+ * @author Patrick Meier
+ */
+public class PDFObjectSerializer {
+    private final int maxObjectDepth;
+    private final MessageDigest messageDigest;
+
+
+    /**
+     * Constructor for PDFObjectSerializer
+     *
+     * @param maxObjectDepth the maximum depth of a direct value
+     * @throws IOException In case the fingerprint can't be created
+     */
+    public PDFObjectSerializer(int maxObjectDepth) throws IOException {
+        this.maxObjectDepth = maxObjectDepth;
+
+        try {
+            this.messageDigest = MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IOException("Could not create fingerprint: " + e.getMessage(), e);
+        }
+    }
+
+
+    /**
+     * Get the key of an indirect object which was read from the source
+     *
+     * @param value the value
+     * @return the key or null if the value is not an indirect object with a number
+     */
+    public static COSObjectKey getObjectKey(COSBase value) {
+        if (value instanceof COSObject && ((COSObject) value).getObjectNumber() > 0) {
+            COSObject object = (COSObject) value;
+            return new COSObjectKey(object.getObjectNumber(), object.getGenerationNumber());
+        }
+
+        return null;
+    }
+
+
+    /**
+     * Create the fingerprint of the direct content of an object, the data of a stream is not part of it
+     *
+     * @param object the object
+     * @return the fingerprint
+     * @throws IOException In case the maximum object depth is exceeded
+     */
+    public byte[] fingerprint(COSBase object) throws IOException {
+        messageDigest.reset();
+        try (OutputStream out = new DigestOutputStream(OutputStream.nullOutputStream(), messageDigest)) {
+            if (object instanceof COSStream) {
+                writeDictionary((COSStream) object, out, PDFObjectSerializer::getObjectKey, -1);
+            } else {
+                writeValue(object, out, PDFObjectSerializer::getObjectKey);
+            }
+        }
+
+        return messageDigest.digest();
+    }
+
+
+    /**
+     * Write a direct value
+     *
+     * @param value the value
+     * @param out the output stream
+     * @param referenceResolver resolves the key of an indirect object or a stream, null is written as null object
+     * @throws IOException In case of an I/O error
+     */
+    public void writeValue(COSBase value, OutputStream out, Function<COSBase, COSObjectKey> referenceResolver) throws IOException {
+        writeValue(value, out, referenceResolver, 0);
+    }
+
+
+    /**
+     * Write a dictionary
+     *
+     * @param dictionary the dictionary
+     * @param out the output stream
+     * @param referenceResolver resolves the key of an indirect object or a stream, null is written as null object
+     * @param streamLength the length of the written stream data which replaces the length entry or -1
+     * @throws IOException In case of an I/O error
+     */
+    public void writeDictionary(COSDictionary dictionary, OutputStream out, Function<COSBase, COSObjectKey> referenceResolver, long streamLength) throws IOException {
+        writeDictionary(dictionary, out, referenceResolver, streamLength, 0);
+    }
+
+
+    /**
+     * Write a direct value
+     *
+     * @param value the value
+     * @param out the output stream
+     * @param referenceResolver resolves the key of an indirect object or a stream
+     * @param depth the depth of the value
+     * @throws IOException In case of an I/O error
+     */
+    private void writeValue(COSBase value, OutputStream out, Function<COSBase, COSObjectKey> referenceResolver, int depth) throws IOException {
+        if (depth > maxObjectDepth) {
+            throw new IOException("Maximum object depth of " + maxObjectDepth + " exceeded!");
+        }
+
+        if (value == null || value instanceof COSNull) {
+            write(out, "null");
+        } else if (value instanceof COSObject || value instanceof COSStream) {
+            COSObjectKey key = referenceResolver.apply(value);
+            if (key == null) {
+                write(out, "null");
+            } else {
+                write(out, key.getNumber() + " " + key.getGeneration() + " R");
+            }
+        } else if (value instanceof COSDictionary) {
+            writeDictionary((COSDictionary) value, out, referenceResolver, -1, depth);
+        } else if (value instanceof COSArray) {
+            write(out, "[");
+            boolean first = true;
+            for (COSBase element : (COSArray) value) {
+                if (!first) {
+                    write(out, " ");
+                }
+
+                writeValue(element, out, referenceResolver, depth + 1);
+                first = false;
+            }
+
+            write(out, "]");
+        } else if (value instanceof COSString) {
+            COSWriter.writeString((COSString) value, out);
+        } else if (value instanceof COSName) {
+            ((COSName) value).writePDF(out);
+        } else if (value instanceof COSInteger) {
+            ((COSInteger) value).writePDF(out);
+        } else if (value instanceof COSFloat) {
+            ((COSFloat) value).writePDF(out);
+        } else if (value instanceof COSBoolean) {
+            ((COSBoolean) value).writePDF(out);
+        } else {
+            throw new IOException("Unsupported object type " + value.getClass().getSimpleName() + "!");
+        }
+    }
+
+
+    /**
+     * Write a dictionary
+     *
+     * @param dictionary the dictionary
+     * @param out the output stream
+     * @param referenceResolver resolves the key of an indirect object or a stream
+     * @param streamLength the length of the written stream data which replaces the length entry or -1
+     * @param depth the depth of the dictionary
+     * @throws IOException In case of an I/O error
+     */
+    private void writeDictionary(COSDictionary dictionary, OutputStream out, Function<COSBase, COSObjectKey> referenceResolver, long streamLength, int depth)
+            throws IOException {
+        write(out, "<<");
+        if (streamLength >= 0) {
+            write(out, " /Length " + streamLength);
+        }
+
+        for (Map.Entry<COSName, COSBase> entry : dictionary.entrySet()) {
+            if (entry.getValue() == null || entry.getValue() instanceof COSNull || (streamLength >= 0 && COSName.LENGTH.equals(entry.getKey()))) {
+                continue;
+            }
+
+            write(out, " ");
+            entry.getKey().writePDF(out);
+            write(out, " ");
+            writeValue(entry.getValue(), out, referenceResolver, depth + 1);
+        }
+
+        write(out, " >>");
+    }
+
+
+    /**
+     * Write a text
+     *
+     * @param out the output stream
+     * @param text the text
+     * @throws IOException In case of an I/O error
+     */
+    private static void write(OutputStream out, String text) throws IOException {
+        out.write(text.getBytes(StandardCharsets.ISO_8859_1));
+    }
+}
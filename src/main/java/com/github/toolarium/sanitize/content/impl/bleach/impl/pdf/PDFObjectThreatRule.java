@@ -0,0 +1,187 @@
+/*
+ * PDFObjectThreatRule.java
+ *
+ * Copyright by toolarium, all rights reserved.
+ */
+package com.github.toolarium.sanitize.content.impl.bleach.impl.pdf;
+
+import com.github.toolarium.sanitize.content.impl.ISanitizeContentThreatRegistry;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Objects;
+import org.apache.pdfbox.cos.COSName;
+
+
+/**
+ * Defines a threat rule of the PDF object crawl. A rule matches a dictionary entry by its key and optional by its name value.
+ *
+ * @author Patrick Meier
+ */
+public final class PDFObjectThreatRule {
+    /** Script entry */
+    public static final PDFObjectThreatRule JS = new PDFObjectThreatRule("JS", null, PDFSanitizeSections.NAMES_JAVASCRIPT_ACTION, "Script Action JS", Action.REMOVE);
+
+    /** Script entry */
+    public static final PDFObjectThreatRule JAVA_SCRIPT = new PDFObjectThreatRule("JavaScript", null, PDFSanitizeSections.NAMES_JAVASCRIPT_ACTION, "Script Action JavaScript", Action.REMOVE);
+
+    /** Script action type */
+    public static final PDFObjectThreatRule JAVA_SCRIPT_ACTION = new PDFObjectThreatRule("S", "JavaScript", PDFSanitizeSections.NAMES_JAVASCRIPT_ACTION, "Script Action", Action.REMOVE);
+
+    /** Additional actions */
+    public static final PDFObjectThreatRule ADDITIONAL_ACTION = new PDFObjectThreatRule("AA", null, PDFSanitizeSections.NAMES_JAVASCRIPT_ACTION, "Additional Action", Action.REMOVE);
+
+    /** Launch action type, it is not registered by default */
+    public static final PDFObjectThreatRule LAUNCH_ACTION = new PDFObjectThreatRule("S", "Launch", PDFSanitizeSections.OBJECT_ACTION, "Launch Action", Action.REMOVE);
+
+    /** Submit form action type, it is not registered by default */
+    public static final PDFObjectThreatRule SUBMIT_FORM_ACTION = new PDFObjectThreatRule("S", "SubmitForm", PDFSanitizeSections.OBJECT_ACTION, "Submit Form Action", Action.REMOVE);
+
+    /** Import data action type, it is not registered by default */
+    public static final PDFObjectThreatRule IMPORT_DATA_ACTION = new PDFObjectThreatRule("S", "ImportData", PDFSanitizeSections.OBJECT_ACTION, "Import Data Action", Action.REMOVE);
+
+    /** Remote go to action type, it is not registered by default */
+    public static final PDFObjectThreatRule REMOTE_GOTO_ACTION = new PDFObjectThreatRule("S", "GoToR", PDFSanitizeSections.OBJECT_ACTION, "Remote Go To Action", Action.REMOVE);
+
+    /** Rich media content of an annotation, it is not registered by default */
+    public static final PDFObjectThreatRule RICH_MEDIA_CONTENT = new PDFObjectThreatRule("RichMediaContent", null, PDFSanitizeSections.OBJECT_ACTION, "Rich Media Content", Action.REMOVE);
+
+    /** The default rules */
+    public static final List<PDFObjectThreatRule> DEFAULT_RULES = Collections.unmodifiableList(Arrays.asList(JS, JAVA_SCRIPT, JAVA_SCRIPT_ACTION, ADDITIONAL_ACTION));
+
+    private final COSName key;
+    private final COSName value;
+    private final ISanitizeContentThreatRegistry.ISection section;
+    private final String description;
+    private final Action action;
+
+
+    /**
+     * Defines the action of a matching entry.
+     */
+    public enum Action {
+        /** The threat is registered and the entry is removed */
+        REMOVE,
+
+        /** The threat is only registered, the value is crawled further */
+        REPORT;
+    }
+
+
+    /**
+     * Constructor for PDFObjectThreatRule
+     *
+     * @param key the key of the dictionary entry
+     * @param value the name value of the dictionary entry or null to match any value
+     * @param section the section of the threat
+     * @param description the description of the threat
+     * @param action the action
+     */
+    public PDFObjectThreatRule(String key, String value, ISanitizeContentThreatRegistry.ISection section, String description, Action action) {
+        // the names are interned, the rule table compares them by identity
+        this.key = COSName.getPDFName(key);
+        if (value != null) {
+            this.value = COSName.getPDFName(value);
+        } else {
+            this.value = null;
+        }
+
+        this.section = section;
+        this.description = description;
+        this.action = action;
+    }
+
+
+    /**
+     * Get the key of the dictionary entry
+     *
+     * @return the key
+     */
+    public COSName getKey() {
+        return key;
+    }
+
+
+    /**
+     * Get the name value of the dictionary entry
+     *
+     * @return the value or null if the rule matches any value
+     */
+    public COSName getValue() {
+        return value;
+    }
+
+
+    /**
+     * Get the section of the threat
+     *
+     * @return the section
+     */
+    public ISanitizeContentThreatRegistry.ISection getSection() {
+        return section;
+    }
+
+
+    /**
+     * Get the description of the threat
+     *
+     * @return the description
+     */
+    public String getDescription() {
+        return description;
+    }
+
+
+    /**
+     * Get the action
+     *
+     * @return the action
+     */
+    public Action getAction() {
+        return action;
+    }
+
+
+    /**
+     * @see java.lang.Object#hashCode()
+     */
+    @Override
+    public int hashCode() {
+        return Objects.hash(key, value, section, description, action);
+    }
+
+
+    /**
+     * @see java.lang.Object#equals(java.lang.Object)
+     */
+    @Override
+    public boolean equals(Object obj) {
+        if (this == obj) {
+            return true;
+        }
+
+        if (obj == null) {
+            return false;
+        }
+
+        if (getClass() != obj.getClass()) {
+            return false;
+        }
+
+        PDFObjectThreatRule other = (PDFObjectThreatRule) obj;
+        return Objects.equals(key, other.key)
+                && Objects.equals(value, other.value)
+                && Objects.equals(section, other.section)
+                && Objects.equals(description, other.description)
+                && action == other.action;
+    }
+
+
+    /**
+     * @see java.lang.Object#toString()
+     */
+    @Override
+    public String toString() {
+        return "PDFObjectThreatRule [key=" + key + ", value=" + value + ", section=" + section + ", description=" + description + ", action=" + action + "]";
+    }
+}
@@ -0,0 +1,252 @@
+/*
+ * PDFObjectThreatRuleTable.java
+ *
+ * Copyright by toolarium, all rights reserved.
+ */
+package com.github.toolarium.sanitize.content.impl.bleach.impl.pdf;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import org.apache.pdfbox.cos.COSBase;
+import org.apache.pdfbox.cos.COSName;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+
+/**
+ * The threat rules of the PDF object crawl. The rules are compiled into a dispatch table which is keyed by the interned {@link COSName},
+ * a dictionary entry is matched by one identity lookup of its key. A registration compiles a new table, a crawl works on a
+ * {@link #snapshot()} and keeps the rules it started with. The {@link PDFThreatPrefilter} of the crawl and the fingerprint of the rules
+ * are compiled together with the table.
+ *
+ * @author Patrick Meier
+ */
+public final class PDFObjectThreatRuleTable {
+    private static final Logger LOG = LoggerFactory.getLogger(PDFObjectThreatRuleTable.class);
+    private final List<PDFObjectThreatRule> ruleList;
+    private volatile CompiledRules compiledRules;
+
+
+    /**
+     * Private class, the only instance of the singelton which will be created by accessing the holder class.
+     *
+     * @author Patrick Meier
+     */
+    private static class HOLDER {
+        static final PDFObjectThreatRuleTable INSTANCE = new PDFObjectThreatRuleTable(PDFObjectThreatRule.DEFAULT_RULES);
+    }
+
+
+    /**
+     * Constructor for PDFObjectThreatRuleTable
+     *
+     * @param ruleList the rules, a later rule replaces a former rule with the same key and value
+     */
+    public PDFObjectThreatRuleTable(List<PDFObjectThreatRule> ruleList) {
+        this.ruleList = new ArrayList<PDFObjectThreatRule>(ruleList);
+        this.compiledRules = new CompiledRules(this.ruleList);
+    }
+
+
+    /**
+     * Constructor for PDFObjectThreatRuleTable
+     *
+     * @param ruleList the rules
+     * @param compiledRules the compiled rules
+     */
+    private PDFObjectThreatRuleTable(List<PDFObjectThreatRule> ruleList, CompiledRules compiledRules) {
+        this.ruleList = new ArrayList<PDFObjectThreatRule>(ruleList);
+        this.compiledRules = compiledRules;
+    }
+
+
+    /**
+     * Get the instance which is used by the PDF bleacher
+     *
+     * @return the instance
+     */
+    public static PDFObjectThreatRuleTable getInstance() {
+        return HOLDER.INSTANCE;
+    }
+
+
+    /**
+     * Register a rule. It replaces a rule with the same key and value.
+     *
+     * @param rule the rule
+     */
+    public synchronized void register(PDFObjectThreatRule rule) {
+        if (rule == null) {
+            return;
+        }
+
+        LOG.debug("Register PDF object threat rule {}", rule);
+        ruleList.add(rule);
+        compiledRules = new CompiledRules(ruleList);
+    }
+
+
+    /**
+     * Unregister a rule
+     *
+     * @param rule the rule
+     * @return true if the rule was registered
+     */
+    public synchronized boolean unregister(PDFObjectThreatRule rule) {
+        if (!ruleList.remove(rule)) {
+            return false;
+        }
+
+        compiledRules = new CompiledRules(ruleList);
+        return true;
+    }
+
+
+    /**
+     * Get the registered rules
+     *
+     * @return the rules
+     */
+    public synchronized List<PDFObjectThreatRule> getRuleList() {
+        return Collections.unmodifiableList(new ArrayList<PDFObjectThreatRule>(ruleList));
+    }
+
+
+    /**
+     * Get a snapshot of the registered rules, a later registration doesn't change it
+     *
+     * @return the snapshot
+     */
+    public synchronized PDFObjectThreatRuleTable snapshot() {
+        return new PDFObjectThreatRuleTable(ruleList, compiledRules);
+    }
+
+
+    /**
+     * Get the prefilter which matches the tokens of the section handlers and of the registered rules
+     *
+     * @return the prefilter
+     */
+    public PDFThreatPrefilter getPrefilter() {
+        return compiledRules.prefilter;
+    }
+
+
+    /**
+     * Get the fingerprint of the registered rules. It is part of the key of a cached result, a result which is cached with other
+     * rules is not returned. The fingerprint is built from the rules and not counted, the persisted results survive a restart.
+     *
+     * @return the fingerprint
+     */
+    public String getFingerprint() {
+        return compiledRules.fingerprint;
+    }
+
+
+    /**
+     * Match a dictionary entry. A rule with a matching value takes precedence over a rule of any value.
+     *
+     * @param key the key
+     * @param value the value
+     * @return the matching rule or null
+     */
+    public PDFObjectThreatRule match(COSName key, COSBase value) {
+        RuleEntry entry = compiledRules.table.get(key);
+        if (entry == null) {
+            return null;
+        }
+
+        if (entry.valueRules != null && value instanceof COSName) {
+            PDFObjectThreatRule rule = entry.valueRules.get(value);
+            if (rule != null) {
+                return rule;
+            }
+        }
+
+        return entry.anyValueRule;
+    }
+
+
+    /**
+     * Compile the rules into a dispatch table
+     *
+     * @param ruleList the rules
+     * @return the table
+     */
+    private static Map<COSName, RuleEntry> compile(List<PDFObjectThreatRule> ruleList) {
+        Map<COSName, RuleEntry> result = new IdentityHashMap<COSName, RuleEntry>();
+        for (PDFObjectThreatRule rule : ruleList) {
+            RuleEntry entry = result.get(rule.getKey());
+            if (entry == null) {
+                entry = new RuleEntry();
+                result.put(rule.getKey(), entry);
+            }
+
+            if (rule.getValue() == null) {
+                entry.anyValueRule = rule;
+            } else {
+                if (entry.valueRules == null) {
+                    entry.valueRules = new IdentityHashMap<COSName, PDFObjectThreatRule>();
+                }
+
+                entry.valueRules.put(rule.getValue(), rule);
+            }
+        }
+
+        return result;
+    }
+
+
+    /**
+     * Compile the prefilter of the rules, a rule with a value matches the value token and a rule of any value the key token
+     *
+     * @param ruleList the rules
+     * @return the prefilter
+     */
+    private static PDFThreatPrefilter compilePrefilter(List<PDFObjectThreatRule> ruleList) {
+        List<String> tokenList = new ArrayList<String>(PDFThreatPrefilter.DEFAULT_TOKENS);
+        for (PDFObjectThreatRule rule : ruleList) {
+            if (rule.getValue() != null) {
+                tokenList.add("/" + rule.getValue().getName());
+            } else {
+                tokenList.add("/" + rule.getKey().getName());
+            }
+        }
+
+        return new PDFThreatPrefilter(tokenList);
+    }
+
+
+    /**
+     * Defines the compiled rules, they are replaced together by a registration.
+     */
+    private static class CompiledRules {
+        private final Map<COSName, RuleEntry> table;
+        private final PDFThreatPrefilter prefilter;
+        private final String fingerprint;
+
+
+        /**
+         * Constructor for CompiledRules
+         *
+         * @param ruleList the rules
+         */
+        CompiledRules(List<PDFObjectThreatRule> ruleList) {
+            this.table = compile(ruleList);
+            this.prefilter = compilePrefilter(ruleList);
+            this.fingerprint = ruleList.toString();
+        }
+    }
+
+
+    /**
+     * Defines the rules of a key.
+     */
+    private static class RuleEntry {
+        private PDFObjectThreatRule anyValueRule;
+        private Map<COSName, PDFObjectThreatRule> valueRules;
+    }
+}
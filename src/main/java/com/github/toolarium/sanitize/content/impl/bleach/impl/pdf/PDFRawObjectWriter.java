@@ -0,0 +1,718 @@
+/*
+ * PDFRawObjectWriter.java
+ *
+ * Copyright by toolarium, all rights reserved.
+ */
+package com.github.toolarium.sanitize.content.impl.bleach.impl.pdf;
+
+import com.github.toolarium.sanitize.content.dto.SanitizeContentConfiguration;
+import com.github.toolarium.sanitize.content.impl.bleach.util.BufferPool;
+import com.github.toolarium.sanitize.content.impl.bleach.util.ContentHandOffBuffer;
+import com.github.toolarium.sanitize.content.impl.bleach.util.CountingOutputStream;
+import com.github.toolarium.sanitize.content.impl.bleach.util.StreamUtils;
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import org.apache.pdfbox.cos.COSArray;
+import org.apache.pdfbox.cos.COSBase;
+import org.apache.pdfbox.cos.COSDictionary;
+import org.apache.pdfbox.cos.COSDocument;
+import org.apache.pdfbox.cos.COSName;
+import org.apache.pdfbox.cos.COSNull;
+import org.apache.pdfbox.cos.COSObject;
+import org.apache.pdfbox.cos.COSObjectKey;
+import org.apache.pdfbox.cos.COSStream;
+import org.apache.pdfbox.io.RandomAccessRead;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+
+/**
+ * Writes a document whereby the objects which are not modified are copied from the source byte by byte, only the modified and the new
+ * objects are serialized again. The modified objects are detected by the {@link PDFObjectModificationTracker}. The objects are written
+ * which are reachable from the trailer, a removed object is not carried over. The cross reference table and the trailer are written new.
+ *
+ * <p>The original byte range of an object is only taken in case it can be verified: it starts with the object header, a stream has
+ * exactly its length between the stream and endstream keywords and the range contains no other object. Otherwise the object is
+ * serialized. The source must not be encrypted, the objects of an object stream are always serialized.</p>
+ *
+ * @author Patrick Meier
+ */
+public class PDFRawObjectWriter {
+    /** The maximum length of an object without the stream data which is verified */
+    public static final int MAX_VERIFIED_LENGTH = 1024 * 1024;
+
+    private static final Logger LOG = LoggerFactory.getLogger(PDFRawObjectWriter.class);
+    private static final Pattern OBJECT_HEADER = Pattern.compile("^(\\d+)\\s+(\\d+)\\s+obj");
+    private static final byte[] OBJ = toBytes("obj");
+    private static final byte[] ENDOBJ = toBytes("endobj");
+    private static final byte[] STREAM = toBytes("stream");
+    private static final byte[] ENDSTREAM = toBytes("endstream");
+    private static final byte[][] END_OF_LINES = {toBytes("\r\n"), toBytes("\n"), toBytes("\r"), new byte[0]};
+    private static final COSName[] TRAILER_KEYS = {COSName.ROOT, COSName.INFO, COSName.ID};
+    private static final int HEADER_LENGTH = 48;
+    private static final int SEARCH_WINDOW = 4096;
+    private final SanitizeContentConfiguration configuration;
+    private final COSDocument document;
+    private final RandomAccessRead source;
+    private final PDFObjectSerializer serializer;
+    private final PDFObjectModificationTracker modificationTracker;
+    private final Map<COSObjectKey, RawObject> rawObjectMap;
+    private final Map<COSBase, COSObjectKey> newObjectKeyMap;
+    private final Set<COSObjectKey> queuedKeySet;
+    private final Deque<PendingObject> pendingQueue;
+    private long[] offsets;
+    private long nextObjectNumber;
+    private long copiedBytes;
+
+
+    /**
+     * Constructor for PDFRawObjectWriter
+     *
+     * @param configuration the configuration
+     * @param document the parsed document
+     * @param source the source of the document
+     * @throws IOException In case the fingerprint can't be created
+     */
+    public PDFRawObjectWriter(SanitizeContentConfiguration configuration, COSDocument document, RandomAccessRead source) throws IOException {
+        this.configuration = configuration;
+        this.document = document;
+        this.source = source;
+        this.serializer = new PDFObjectSerializer(configuration.getPdfMaxObjectDepth());
+        this.modificationTracker = new PDFObjectModificationTracker(configuration, document);
+        this.rawObjectMap = new HashMap<COSObjectKey, RawObject>();
+        this.newObjectKeyMap = new IdentityHashMap<COSBase, COSObjectKey>();
+        this.queuedKeySet = new HashSet<COSObjectKey>();
+        this.pendingQueue = new ArrayDeque<PendingObject>();
+        this.offsets = new long[0];
+        this.nextObjectNumber = 1;
+        this.copiedBytes = 0;
+    }
+
+
+    /**
+     * Take the snapshot of the parsed document: the original byte range of every object is verified and its direct content is
+     * fingerprinted. It must be taken before the document is modified.
+     *
+     * @return the number of objects which can be copied
+     * @throws IOException In case of an I/O error
+     */
+    public int snapshot() throws IOException {
+        modificationTracker.snapshot();
+
+        Map<COSObjectKey, Long> xrefTable = document.getXrefTable();
+        long[] sortedOffsets = new long[xrefTable.size()];
+        int count = 0;
+        for (Map.Entry<COSObjectKey, Long> entry : xrefTable.entrySet()) {
+            nextObjectNumber = Math.max(nextObjectNumber, entry.getKey().getNumber() + 1);
+
+            // a compressed object is referenced by the negative number of its object stream
+            if (entry.getValue() != null && entry.getValue() > 0) {
+                sortedOffsets[count++] = entry.getValue();
+            }
+        }
+
+        offsets = Arrays.copyOf(sortedOffsets, count);
+        Arrays.sort(offsets);
+
+        for (Map.Entry<COSObjectKey, Long> entry : xrefTable.entrySet()) {
+            if (entry.getValue() == null || entry.getValue() <= 0) {
+                continue;
+            }
+
+            COSObject object = document.getObjectFromPool(entry.getKey());
+            COSBase base = null;
+            if (object != null) {
+                base = object.getObject();
+            }
+
+            if (base == null || base instanceof COSNull) {
+                continue;
+            }
+
+            RawObject rawObject = verify(entry.getKey(), entry.getValue(), base);
+            if (rawObject != null) {
+                rawObjectMap.put(entry.getKey(), rawObject);
+            }
+        }
+
+        LOG.debug("Objects which can be copied: " + rawObjectMap.size() + " of " + xrefTable.size());
+        return rawObjectMap.size();
+    }
+
+
+    /**
+     * Write the document. The output stream is flushed but not closed.
+     *
+     * @param outputStream the output stream
+     * @throws IOException In case of an I/O error
+     */
+    public void write(OutputStream outputStream) throws IOException {
+        CountingOutputStream out = new CountingOutputStream(new BufferedOutputStream(outputStream, BufferPool.BUFFER_SIZE));
+        write(out, "%PDF-" + document.getVersion() + "\n");
+        out.write(new byte[] {'%', (byte) 0xE2, (byte) 0xE3, (byte) 0xCF, (byte) 0xD3, '\n'});
+
+        COSDictionary trailer = document.getTrailer();
+        for (COSName name : TRAILER_KEYS) {
+            addReferences(trailer.getItem(name), 0);
+        }
+
+        Map<COSObjectKey, Long> xrefMap = new TreeMap<COSObjectKey, Long>();
+        PendingObject pendingObject;
+        while ((pendingObject = pendingQueue.poll()) != null) {
+            xrefMap.put(pendingObject.getKey(), out.getCount());
+            if (!copy(pendingObject, out)) {
+                serialize(pendingObject, out);
+            }
+        }
+
+        long startXref = out.getCount();
+        writeXref(xrefMap, out);
+
+        write(out, "trailer\n<< /Size " + nextObjectNumber);
+        for (COSName name : TRAILER_KEYS) {
+            COSBase value = trailer.getItem(name);
+            if (value != null && !(value instanceof COSNull)) {
+                write(out, " ");
+                name.writePDF(out);
+                write(out, " ");
+                serializer.writeValue(value, out, this::getKey);
+            }
+        }
+
+        write(out, " >>\nstartxref\n" + startXref + "\n%%EOF\n");
+        out.flush();
+        LOG.debug("Written objects: " + xrefMap.size() + ", copied bytes: " + copiedBytes);
+    }
+
+
+    /**
+     * Get the number of bytes which are copied from the source
+     *
+     * @return the number of copied bytes
+     */
+    public long getCopiedBytes() {
+        return copiedBytes;
+    }
+
+
+    /**
+     * Copy the original byte range of an object in case it is not modified. The references of a copied object are written as well.
+     *
+     * @param pendingObject the object
+     * @param out the output stream
+     * @return true if the object is copied
+     * @throws IOException In case of an I/O error
+     */
+    private boolean copy(PendingObject pendingObject, OutputStream out) throws IOException {
+        RawObject rawObject = rawObjectMap.get(pendingObject.getKey());
+        if (rawObject == null || modificationTracker.isModified(pendingObject.getKey(), pendingObject.getObject())) {
+            return false;
+        }
+
+        source.seek(rawObject.getStart());
+        long remaining = rawObject.getEnd() - rawObject.getStart();
+        byte[] buffer = BufferPool.getInstance().acquire();
+        try {
+            while (remaining > 0) {
+                int n = source.read(buffer, 0, (int) Math.min(buffer.length, remaining));
+                if (n <= 0) {
+                    throw new IOException("Unexpected end of source in object " + pendingObject.getKey().getNumber() + "!");
+                }
+
+                out.write(buffer, 0, n);
+                remaining -= n;
+            }
+        } finally {
+            BufferPool.getInstance().release(buffer);
+        }
+
+        write(out, "\n");
+        copiedBytes += rawObject.getEnd() - rawObject.getStart();
+        addReferences(pendingObject.getObject(), 0);
+        return true;
+    }
+
+
+    /**
+     * Serialize an object
+     *
+     * @param pendingObject the object
+     * @param out the output stream
+     * @throws IOException In case of an I/O error
+     */
+    private void serialize(PendingObject pendingObject, OutputStream out) throws IOException {
+        COSObjectKey key = pendingObject.getKey();
+        write(out, key.getNumber() + " " + key.getGeneration() + " obj\n");
+
+        COSBase object = pendingObject.getObject();
+        if (object instanceof COSStream) {
+            writeStream((COSStream) object, out);
+        } else {
+            serializer.writeValue(object, out, this::reference);
+        }
+
+        write(out, "\nendobj\n");
+    }
+
+
+    /**
+     * Write a stream with its raw data, the length is written as direct value
+     *
+     * @param stream the stream
+     * @param out the output stream
+     * @throws IOException In case of an I/O error
+     */
+    private void writeStream(COSStream stream, OutputStream out) throws IOException {
+        ContentHandOffBuffer buffer = new ContentHandOffBuffer(configuration.getSpillThreshold(), configuration.getTempDirectory());
+        try {
+            try (InputStream is = stream.createRawInputStream()) {
+                StreamUtils.getInstance().copy(is, buffer);
+            }
+
+            buffer.close();
+            serializer.writeDictionary(stream, out, this::reference, buffer.size());
+            write(out, "\nstream\r\n");
+            try (InputStream is = buffer.getInputStream()) {
+                StreamUtils.getInstance().copy(is, out);
+            }
+
+            write(out, "\r\nendstream");
+        } finally {
+            buffer.release();
+        }
+    }
+
+
+    /**
+     * Queue the referenced object of a value in case it is not yet queued
+     *
+     * @param value the value
+     * @return the key of the referenced object or null if the value references no object
+     */
+    private COSObjectKey reference(COSBase value) {
+        COSBase object = value;
+        if (value instanceof COSObject) {
+            object = ((COSObject) value).getObject();
+        }
+
+        if (object == null || object instanceof COSNull || !(value instanceof COSObject || value instanceof COSStream)) {
+            return null;
+        }
+
+        COSObjectKey key = getKey(value);
+        if (key == null) {
+            // a new object gets the next free number
+            key = new COSObjectKey(nextObjectNumber++, 0);
+            newObjectKeyMap.put(value, key);
+        }
+
+        if (queuedKeySet.add(key)) {
+            pendingQueue.add(new PendingObject(key, object));
+        }
+
+        return key;
+    }
+
+
+    /**
+     * Get the key of an indirect object
+     *
+     * @param value the value
+     * @return the key or null if the object has no number yet
+     */
+    private COSObjectKey getKey(COSBase value) {
+        COSObjectKey key = PDFObjectSerializer.getObjectKey(value);
+        if (key == null) {
+            key = newObjectKeyMap.get(value);
+        }
+
+        return key;
+    }
+
+
+    /**
+     * Queue the referenced objects of a copied object
+     *
+     * @param value the value
+     * @param depth the depth of the value
+     * @throws IOException In case the maximum object depth is exceeded
+     */
+    private void addReferences(COSBase value, int depth) throws IOException {
+        if (depth > configuration.getPdfMaxObjectDepth()) {
+            throw new IOException("Maximum object depth of " + configuration.getPdfMaxObjectDepth() + " exceeded!");
+        }
+
+        if (value instanceof COSObject) {
+            reference(value);
+        } else if (value instanceof COSDictionary) {
+            for (COSBase element : ((COSDictionary) value).getValues()) {
+                addReferences(element, depth + 1);
+            }
+        } else if (value instanceof COSArray) {
+            for (COSBase element : (COSArray) value) {
+                addReferences(element, depth + 1);
+            }
+        }
+    }
+
+
+    /**
+     * Write the cross reference table, the objects with consecutive numbers are written in one subsection
+     *
+     * @param xrefMap the offsets of the objects
+     * @param out the output stream
+     * @throws IOException In case of an I/O error
+     */
+    private void writeXref(Map<COSObjectKey, Long> xrefMap, OutputStream out) throws IOException {
+        write(out, "xref\n0 1\n0000000000 65535 f\r\n");
+
+        StringBuilder subsection = new StringBuilder();
+        long firstNumber = -1;
+        long lastNumber = -1;
+        for (Map.Entry<COSObjectKey, Long> entry : xrefMap.entrySet()) {
+            long number = entry.getKey().getNumber();
+            if (number == lastNumber) {
+                // an object number is written only once
+                continue;
+            }
+
+            if (number != lastNumber + 1 && subsection.length() > 0) {
+                write(out, firstNumber + " " + (lastNumber - firstNumber + 1) + "\n" + subsection);
+                subsection.setLength(0);
+            }
+
+            if (subsection.length() == 0) {
+                firstNumber = number;
+            }
+
+            subsection.append(String.format("%010d %05d n\r\n", entry.getValue(), entry.getKey().getGeneration()));
+            lastNumber = number;
+        }
+
+        if (subsection.length() > 0) {
+            write(out, firstNumber + " " + (lastNumber - firstNumber + 1) + "\n" + subsection);
+        }
+    }
+
+
+    /**
+     * Verify the original byte range of an object
+     *
+     * @param key the key of the object
+     * @param offset the offset of the object
+     * @param object the parsed object
+     * @return the raw object or null if the byte range can't be verified
+     * @throws IOException In case of an I/O error
+     */
+    private RawObject verify(COSObjectKey key, long offset, COSBase object) throws IOException {
+        long boundary = source.length();
+        int index = Arrays.binarySearch(offsets, offset);
+        if (index >= 0 && index + 1 < offsets.length) {
+            boundary = offsets[index + 1];
+        }
+
+        // the header must match the key of the object
+        byte[] header = read(offset, (int) Math.min(HEADER_LENGTH, boundary - offset));
+        Matcher matcher = OBJECT_HEADER.matcher(new String(header, StandardCharsets.ISO_8859_1));
+        if (!matcher.find() || Long.parseLong(matcher.group(1)) != key.getNumber() || Integer.parseInt(matcher.group(2)) != key.getGeneration()) {
+            LOG.debug("Object " + key.getNumber() + " has no valid header, it will be serialized.");
+            return null;
+        }
+
+        long endObjectPosition = lastIndexOf(ENDOBJ, offset + matcher.end(), boundary);
+        if (endObjectPosition < 0) {
+            return null;
+        }
+
+        long bodyEnd = endObjectPosition;
+        if (object instanceof COSStream) {
+            bodyEnd = verifyStream((COSStream) object, offset, endObjectPosition);
+        }
+
+        // the body must not contain an other object, a string with such a keyword is serialized
+        if (bodyEnd < 0 || bodyEnd - offset > MAX_VERIFIED_LENGTH) {
+            return null;
+        }
+
+        byte[] body = read(offset + matcher.end(), (int) (bodyEnd - offset - matcher.end()));
+        int streamCount = 0;
+        if (object instanceof COSStream) {
+            streamCount = 1;
+        }
+
+        if (count(body, OBJ) > 0 || count(body, STREAM) != streamCount) {
+            LOG.debug("Object " + key.getNumber() + " can't be verified, it will be serialized.");
+            return null;
+        }
+
+        return new RawObject(offset, endObjectPosition + ENDOBJ.length);
+    }
+
+
+    /**
+     * Verify the stream data of an object: its length must fit between the stream and the endstream keywords
+     *
+     * @param stream the stream
+     * @param offset the offset of the object
+     * @param endObjectPosition the position of the endobj keyword
+     * @return the end of the stream keyword in front of the data or -1 if the stream can't be verified
+     * @throws IOException In case of an I/O error
+     */
+    private long verifyStream(COSStream stream, long offset, long endObjectPosition) throws IOException {
+        long endStreamPosition = lastIndexOf(ENDSTREAM, offset, endObjectPosition);
+        if (endStreamPosition < 0 || !isWhitespace(read(endStreamPosition + ENDSTREAM.length, (int) (endObjectPosition - endStreamPosition - ENDSTREAM.length)))) {
+            return -1;
+        }
+
+        for (byte[] endOfLine : END_OF_LINES) {
+            long dataEnd = endStreamPosition - endOfLine.length;
+            long dataStart = dataEnd - stream.getLength();
+            if (dataStart - offset < STREAM.length + 1 || !Arrays.equals(read(dataEnd, endOfLine.length), endOfLine)) {
+                continue;
+            }
+
+            // the stream keyword is followed by CRLF or LF
+            byte[] keyword = read(dataStart - STREAM.length - 2, STREAM.length + 2);
+            if (keyword[keyword.length - 1] == '\n' && Arrays.equals(Arrays.copyOfRange(keyword, 1, STREAM.length + 1), STREAM)) {
+                return dataStart - 1;
+            }
+
+            if (keyword[keyword.length - 2] == '\r' && keyword[keyword.length - 1] == '\n' && Arrays.equals(Arrays.copyOfRange(keyword, 0, STREAM.length), STREAM)) {
+                return dataStart - 2;
+            }
+        }
+
+        return -1;
+    }
+
+
+    /**
+     * Search the last occurrence of a token in a range of the source
+     *
+     * @param token the token
+     * @param start the start of the range
+     * @param end the end of the range
+     * @return the position of the token or -1
+     * @throws IOException In case of an I/O error
+     */
+    private long lastIndexOf(byte[] token, long start, long end) throws IOException {
+        long windowEnd = end;
+        while (windowEnd - start >= token.length) {
+            long windowStart = Math.max(start, windowEnd - SEARCH_WINDOW);
+            byte[] window = read(windowStart, (int) (windowEnd - windowStart));
+            for (int i = window.length - token.length; i >= 0; i--) {
+                if (matches(window, i, token)) {
+                    return windowStart + i;
+                }
+            }
+
+            // the windows overlap by the token length
+            windowEnd = windowStart + token.length - 1;
+            if (windowStart == start) {
+                break;
+            }
+        }
+
+        return -1;
+    }
+
+
+    /**
+     * Read a range of the source
+     *
+     * @param position the position
+     * @param length the length
+     * @return the read bytes
+     * @throws IOException In case of an I/O error
+     */
+    private byte[] read(long position, int length) throws IOException {
+        byte[] data = new byte[Math.max(0, length)];
+        source.seek(position);
+
+        int count = 0;
+        while (count < data.length) {
+            int n = source.read(data, count, data.length - count);
+            if (n <= 0) {
+                throw new IOException("Unexpected end of source at position " + (position + count) + "!");
+            }
+
+            count += n;
+        }
+
+        return data;
+    }
+
+
+    /**
+     * Count the occurrences of a token
+     *
+     * @param data the data
+     * @param token the token
+     * @return the number of occurrences
+     */
+    private static int count(byte[] data, byte[] token) {
+        int count = 0;
+        for (int i = 0; i <= data.length - token.length; i++) {
+            if (matches(data, i, token)) {
+                count++;
+            }
+        }
+
+        return count;
+    }
+
+
+    /**
+     * Check if a token is at a position
+     *
+     * @param data the data
+     * @param position the position
+     * @param token the token
+     * @return true if it matches
+     */
+    private static boolean matches(byte[] data, int position, byte[] token) {
+        for (int i = 0; i < token.length; i++) {
+            if (data[position + i] != token[i]) {
+                return false;
+            }
+        }
+
+        return true;
+    }
+
+
+    /**
+     * Check if the data contains only whitespaces
+     *
+     * @param data the data
+     * @return true if it contains only whitespaces
+     */
+    private static boolean isWhitespace(byte[] data) {
+        for (byte b : data) {
+            if (b != ' ' && b != '\r' && b != '\n' && b != '\t' && b != '\f' && b != 0) {
+                return false;
+            }
+        }
+
+        return true;
+    }
+
+
+    /**
+     * Write a text
+     *
+     * @param out the output stream
+     * @param text the text
+     * @throws IOException In case of an I/O error
+     */
+    private static void write(OutputStream out, String text) throws IOException {
+        out.write(toBytes(text));
+    }
+
+
+    /**
+     * Get the bytes of a text
+     *
+     * @param text the text
+     * @return the bytes
+     */
+    private static byte[] toBytes(String text) {
+        return text.getBytes(StandardCharsets.ISO_8859_1);
+    }
+
+
+    /**
+     * Defines the verified original byte range of an object.
+     */
+    private static class RawObject {
+        private final long start;
+        private final long end;
+
+
+        /**
+         * Constructor for RawObject
+         *
+         * @param start the start of the object
+         * @param end the end of the object
+         */
+        RawObject(long start, long end) {
+            this.start = start;
+            this.end = end;
+        }
+
+
+        /**
+         * Get the start of the object
+         *
+         * @return the start
+         */
+        long getStart() {
+            return start;
+        }
+
+
+        /**
+         * Get the end of the object
+         *
+         * @return the end
+         */
+        long getEnd() {
+            return end;
+        }
+    }
+
+
+    /**
+     * Defines an object which is queued to be written.
+     */
+    private static class PendingObject {
+        private final COSObjectKey key;
+        private final COSBase object;
+
+
+        /**
+         * Constructor for PendingObject
+         *
+         * @param key the key
+         * @param object the object
+         */
+        PendingObject(COSObjectKey key, COSBase object) {
+            this.key = key;
+            this.object = object;
+        }
+
+
+        /**
+         * Get the key
+         *
+         * @return the key
+         */
+        COSObjectKey getKey() {
+            return key;
+        }
+
+
+        /**
+         * Get the object
+         *
+         * @return the object
+         */
+        COSBase getObject() {
+            return object;
+        }
+    }
+}
@@ -5,17 +5,36 @@
  */
 package com.github.toolarium.sanitize.content.impl.bleach.impl.pdf;
 
-import com.github.toolarium.sanitize.content.ISanitizeContentCredentialAccess;
+import com.github.toolarium.sanitize.content.dto.SanitizeContentConfiguration;
+import com.github.toolarium.sanitize.content.dto.SanitizeContentParsePolicy;
+import com.github.toolarium.sanitize.content.dto.SanitizeContentPrefilterVerdict;
 import com.github.toolarium.sanitize.content.dto.SanitizeContentResult;
+import com.github.toolarium.sanitize.content.dto.SanitizeContentThreatInformation;
 import com.github.toolarium.sanitize.content.exception.SanitizeContentException;
+import com.github.toolarium.sanitize.content.exception.SanitizeContentExceptionReason;
+import com.github.toolarium.sanitize.content.impl.SanitizeContentContext;
 import com.github.toolarium.sanitize.content.impl.bleach.impl.AbstractSanitizeContentBleacher;
 import com.github.toolarium.sanitize.content.impl.bleach.impl.pdf.elements.PDFDocumentBleacher;
 import com.github.toolarium.sanitize.content.impl.bleach.impl.pdf.elements.PDFEmbeddedFileBleacher;
 import com.github.toolarium.sanitize.content.impl.bleach.impl.pdf.elements.PDFObjectBleacher;
+import com.github.toolarium.sanitize.content.impl.bleach.impl.pdf.elements.PDFObjectVisitor;
+import com.github.toolarium.sanitize.content.impl.bleach.util.BufferPool;
+import com.github.toolarium.sanitize.content.impl.bleach.util.StreamDecodingGuard;
 import com.github.toolarium.sanitize.content.impl.bleach.util.StreamUtils;
+import java.io.File;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import org.apache.pdfbox.cos.COSBase;
+import org.apache.pdfbox.cos.COSObject;
+import org.apache.pdfbox.cos.COSObjectKey;
+import org.apache.pdfbox.cos.COSStream;
 import org.apache.pdfbox.io.IOUtils;
 import org.apache.pdfbox.io.MemoryUsageSetting;
 import org.apache.pdfbox.io.RandomAccessBufferedFileInputStream;
@@ -36,7 +55,7 @@ import org.slf4j.LoggerFactory;
 // https://svn.apache.org/viewvc/pdfbox/trunk/examples/src/main/java/org/apache/pdfbox/examples/util/PDFMergerExample.java?view=markup
 
 /**
- * PDF content bleacher
+ * PDF content bleacher. It is stateless, the state of a document is kept by its context.
  *
  * @author Patrick Meier
  */
@@ -45,8 +64,27 @@ public class PDFSanitizeContentBleacher extends AbstractSanitizeContentBleacher
     public static final String APPLICATION_PDF = "application/pdf";
 
     private static final Logger LOG = LoggerFactory.getLogger(PDFSanitizeContentBleacher.class);
-    private static final MemoryUsageSetting MEMORY_USAGE_SETTING = MemoryUsageSetting.setupMixed(1024 * 100);
     private static final byte[] PDF_MAGIC = new byte[]{37, 80, 68, 70};
+    private static final long MIN_SCAN_BUDGET = 64L * 1024L;
+    private final SanitizeContentConfiguration configuration;
+
+
+    /**
+     * Constructor for PDFSanitizeContentBleacher
+     */
+    public PDFSanitizeContentBleacher() {
+        this(new SanitizeContentConfiguration());
+    }
+
+
+    /**
+     * Constructor for PDFSanitizeContentBleacher
+     *
+     * @param configuration the configuration
+     */
+    public PDFSanitizeContentBleacher(SanitizeContentConfiguration configuration) {
+        this.configuration = configuration;
+    }
 
 
     /**
@@ -59,78 +97,321 @@ public class PDFSanitizeContentBleacher extends AbstractSanitizeContentBleacher
 
 
     /**
-     * @see com.github.toolarium.sanitize.content.impl.bleach.ISanitizeContentBleacher#bleachContent(java.lang.String, java.io.InputStream, java.io.OutputStream, com.github.toolarium.sanitize.content.ISanitizeContentCredentialAccess)
+     * @see com.github.toolarium.sanitize.content.impl.bleach.ISanitizeContentBleacher#bleachContent(com.github.toolarium.sanitize.content.impl.SanitizeContentContext, java.io.InputStream, java.io.OutputStream)
+     */
+    @Override
+    public SanitizeContentResult bleachContent(SanitizeContentContext context, InputStream inputStream, OutputStream outputStream) throws SanitizeContentException {
+        try (RandomAccessRead source = new RandomAccessBufferedFileInputStream(inputStream)) {
+            return bleachContent(context, source, outputStream);
+        } catch (SanitizeContentException e) {
+            throw e;
+        } catch (IOException e) {
+            throw new SanitizeContentException(e);
+        }
+    }
+
+
+    /**
+     * @see com.github.toolarium.sanitize.content.impl.bleach.impl.AbstractSanitizeContentBleacher#bleachContent(com.github.toolarium.sanitize.content.impl.SanitizeContentContext, java.nio.file.Path, java.io.OutputStream)
      */
     @Override
-    public SanitizeContentResult bleachContent(String name, InputStream inputStream, OutputStream outputStream, ISanitizeContentCredentialAccess credentialAccess) throws SanitizeContentException {
+    public SanitizeContentResult bleachContent(SanitizeContentContext context, Path inputPath, OutputStream outputStream) throws SanitizeContentException {
+        // the file is parsed in place, there is no copy into a temp file
+        try (RandomAccessRead source = new MemoryMappedRandomAccessRead(inputPath)) {
+            return bleachContent(context, source, outputStream);
+        } catch (SanitizeContentException e) {
+            throw e;
+        } catch (IOException e) {
+            throw new SanitizeContentException(e);
+        }
+    }
+
+
+    /**
+     * Bleach content
+     *
+     * @param context the context of the content
+     * @param source the source
+     * @param outputStream the output stream
+     * @return the sanitize content result
+     * @throws SanitizeContentException In case the content can't be sanitized.
+     */
+    protected SanitizeContentResult bleachContent(SanitizeContentContext context, RandomAccessRead source, OutputStream outputStream) throws SanitizeContentException {
         LOG.debug("Bleach PDF content...");
 
-        setName(name);
-        try (RandomAccessRead source = new RandomAccessBufferedFileInputStream(inputStream)) {
-            PDFDocumentBleacher documentBleacher = new PDFDocumentBleacher(this);
-            final PDDocument doc = getDocument(source, credentialAccess);
-            final PDDocumentCatalog docCatalog = doc.getDocumentCatalog();
-            if (docCatalog != null) {
-                PDDocumentNameDictionary names = docCatalog.getNames();
-                if (names != null) {
-                    new PDFEmbeddedFileBleacher(this, doc).sanitize(names.getEmbeddedFiles());
-                    if (names.getJavaScript() != null) {
-                        registerThreat(PDFSanitizeSections.NAMES_JAVASCRIPT_ACTION, "Action", null);
-                        names.setJavascript(null);
+        final int threatCount = context.getThreatInformationList().size();
+        long copiedBytes = 0;
+        SanitizeContentPrefilterVerdict prefilterVerdict = SanitizeContentPrefilterVerdict.NOT_APPLIED;
+        String prefilterMatch = null;
+        List<SanitizeContentResult> nestedResultList = new ArrayList<SanitizeContentResult>();
+
+        // the main memory of the scratch file is reserved from the global budget until the document is closed
+        final long mainMemoryBytes = PDFMemoryGovernor.getInstance().reserve(configuration.getPdfMaxMainMemoryBytes());
+        PDDocument doc = null;
+        try {
+            // the section handlers and the object crawl share the visited objects, every object is checked once
+            PDFObjectVisitor objectVisitor = new PDFObjectVisitor();
+            PDFDocumentBleacher documentBleacher = new PDFDocumentBleacher(context, objectVisitor, configuration);
+
+            // the decoded streams of the document are limited against a decompression bomb
+            PDFStreamDecoder streamDecoder = new PDFStreamDecoder(new StreamDecodingGuard(configuration, context, PDFSanitizeSections.DECODING_LIMIT, source.length()));
+
+            // the raw bytes are prefiltered before the document is parsed
+            PDFThreatPrefilter prefilter = null;
+            PDFThreatPrefilter.Scan prefilterScan = null;
+            if (configuration.isPdfPrefilter()) {
+                prefilter = getPrefilter();
+                prefilterScan = prefilter.scan(source);
+            }
+
+            // the document is parsed before the verdict is known, the object streams are found by its cross reference
+            doc = getDocument(context, source, createMemoryUsageSetting(mainMemoryBytes));
+
+            // the objects are fingerprinted before the document is modified
+            PDFIncrementalUpdateWriter incrementalUpdateWriter = null;
+            PDFRawObjectWriter rawObjectWriter = null;
+            if (!context.isScanOnly() && configuration.isPdfIncrementalUpdate()) {
+                incrementalUpdateWriter = new PDFIncrementalUpdateWriter(configuration, doc, source);
+                incrementalUpdateWriter.snapshot();
+            } else if (!context.isScanOnly() && configuration.isPdfCopyUnmodifiedObjects() && !doc.isEncrypted()) {
+                rawObjectWriter = new PDFRawObjectWriter(configuration, doc.getDocument(), source);
+                rawObjectWriter.snapshot();
+            }
+
+            boolean bleach = true;
+            if (prefilterScan != null) {
+                prefilterMatch = prefilterObjectStreams(prefilter, prefilterScan, doc, streamDecoder);
+                if (prefilterMatch != null) {
+                    prefilterVerdict = SanitizeContentPrefilterVerdict.SUSPICIOUS;
+                } else {
+                    LOG.debug("No threat token found, the document is not bleached further.");
+                    prefilterVerdict = SanitizeContentPrefilterVerdict.CLEAN;
+                    bleach = false;
+                }
+            }
+
+            if (bleach) {
+                final PDDocumentCatalog docCatalog = doc.getDocumentCatalog();
+                if (docCatalog != null) {
+                    PDDocumentNameDictionary names = docCatalog.getNames();
+                    if (names != null) {
+                        PDFEmbeddedFileBleacher embeddedFileBleacher = new PDFEmbeddedFileBleacher(context, doc, configuration, streamDecoder);
+                        embeddedFileBleacher.sanitize(names.getEmbeddedFiles());
+                        nestedResultList = embeddedFileBleacher.getNestedResultList();
+                        documentBleacher.sanitizeJavaScript(names);
                     }
+
+                    documentBleacher.sanitize(docCatalog);
                 }
 
-                documentBleacher.sanitize(docCatalog);
-            }
+                // bleach the document
+                documentBleacher.sanitize(doc.getDocumentCatalog().getDocumentOutline());
 
-            // bleach the document
-            documentBleacher.sanitize(doc.getDocumentCatalog().getDocumentOutline());
+                // bleach the objects which are not owned by a section
+                if (configuration.isPdfDeepObjectScan()) {
+                    new PDFObjectBleacher(context, objectVisitor, configuration).sanitizeObjects(doc.getDocument().getObjects());
+                }
 
-            // bleach the additional object
-            PDFObjectBleacher objectBleacher = new PDFObjectBleacher(this);
-            objectBleacher.sanitizeObjects(doc.getDocument().getObjects());
+                documentBleacher.removePageActions();
+            }
 
-            if (!doc.getDocument().isClosed()) {
-                doc.save(outputStream);
+            // in scan only mode the document is not serialized
+            if (!context.isScanOnly() && !doc.getDocument().isClosed()) {
+                if (incrementalUpdateWriter != null) {
+                    // the original revisions are kept, the active content which remains in them is reported
+                    incrementalUpdateWriter.checkOriginalRevisions(context, context.getThreatInformationList().size() > threatCount);
+                }
+
+                if (configuration.isCopyCleanContent() && !doc.isEncrypted() && context.getThreatInformationList().size() == threatCount) {
+                    // the document is clean, the original bytes are written instead to serialize it again
+                    copiedBytes = copy(source, outputStream);
+                } else if (incrementalUpdateWriter != null) {
+                    // only the modified objects are appended to the original revisions
+                    incrementalUpdateWriter.write(outputStream);
+                } else {
+                    if (rawObjectWriter != null) {
+                        // only the modified objects are serialized again, the others are copied from the source
+                        rawObjectWriter.write(outputStream);
+                        copiedBytes = rawObjectWriter.getCopiedBytes();
+                    } else {
+                        doc.save(outputStream);
+                    }
+                }
             }
             doc.close();
+        } catch (SanitizeContentException e) {
+            // the reason of a malformed document or of an exceeded limit is kept
+            if (e.getReason() != SanitizeContentExceptionReason.GENERAL) {
+                throw e;
+            }
+
+            throw new SanitizeContentException(e);
         } catch (IOException e) {
             throw new SanitizeContentException(e);
+        } finally {
+            IOUtils.closeQuietly(doc);
+            PDFMemoryGovernor.getInstance().release(mainMemoryBytes);
         }
 
         SanitizeContentResult result = new SanitizeContentResult();
         result.setContentType(APPLICATION_PDF);
-        result.setModifiedContent(getThreatInformationList() != null && !getThreatInformationList().isEmpty());
-        result.setThreadInformationList(getThreatInformationList());
+        result.setCopiedBytes(copiedBytes);
+        result.setPrefilterVerdict(prefilterVerdict);
+        result.setPrefilterMatch(prefilterMatch);
+        result.setModifiedContent(!context.getThreatInformationList().isEmpty());
+        result.setThreadInformationList(new ArrayList<SanitizeContentThreatInformation>(context.getThreatInformationList()));
+        result.setNestedResultList(nestedResultList);
         return result;
     }
 
 
     /**
-     * Get the pdf document
+     * Get the prefilter, the deep object scan matches the tokens of the registered object threat rules as well
+     *
+     * @return the prefilter
+     */
+    private PDFThreatPrefilter getPrefilter() {
+        if (configuration.isPdfDeepObjectScan()) {
+            return PDFObjectThreatRuleTable.getInstance().getPrefilter();
+        }
+
+        return PDFThreatPrefilter.getInstance();
+    }
+
+
+    /**
+     * Prefilter the decoded object streams in case the raw bytes contain no threat token
+     *
+     * @param prefilter the prefilter
+     * @param rawScan the scan of the raw bytes
+     * @param doc the document
+     * @param streamDecoder the stream decoder of the document
+     * @return the matching token or null
+     * @throws SanitizeContentException In case a decoding limit is exceeded
+     * @throws IOException In case of an I/O error
+     */
+    private String prefilterObjectStreams(PDFThreatPrefilter prefilter, PDFThreatPrefilter.Scan rawScan, PDDocument doc, PDFStreamDecoder streamDecoder) throws IOException {
+        if (rawScan.isMatched() || !rawScan.hasObjectStream()) {
+            return rawScan.getMatch();
+        }
+
+        // a compressed object is referenced in the cross reference by the negative number of its object stream
+        Set<Long> objectStreamNumberSet = new TreeSet<Long>();
+        for (Map.Entry<COSObjectKey, Long> entry : doc.getDocument().getXrefTable().entrySet()) {
+            if (entry.getValue() != null && entry.getValue() < 0) {
+                objectStreamNumberSet.add(-entry.getValue());
+            }
+        }
+
+        for (Long objectStreamNumber : objectStreamNumberSet) {
+            COSObject object = doc.getDocument().getObjectFromPool(new COSObjectKey(objectStreamNumber, 0));
+            COSBase objectStream = null;
+            if (object != null) {
+                objectStream = object.getObject();
+            }
+
+            if (!(objectStream instanceof COSStream)) {
+                continue;
+            }
+
+            try (InputStream inputStream = streamDecoder.createInputStream("object stream " + objectStreamNumber, (COSStream) objectStream)) {
+                PDFThreatPrefilter.Scan scan = prefilter.scan(inputStream);
+                if (scan.isMatched()) {
+                    return scan.getMatch();
+                }
+            } catch (SanitizeContentException e) {
+                // a decompression bomb fails the document, it would be decoded without guard when an object of it is resolved
+                throw e;
+            } catch (IOException e) {
+                // an object stream which can't be decoded is not trusted
+                LOG.debug("Could not decode object stream " + objectStreamNumber + ": " + e.getMessage());
+                return PDFThreatPrefilter.OBJECT_STREAM;
+            }
+        }
+
+        return null;
+    }
+
+
+    /**
+     * Copy the original content
      *
      * @param source the source
-     * @param credentialAccess the credential access
-     * @return the docuemnt
-     * @throws SanitizeContentException In case of an error
+     * @param outputStream the output stream
+     * @return the number of copied bytes
+     * @throws IOException In case of an I/O error
      */
-    private PDDocument getDocument(RandomAccessRead source, final ISanitizeContentCredentialAccess credentialAccess) throws SanitizeContentException {
+    private long copy(RandomAccessRead source, OutputStream outputStream) throws IOException {
+        source.seek(0);
 
-        String credentials = "";
-        if (credentialAccess != null) {
-            credentials = credentialAccess.getCredentials();
+        long count = 0;
+        byte[] buffer = BufferPool.getInstance().acquire();
+        try {
+            int n;
+            while ((n = source.read(buffer)) > 0) {
+                outputStream.write(buffer, 0, n);
+                count += n;
+            }
+        } finally {
+            BufferPool.getInstance().release(buffer);
         }
 
+        return count;
+    }
+
+
+    /**
+     * Create the memory usage setting of a document
+     *
+     * @param mainMemoryBytes the granted main memory
+     * @return the memory usage setting
+     */
+    private MemoryUsageSetting createMemoryUsageSetting(long mainMemoryBytes) {
+        MemoryUsageSetting memoryUsageSetting;
+        if (mainMemoryBytes > 0) {
+            memoryUsageSetting = MemoryUsageSetting.setupMixed(mainMemoryBytes, configuration.getPdfMaxStorageBytes());
+        } else {
+            memoryUsageSetting = MemoryUsageSetting.setupTempFileOnly(configuration.getPdfMaxStorageBytes());
+        }
+
+        File scratchDirectory = configuration.getPdfScratchDirectory();
+        if (scratchDirectory == null) {
+            scratchDirectory = configuration.getTempDirectory();
+        }
+
+        if (scratchDirectory != null) {
+            memoryUsageSetting.setTempDir(scratchDirectory);
+        }
+
+        return memoryUsageSetting;
+    }
+
+
+    /**
+     * Get the pdf document
+     *
+     * @param context the context of the content
+     * @param source the source
+     * @param memoryUsageSetting the memory usage setting
+     * @return the docuemnt
+     * @throws SanitizeContentException In case of an error
+     */
+    private PDDocument getDocument(SanitizeContentContext context, RandomAccessRead source, MemoryUsageSetting memoryUsageSetting) throws SanitizeContentException {
         ScratchFile scratchFile = null;
 
         try {
-            scratchFile = new ScratchFile(MEMORY_USAGE_SETTING);
-            PDDocument doc = readDocument(scratchFile, source, credentials);
+            scratchFile = new ScratchFile(memoryUsageSetting);
+            // an incremental update keeps the protection of the original revisions
+            boolean protect = !context.isScanOnly() && !configuration.isPdfIncrementalUpdate();
+            PDDocument doc = readDocument(scratchFile, source, context.getCredentials(), protect);
             return doc;
         } catch (InvalidPasswordException e) {
             LOG.info("Invalid credentials!");
             IOUtils.closeQuietly(scratchFile);
             throw new SanitizeContentException("Invalid credentials!");
+        } catch (SanitizeContentException e) {
+            IOUtils.closeQuietly(scratchFile);
+            throw e;
         } catch (IOException e) {
             IOUtils.closeQuietly(scratchFile);
             throw new SanitizeContentException(e);
@@ -144,19 +425,55 @@ public class PDFSanitizeContentBleacher extends AbstractSanitizeContentBleacher
      * @param inFile the input file
      * @param source the source
      * @param credentials the credentials
+     * @param protect true if the document is protected again with empty passwords and its current access permission
      * @return the document
      * @throws InvalidPasswordException Invalid credentials
+     * @throws SanitizeContentException In case the document is rejected by the parse policy
      * @throws IOException In case of an I/O error
      */
-    private PDDocument readDocument(ScratchFile inFile, RandomAccessRead source, String credentials) throws InvalidPasswordException, IOException {
+    private PDDocument readDocument(ScratchFile inFile, RandomAccessRead source, String credentials, boolean protect) throws InvalidPasswordException, IOException {
+        SanitizeContentParsePolicy parsePolicy = configuration.getPdfParsePolicy();
+        long budget = -1;
+        if (SanitizeContentParsePolicy.LENIENT_WITH_BUDGET.equals(parsePolicy)) {
+            budget = Math.max(MIN_SCAN_BUDGET, source.length() * configuration.getPdfParseScanBudgetFactor());
+        }
+
+        // the budget only limits the parser, the document reads its source later again, e.g. to save it incrementally
+        ScanBudgetRandomAccessRead parseSource = new ScanBudgetRandomAccessRead(source, budget);
+        final String budgetMessage = "The scan budget of " + budget + " bytes is exceeded by the parser!";
         try {
-            PDFParser parser = new PDFParser(source, credentials, inFile);
-            parser.parse();
+            PDFParser parser = new PDFParser(parseSource, credentials, inFile);
+            parser.setLenient(!SanitizeContentParsePolicy.STRICT.equals(parsePolicy));
+            try {
+                parser.parse();
+            } catch (InvalidPasswordException e) {
+                throw e;
+            } catch (IOException e) {
+                if (parseSource.isBudgetExceeded()) {
+                    throw new SanitizeContentException(budgetMessage, SanitizeContentExceptionReason.SCAN_BUDGET_EXCEEDED);
+                }
+
+                if (SanitizeContentParsePolicy.STRICT.equals(parsePolicy)) {
+                    throw new SanitizeContentException(e, SanitizeContentExceptionReason.MALFORMED_CONTENT);
+                }
+
+                throw e;
+            }
+
+            // the lenient parser may ignore the failed read
+            if (parseSource.isBudgetExceeded()) {
+                throw new SanitizeContentException(budgetMessage, SanitizeContentExceptionReason.SCAN_BUDGET_EXCEEDED);
+            }
+
             PDDocument doc = parser.getPDDocument();
-            doc.protect(new StandardProtectionPolicy("", "", doc.getCurrentAccessPermission()));
+            if (protect) {
+                doc.protect(new StandardProtectionPolicy("", "", doc.getCurrentAccessPermission()));
+            }
+
             return doc;
         } finally {
-            source.rewind((int) source.getPosition());
+            parseSource.setBudget(-1);
+            source.seek(0);
         }
     }
 }
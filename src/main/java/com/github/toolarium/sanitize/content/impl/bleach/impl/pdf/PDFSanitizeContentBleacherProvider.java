@@ -0,0 +1,49 @@
+/*
+ * PDFSanitizeContentBleacherProvider.java
+ *
+ * Copyright by toolarium, all rights reserved.
+ */
+package com.github.toolarium.sanitize.content.impl.bleach.impl.pdf;
+
+import com.github.toolarium.sanitize.content.dto.SanitizeContentConfiguration;
+import com.github.toolarium.sanitize.content.impl.bleach.ISanitizeContentBleacher;
+import com.github.toolarium.sanitize.content.impl.bleach.ISanitizeContentBleacherProvider;
+import java.util.Collections;
+import java.util.List;
+
+
+/**
+ * PDF content bleacher provider. It doesn't reference PDFBox, the {@link PDFSanitizeContentBleacher} is loaded on the first PDF content.
+ *
+ * @author Patrick Meier
+ */
+public class PDFSanitizeContentBleacherProvider implements ISanitizeContentBleacherProvider {
+    private static final byte[] PDF_MAGIC = new byte[]{37, 80, 68, 70};
+
+
+    /**
+     * @see com.github.toolarium.sanitize.content.impl.bleach.ISanitizeContentBleacherProvider#getContentType()
+     */
+    @Override
+    public String getContentType() {
+        return PDFSanitizeContentBleacher.APPLICATION_PDF;
+    }
+
+
+    /**
+     * @see com.github.toolarium.sanitize.content.impl.bleach.ISanitizeContentBleacherProvider#getMagicSignatures()
+     */
+    @Override
+    public List<byte[]> getMagicSignatures() {
+        return Collections.singletonList(PDF_MAGIC.clone());
+    }
+
+
+    /**
+     * @see com.github.toolarium.sanitize.content.impl.bleach.ISanitizeContentBleacherProvider#createBleacher(com.github.toolarium.sanitize.content.dto.SanitizeContentConfiguration)
+     */
+    @Override
+    public ISanitizeContentBleacher createBleacher(SanitizeContentConfiguration configuration) {
+        return new PDFSanitizeContentBleacher(configuration);
+    }
+}
@@ -19,5 +19,12 @@ public enum PDFSanitizeSections implements ISanitizeContentThreatRegistry.ISecti
     DOCUMENT_CATALOG_ACTION,
     DOCUMENT_OUTLINE_ITEM_ACTION,
     ANNOTATION_ACTION,
-    NAMES_JAVASCRIPT_ACTION;
+    NAMES_JAVASCRIPT_ACTION,
+    OBJECT_ACTION,
+    OBJECT_LIMIT,
+    NESTING_LIMIT,
+    ORIGINAL_REVISION,
+    DECODING_LIMIT,
+    ATTACHMENT_POLICY,
+    EMBEDDED_FILE;
 }
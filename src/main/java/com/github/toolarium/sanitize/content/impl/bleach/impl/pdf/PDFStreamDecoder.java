@@ -0,0 +1,111 @@
+/*
+ * PDFStreamDecoder.java
+ *
+ * Copyright by toolarium, all rights reserved.
+ */
+package com.github.toolarium.sanitize.content.impl.bleach.impl.pdf;
+
+import com.github.toolarium.sanitize.content.impl.bleach.util.StreamDecodingGuard;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.zip.InflaterInputStream;
+import org.apache.pdfbox.cos.COSArray;
+import org.apache.pdfbox.cos.COSBase;
+import org.apache.pdfbox.cos.COSDictionary;
+import org.apache.pdfbox.cos.COSName;
+import org.apache.pdfbox.cos.COSStream;
+
+
+/**
+ * Decodes the streams of a document through the {@link StreamDecodingGuard}. PDFBox 2 decodes a stream completely into the scratch
+ * file before the first byte can be read, therefore a stream which is only flate encoded without predictor is inflated here while it
+ * is read and the decoding is aborted as soon as a limit is crossed. Any other stream is decoded by PDFBox, its decoded content is
+ * held by the scratch file and the guard aborts as soon as it is read.
+ *
+ * <p>The decoder is used for the embedded files and for the object streams of the prefilter. A stream which PDFBox decodes itself is
+ * not guarded, e.g. an object stream when an object of it is resolved without prefilter. Its decoded content is held by the scratch
+ * file and is limited by the maximum storage of it.</p>
+ *
+ * @author Patrick Meier
+ */
+public class PDFStreamDecoder {
+    private final StreamDecodingGuard decodingGuard;
+
+
+    /**
+     * Constructor for PDFStreamDecoder
+     *
+     * @param decodingGuard the decoding guard of the document
+     */
+    public PDFStreamDecoder(StreamDecodingGuard decodingGuard) {
+        this.decodingGuard = decodingGuard;
+    }
+
+
+    /**
+     * Create the decoded input stream of a stream
+     *
+     * @param name the name of the stream
+     * @param stream the stream
+     * @return the guarded decoded input stream
+     * @throws IOException In case of an I/O error
+     */
+    public InputStream createInputStream(String name, COSStream stream) throws IOException {
+        COSBase filters = stream.getFilters();
+        if (filters == null) {
+            return decodingGuard.guard(name, stream.createRawInputStream(), stream.getLength());
+        }
+
+        if (isStreamingInflate(stream, filters)) {
+            return decodingGuard.guard(name, new InflaterInputStream(stream.createRawInputStream()), stream.getLength());
+        }
+
+        return decodingGuard.guard(name, stream.createInputStream(), stream.getLength());
+    }
+
+
+    /**
+     * Check if a stream can be inflated while it is read, it has the only filter flate and no predictor
+     *
+     * @param stream the stream
+     * @param filters the filters
+     * @return true if the stream can be inflated while it is read
+     */
+    private boolean isStreamingInflate(COSStream stream, COSBase filters) {
+        COSBase filter = filters;
+        if (filters instanceof COSArray) {
+            if (((COSArray) filters).size() != 1) {
+                return false;
+            }
+
+            filter = ((COSArray) filters).getObject(0);
+        }
+
+        if (!COSName.FLATE_DECODE.equals(filter) && !COSName.FLATE_DECODE_ABBREVIATION.equals(filter)) {
+            return false;
+        }
+
+        COSBase decodeParms = stream.getDictionaryObject(COSName.DECODE_PARMS);
+        if (decodeParms == null) {
+            decodeParms = stream.getDictionaryObject(COSName.DP);
+        }
+
+        if (decodeParms instanceof COSArray) {
+            COSArray decodeParmsArray = (COSArray) decodeParms;
+            if (decodeParmsArray.size() > 1) {
+                return false;
+            }
+
+            decodeParms = null;
+            if (decodeParmsArray.size() == 1) {
+                decodeParms = decodeParmsArray.getObject(0);
+            }
+        }
+
+        if (decodeParms instanceof COSDictionary) {
+            return ((COSDictionary) decodeParms).getInt(COSName.PREDICTOR, 1) <= 1;
+        }
+
+        return true;
+    }
+}
@@ -0,0 +1,355 @@
+/*
+ * PDFThreatPrefilter.java
+ *
+ * Copyright by toolarium, all rights reserved.
+ */
+package com.github.toolarium.sanitize.content.impl.bleach.impl.pdf;
+
+import com.github.toolarium.sanitize.content.impl.bleach.util.BufferPool;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.List;
+import org.apache.pdfbox.io.RandomAccessRead;
+
+
+/**
+ * The raw byte prefilter of the PDF bleacher. The name tokens are compiled into an Aho-Corasick automaton, the bytes are matched in one
+ * pass without parsing them. A token only matches a complete name, e.g. <code>/A</code> does not match <code>/Annots</code>. A name
+ * with a <code>#</code> escape can hide any token, it is reported as match. The dictionaries in a compressed object stream are not
+ * visible in the raw bytes, the <code>/ObjStm</code> token signals that the decoded object streams have to be scanned as well.
+ *
+ * @author Patrick Meier
+ */
+public final class PDFThreatPrefilter {
+    /** The match of a name with a hex escape */
+    public static final String ESCAPED_NAME = "#";
+
+    /** The token of an object stream */
+    public static final String OBJECT_STREAM = "/ObjStm";
+
+    /** The name tokens of the section handlers */
+    public static final List<String> DEFAULT_TOKENS = Collections.unmodifiableList(Arrays.asList(
+            "/A", "/AA", "/JS", "/JavaScript", "/OpenAction", "/Launch", "/URI", "/EmbeddedFile", "/EmbeddedFiles"));
+
+    private final List<String> tokenList;
+    private final int[][] transitions;
+    private final int[] output;
+
+
+    /**
+     * Private class, the only instance of the singelton which will be created by accessing the holder class.
+     *
+     * @author Patrick Meier
+     */
+    private static class HOLDER {
+        static final PDFThreatPrefilter INSTANCE = new PDFThreatPrefilter(DEFAULT_TOKENS);
+    }
+
+
+    /**
+     * Constructor for PDFThreatPrefilter
+     *
+     * @param tokenList the name tokens including the leading slash
+     */
+    public PDFThreatPrefilter(List<String> tokenList) {
+        this.tokenList = new ArrayList<String>();
+        for (String token : tokenList) {
+            if (token != null && token.length() > 1 && token.charAt(0) == '/' && !this.tokenList.contains(token)) {
+                this.tokenList.add(token);
+            }
+        }
+
+        if (!this.tokenList.contains(OBJECT_STREAM)) {
+            this.tokenList.add(OBJECT_STREAM);
+        }
+
+        // trie
+        List<int[]> transitionList = new ArrayList<int[]>();
+        List<Integer> outputList = new ArrayList<Integer>();
+        transitionList.add(newState());
+        outputList.add(-1);
+        for (int i = 0; i < this.tokenList.size(); i++) {
+            int state = 0;
+            for (byte b : this.tokenList.get(i).getBytes(StandardCharsets.US_ASCII)) {
+                int c = b & 0xFF;
+                if (transitionList.get(state)[c] < 0) {
+                    transitionList.get(state)[c] = transitionList.size();
+                    transitionList.add(newState());
+                    outputList.add(-1);
+                }
+
+                state = transitionList.get(state)[c];
+            }
+
+            outputList.set(state, i);
+        }
+
+        this.transitions = transitionList.toArray(new int[transitionList.size()][]);
+        this.output = new int[outputList.size()];
+        for (int i = 0; i < output.length; i++) {
+            output[i] = outputList.get(i);
+        }
+
+        // the failure links are resolved into the transitions, every token starts with a delimiter and can't be the suffix of another
+        // token, so a state has at most one output
+        int[] failure = new int[transitions.length];
+        Deque<Integer> queue = new ArrayDeque<Integer>();
+        for (int c = 0; c < 256; c++) {
+            if (transitions[0][c] < 0) {
+                transitions[0][c] = 0;
+            } else {
+                failure[transitions[0][c]] = 0;
+                queue.add(transitions[0][c]);
+            }
+        }
+
+        while (!queue.isEmpty()) {
+            int state = queue.poll();
+            for (int c = 0; c < 256; c++) {
+                int next = transitions[state][c];
+                if (next < 0) {
+                    transitions[state][c] = transitions[failure[state]][c];
+                } else {
+                    failure[next] = transitions[failure[state]][c];
+                    queue.add(next);
+                }
+            }
+        }
+    }
+
+
+    /**
+     * Get the instance with the default tokens
+     *
+     * @return the instance
+     */
+    public static PDFThreatPrefilter getInstance() {
+        return HOLDER.INSTANCE;
+    }
+
+
+    /**
+     * Get the name tokens
+     *
+     * @return the name tokens
+     */
+    public List<String> getTokenList() {
+        return Collections.unmodifiableList(tokenList);
+    }
+
+
+    /**
+     * Start a new scan
+     *
+     * @return the scan
+     */
+    public Scan newScan() {
+        return new Scan();
+    }
+
+
+    /**
+     * Scan the source from the beginning, the source is positioned at the beginning afterwards
+     *
+     * @param source the source
+     * @return the scan
+     * @throws IOException In case of an I/O error
+     */
+    public Scan scan(RandomAccessRead source) throws IOException {
+        Scan scan = newScan();
+        source.seek(0);
+
+        byte[] buffer = BufferPool.getInstance().acquire();
+        try {
+            int n;
+            while (!scan.isMatched() && (n = source.read(buffer)) > 0) {
+                scan.update(buffer, 0, n);
+            }
+        } finally {
+            BufferPool.getInstance().release(buffer);
+            source.seek(0);
+        }
+
+        scan.finish();
+        return scan;
+    }
+
+
+    /**
+     * Scan an input stream, the stream is not closed
+     *
+     * @param inputStream the input stream
+     * @return the scan
+     * @throws IOException In case of an I/O error
+     */
+    public Scan scan(InputStream inputStream) throws IOException {
+        Scan scan = newScan();
+
+        byte[] buffer = BufferPool.getInstance().acquire();
+        try {
+            int n;
+            while (!scan.isMatched() && (n = inputStream.read(buffer)) > 0) {
+                scan.update(buffer, 0, n);
+            }
+        } finally {
+            BufferPool.getInstance().release(buffer);
+        }
+
+        scan.finish();
+        return scan;
+    }
+
+
+    /**
+     * Create a state without transitions
+     *
+     * @return the state
+     */
+    private static int[] newState() {
+        int[] state = new int[256];
+        Arrays.fill(state, -1);
+        return state;
+    }
+
+
+    /**
+     * Check if a byte is a white space or a delimiter which terminates a name
+     *
+     * @param c the byte
+     * @return true if it terminates a name
+     */
+    private static boolean isNameTerminator(int c) {
+        switch (c) {
+            case 0: case '\t': case '\n': case '\f': case '\r': case ' ':
+            case '(': case ')': case '<': case '>': case '[': case ']': case '{': case '}': case '/': case '%':
+                return true;
+            default:
+                return false;
+        }
+    }
+
+
+    /**
+     * Defines the state of one scan. A scan is not thread safe.
+     */
+    public final class Scan {
+        private int state;
+        private int pendingToken;
+        private boolean inName;
+        private String match;
+        private boolean objectStream;
+
+
+        /**
+         * Constructor for Scan
+         */
+        Scan() {
+            state = 0;
+            pendingToken = -1;
+            inName = false;
+            match = null;
+            objectStream = false;
+        }
+
+
+        /**
+         * Scan the next bytes
+         *
+         * @param buffer the buffer
+         * @param offset the offset
+         * @param length the length
+         */
+        public void update(byte[] buffer, int offset, int length) {
+            for (int i = offset; i < offset + length && match == null; i++) {
+                int c = buffer[i] & 0xFF;
+
+                // a token matches if the name ends after it
+                if (pendingToken >= 0) {
+                    if (isNameTerminator(c)) {
+                        found(pendingToken);
+                    }
+
+                    pendingToken = -1;
+                }
+
+                if (c == '/') {
+                    inName = true;
+                } else if (isNameTerminator(c)) {
+                    inName = false;
+                } else if (c == '#' && inName) {
+                    match = ESCAPED_NAME;
+                }
+
+                state = transitions[state][c];
+                if (output[state] >= 0) {
+                    pendingToken = output[state];
+                }
+            }
+        }
+
+
+        /**
+         * Finish the scan, the end of the data terminates a name
+         */
+        public void finish() {
+            if (pendingToken >= 0 && match == null) {
+                found(pendingToken);
+            }
+
+            pendingToken = -1;
+            state = 0;
+            inName = false;
+        }
+
+
+        /**
+         * Check if a token or an escaped name matched
+         *
+         * @return true if a token or an escaped name matched
+         */
+        public boolean isMatched() {
+            return match != null;
+        }
+
+
+        /**
+         * Get the first matching token
+         *
+         * @return the first matching token, {@link PDFThreatPrefilter#ESCAPED_NAME} or null
+         */
+        public String getMatch() {
+            return match;
+        }
+
+
+        /**
+         * Check if the data contains an object stream
+         *
+         * @return true if the data contains an object stream
+         */
+        public boolean hasObjectStream() {
+            return objectStream;
+        }
+
+
+        /**
+         * Register a matching token
+         *
+         * @param token the index of the token
+         */
+        private void found(int token) {
+            String name = tokenList.get(token);
+            if (OBJECT_STREAM.equals(name)) {
+                objectStream = true;
+            } else {
+                match = name;
+            }
+        }
+    }
+}
@@ -0,0 +1,228 @@
+/*
+ * ScanBudgetRandomAccessRead.java
+ *
+ * Copyright by toolarium, all rights reserved.
+ */
+package com.github.toolarium.sanitize.content.impl.bleach.impl.pdf;
+
+import java.io.IOException;
+import org.apache.pdfbox.io.RandomAccessRead;
+
+
+/**
+ * Limits the number of bytes which can be read from a {@link RandomAccessRead}. A parser reads a well-formed document about once, the
+ * repair of a broken cross reference scans the whole document again and again. As soon as the budget is exceeded every further read
+ * fails, even if the parser ignores the first failure.
+ *
+ * @author Patrick Meier
+ */
+public class ScanBudgetRandomAccessRead implements RandomAccessRead {
+    private final RandomAccessRead source;
+    private long budget;
+    private long readBytes;
+    private boolean budgetExceeded;
+
+
+    /**
+     * Constructor for ScanBudgetRandomAccessRead
+     *
+     * @param source the source
+     * @param budget the maximum number of bytes which can be read, a negative budget is unlimited
+     */
+    public ScanBudgetRandomAccessRead(RandomAccessRead source, long budget) {
+        this.source = source;
+        this.budget = budget;
+        this.readBytes = 0;
+        this.budgetExceeded = false;
+    }
+
+
+    /**
+     * Set the budget, e.g. a negative budget as soon as the document is parsed
+     *
+     * @param budget the maximum number of bytes which can be read, a negative budget is unlimited
+     */
+    public void setBudget(long budget) {
+        this.budget = budget;
+    }
+
+
+    /**
+     * Get the number of read bytes
+     *
+     * @return the number of read bytes
+     */
+    public long getReadBytes() {
+        return readBytes;
+    }
+
+
+    /**
+     * Check if the budget was exceeded
+     *
+     * @return true if the budget was exceeded
+     */
+    public boolean isBudgetExceeded() {
+        return budgetExceeded;
+    }
+
+
+    /**
+     * @see org.apache.pdfbox.io.RandomAccessRead#read()
+     */
+    @Override
+    public int read() throws IOException {
+        checkBudget();
+        int b = source.read();
+        if (b >= 0) {
+            consume(1);
+        }
+
+        return b;
+    }
+
+
+    /**
+     * @see org.apache.pdfbox.io.RandomAccessRead#read(byte[])
+     */
+    @Override
+    public int read(byte[] b) throws IOException {
+        return read(b, 0, b.length);
+    }
+
+
+    /**
+     * @see org.apache.pdfbox.io.RandomAccessRead#read(byte[], int, int)
+     */
+    @Override
+    public int read(byte[] b, int offset, int length) throws IOException {
+        checkBudget();
+        int n = source.read(b, offset, length);
+        if (n > 0) {
+            consume(n);
+        }
+
+        return n;
+    }
+
+
+    /**
+     * @see org.apache.pdfbox.io.RandomAccessRead#getPosition()
+     */
+    @Override
+    public long getPosition() throws IOException {
+        return source.getPosition();
+    }
+
+
+    /**
+     * @see org.apache.pdfbox.io.RandomAccessRead#seek(long)
+     */
+    @Override
+    public void seek(long position) throws IOException {
+        source.seek(position);
+    }
+
+
+    /**
+     * @see org.apache.pdfbox.io.RandomAccessRead#length()
+     */
+    @Override
+    public long length() throws IOException {
+        return source.length();
+    }
+
+
+    /**
+     * @see org.apache.pdfbox.io.RandomAccessRead#isClosed()
+     */
+    @Override
+    public boolean isClosed() {
+        return source.isClosed();
+    }
+
+
+    /**
+     * @see org.apache.pdfbox.io.RandomAccessRead#peek()
+     */
+    @Override
+    public int peek() throws IOException {
+        return source.peek();
+    }
+
+
+    /**
+     * @see org.apache.pdfbox.io.RandomAccessRead#rewind(int)
+     */
+    @Override
+    public void rewind(int bytes) throws IOException {
+        source.rewind(bytes);
+    }
+
+
+    /**
+     * @see org.apache.pdfbox.io.RandomAccessRead#readFully(int)
+     */
+    @Override
+    @Deprecated
+    public byte[] readFully(int length) throws IOException {
+        checkBudget();
+        byte[] b = source.readFully(length);
+        consume(b.length);
+        return b;
+    }
+
+
+    /**
+     * @see org.apache.pdfbox.io.RandomAccessRead#isEOF()
+     */
+    @Override
+    public boolean isEOF() throws IOException {
+        return source.isEOF();
+    }
+
+
+    /**
+     * @see org.apache.pdfbox.io.RandomAccessRead#available()
+     */
+    @Override
+    public int available() throws IOException {
+        return source.available();
+    }
+
+
+    /**
+     * @see java.io.Closeable#close()
+     */
+    @Override
+    public void close() throws IOException {
+        source.close();
+    }
+
+
+    /**
+     * Check if the budget is already exceeded
+     *
+     * @throws IOException In case the budget is exceeded
+     */
+    private void checkBudget() throws IOException {
+        if (budgetExceeded && budget >= 0) {
+            throw new IOException("Scan budget of " + budget + " bytes exceeded!");
+        }
+    }
+
+
+    /**
+     * Consume read bytes of the budget
+     *
+     * @param length the number of read bytes
+     * @throws IOException In case the budget is exceeded
+     */
+    private void consume(int length) throws IOException {
+        readBytes += length;
+        if (budget >= 0 && readBytes > budget) {
+            budgetExceeded = true;
+            throw new IOException("Scan budget of " + budget + " bytes exceeded!");
+        }
+    }
+}
@@ -5,12 +5,23 @@
  */
 package com.github.toolarium.sanitize.content.impl.bleach.impl.pdf.elements;
 
+import com.github.toolarium.sanitize.content.dto.SanitizeContentConfiguration;
 import com.github.toolarium.sanitize.content.impl.ISanitizeContentThreatRegistry;
 import com.github.toolarium.sanitize.content.impl.bleach.impl.pdf.PDFContentUtil;
 import com.github.toolarium.sanitize.content.impl.bleach.impl.pdf.PDFSanitizeSections;
 import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
 import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import org.apache.pdfbox.cos.COSArray;
+import org.apache.pdfbox.cos.COSBase;
+import org.apache.pdfbox.cos.COSDictionary;
+import org.apache.pdfbox.cos.COSName;
 import org.apache.pdfbox.pdmodel.PDDocumentCatalog;
+import org.apache.pdfbox.pdmodel.PDDocumentNameDictionary;
 import org.apache.pdfbox.pdmodel.PDPage;
 import org.apache.pdfbox.pdmodel.PDPageTree;
 import org.apache.pdfbox.pdmodel.common.PDDestinationOrAction;
@@ -37,6 +48,9 @@ import org.slf4j.LoggerFactory;
 public class PDFDocumentBleacher {
     private static final Logger LOG = LoggerFactory.getLogger(PDFDocumentBleacher.class);
     private ISanitizeContentThreatRegistry threatRegistry;
+    private PDFObjectVisitor objectVisitor;
+    private int parallelPageThreshold;
+    private List<Runnable> pageActionRemoverList;
 
 
     /**
@@ -45,7 +59,33 @@ public class PDFDocumentBleacher {
      * @param threatRegistry the thread registry
      */
     public PDFDocumentBleacher(ISanitizeContentThreatRegistry threatRegistry) {
+        this(threatRegistry, new PDFObjectVisitor());
+    }
+
+
+    /**
+     * Constructor for PDFDocumentBleacher
+     *
+     * @param threatRegistry the thread registry
+     * @param objectVisitor the object visitor which is shared with the {@link PDFObjectBleacher}
+     */
+    public PDFDocumentBleacher(ISanitizeContentThreatRegistry threatRegistry, PDFObjectVisitor objectVisitor) {
+        this(threatRegistry, objectVisitor, new SanitizeContentConfiguration());
+    }
+
+
+    /**
+     * Constructor for PDFDocumentBleacher
+     *
+     * @param threatRegistry the thread registry
+     * @param objectVisitor the object visitor which is shared with the {@link PDFObjectBleacher}
+     * @param configuration the configuration
+     */
+    public PDFDocumentBleacher(ISanitizeContentThreatRegistry threatRegistry, PDFObjectVisitor objectVisitor, SanitizeContentConfiguration configuration) {
         this.threatRegistry = threatRegistry;
+        this.objectVisitor = objectVisitor;
+        this.parallelPageThreshold = configuration.getPdfParallelPageThreshold();
+        this.pageActionRemoverList = new ArrayList<Runnable>();
     }
 
 
@@ -59,6 +99,7 @@ public class PDFDocumentBleacher {
             return;
         }
 
+        objectVisitor.visit(docCatalog.getCOSObject());
         sanitizeOpenAction(docCatalog);
         sanitizeDocumentActions(docCatalog.getActions());
         sanitizePageActions(docCatalog.getPages());
@@ -79,14 +120,44 @@ public class PDFDocumentBleacher {
         for (Iterator<PDOutlineItem> it = documentOutline.children().iterator(); it.hasNext();) {
             PDOutlineItem outlineItem = it.next();
 
+            // a broken sibling chain can be cyclic
+            if (!objectVisitor.visit(outlineItem.getCOSObject())) {
+                break;
+            }
+
             if (outlineItem.getAction() != null) {
-                threatRegistry.registerThreat(PDFSanitizeSections.DOCUMENT_OUTLINE_ITEM_ACTION, "Action", PDFContentUtil.getInstance().convert(outlineItem.getAction()));
-                outlineItem.setAction(null);
+                registerThreat(PDFSanitizeSections.DOCUMENT_OUTLINE_ITEM_ACTION, "Action", outlineItem.getAction());
+                if (!threatRegistry.isScanOnly()) {
+                    outlineItem.setAction(null);
+                }
             }
         }
     }
 
 
+    /**
+     * Sanitize the document level java scripts
+     *
+     * @param names the names of the document
+     */
+    public void sanitizeJavaScript(PDDocumentNameDictionary names) {
+        if (names == null) {
+            return;
+        }
+
+        objectVisitor.visit(names.getCOSObject());
+        if (names.getJavaScript() == null) {
+            return;
+        }
+
+        visitNameTree(names.getJavaScript().getCOSObject());
+        threatRegistry.registerThreat(PDFSanitizeSections.NAMES_JAVASCRIPT_ACTION, "Action", null);
+        if (!threatRegistry.isScanOnly()) {
+            names.setJavascript(null);
+        }
+    }
+
+
     /**
      * Sanitize open action
      *
@@ -99,9 +170,11 @@ public class PDFDocumentBleacher {
                 return;
             }
 
-            threatRegistry.registerThreat(PDFSanitizeSections.DOCUMENT_CATALOG_ACTION, "OpenAction", PDFContentUtil.getInstance().convert(openAction));
+            registerThreat(PDFSanitizeSections.DOCUMENT_CATALOG_ACTION, "OpenAction", openAction);
 
-            docCatalog.setOpenAction(null);
+            if (!threatRegistry.isScanOnly()) {
+                docCatalog.setOpenAction(null);
+            }
         } catch (IOException e) {
             // NOP
         }
@@ -120,28 +193,38 @@ public class PDFDocumentBleacher {
 
         LOG.debug("Checking additional actions...");
         if (documentActions.getDP() != null) {
-            threatRegistry.registerThreat(PDFSanitizeSections.DOCUMENT_CATALOG_ADDITIONAL_ACTION, "Action after printing", PDFContentUtil.getInstance().convert(documentActions.getDP()));
-            documentActions.setDP(null);
+            registerThreat(PDFSanitizeSections.DOCUMENT_CATALOG_ADDITIONAL_ACTION, "Action after printing", documentActions.getDP());
+            if (!threatRegistry.isScanOnly()) {
+                documentActions.setDP(null);
+            }
         }
 
         if (documentActions.getDS() != null) {
-            threatRegistry.registerThreat(PDFSanitizeSections.DOCUMENT_CATALOG_ADDITIONAL_ACTION, "Action after saving", PDFContentUtil.getInstance().convert(documentActions.getDS()));
-            documentActions.setDS(null);
+            registerThreat(PDFSanitizeSections.DOCUMENT_CATALOG_ADDITIONAL_ACTION, "Action after saving", documentActions.getDS());
+            if (!threatRegistry.isScanOnly()) {
+                documentActions.setDS(null);
+            }
         }
 
         if (documentActions.getWC() != null) {
-            threatRegistry.registerThreat(PDFSanitizeSections.DOCUMENT_CATALOG_ADDITIONAL_ACTION, "Action before closing", PDFContentUtil.getInstance().convert(documentActions.getWC()));
-            documentActions.setWC(null);
+            registerThreat(PDFSanitizeSections.DOCUMENT_CATALOG_ADDITIONAL_ACTION, "Action before closing", documentActions.getWC());
+            if (!threatRegistry.isScanOnly()) {
+                documentActions.setWC(null);
+            }
         }
 
         if (documentActions.getWP() != null) {
-            threatRegistry.registerThreat(PDFSanitizeSections.DOCUMENT_CATALOG_ADDITIONAL_ACTION, "Action before printing", PDFContentUtil.getInstance().convert(documentActions.getWP()));
-            documentActions.setWP(null);
+            registerThreat(PDFSanitizeSections.DOCUMENT_CATALOG_ADDITIONAL_ACTION, "Action before printing", documentActions.getWP());
+            if (!threatRegistry.isScanOnly()) {
+                documentActions.setWP(null);
+            }
         }
 
         if (documentActions.getWS() != null) {
-            threatRegistry.registerThreat(PDFSanitizeSections.DOCUMENT_CATALOG_ADDITIONAL_ACTION, "Action before saving", PDFContentUtil.getInstance().convert(documentActions.getWS()));
-            documentActions.setWS(null);
+            registerThreat(PDFSanitizeSections.DOCUMENT_CATALOG_ADDITIONAL_ACTION, "Action before saving", documentActions.getWS());
+            if (!threatRegistry.isScanOnly()) {
+                documentActions.setWS(null);
+            }
         }
     }
 
@@ -156,21 +239,52 @@ public class PDFDocumentBleacher {
             return;
         }
 
+        if (parallelPageThreshold > 0 && pages.getCount() >= parallelPageThreshold) {
+            LOG.debug("Checking Pages Actions in parallel");
+            new PDFPageTreeBleacher(this, ForkJoinPool.commonPool()).sanitize(pages);
+            return;
+        }
+
         LOG.debug("Checking Pages Actions");
         for (PDPage page : pages) {
-            sanitizePageActions(page.getActions());
+            if (!objectVisitor.visit(page.getCOSObject())) {
+                continue;
+            }
 
-            try {
-                for (PDAnnotation annotation : page.getAnnotations()) {
-                    sanitizeAnnotation(annotation);
-                }
-            } catch (IOException e) {
-                // NOP
+            sanitizePage(page);
+        }
+    }
+
+
+    /**
+     * Sanitize the actions and the annotations of a page
+     *
+     * @param page the page
+     */
+    protected void sanitizePage(PDPage page) {
+        sanitizePageActions(getPageActions(page));
+
+        try {
+            for (PDAnnotation annotation : page.getAnnotations()) {
+                sanitizeAnnotation(annotation);
             }
+        } catch (IOException e) {
+            // NOP
         }
     }
 
 
+    /**
+     * Get the additional actions of a page
+     *
+     * @param page the page
+     * @return the additional actions
+     */
+    protected PDPageAdditionalActions getPageActions(PDPage page) {
+        return page.getActions();
+    }
+
+
     /**
      * Sanitize page action
      *
@@ -182,15 +296,8 @@ public class PDFDocumentBleacher {
         }
 
         LOG.debug("Checking page actions...");
-        if (pageActions.getC() != null) {
-            threatRegistry.registerThreat(PDFSanitizeSections.PAGE_ACTION, "Action when page is closed", PDFContentUtil.getInstance().convert(pageActions.getC()));
-            pageActions.setC(null);
-        }
-
-        if (pageActions.getO() != null) {
-            threatRegistry.registerThreat(PDFSanitizeSections.PAGE_ACTION, "Action when page is opened", PDFContentUtil.getInstance().convert(pageActions.getO()));
-            pageActions.setO(null);
-        }
+        removeAction(PDFSanitizeSections.PAGE_ACTION, "Action when page is closed", pageActions.getC(), () -> pageActions.setC(null));
+        removeAction(PDFSanitizeSections.PAGE_ACTION, "Action when page is opened", pageActions.getO(), () -> pageActions.setO(null));
     }
 
 
@@ -216,6 +323,9 @@ public class PDFDocumentBleacher {
 
                 // sanitize field actions
                 sanitizeFieldAdditionalActions(field.getActions());
+
+                // a terminal field and its widget can share the dictionary, the field is marked after its widgets are checked
+                objectVisitor.visit(field.getCOSObject());
             }
         }
     }
@@ -233,23 +343,31 @@ public class PDFDocumentBleacher {
 
         LOG.debug("Checking field actions...");
         if (fieldActions.getC() != null) {
-            threatRegistry.registerThreat(PDFSanitizeSections.FORM_ADDITIONAL_ACTION, "Action on value change", PDFContentUtil.getInstance().convert(fieldActions.getC()));
-            fieldActions.setC(null);
+            registerThreat(PDFSanitizeSections.FORM_ADDITIONAL_ACTION, "Action on value change", fieldActions.getC());
+            if (!threatRegistry.isScanOnly()) {
+                fieldActions.setC(null);
+            }
         }
 
         if (fieldActions.getF() != null) {
-            threatRegistry.registerThreat(PDFSanitizeSections.FORM_ADDITIONAL_ACTION, "Action to format the value", PDFContentUtil.getInstance().convert(fieldActions.getF()));
-            fieldActions.setF(null);
+            registerThreat(PDFSanitizeSections.FORM_ADDITIONAL_ACTION, "Action to format the value", fieldActions.getF());
+            if (!threatRegistry.isScanOnly()) {
+                fieldActions.setF(null);
+            }
         }
 
         if (fieldActions.getK() != null) {
-            threatRegistry.registerThreat(PDFSanitizeSections.FORM_ADDITIONAL_ACTION, "Action when the user types a keystoke", PDFContentUtil.getInstance().convert(fieldActions.getK()));
-            fieldActions.setK(null);
+            registerThreat(PDFSanitizeSections.FORM_ADDITIONAL_ACTION, "Action when the user types a keystoke", fieldActions.getK());
+            if (!threatRegistry.isScanOnly()) {
+                fieldActions.setK(null);
+            }
         }
 
         if (fieldActions.getV() != null) {
-            threatRegistry.registerThreat(PDFSanitizeSections.FORM_ADDITIONAL_ACTION, "Action when the field's value is changed", PDFContentUtil.getInstance().convert(fieldActions.getV()));
-            fieldActions.setV(null);
+            registerThreat(PDFSanitizeSections.FORM_ADDITIONAL_ACTION, "Action when the field's value is changed", fieldActions.getV());
+            if (!threatRegistry.isScanOnly()) {
+                fieldActions.setV(null);
+            }
         }
     }
 
@@ -264,20 +382,24 @@ public class PDFDocumentBleacher {
             return;
         }
 
+        // only links and widgets are owned by this section, the other annotations are left to the object crawl
+        if (!(annotation instanceof PDAnnotationLink) && !(annotation instanceof PDAnnotationWidget)) {
+            return;
+        }
+
+        // a widget is referenced by the page and by the form field, it is only checked once
+        if (!visitAnnotation(annotation)) {
+            return;
+        }
+
         if (annotation instanceof PDAnnotationLink) {
             PDAnnotationLink annotationLink = (PDAnnotationLink) annotation;
-            if (annotationLink.getAction() != null) {
-                threatRegistry.registerThreat(PDFSanitizeSections.ANNOTATION_ACTION, "External link", PDFContentUtil.getInstance().convert(annotationLink.getAction()));
-                annotationLink.setAction(null);
-            }
+            removeAction(PDFSanitizeSections.ANNOTATION_ACTION, "External link", annotationLink.getAction(), () -> annotationLink.setAction(null));
         }
 
         if (annotation instanceof PDAnnotationWidget) {
             PDAnnotationWidget annotationWidget = (PDAnnotationWidget) annotation;
-            if (annotationWidget.getAction() != null) {
-                threatRegistry.registerThreat(PDFSanitizeSections.ANNOTATION_ACTION, "External widget", PDFContentUtil.getInstance().convert(annotationWidget.getAction()));
-                annotationWidget.setAction(null);
-            }
+            removeAction(PDFSanitizeSections.ANNOTATION_ACTION, "External widget", annotationWidget.getAction(), () -> annotationWidget.setAction(null));
 
             sanitizeAnnotationActions(annotationWidget.getActions());
         }
@@ -294,74 +416,148 @@ public class PDFDocumentBleacher {
             return;
         }
 
-        if (annotationAdditionalActions.getBl() != null) {
-            threatRegistry.registerThreat(PDFSanitizeSections.ANNOTATION_ACTION,
-                    "Action on annotation widget to be performed when annotation loses the input focus",
-                    PDFContentUtil.getInstance().convert(annotationAdditionalActions.getBl()));
-            annotationAdditionalActions.setBl(null);
-        }
+        removeAction(PDFSanitizeSections.ANNOTATION_ACTION,
+                "Action on annotation widget to be performed when annotation loses the input focus",
+                annotationAdditionalActions.getBl(), () -> annotationAdditionalActions.setBl(null));
+        removeAction(PDFSanitizeSections.ANNOTATION_ACTION,
+                "Action on annotation widget to be performed when mouse button is pressed inside the annotation's active area",
+                annotationAdditionalActions.getD(), () -> annotationAdditionalActions.setD(null));
+        removeAction(PDFSanitizeSections.ANNOTATION_ACTION,
+                "Action on annotation widget to be performed when the cursor enters the annotation's active area",
+                annotationAdditionalActions.getE(), () -> annotationAdditionalActions.setE(null));
+        removeAction(PDFSanitizeSections.ANNOTATION_ACTION,
+                "Action on annotation widget to be performed  when the annotation receives the input focus",
+                annotationAdditionalActions.getFo(), () -> annotationAdditionalActions.setFo(null));
+        removeAction(PDFSanitizeSections.ANNOTATION_ACTION,
+                "Action on annotation widget to be performed when the page containing the annotation is closed",
+                annotationAdditionalActions.getPC(), () -> annotationAdditionalActions.setPC(null));
+        removeAction(PDFSanitizeSections.ANNOTATION_ACTION,
+                "Action on annotation widget to be performed when the page containing the annotation is no longer visible",
+                annotationAdditionalActions.getPI(), () -> annotationAdditionalActions.setPI(null));
+        removeAction(PDFSanitizeSections.ANNOTATION_ACTION,
+                "Action on annotation widget to be performed when the page containing the annotation is opened",
+                annotationAdditionalActions.getPO(), () -> annotationAdditionalActions.setPO(null));
+        removeAction(PDFSanitizeSections.ANNOTATION_ACTION,
+                "Action on annotation widget to be performed the page containing the annotation becomes visible",
+                annotationAdditionalActions.getPV(), () -> annotationAdditionalActions.setPV(null));
+        removeAction(PDFSanitizeSections.ANNOTATION_ACTION,
+                "Action on annotation widget to be performed when the mouse button is released inside the annotation's active area",
+                annotationAdditionalActions.getU(), () -> annotationAdditionalActions.setU(null));
+        removeAction(PDFSanitizeSections.ANNOTATION_ACTION,
+                "Action on annotation widget to be performed when the cursor exits the annotation's active area",
+                annotationAdditionalActions.getX(), () -> annotationAdditionalActions.setX(null));
+    }
 
-        if (annotationAdditionalActions.getD() != null) {
-            threatRegistry.registerThreat(PDFSanitizeSections.ANNOTATION_ACTION,
-                    "Action on annotation widget to be performed when mouse button is pressed inside the annotation's active area",
-                    PDFContentUtil.getInstance().convert(annotationAdditionalActions.getD()));
-            annotationAdditionalActions.setD(null);
-        }
 
-        if (annotationAdditionalActions.getE() != null) {
-            threatRegistry.registerThreat(PDFSanitizeSections.ANNOTATION_ACTION,
-                    "Action on annotation widget to be performed when the cursor enters the annotation's active area",
-                    PDFContentUtil.getInstance().convert(annotationAdditionalActions.getE()));
-            annotationAdditionalActions.setE(null);
-        }
+    /**
+     * Check if an annotation is visited the first time
+     *
+     * @param annotation the annotation
+     * @return true if the annotation is visited the first time
+     */
+    protected boolean visitAnnotation(PDAnnotation annotation) {
+        return objectVisitor.visit(annotation.getCOSObject());
+    }
 
-        if (annotationAdditionalActions.getFo() != null) {
-            threatRegistry.registerThreat(PDFSanitizeSections.ANNOTATION_ACTION,
-                    "Action on annotation widget to be performed  when the annotation receives the input focus",
-                    PDFContentUtil.getInstance().convert(annotationAdditionalActions.getFo()));
-            annotationAdditionalActions.setFo(null);
-        }
 
-        if (annotationAdditionalActions.getPC() != null) {
-            threatRegistry.registerThreat(PDFSanitizeSections.ANNOTATION_ACTION,
-                    "Action on annotation widget to be performed when the page containing the annotation is closed",
-                    PDFContentUtil.getInstance().convert(annotationAdditionalActions.getPC()));
-            annotationAdditionalActions.setPC(null);
+    /**
+     * Register an action as threat and remove it unless in scan only mode
+     *
+     * @param section the section
+     * @param description the description
+     * @param action the action or null
+     * @param remover removes the action
+     */
+    protected void removeAction(ISanitizeContentThreatRegistry.ISection section, String description, PDDestinationOrAction action, Runnable remover) {
+        if (action == null) {
+            return;
         }
 
-        if (annotationAdditionalActions.getPI() != null) {
-            threatRegistry.registerThreat(PDFSanitizeSections.ANNOTATION_ACTION,
-                    "Action on annotation widget to be performed when the page containing the annotation is no longer visible",
-                    PDFContentUtil.getInstance().convert(annotationAdditionalActions.getPI()));
-            annotationAdditionalActions.setPI(null);
+        registerThreat(section, description, action);
+        if (!threatRegistry.isScanOnly()) {
+            if (PDFSanitizeSections.PAGE_ACTION.equals(section)) {
+                // the actions of a page are part of the action code of a destination to the page
+                pageActionRemoverList.add(remover);
+            } else {
+                remover.run();
+            }
         }
+    }
 
-        if (annotationAdditionalActions.getPO() != null) {
-            threatRegistry.registerThreat(PDFSanitizeSections.ANNOTATION_ACTION,
-                    "Action on annotation widget to be performed when the page containing the annotation is opened",
-                    PDFContentUtil.getInstance().convert(annotationAdditionalActions.getPO()));
-            annotationAdditionalActions.setPO(null);
-        }
 
-        if (annotationAdditionalActions.getPV() != null) {
-            threatRegistry.registerThreat(PDFSanitizeSections.ANNOTATION_ACTION,
-                    "Action on annotation widget to be performed the page containing the annotation becomes visible",
-                    PDFContentUtil.getInstance().convert(annotationAdditionalActions.getPV()));
-            annotationAdditionalActions.setPV(null);
+    /**
+     * Remove the actions of the pages. They are removed after all sections are checked, a destination to a page is converted with the
+     * actions of the page and the action code doesn't depend on the order of the sections.
+     */
+    public void removePageActions() {
+        for (Runnable remover : pageActionRemoverList) {
+            remover.run();
         }
 
-        if (annotationAdditionalActions.getU() != null) {
-            threatRegistry.registerThreat(PDFSanitizeSections.ANNOTATION_ACTION,
-                    "Action on annotation widget to be performed when the mouse button is released inside the annotation's active area",
-                    PDFContentUtil.getInstance().convert(annotationAdditionalActions.getU()));
-            annotationAdditionalActions.setU(null);
+        pageActionRemoverList.clear();
+    }
+
+
+    /**
+     * Get the object visitor
+     *
+     * @return the object visitor
+     */
+    protected PDFObjectVisitor getObjectVisitor() {
+        return objectVisitor;
+    }
+
+
+    /**
+     * Register a threat. The action is owned by the section and is not crawled again by the {@link PDFObjectBleacher}.
+     *
+     * @param section the section
+     * @param description the description
+     * @param action the action
+     */
+    protected void registerThreat(ISanitizeContentThreatRegistry.ISection section, String description, PDDestinationOrAction action) {
+        if (action != null) {
+            objectVisitor.visitAction(action.getCOSObject());
         }
 
-        if (annotationAdditionalActions.getX() != null) {
-            threatRegistry.registerThreat(PDFSanitizeSections.ANNOTATION_ACTION,
-                    "Action on annotation widget to be performed when the cursor exits the annotation's active area",
-                    PDFContentUtil.getInstance().convert(annotationAdditionalActions.getX()));
-            annotationAdditionalActions.setX(null);
+        threatRegistry.registerThreat(section, description, PDFContentUtil.getInstance().convert(action));
+    }
+
+
+    /**
+     * Visit the nodes and the actions of a java script name tree. The tree is walked on an explicit stack.
+     *
+     * @param root the root node
+     */
+    private void visitNameTree(COSBase root) {
+        Deque<COSBase> stack = new ArrayDeque<COSBase>();
+        stack.push(root);
+
+        while (!stack.isEmpty()) {
+            COSBase base = stack.pop();
+            if (!(base instanceof COSDictionary) || !objectVisitor.visit(base)) {
+                continue;
+            }
+
+            COSDictionary node = (COSDictionary) base;
+            COSBase names = node.getDictionaryObject(COSName.NAMES);
+            if (names instanceof COSArray) {
+                COSArray nameArray = (COSArray) names;
+                for (int i = 1; i < nameArray.size(); i += 2) {
+                    objectVisitor.visitAction(nameArray.getObject(i));
+                }
+            }
+
+            COSBase kids = node.getDictionaryObject(COSName.KIDS);
+            if (kids instanceof COSArray) {
+                COSArray kidArray = (COSArray) kids;
+                for (int i = kidArray.size() - 1; i >= 0; i--) {
+                    COSBase kid = kidArray.getObject(i);
+                    if (kid != null) {
+                        stack.push(kid);
+                    }
+                }
+            }
         }
     }
 }
@@ -1,17 +1,38 @@
 /*
- * EmbeddedFileContentBleacher.java
+ * PDFEmbeddedFileBleacher.java
  *
  * Copyright by toolarium, all rights reserved.
  */
 package com.github.toolarium.sanitize.content.impl.bleach.impl.pdf.elements;
 
+import com.github.toolarium.sanitize.content.dto.SanitizeContentAttachmentAction;
+import com.github.toolarium.sanitize.content.dto.SanitizeContentConfiguration;
+import com.github.toolarium.sanitize.content.dto.SanitizeContentResult;
 import com.github.toolarium.sanitize.content.exception.SanitizeContentException;
-import com.github.toolarium.sanitize.content.impl.bleach.impl.pdf.PDFSanitizeContentBleacher;
-import java.io.ByteArrayInputStream;
-import java.io.ByteArrayOutputStream;
+import com.github.toolarium.sanitize.content.impl.SanitizeContentContext;
+import com.github.toolarium.sanitize.content.impl.bleach.ISanitizeContentBleacherProvider;
+import com.github.toolarium.sanitize.content.impl.bleach.SanitizeContentBleacherRegistry;
+import com.github.toolarium.sanitize.content.impl.bleach.SanitizeContentNestedContentDispatcher;
+import com.github.toolarium.sanitize.content.impl.bleach.impl.pdf.PDFAttachmentPolicy;
+import com.github.toolarium.sanitize.content.impl.bleach.impl.pdf.PDFSanitizeSections;
+import com.github.toolarium.sanitize.content.impl.bleach.impl.pdf.PDFStreamDecoder;
+import com.github.toolarium.sanitize.content.impl.bleach.util.CloseShieldOutputStream;
+import com.github.toolarium.sanitize.content.impl.bleach.util.ContentHandOffBuffer;
+import com.github.toolarium.sanitize.content.impl.bleach.util.CountingOutputStream;
+import com.github.toolarium.sanitize.content.impl.bleach.util.StreamDecodingGuard;
+import com.github.toolarium.sanitize.content.impl.bleach.util.StreamUtils;
+import java.io.BufferedInputStream;
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
 import java.util.function.Consumer;
+import java.util.function.Supplier;
 import org.apache.pdfbox.cos.COSName;
 import org.apache.pdfbox.pdmodel.PDDocument;
 import org.apache.pdfbox.pdmodel.PDEmbeddedFilesNameTreeNode;
@@ -24,25 +45,61 @@ import org.slf4j.LoggerFactory;
 
 
 /**
- * The PDF embedded file bleacher
+ * The PDF embedded file bleacher. Every embedded file is sanitized by the bleacher of its content type, one after another or
+ * concurrently on the executor of the processor. An embedded file which can't be sanitized is removed and registered as threat.
  *
  * @author Patrick Meier
  */
 public class PDFEmbeddedFileBleacher {
     private static final Logger LOG = LoggerFactory.getLogger(PDFEmbeddedFileBleacher.class);
-    private PDFSanitizeContentBleacher contentBleacher;
+    private final SanitizeContentContext context;
     private final PDDocument doc;
+    private final SanitizeContentConfiguration configuration;
+    private final SanitizeContentNestedContentDispatcher dispatcher;
+    private final PDFStreamDecoder streamDecoder;
+    private final PDFAttachmentPolicy attachmentPolicy;
+    private final List<SanitizeContentResult> nestedResultList;
 
 
     /**
-     * Constructor for EmbeddedFileContentBleacher
+     * Constructor for PDFEmbeddedFileBleacher
      *
-     * @param contentBleacher the content bleacher
+     * @param context the context of the document
      * @param doc the document the document
      */
-    public PDFEmbeddedFileBleacher(PDFSanitizeContentBleacher contentBleacher, PDDocument doc) {
-        this.contentBleacher = contentBleacher;
+    public PDFEmbeddedFileBleacher(SanitizeContentContext context, PDDocument doc) {
+        this(context, doc, new SanitizeContentConfiguration());
+    }
+
+
+    /**
+     * Constructor for PDFEmbeddedFileBleacher
+     *
+     * @param context the context of the document
+     * @param doc the document the document
+     * @param configuration the configuration
+     */
+    public PDFEmbeddedFileBleacher(SanitizeContentContext context, PDDocument doc, SanitizeContentConfiguration configuration) {
+        this(context, doc, configuration, new PDFStreamDecoder(new StreamDecodingGuard(configuration, context, PDFSanitizeSections.DECODING_LIMIT, -1)));
+    }
+
+
+    /**
+     * Constructor for PDFEmbeddedFileBleacher
+     *
+     * @param context the context of the document
+     * @param doc the document the document
+     * @param configuration the configuration
+     * @param streamDecoder the stream decoder of the document
+     */
+    public PDFEmbeddedFileBleacher(SanitizeContentContext context, PDDocument doc, SanitizeContentConfiguration configuration, PDFStreamDecoder streamDecoder) {
+        this.context = context;
         this.doc = doc;
+        this.configuration = configuration;
+        this.dispatcher = getDispatcher(context, configuration);
+        this.streamDecoder = streamDecoder;
+        this.attachmentPolicy = new PDFAttachmentPolicy(configuration);
+        this.nestedResultList = new ArrayList<SanitizeContentResult>();
     }
 
 
@@ -52,7 +109,30 @@ public class PDFEmbeddedFileBleacher {
      * @param embeddedFiles the files
      */
     public void sanitize(PDEmbeddedFilesNameTreeNode embeddedFiles) {
-        sanitizeRecursiveNameTree(embeddedFiles, this::sanitizeEmbeddedFile);
+        if (dispatcher.isNestingDepthExceeded(context.getNestingDepth() + 1)) {
+            // a pathological nesting fails fast, the embedded files are not decoded
+            sanitizeRecursiveNameTree(embeddedFiles, this::removeNestedEmbeddedFile);
+            return;
+        }
+
+        if (configuration.getPdfEmbeddedFileParallelism() <= 1 || context.getNestedContentExecutor() == null) {
+            sanitizeRecursiveNameTree(embeddedFiles, this::sanitizeEmbeddedFile);
+            return;
+        }
+
+        List<PDComplexFileSpecification> fileSpecList = new ArrayList<PDComplexFileSpecification>();
+        sanitizeRecursiveNameTree(embeddedFiles, fileSpecList::add);
+        sanitizeEmbeddedFiles(fileSpecList);
+    }
+
+
+    /**
+     * Get the results of the embedded files in the order of the embedded files
+     *
+     * @return the nested results
+     */
+    public List<SanitizeContentResult> getNestedResultList() {
+        return nestedResultList;
     }
 
 
@@ -110,6 +190,91 @@ public class PDFEmbeddedFileBleacher {
     }
 
 
+    /**
+     * Sanitize file specifications concurrently
+     *
+     * @param fileSpecList the file specifications
+     */
+    @SuppressWarnings("deprecation")
+    protected void sanitizeEmbeddedFiles(List<PDComplexFileSpecification> fileSpecList) {
+        List<EmbeddedFileTask> taskList = new ArrayList<EmbeddedFileTask>();
+        for (PDComplexFileSpecification fileSpec : fileSpecList) {
+            if (fileSpec != null) {
+                String filename = fileSpec.getFilename();
+                LOG.debug("Embedded file found: " + filename);
+                addTask(taskList, filename, fileSpec.getEmbeddedFile(), fileSpec::setEmbeddedFile);
+                addTask(taskList, filename, fileSpec.getEmbeddedFileDos(), fileSpec::setEmbeddedFileDos);
+                addTask(taskList, filename, fileSpec.getEmbeddedFileMac(), fileSpec::setEmbeddedFileMac);
+                addTask(taskList, filename, fileSpec.getEmbeddedFileUnicode(), fileSpec::setEmbeddedFileUnicode);
+                addTask(taskList, filename, fileSpec.getEmbeddedFileUnix(), fileSpec::setEmbeddedFileUnix);
+            }
+        }
+
+        if (taskList.isEmpty()) {
+            return;
+        }
+
+        ExecutorService executorService = context.getNestedContentExecutor();
+        try {
+            final boolean scanOnly = context.isScanOnly();
+            for (EmbeddedFileTask task : taskList) {
+                if (task.provider != null) {
+                    task.future = executorService.submit(() -> bleachEmbeddedFile(task));
+                }
+            }
+
+            // the threats are registered and the files are replaced in the order of the embedded files
+            for (EmbeddedFileTask task : taskList) {
+                if (task.future == null) {
+                    // the embedded file is stripped or removed without to bleach it
+                    task.setter.accept(task.removal.get());
+                    continue;
+                }
+
+                try {
+                    SanitizeContentResult result = task.future.get();
+                    addNestedResult(result);
+                    if (!scanOnly) {
+                        PDEmbeddedFile ef = new PDEmbeddedFile(doc);
+                        try (InputStream is = task.outputBuffer.getInputStream(); OutputStream efOutputStream = ef.createOutputStream(COSName.FLATE_DECODE)) {
+                            StreamUtils.getInstance().copy(is, efOutputStream);
+                        }
+
+                        task.setter.accept(replaceEmbeddedFile(task.filename, task.file, ef, task.outputBuffer.size()));
+                    }
+                } catch (ExecutionException e) {
+                    // the same failure fails the serial sanitizing
+                    if (e.getCause() instanceof RuntimeException) {
+                        throw (RuntimeException) e.getCause();
+                    }
+
+                    if (e.getCause() instanceof Error) {
+                        throw (Error) e.getCause();
+                    }
+
+                    LOG.warn("Could not bleach embedded file " + task.filename + ": " + e.getCause().getMessage());
+                    task.setter.accept(removeEmbeddedFile(task.filename, task.file));
+                } catch (InterruptedException e) {
+                    LOG.warn("Interrupted to bleach embedded file " + task.filename);
+                    Thread.currentThread().interrupt();
+                    task.setter.accept(removeEmbeddedFile(task.filename, task.file));
+                } catch (IOException e) {
+                    LOG.warn("Could not read embedded file " + task.filename + ": " + e.getMessage());
+                    task.setter.accept(removeEmbeddedFile(task.filename, task.file));
+                }
+            }
+        } finally {
+            for (EmbeddedFileTask task : taskList) {
+                if (task.future != null) {
+                    task.future.cancel(true);
+                }
+
+                task.release();
+            }
+        }
+    }
+
+
     /**
      * Sanitize the embedded file
      *
@@ -125,39 +290,319 @@ public class PDFEmbeddedFileBleacher {
         String fileInformation = "Found file " + filename + " (size: " +  file.getSize() + ", mime-type " + file.getSubtype() + ")";
         LOG.debug(fileInformation);
 
-        try {
-            ByteArrayOutputStream os = new ByteArrayOutputStream();
-            contentBleacher.bleachContent(filename, new ByteArrayInputStream(file.toByteArray()), os, null);
-
-            // create new embedded file
-            PDEmbeddedFile ef = new PDEmbeddedFile(doc, new ByteArrayInputStream(os.toByteArray()), COSName.FLATE_DECODE);
-            ef.setCreationDate(file.getCreationDate());
-            ef.setModDate(file.getModDate());
-
-            // copy the properties of the original embedded file
-            ef.setSubtype(file.getSubtype());
-            ef.setSize(os.size());
-            ef.setMacCreator(file.getMacCreator());
-            ef.setMacResFork(file.getMacResFork());
-            ef.setMacSubtype(file.getMacSubtype());
-
-            // remove the real file
-            file.setSize(0);
-            file.setFile(null);
-
-            try {
-                file.createOutputStream().close();
-            } catch (IOException e) {
-                LOG.warn("Could not remove embedded file " + filename + ": " + e.getMessage());
+        SanitizeContentAttachmentAction action = attachmentPolicy.evaluate(filename, file);
+        if (SanitizeContentAttachmentAction.KEEP.equals(action)) {
+            LOG.debug("Embedded file " + filename + " is kept by the attachment policy.");
+            return file;
+        }
+
+        if (SanitizeContentAttachmentAction.STRIP.equals(action)) {
+            return stripEmbeddedFile(filename, file);
+        }
+
+        // the decoded content is streamed through the bleacher into the new embedded file, it is not copied into memory
+        try (InputStream is = new BufferedInputStream(streamDecoder.createInputStream(filename, file.getCOSObject()))) {
+            ISanitizeContentBleacherProvider provider = dispatcher.lookup(filename, is);
+            if (provider == null) {
+                return removeUnsupportedEmbeddedFile(filename, file);
+            }
+
+            if (context.isScanOnly()) {
+                // the embedded file is only scanned and kept as it is
+                addNestedResult(dispatcher.bleachContent(provider, context.createNestedContext(filename), is, OutputStream.nullOutputStream()));
+                return file;
+            }
+
+            PDEmbeddedFile ef = new PDEmbeddedFile(doc);
+            long size;
+            try (OutputStream efOutputStream = ef.createOutputStream(COSName.FLATE_DECODE)) {
+                // the bleacher closes its output stream after it is written
+                CountingOutputStream os = new CountingOutputStream(new CloseShieldOutputStream(efOutputStream));
+                addNestedResult(dispatcher.bleachContent(provider, context.createNestedContext(filename), is, os));
+                size = os.getCount();
             }
 
-            return ef;
+            return replaceEmbeddedFile(filename, file, ef, size);
         } catch (SanitizeContentException e) {
             LOG.warn("Could not bleach embedded file " + filename + ": " + e.getMessage());
-            return null;
+            return removeEmbeddedFile(filename, file);
         } catch (IOException e) {
             LOG.warn("Could not read embedded file " + filename + ": " + e.getMessage());
-            return null;
+            return removeEmbeddedFile(filename, file);
+        }
+    }
+
+
+    /**
+     * Replace an embedded file by its sanitized content
+     *
+     * @param filename the filename
+     * @param file the original file
+     * @param ef the new embedded file which contains the sanitized content
+     * @param size the size of the sanitized content
+     * @return the new embedded file
+     * @throws IOException In case of an I/O error
+     */
+    protected PDEmbeddedFile replaceEmbeddedFile(String filename, PDEmbeddedFile file, PDEmbeddedFile ef, long size) throws IOException {
+        ef.setCreationDate(file.getCreationDate());
+        ef.setModDate(file.getModDate());
+
+        // copy the properties of the original embedded file
+        ef.setSubtype(file.getSubtype());
+        ef.setSize((int) Math.min(Integer.MAX_VALUE, size));
+        ef.setMacCreator(file.getMacCreator());
+        ef.setMacResFork(file.getMacResFork());
+        ef.setMacSubtype(file.getMacSubtype());
+
+        // remove the real file
+        file.setSize(0);
+        file.setFile(null);
+
+        try {
+            file.createOutputStream().close();
+        } catch (IOException e) {
+            LOG.warn("Could not remove embedded file " + filename + ": " + e.getMessage());
+        }
+
+        return ef;
+    }
+
+
+    /**
+     * Remove the embedded files of a file specification which exceeds the maximum nesting depth
+     *
+     * @param fileSpec the file specification
+     */
+    @SuppressWarnings("deprecation")
+    private void removeNestedEmbeddedFile(PDComplexFileSpecification fileSpec) {
+        if (fileSpec == null) {
+            return;
+        }
+
+        String filename = fileSpec.getFilename();
+        LOG.debug("Embedded file " + filename + " exceeds the maximum nesting depth of " + configuration.getMaxNestingDepth());
+        context.registerThreat(PDFSanitizeSections.NESTING_LIMIT, "Maximum nesting depth exceeded", filename);
+        if (!context.isScanOnly()) {
+            fileSpec.setEmbeddedFile(null);
+            fileSpec.setEmbeddedFileDos(null);
+            fileSpec.setEmbeddedFileMac(null);
+            fileSpec.setEmbeddedFileUnicode(null);
+            fileSpec.setEmbeddedFileUnix(null);
+        }
+    }
+
+
+    /**
+     * Strip an embedded file by the attachment policy, it is not decoded
+     *
+     * @param filename the filename
+     * @param file the embedded file
+     * @return the embedded file in scan only mode, otherwise null
+     */
+    private PDEmbeddedFile stripEmbeddedFile(String filename, PDEmbeddedFile file) {
+        LOG.debug("Embedded file " + filename + " (declared size: " + PDFAttachmentPolicy.getDeclaredSize(file) + ") is stripped by the attachment policy.");
+        context.registerThreat(PDFSanitizeSections.ATTACHMENT_POLICY, "Embedded file stripped by the attachment policy", filename);
+        if (context.isScanOnly()) {
+            return file;
+        }
+
+        return null;
+    }
+
+
+    /**
+     * Remove an embedded file which can't be sanitized
+     *
+     * @param filename the filename
+     * @param file the embedded file
+     * @return the embedded file in scan only mode, otherwise null
+     */
+    private PDEmbeddedFile removeEmbeddedFile(String filename, PDEmbeddedFile file) {
+        context.registerThreat(PDFSanitizeSections.EMBEDDED_FILE, "Embedded file which can't be sanitized", filename);
+        if (context.isScanOnly()) {
+            return file;
+        }
+
+        return null;
+    }
+
+
+    /**
+     * Remove an embedded file which is not supported by a bleacher, it is not parsed
+     *
+     * @param filename the filename
+     * @param file the embedded file
+     * @return the embedded file in scan only mode, otherwise null
+     */
+    private PDEmbeddedFile removeUnsupportedEmbeddedFile(String filename, PDEmbeddedFile file) {
+        LOG.warn("Unsupported embedded file " + filename + " is removed.");
+        context.registerThreat(PDFSanitizeSections.EMBEDDED_FILE, "Unsupported embedded file", filename);
+        if (context.isScanOnly()) {
+            return file;
+        }
+
+        return null;
+    }
+
+
+    /**
+     * Get the dispatcher of the nested contents, a bleacher which is used without processor has its own dispatcher
+     *
+     * @param context the context of the document
+     * @param configuration the configuration
+     * @return the dispatcher
+     */
+    private static SanitizeContentNestedContentDispatcher getDispatcher(SanitizeContentContext context, SanitizeContentConfiguration configuration) {
+        if (context.getNestedContentDispatcher() != null) {
+            return context.getNestedContentDispatcher();
+        }
+
+        return new SanitizeContentNestedContentDispatcher(configuration, SanitizeContentBleacherRegistry.getInstance());
+    }
+
+
+    /**
+     * Add the result of an embedded file, its threats are registered in the threats of the document
+     *
+     * @param result the result of the embedded file
+     */
+    private void addNestedResult(SanitizeContentResult result) {
+        context.registerThreats(result.getThreadInformationList());
+        nestedResultList.add(result);
+    }
+
+
+    /**
+     * Add the task of an embedded file stream, the decoded content is read on the calling thread into a buffer which spills to a temp
+     * file above the spill threshold
+     *
+     * @param taskList the tasks
+     * @param filename the filename
+     * @param file the file or null
+     * @param setter sets the sanitized file
+     */
+    private void addTask(List<EmbeddedFileTask> taskList, String filename, PDEmbeddedFile file, Consumer<PDEmbeddedFile> setter) {
+        if (file == null) {
+            return;
+        }
+
+        LOG.debug("Found file " + filename + " (size: " +  file.getSize() + ", mime-type " + file.getSubtype() + ")");
+        SanitizeContentAttachmentAction action = attachmentPolicy.evaluate(filename, file);
+        if (SanitizeContentAttachmentAction.KEEP.equals(action)) {
+            LOG.debug("Embedded file " + filename + " is kept by the attachment policy.");
+            return;
+        }
+
+        if (SanitizeContentAttachmentAction.STRIP.equals(action)) {
+            // the threat is registered in the order of the embedded files
+            taskList.add(new EmbeddedFileTask(filename, file, setter, () -> stripEmbeddedFile(filename, file)));
+            return;
+        }
+
+        ContentHandOffBuffer inputBuffer = new ContentHandOffBuffer(configuration.getSpillThreshold(), configuration.getTempDirectory());
+        try (InputStream is = new BufferedInputStream(streamDecoder.createInputStream(filename, file.getCOSObject()))) {
+            ISanitizeContentBleacherProvider provider = dispatcher.lookup(filename, is);
+            if (provider == null) {
+                // the content is not buffered
+                inputBuffer.release();
+                taskList.add(new EmbeddedFileTask(filename, file, setter, () -> removeUnsupportedEmbeddedFile(filename, file)));
+                return;
+            }
+
+            StreamUtils.getInstance().copy(is, inputBuffer);
+            inputBuffer.close();
+            taskList.add(new EmbeddedFileTask(filename, file, provider, setter, inputBuffer, new ContentHandOffBuffer(configuration.getSpillThreshold(), configuration.getTempDirectory())));
+        } catch (IOException e) {
+            LOG.warn("Could not read embedded file " + filename + ": " + e.getMessage());
+            inputBuffer.release();
+            taskList.add(new EmbeddedFileTask(filename, file, setter, () -> removeEmbeddedFile(filename, file)));
+        }
+    }
+
+
+    /**
+     * Bleach the content of an embedded file stream with its own bleacher
+     *
+     * @param task the task
+     * @return the result
+     * @throws SanitizeContentException In case the content can't be sanitized
+     */
+    private SanitizeContentResult bleachEmbeddedFile(EmbeddedFileTask task) throws SanitizeContentException {
+        try (InputStream is = task.inputBuffer.getInputStream()) {
+            return dispatcher.bleachContent(task.provider, context.createConcurrentNestedContext(task.filename), is, task.outputBuffer);
+        } catch (SanitizeContentException e) {
+            throw e;
+        } catch (IOException e) {
+            throw new SanitizeContentException(e);
+        }
+    }
+
+
+    /**
+     * Defines the task of an embedded file stream.
+     */
+    private static class EmbeddedFileTask {
+        private final String filename;
+        private final PDEmbeddedFile file;
+        private final ISanitizeContentBleacherProvider provider;
+        private final Consumer<PDEmbeddedFile> setter;
+        private final ContentHandOffBuffer inputBuffer;
+        private final ContentHandOffBuffer outputBuffer;
+        private final Supplier<PDEmbeddedFile> removal;
+        private Future<SanitizeContentResult> future;
+
+
+        /**
+         * Constructor for EmbeddedFileTask
+         *
+         * @param filename the filename
+         * @param file the original file
+         * @param provider the provider of the content
+         * @param setter sets the sanitized file
+         * @param inputBuffer the decoded content
+         * @param outputBuffer the sanitized content
+         */
+        EmbeddedFileTask(String filename, PDEmbeddedFile file, ISanitizeContentBleacherProvider provider, Consumer<PDEmbeddedFile> setter, ContentHandOffBuffer inputBuffer, ContentHandOffBuffer outputBuffer) {
+            this.filename = filename;
+            this.file = file;
+            this.provider = provider;
+            this.setter = setter;
+            this.inputBuffer = inputBuffer;
+            this.outputBuffer = outputBuffer;
+            this.removal = null;
+        }
+
+
+        /**
+         * Constructor for EmbeddedFileTask of an embedded file which is stripped or removed without to bleach it
+         *
+         * @param filename the filename
+         * @param file the original file
+         * @param setter sets the sanitized file
+         * @param removal registers the threat and returns the file which remains
+         */
+        EmbeddedFileTask(String filename, PDEmbeddedFile file, Consumer<PDEmbeddedFile> setter, Supplier<PDEmbeddedFile> removal) {
+            this.filename = filename;
+            this.file = file;
+            this.provider = null;
+            this.setter = setter;
+            this.inputBuffer = null;
+            this.outputBuffer = null;
+            this.removal = removal;
+        }
+
+
+        /**
+         * Release the buffers, a removed embedded file has no buffers
+         */
+        void release() {
+            if (inputBuffer != null) {
+                inputBuffer.release();
+            }
+
+            if (outputBuffer != null) {
+                outputBuffer.release();
+            }
         }
     }
 }
@@ -5,13 +5,18 @@
  */
 package com.github.toolarium.sanitize.content.impl.bleach.impl.pdf.elements;
 
+import com.github.toolarium.sanitize.content.dto.SanitizeContentConfiguration;
+import com.github.toolarium.sanitize.content.exception.SanitizeContentException;
 import com.github.toolarium.sanitize.content.impl.ISanitizeContentThreatRegistry;
 import com.github.toolarium.sanitize.content.impl.bleach.impl.pdf.PDFContentUtil;
+import com.github.toolarium.sanitize.content.impl.bleach.impl.pdf.PDFObjectThreatRule;
+import com.github.toolarium.sanitize.content.impl.bleach.impl.pdf.PDFObjectThreatRuleTable;
 import com.github.toolarium.sanitize.content.impl.bleach.impl.pdf.PDFSanitizeSections;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Deque;
 import java.util.Iterator;
-import java.util.Map;
-import java.util.Map.Entry;
 import org.apache.pdfbox.cos.COSArray;
 import org.apache.pdfbox.cos.COSBase;
 import org.apache.pdfbox.cos.COSBoolean;
@@ -20,19 +25,29 @@ import org.apache.pdfbox.cos.COSName;
 import org.apache.pdfbox.cos.COSNull;
 import org.apache.pdfbox.cos.COSNumber;
 import org.apache.pdfbox.cos.COSObject;
-import org.apache.pdfbox.cos.COSStream;
 import org.apache.pdfbox.cos.COSString;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 /**
- * PDF object bleacher
+ * PDF object bleacher. Every object is crawled once from the object pool, a reference is not followed. The objects which are owned by
+ * a section handler of the {@link PDFDocumentBleacher} are skipped by the shared {@link PDFObjectVisitor}. The dictionary entries are
+ * matched against the {@link PDFObjectThreatRuleTable}, the dictionary of a stream is crawled as well. The crawl works on an explicit stack, its depth and the number of crawled
+ * objects are limited by the configuration.
  *
  * @author Patrick Meier
  */
 public class PDFObjectBleacher {
     private static final Logger LOG = LoggerFactory.getLogger(PDFDocumentBleacher.class);
     private ISanitizeContentThreatRegistry threatRegistry;
+    private PDFObjectVisitor objectVisitor;
+    private PDFObjectThreatRuleTable ruleTable;
+    private int maxDepth;
+    private int maxCrawledObjects;
+    private boolean failOnLimit;
+    private int crawledObjects;
+    private boolean depthLimitExceeded;
+    private boolean crawlLimitExceeded;
 
 
     /**
@@ -41,7 +56,52 @@ public class PDFObjectBleacher {
      * @param threatRegistry the thread registry
      */
     public PDFObjectBleacher(ISanitizeContentThreatRegistry threatRegistry) {
+        this(threatRegistry, new PDFObjectVisitor());
+    }
+
+
+    /**
+     * Constructor for PDFObjectBleacher
+     *
+     * @param threatRegistry the thread registry
+     * @param objectVisitor the object visitor which is shared with the {@link PDFDocumentBleacher}
+     */
+    public PDFObjectBleacher(ISanitizeContentThreatRegistry threatRegistry, PDFObjectVisitor objectVisitor) {
+        this(threatRegistry, objectVisitor, new SanitizeContentConfiguration());
+    }
+
+
+    /**
+     * Constructor for PDFObjectBleacher
+     *
+     * @param threatRegistry the thread registry
+     * @param objectVisitor the object visitor which is shared with the {@link PDFDocumentBleacher}
+     * @param configuration the configuration
+     */
+    public PDFObjectBleacher(ISanitizeContentThreatRegistry threatRegistry, PDFObjectVisitor objectVisitor, SanitizeContentConfiguration configuration) {
+        this(threatRegistry, objectVisitor, configuration, PDFObjectThreatRuleTable.getInstance());
+    }
+
+
+    /**
+     * Constructor for PDFObjectBleacher
+     *
+     * @param threatRegistry the thread registry
+     * @param objectVisitor the object visitor which is shared with the {@link PDFDocumentBleacher}
+     * @param configuration the configuration
+     * @param ruleTable the threat rules
+     */
+    public PDFObjectBleacher(ISanitizeContentThreatRegistry threatRegistry, PDFObjectVisitor objectVisitor, SanitizeContentConfiguration configuration, PDFObjectThreatRuleTable ruleTable) {
         this.threatRegistry = threatRegistry;
+        this.objectVisitor = objectVisitor;
+        // a registration during the crawl doesn't change the rules of it
+        this.ruleTable = ruleTable.snapshot();
+        this.maxDepth = Math.max(1, configuration.getPdfMaxObjectDepth());
+        this.maxCrawledObjects = Math.max(1, configuration.getPdfMaxCrawledObjects());
+        this.failOnLimit = configuration.isPdfFailOnObjectLimit();
+        this.crawledObjects = 0;
+        this.depthLimitExceeded = false;
+        this.crawlLimitExceeded = false;
     }
 
 
@@ -49,72 +109,182 @@ public class PDFObjectBleacher {
      * Sanitize objects
      *
      * @param objects the objects
+     * @throws SanitizeContentException In case an object limit is exceeded and the sanitizing has to fail
      */
-    public void sanitizeObjects(Collection<COSObject> objects) {
+    public void sanitizeObjects(Collection<COSObject> objects) throws SanitizeContentException {
         if (objects == null || objects.isEmpty()) {
             return;
         }
 
         LOG.debug("Checking all objects...");
         for (COSObject object : objects) {
-            crawl(object);
+            if (crawlLimitExceeded) {
+                return;
+            }
+
+            crawl(object.getObject());
         }
     }
 
 
+    /**
+     * Get the number of crawled dictionaries and arrays
+     *
+     * @return the number of crawled objects
+     */
+    public int getCrawledObjects() {
+        return crawledObjects;
+    }
+
+
     /**
      * Crawl all opbjects
      *
      * @param base the base
+     * @throws SanitizeContentException In case an object limit is exceeded and the sanitizing has to fail
      */
-    protected void crawl(COSBase base) {
+    protected void crawl(COSBase base) throws SanitizeContentException {
+        Deque<Frame> stack = new ArrayDeque<Frame>();
+        push(stack, base, 1);
+
+        while (!stack.isEmpty()) {
+            Frame frame = stack.peek();
+
+            if (frame.dictionary != null) {
+                if (!frame.keyIterator.hasNext()) {
+                    stack.pop();
+                    continue;
+                }
+
+                COSName key = frame.keyIterator.next();
+                COSBase value = frame.dictionary.getItem(key);
+                PDFObjectThreatRule rule = ruleTable.match(key, value);
+                if (rule != null) {
+                    threatRegistry.registerThreat(rule.getSection(), rule.getDescription(), PDFContentUtil.getInstance().convert(value));
+                    if (rule.getAction() == PDFObjectThreatRule.Action.REMOVE) {
+                        if (!threatRegistry.isScanOnly()) {
+                            // the keys are a copy, the entry can be removed from the dictionary
+                            frame.dictionary.removeItem(key);
+                        }
+
+                        continue;
+                    }
+                }
+
+                push(stack, value, frame.depth + 1);
+            } else {
+                if (!frame.itemIterator.hasNext()) {
+                    stack.pop();
+                    continue;
+                }
+
+                push(stack, frame.itemIterator.next(), frame.depth + 1);
+            }
+
+            if (crawlLimitExceeded) {
+                return;
+            }
+        }
+    }
+
+
+    /**
+     * Push a dictionary or an array on the crawl stack
+     *
+     * @param stack the stack
+     * @param base the object
+     * @param depth the depth of the object
+     * @throws SanitizeContentException In case an object limit is exceeded and the sanitizing has to fail
+     */
+    private void push(Deque<Frame> stack, COSBase base, int depth) throws SanitizeContentException {
         if (base == null) {
             return;
         }
 
         if (base instanceof COSName
-                || base instanceof COSString || base instanceof COSStream || base instanceof COSNull
+                || base instanceof COSString || base instanceof COSNull
                 || base instanceof COSObject || base instanceof COSNumber || base instanceof COSBoolean) {
             return;
         }
 
+        if (!(base instanceof COSDictionary) && !(base instanceof COSArray)) {
+            LOG.warn("Unknown COS type: {}", base);
+            return;
+        }
+
+        if (depth > maxDepth) {
+            if (!depthLimitExceeded) {
+                depthLimitExceeded = true;
+                limitExceeded("Maximum object depth exceeded", "depth > " + maxDepth);
+            }
+
+            return;
+        }
+
+        // an object which is already visited or owned by a section handler is skipped
+        if (!objectVisitor.visit(base)) {
+            return;
+        }
+
+        if (++crawledObjects > maxCrawledObjects) {
+            crawlLimitExceeded = true;
+            limitExceeded("Maximum number of crawled objects exceeded", "objects > " + maxCrawledObjects);
+            return;
+        }
+
+        // a stream is a dictionary, the content of it is not decoded
         if (base instanceof COSDictionary) {
-            COSDictionary dict = (COSDictionary) base;
+            stack.push(new Frame((COSDictionary) base, null, depth));
+        } else {
+            stack.push(new Frame(null, ((COSArray) base).iterator(), depth));
+        }
+    }
 
-            for (Iterator<Entry<COSName, COSBase>> it = dict.entrySet().iterator(); it.hasNext();) {
-                Map.Entry<COSName, COSBase> entry = it.next();
 
-                if ("JS".equals(entry.getKey().getName()) || "JavaScript".equals(entry.getKey().getName())) {
-                    threatRegistry.registerThreat(PDFSanitizeSections.NAMES_JAVASCRIPT_ACTION, "Script Action " + entry.getKey().getName(), PDFContentUtil.getInstance().convert(entry.getValue()));
-                    it.remove();
-                    continue;
-                }
+    /**
+     * Handle an exceeded limit
+     *
+     * @param description the description
+     * @param action the action code
+     * @throws SanitizeContentException In case the sanitizing has to fail
+     */
+    private void limitExceeded(String description, String action) throws SanitizeContentException {
+        LOG.info(description + " (" + action + ")");
+        if (failOnLimit) {
+            throw new SanitizeContentException(description + " (" + action + ")!");
+        }
 
-                if ("S".equals(entry.getKey().getName())) {
-                    if (entry.getValue() instanceof COSName) {
-                        if ("JavaScript".equals(((COSName) entry.getValue()).getName())) {
-                            threatRegistry.registerThreat(PDFSanitizeSections.NAMES_JAVASCRIPT_ACTION, "Script Action", PDFContentUtil.getInstance().convert(entry.getValue()));
-                            it.remove();
-                            continue;
-                        }
-                    }
-                }
+        threatRegistry.registerThreat(PDFSanitizeSections.OBJECT_LIMIT, description, action);
+    }
 
-                if ("AA".equals(entry.getKey().getName())) {
-                    threatRegistry.registerThreat(PDFSanitizeSections.NAMES_JAVASCRIPT_ACTION, "Additional Action", PDFContentUtil.getInstance().convert(entry.getValue()));
-                    it.remove();
-                    continue;
-                }
 
-                crawl(entry.getValue());
-            }
-        } else if (base instanceof COSArray) {
-            COSArray ar = (COSArray) base;
-            for (COSBase item : ar) {
-                crawl(item);
+    /**
+     * Defines a dictionary or an array on the crawl stack.
+     */
+    private static class Frame {
+        private final COSDictionary dictionary;
+        private final Iterator<COSName> keyIterator;
+        private final Iterator<COSBase> itemIterator;
+        private final int depth;
+
+
+        /**
+         * Constructor for Frame
+         *
+         * @param dictionary the dictionary or null
+         * @param itemIterator the items of an array or null
+         * @param depth the depth
+         */
+        Frame(COSDictionary dictionary, Iterator<COSBase> itemIterator, int depth) {
+            this.dictionary = dictionary;
+            if (dictionary != null) {
+                this.keyIterator = new ArrayList<COSName>(dictionary.keySet()).iterator();
+            } else {
+                this.keyIterator = null;
             }
-        } else {
-            LOG.warn("Unknown COS type: {}", base);
+
+            this.itemIterator = itemIterator;
+            this.depth = depth;
         }
     }
 }
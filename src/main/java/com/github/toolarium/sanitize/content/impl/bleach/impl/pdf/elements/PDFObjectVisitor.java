@@ -0,0 +1,133 @@
+/*
+ * PDFObjectVisitor.java
+ *
+ * Copyright by toolarium, all rights reserved.
+ */
+package com.github.toolarium.sanitize.content.impl.bleach.impl.pdf.elements;
+
+import java.util.ArrayDeque;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.IdentityHashMap;
+import java.util.Set;
+import org.apache.pdfbox.cos.COSArray;
+import org.apache.pdfbox.cos.COSBase;
+import org.apache.pdfbox.cos.COSDictionary;
+import org.apache.pdfbox.cos.COSName;
+import org.apache.pdfbox.cos.COSObject;
+
+
+/**
+ * Tracks the visited objects of one PDF document. The section handlers of the {@link PDFDocumentBleacher} mark the dictionaries they
+ * own (catalog, pages, annotations, fields, outline items and actions), the {@link PDFObjectBleacher} only crawls the remaining objects.
+ * A reference is resolved before it is tracked, the parser keeps one instance per object key, so the identity of the resolved object
+ * identifies an indirect object.
+ *
+ * @author Patrick Meier
+ */
+public class PDFObjectVisitor {
+    private Set<COSBase> visitedSet;
+
+
+    /**
+     * Constructor for PDFObjectVisitor
+     */
+    public PDFObjectVisitor() {
+        this.visitedSet = Collections.newSetFromMap(new IdentityHashMap<COSBase, Boolean>());
+    }
+
+
+    /**
+     * Visit an object
+     *
+     * @param base the object or a reference
+     * @return true if the object is visited the first time
+     */
+    public boolean visit(COSBase base) {
+        COSBase object = resolve(base);
+        if (object == null) {
+            return false;
+        }
+
+        return visitedSet.add(object);
+    }
+
+
+    /**
+     * Check if an object is already visited
+     *
+     * @param base the object or a reference
+     * @return true if it is already visited
+     */
+    public boolean isVisited(COSBase base) {
+        COSBase object = resolve(base);
+        return object != null && visitedSet.contains(object);
+    }
+
+
+    /**
+     * Visit an action and its following actions. The chain of the following actions is walked on an explicit stack.
+     *
+     * @param base the action dictionary or a reference
+     */
+    public void visitAction(COSBase base) {
+        Deque<COSBase> stack = new ArrayDeque<COSBase>();
+        push(stack, base);
+
+        while (!stack.isEmpty()) {
+            COSBase object = stack.pop();
+            if (!(object instanceof COSDictionary) || !visit(object)) {
+                continue;
+            }
+
+            COSBase next = resolve(((COSDictionary) object).getDictionaryObject(COSName.NEXT));
+            if (next instanceof COSArray) {
+                COSArray nextArray = (COSArray) next;
+                for (int i = nextArray.size() - 1; i >= 0; i--) {
+                    push(stack, nextArray.get(i));
+                }
+            } else {
+                push(stack, next);
+            }
+        }
+    }
+
+
+    /**
+     * Get the number of visited objects
+     *
+     * @return the number of visited objects
+     */
+    public int getVisitedCount() {
+        return visitedSet.size();
+    }
+
+
+    /**
+     * Push a resolved object
+     *
+     * @param stack the stack
+     * @param base the object or a reference
+     */
+    private void push(Deque<COSBase> stack, COSBase base) {
+        COSBase object = resolve(base);
+        if (object != null) {
+            stack.push(object);
+        }
+    }
+
+
+    /**
+     * Resolve a reference
+     *
+     * @param base the object or a reference
+     * @return the resolved object or null
+     */
+    private COSBase resolve(COSBase base) {
+        if (base instanceof COSObject) {
+            return ((COSObject) base).getObject();
+        }
+
+        return base;
+    }
+}
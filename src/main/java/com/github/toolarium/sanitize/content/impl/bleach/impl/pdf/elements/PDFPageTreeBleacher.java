@@ -0,0 +1,234 @@
+/*
+ * PDFPageTreeBleacher.java
+ *
+ * Copyright by toolarium, all rights reserved.
+ */
+package com.github.toolarium.sanitize.content.impl.bleach.impl.pdf.elements;
+
+import com.github.toolarium.sanitize.content.impl.ISanitizeContentThreatRegistry;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import org.apache.pdfbox.cos.COSBase;
+import org.apache.pdfbox.cos.COSDictionary;
+import org.apache.pdfbox.cos.COSName;
+import org.apache.pdfbox.pdmodel.PDPage;
+import org.apache.pdfbox.pdmodel.PDPageTree;
+import org.apache.pdfbox.pdmodel.common.PDDestinationOrAction;
+import org.apache.pdfbox.pdmodel.interactive.action.PDPageAdditionalActions;
+import org.apache.pdfbox.pdmodel.interactive.annotation.PDAnnotation;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+
+/**
+ * Detects the threats of the page tree in parallel. The pages are partitioned across a fork-join pool, every page is checked read-only
+ * by its own recorder which collects the removal operations. The {@link PDFDocumentBleacher} then registers the threats and applies
+ * the operations on the calling thread in page order, the result is the same as the one of the serial check. The document is parsed
+ * completely when it is loaded, the detection only reads resolved objects.
+ *
+ * @author Patrick Meier
+ */
+public class PDFPageTreeBleacher {
+    private static final Logger LOG = LoggerFactory.getLogger(PDFPageTreeBleacher.class);
+    private static final int PAGES_PER_TASK = 16;
+    private PDFDocumentBleacher documentBleacher;
+    private ForkJoinPool forkJoinPool;
+
+
+    /**
+     * Constructor for PDFPageTreeBleacher
+     *
+     * @param documentBleacher the document bleacher which applies the operations
+     * @param forkJoinPool the fork join pool of the detection
+     */
+    public PDFPageTreeBleacher(PDFDocumentBleacher documentBleacher, ForkJoinPool forkJoinPool) {
+        this.documentBleacher = documentBleacher;
+        this.forkJoinPool = forkJoinPool;
+    }
+
+
+    /**
+     * Sanitize the pages
+     *
+     * @param pages the pages
+     */
+    public void sanitize(PDPageTree pages) {
+        List<PDPage> pageList = new ArrayList<PDPage>();
+        for (PDPage page : pages) {
+            pageList.add(page);
+        }
+
+        // every task only sets the operations of its own pages
+        List<List<Operation>> operationList = new ArrayList<List<Operation>>(Collections.nCopies(pageList.size(), (List<Operation>) null));
+        forkJoinPool.invoke(new DetectionTask(pageList, operationList, 0, pageList.size()));
+
+        LOG.debug("Apply the operations of " + pageList.size() + " pages...");
+        for (int i = 0; i < pageList.size(); i++) {
+            if (!documentBleacher.getObjectVisitor().visit(pageList.get(i).getCOSObject())) {
+                continue;
+            }
+
+            boolean ownedAnnotation = true;
+            for (Operation operation : operationList.get(i)) {
+                if (operation.annotation != null) {
+                    ownedAnnotation = documentBleacher.visitAnnotation(operation.annotation);
+                } else if (!operation.annotationAction || ownedAnnotation) {
+                    documentBleacher.removeAction(operation.section, operation.description, operation.action, operation.remover);
+                }
+            }
+        }
+    }
+
+
+    /**
+     * Defines an operation of a page, either the visit of an annotation or the removal of an action.
+     */
+    private static class Operation {
+        private final PDAnnotation annotation;
+        private final boolean annotationAction;
+        private final ISanitizeContentThreatRegistry.ISection section;
+        private final String description;
+        private final PDDestinationOrAction action;
+        private final Runnable remover;
+
+
+        /**
+         * Constructor for Operation
+         *
+         * @param annotation the visited annotation or null
+         * @param annotationAction true if the action belongs to the last visited annotation
+         * @param section the section
+         * @param description the description
+         * @param action the action
+         * @param remover removes the action
+         */
+        Operation(PDAnnotation annotation, boolean annotationAction, ISanitizeContentThreatRegistry.ISection section, String description, PDDestinationOrAction action, Runnable remover) {
+            this.annotation = annotation;
+            this.annotationAction = annotationAction;
+            this.section = section;
+            this.description = description;
+            this.action = action;
+            this.remover = remover;
+        }
+    }
+
+
+    /**
+     * Records the operations of a page instead to apply them. The recorder neither registers a threat nor changes the document.
+     */
+    private static class PageRecorder extends PDFDocumentBleacher {
+        private List<Operation> operationList;
+        private boolean inAnnotation;
+
+
+        /**
+         * Constructor for PageRecorder
+         */
+        PageRecorder() {
+            super(null, null);
+            this.operationList = new ArrayList<Operation>();
+            this.inAnnotation = false;
+        }
+
+
+        /**
+         * Record the operations of a page
+         *
+         * @param page the page
+         * @return the operations
+         */
+        List<Operation> record(PDPage page) {
+            operationList = new ArrayList<Operation>();
+            inAnnotation = false;
+            sanitizePage(page);
+            return operationList;
+        }
+
+
+        /**
+         * The actions are read without the page accessor, it adds missing actions to the page dictionary.
+         *
+         * @see com.github.toolarium.sanitize.content.impl.bleach.impl.pdf.elements.PDFDocumentBleacher#getPageActions(org.apache.pdfbox.pdmodel.PDPage)
+         */
+        @Override
+        protected PDPageAdditionalActions getPageActions(PDPage page) {
+            COSBase actions = page.getCOSObject().getDictionaryObject(COSName.AA);
+            if (actions instanceof COSDictionary) {
+                return new PDPageAdditionalActions((COSDictionary) actions);
+            }
+
+            return null;
+        }
+
+
+        /**
+         * @see com.github.toolarium.sanitize.content.impl.bleach.impl.pdf.elements.PDFDocumentBleacher#visitAnnotation(org.apache.pdfbox.pdmodel.interactive.annotation.PDAnnotation)
+         */
+        @Override
+        protected boolean visitAnnotation(PDAnnotation annotation) {
+            operationList.add(new Operation(annotation, false, null, null, null, null));
+            inAnnotation = true;
+            return true;
+        }
+
+
+        /**
+         * @see com.github.toolarium.sanitize.content.impl.bleach.impl.pdf.elements.PDFDocumentBleacher#removeAction(com.github.toolarium.sanitize.content.impl.ISanitizeContentThreatRegistry.ISection, java.lang.String, org.apache.pdfbox.pdmodel.common.PDDestinationOrAction, java.lang.Runnable)
+         */
+        @Override
+        protected void removeAction(ISanitizeContentThreatRegistry.ISection section, String description, PDDestinationOrAction action, Runnable remover) {
+            if (action != null) {
+                operationList.add(new Operation(null, inAnnotation, section, description, action, remover));
+            }
+        }
+    }
+
+
+    /**
+     * Detects the operations of a range of pages.
+     */
+    private static class DetectionTask extends RecursiveAction {
+        private static final long serialVersionUID = 2871447150336475920L;
+        private final transient List<PDPage> pageList;
+        private final transient List<List<Operation>> operationList;
+        private final int from;
+        private final int to;
+
+
+        /**
+         * Constructor for DetectionTask
+         *
+         * @param pageList the pages
+         * @param operationList the operations per page
+         * @param from the first page index, inclusive
+         * @param to the last page index, exclusive
+         */
+        DetectionTask(List<PDPage> pageList, List<List<Operation>> operationList, int from, int to) {
+            this.pageList = pageList;
+            this.operationList = operationList;
+            this.from = from;
+            this.to = to;
+        }
+
+
+        /**
+         * @see java.util.concurrent.RecursiveAction#compute()
+         */
+        @Override
+        protected void compute() {
+            if (to - from > PAGES_PER_TASK) {
+                int middle = (from + to) >>> 1;
+                invokeAll(new DetectionTask(pageList, operationList, from, middle), new DetectionTask(pageList, operationList, middle, to));
+                return;
+            }
+
+            PageRecorder recorder = new PageRecorder();
+            for (int i = from; i < to; i++) {
+                operationList.set(i, recorder.record(pageList.get(i)));
+            }
+        }
+    }
+}
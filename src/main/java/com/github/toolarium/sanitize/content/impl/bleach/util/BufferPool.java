@@ -0,0 +1,89 @@
+/*
+ * BufferPool.java
+ *
+ * Copyright by toolarium, all rights reserved.
+ */
+package com.github.toolarium.sanitize.content.impl.bleach.util;
+
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+
+
+/**
+ * Bounded pool of copy buffers. It avoids to allocate a new heap buffer for every stream copy.
+ *
+ * @author Patrick Meier
+ */
+public final class BufferPool {
+    /** The size of a pooled buffer */
+    public static final int BUFFER_SIZE = 64 * 1024;
+
+    private static final int MAX_POOLED_BUFFERS = 32;
+    private final Queue<byte[]> bufferQueue;
+    private final AtomicInteger pooledBuffers;
+
+
+    /**
+     * Private class, the only instance of the singelton which will be created by accessing the holder class.
+     *
+     * @author Patrick Meier
+     */
+    private static class HOLDER {
+        static final BufferPool INSTANCE = new BufferPool();
+    }
+
+
+    /**
+     * Constructor
+     */
+    private BufferPool() {
+        bufferQueue = new ConcurrentLinkedQueue<byte[]>();
+        pooledBuffers = new AtomicInteger(0);
+    }
+
+
+    /**
+     * Get the instance
+     *
+     * @return the instance
+     */
+    public static BufferPool getInstance() {
+        return HOLDER.INSTANCE;
+    }
+
+
+    /**
+     * Acquire a buffer. The buffer must be given back by {@link #release(byte[])}.
+     *
+     * @return the buffer
+     */
+    public byte[] acquire() {
+        byte[] buffer = bufferQueue.poll();
+        if (buffer == null) {
+            return new byte[BUFFER_SIZE];
+        }
+
+        pooledBuffers.decrementAndGet();
+        return buffer;
+    }
+
+
+    /**
+     * Release a buffer
+     *
+     * @param buffer the buffer to give back
+     */
+    public void release(byte[] buffer) {
+        if (buffer == null || buffer.length != BUFFER_SIZE) {
+            return;
+        }
+
+        if (pooledBuffers.incrementAndGet() > MAX_POOLED_BUFFERS) {
+            pooledBuffers.decrementAndGet();
+            return;
+        }
+
+        bufferQueue.offer(buffer);
+    }
+}
@@ -7,6 +7,7 @@ package com.github.toolarium.sanitize.content.impl.bleach.util;
 
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.OutputStream;
 import java.io.PushbackInputStream;
 
 
@@ -41,6 +42,29 @@ public class CloseShieldInputStream extends PushbackInputStream {
     }
 
 
+    /**
+     * Transfers first the pushed back bytes and then the content of the underlying stream, see {@link StreamUtils#transfer(InputStream, OutputStream)}.
+     *
+     * @see java.io.InputStream#transferTo(java.io.OutputStream)
+     */
+    @Override
+    public long transferTo(OutputStream out) throws IOException {
+        if (buf == null) {
+            throw new IOException("Stream closed");
+        }
+
+        long count = 0;
+        int unread = buf.length - pos;
+        if (unread > 0) {
+            out.write(buf, pos, unread);
+            pos = buf.length;
+            count += unread;
+        }
+
+        return count + StreamUtils.getInstance().transfer(in, out);
+    }
+
+
     /**
      * Real close
      *
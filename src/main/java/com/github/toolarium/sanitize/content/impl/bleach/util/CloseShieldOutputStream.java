@@ -0,0 +1,47 @@
+/*
+ * CloseShieldOutputStream.java
+ *
+ * Copyright by toolarium, all rights reserved.
+ */
+package com.github.toolarium.sanitize.content.impl.bleach.util;
+
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+
+
+/**
+ * Proxy stream that prevents the underlying output stream from being closed, see {@link CloseShieldInputStream}.
+ *
+ * @author Patrick Meier
+ */
+public class CloseShieldOutputStream extends FilterOutputStream {
+
+    /**
+     * Constructor for CloseShieldOutputStream
+     *
+     * @param outStream the output stream
+     */
+    public CloseShieldOutputStream(OutputStream outStream) {
+        super(outStream);
+    }
+
+
+    /**
+     * @see java.io.FilterOutputStream#write(byte[], int, int)
+     */
+    @Override
+    public void write(byte[] b, int off, int len) throws IOException {
+        out.write(b, off, len);
+    }
+
+
+    /**
+     * @see java.io.FilterOutputStream#close()
+     */
+    @Override
+    public void close() throws IOException {
+        // no-action, only flush
+        flush();
+    }
+}
@@ -0,0 +1,243 @@
+/*
+ * ContentHandOffBuffer.java
+ *
+ * Copyright by toolarium, all rights reserved.
+ */
+package com.github.toolarium.sanitize.content.impl.bleach.util;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+
+/**
+ * Hands off the content between two processing stages. The content is kept in memory up to a threshold,
+ * above it spills to a temp file. The buffer must be released by {@link #release()}.
+ *
+ * @author Patrick Meier
+ */
+public class ContentHandOffBuffer extends OutputStream {
+    private static final Logger LOG = LoggerFactory.getLogger(ContentHandOffBuffer.class);
+    private final long threshold;
+    private final File tempDirectory;
+    private MemoryBuffer memoryBuffer;
+    private File file;
+    private OutputStream fileOutputStream;
+    private InputStream inputStream;
+    private long size;
+    private boolean closed;
+
+
+    /**
+     * Constructor for ContentHandOffBuffer
+     *
+     * @param threshold the number of bytes which are kept in memory
+     * @param tempDirectory the temp directory or null to use the default temp directory
+     */
+    public ContentHandOffBuffer(long threshold, File tempDirectory) {
+        this.threshold = threshold;
+        this.tempDirectory = tempDirectory;
+        this.memoryBuffer = new MemoryBuffer();
+        this.file = null;
+        this.fileOutputStream = null;
+        this.inputStream = null;
+        this.size = 0;
+        this.closed = false;
+    }
+
+
+    /**
+     * @see java.io.OutputStream#write(int)
+     */
+    @Override
+    public void write(int b) throws IOException {
+        prepareWrite(1).write(b);
+        size++;
+    }
+
+
+    /**
+     * @see java.io.OutputStream#write(byte[], int, int)
+     */
+    @Override
+    public void write(byte[] b, int off, int len) throws IOException {
+        prepareWrite(len).write(b, off, len);
+        size += len;
+    }
+
+
+    /**
+     * @see java.io.OutputStream#flush()
+     */
+    @Override
+    public void flush() throws IOException {
+        if (fileOutputStream != null) {
+            fileOutputStream.flush();
+        }
+    }
+
+
+    /**
+     * Close the write side of the buffer, the content is still available by {@link #getInputStream()}.
+     *
+     * @see java.io.OutputStream#close()
+     */
+    @Override
+    public void close() throws IOException {
+        if (closed) {
+            return;
+        }
+
+        closed = true;
+        if (fileOutputStream != null) {
+            fileOutputStream.close();
+            fileOutputStream = null;
+        }
+    }
+
+
+    /**
+     * Get the size of the buffered content
+     *
+     * @return the size in bytes
+     */
+    public long size() {
+        return size;
+    }
+
+
+    /**
+     * Check if the content is spilled to a temp file
+     *
+     * @return true if the content is in a temp file
+     */
+    public boolean isSpilled() {
+        return file != null;
+    }
+
+
+    /**
+     * Get the file of the spilled content
+     *
+     * @return the file or null if the content is kept in memory
+     */
+    public File getFile() {
+        return file;
+    }
+
+
+    /**
+     * Get an input stream of the buffered content. It closes the write side of the buffer.
+     *
+     * @return the input stream
+     * @throws IOException In case of an I/O error
+     */
+    public InputStream getInputStream() throws IOException {
+        close();
+        closeInputStream();
+
+        if (file != null) {
+            inputStream = new FileInputStream(file);
+        } else {
+            inputStream = memoryBuffer.toInputStream();
+        }
+
+        return inputStream;
+    }
+
+
+    /**
+     * Release the buffer and delete the temp file
+     */
+    public void release() {
+        try {
+            close();
+        } catch (IOException e) {
+            LOG.warn("Could not close hand-off buffer: " + e.getMessage());
+        }
+
+        closeInputStream();
+        memoryBuffer = null;
+
+        if (file != null) {
+            try {
+                Files.deleteIfExists(file.toPath());
+            } catch (IOException e) {
+                LOG.warn("Could not delete temp file " + file + ": " + e.getMessage());
+            }
+
+            file = null;
+        }
+    }
+
+
+    /**
+     * Prepare the write
+     *
+     * @param len the length to write
+     * @return the stream to write into
+     * @throws IOException In case of an I/O error
+     */
+    private OutputStream prepareWrite(int len) throws IOException {
+        if (closed) {
+            throw new IOException("Hand-off buffer is already closed!");
+        }
+
+        if (fileOutputStream != null) {
+            return fileOutputStream;
+        }
+
+        if (size + len <= threshold) {
+            return memoryBuffer;
+        }
+
+        // spill to a temp file
+        file = File.createTempFile("sanitize-", ".tmp", tempDirectory);
+        LOG.debug("Spill hand-off buffer to temp file {} ({} bytes)", file, size + len);
+        fileOutputStream = new BufferedOutputStream(new FileOutputStream(file), BufferPool.BUFFER_SIZE);
+        memoryBuffer.writeTo(fileOutputStream);
+        memoryBuffer = new MemoryBuffer();
+        return fileOutputStream;
+    }
+
+
+    /**
+     * Close the input stream
+     */
+    private void closeInputStream() {
+        if (inputStream != null) {
+            try {
+                inputStream.close();
+            } catch (IOException e) {
+                LOG.warn("Could not close input stream: " + e.getMessage());
+            }
+
+            inputStream = null;
+        }
+    }
+
+
+    /**
+     * Memory buffer which allows to read the content without a copy.
+     */
+    private static class MemoryBuffer extends ByteArrayOutputStream {
+
+        /**
+         * Get the content as input stream
+         *
+         * @return the input stream
+         */
+        InputStream toInputStream() {
+            return new ByteArrayInputStream(buf, 0, count);
+        }
+    }
+}
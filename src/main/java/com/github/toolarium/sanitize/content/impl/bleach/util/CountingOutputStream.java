@@ -0,0 +1,61 @@
+/*
+ * CountingOutputStream.java
+ *
+ * Copyright by toolarium, all rights reserved.
+ */
+package com.github.toolarium.sanitize.content.impl.bleach.util;
+
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+
+
+/**
+ * Proxy stream that counts the written bytes.
+ *
+ * @author Patrick Meier
+ */
+public class CountingOutputStream extends FilterOutputStream {
+    private long count;
+
+
+    /**
+     * Constructor for CountingOutputStream
+     *
+     * @param outStream the output stream
+     */
+    public CountingOutputStream(OutputStream outStream) {
+        super(outStream);
+        count = 0;
+    }
+
+
+    /**
+     * @see java.io.FilterOutputStream#write(int)
+     */
+    @Override
+    public void write(int b) throws IOException {
+        out.write(b);
+        count++;
+    }
+
+
+    /**
+     * @see java.io.FilterOutputStream#write(byte[], int, int)
+     */
+    @Override
+    public void write(byte[] b, int off, int len) throws IOException {
+        out.write(b, off, len);
+        count += len;
+    }
+
+
+    /**
+     * Get the number of written bytes
+     *
+     * @return the number of written bytes
+     */
+    public long getCount() {
+        return count;
+    }
+}
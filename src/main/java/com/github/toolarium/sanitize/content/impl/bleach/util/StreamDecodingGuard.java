@@ -0,0 +1,243 @@
+/*
+ * StreamDecodingGuard.java
+ *
+ * Copyright by toolarium, all rights reserved.
+ */
+package com.github.toolarium.sanitize.content.impl.bleach.util;
+
+import com.github.toolarium.sanitize.content.dto.SanitizeContentConfiguration;
+import com.github.toolarium.sanitize.content.exception.SanitizeContentException;
+import com.github.toolarium.sanitize.content.exception.SanitizeContentExceptionReason;
+import com.github.toolarium.sanitize.content.impl.ISanitizeContentThreatRegistry;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.concurrent.atomic.AtomicLong;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+
+/**
+ * Guards the decoding of the streams of one document against a decompression bomb. The decoded bytes are counted while they are read,
+ * a stream and the document are limited by the maximum decoded size and by the maximum ratio of the decoded to the encoded size. As
+ * soon as a limit is crossed the threat is registered and every further read fails, the decoded content is never read to its end.
+ * The ratio is only checked above a minimum decoded size, a small stream can have a high ratio.
+ *
+ * @author Patrick Meier
+ */
+public class StreamDecodingGuard {
+    /** The minimum decoded size from which the decoding ratio is checked: 1 MB */
+    public static final long MIN_RATIO_DECODED_SIZE = 1024L * 1024L;
+
+    private static final Logger LOG = LoggerFactory.getLogger(StreamDecodingGuard.class);
+    private final SanitizeContentConfiguration configuration;
+    private final ISanitizeContentThreatRegistry threatRegistry;
+    private final ISanitizeContentThreatRegistry.ISection section;
+    private final long documentLength;
+    private final AtomicLong decodedBytes;
+
+
+    /**
+     * Constructor for StreamDecodingGuard
+     *
+     * @param configuration the configuration
+     * @param threatRegistry the threat registry of the document
+     * @param section the section of the registered threat
+     * @param documentLength the encoded length of the document or -1 if the ratio of the document is not checked
+     */
+    public StreamDecodingGuard(SanitizeContentConfiguration configuration, ISanitizeContentThreatRegistry threatRegistry, ISanitizeContentThreatRegistry.ISection section, long documentLength) {
+        this.configuration = configuration;
+        this.threatRegistry = threatRegistry;
+        this.section = section;
+        this.documentLength = documentLength;
+        this.decodedBytes = new AtomicLong(0);
+    }
+
+
+    /**
+     * Guard a decoded stream
+     *
+     * @param name the name of the stream, it is the action of the registered threat
+     * @param decodedInputStream the decoded input stream
+     * @param encodedLength the encoded length of the stream or -1 if the ratio of the stream is not checked
+     * @return the guarded input stream
+     */
+    public InputStream guard(String name, InputStream decodedInputStream, long encodedLength) {
+        return new GuardedInputStream(name, decodedInputStream, encodedLength);
+    }
+
+
+    /**
+     * Get the decoded bytes of all streams of the document
+     *
+     * @return the decoded bytes
+     */
+    public long getDecodedBytes() {
+        return decodedBytes.get();
+    }
+
+
+    /**
+     * Check the limits after bytes are decoded
+     *
+     * @param streamDecodedBytes the decoded bytes of the stream
+     * @param encodedLength the encoded length of the stream or -1
+     * @param documentDecodedBytes the decoded bytes of all streams of the document
+     * @return the description of the exceeded limit or null
+     */
+    private String checkLimits(long streamDecodedBytes, long encodedLength, long documentDecodedBytes) {
+        if (streamDecodedBytes > configuration.getMaxDecodedStreamSize()) {
+            return "Maximum decoded stream size exceeded";
+        }
+
+        if (exceedsRatio(streamDecodedBytes, encodedLength)) {
+            return "Maximum decoding ratio exceeded";
+        }
+
+        if (documentDecodedBytes > configuration.getMaxDecodedDocumentSize()) {
+            return "Maximum decoded document size exceeded";
+        }
+
+        if (exceedsRatio(documentDecodedBytes, documentLength)) {
+            return "Maximum decoding ratio of the document exceeded";
+        }
+
+        return null;
+    }
+
+
+    /**
+     * Check if the ratio of the decoded to the encoded size is exceeded
+     *
+     * @param decoded the decoded size
+     * @param encoded the encoded size or -1
+     * @return true if the ratio is exceeded, a ratio less than 1 is not checked
+     */
+    private boolean exceedsRatio(long decoded, long encoded) {
+        if (encoded < 0 || configuration.getMaxDecodingRatio() < 1 || decoded <= MIN_RATIO_DECODED_SIZE) {
+            return false;
+        }
+
+        return decoded / configuration.getMaxDecodingRatio() > encoded;
+    }
+
+
+    /**
+     * Defines the guarded input stream of a decoded stream.
+     */
+    private class GuardedInputStream extends FilterInputStream {
+        private final String name;
+        private final long encodedLength;
+        private long streamDecodedBytes;
+        private String exceededLimit;
+
+
+        /**
+         * Constructor for GuardedInputStream
+         *
+         * @param name the name of the stream
+         * @param in the decoded input stream
+         * @param encodedLength the encoded length of the stream or -1
+         */
+        GuardedInputStream(String name, InputStream in, long encodedLength) {
+            super(in);
+            this.name = name;
+            this.encodedLength = encodedLength;
+            this.streamDecodedBytes = 0;
+            this.exceededLimit = null;
+        }
+
+
+        /**
+         * @see java.io.FilterInputStream#read()
+         */
+        @Override
+        public int read() throws IOException {
+            checkExceeded();
+            int b = super.read();
+            if (b >= 0) {
+                consume(1);
+            }
+
+            return b;
+        }
+
+
+        /**
+         * @see java.io.FilterInputStream#read(byte[], int, int)
+         */
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            checkExceeded();
+            int n = super.read(b, off, len);
+            if (n > 0) {
+                consume(n);
+            }
+
+            return n;
+        }
+
+
+        /**
+         * @see java.io.FilterInputStream#skip(long)
+         */
+        @Override
+        public long skip(long n) throws IOException {
+            // the skipped bytes are decoded as well
+            checkExceeded();
+            long skipped = super.skip(n);
+            if (skipped > 0) {
+                consume(skipped);
+            }
+
+            return skipped;
+        }
+
+
+        /**
+         * @see java.io.FilterInputStream#markSupported()
+         */
+        @Override
+        public boolean markSupported() {
+            // a reset would count the bytes twice
+            return false;
+        }
+
+
+        /**
+         * Check if a limit is already exceeded, the limit of the document can be exceeded by another stream
+         *
+         * @throws SanitizeContentException In case a limit is exceeded
+         */
+        private void checkExceeded() throws SanitizeContentException {
+            if (exceededLimit == null) {
+                exceededLimit = checkLimits(streamDecodedBytes, encodedLength, decodedBytes.get());
+                if (exceededLimit != null) {
+                    threatRegistry.registerThreat(section, exceededLimit, name);
+                }
+            }
+
+            if (exceededLimit != null) {
+                throw new SanitizeContentException(exceededLimit + " by " + name + "!", SanitizeContentExceptionReason.DECODING_LIMIT_EXCEEDED);
+            }
+        }
+
+
+        /**
+         * Consume decoded bytes
+         *
+         * @param length the number of decoded bytes
+         * @throws SanitizeContentException In case a limit is exceeded
+         */
+        private void consume(long length) throws SanitizeContentException {
+            streamDecodedBytes += length;
+            long documentDecodedBytes = decodedBytes.addAndGet(length);
+            exceededLimit = checkLimits(streamDecodedBytes, encodedLength, documentDecodedBytes);
+            if (exceededLimit != null) {
+                LOG.debug("Decoding of " + name + " aborted after " + streamDecodedBytes + " bytes: " + exceededLimit);
+                threatRegistry.registerThreat(section, exceededLimit, name);
+                throw new SanitizeContentException(exceededLimit + " by " + name + "!", SanitizeContentExceptionReason.DECODING_LIMIT_EXCEEDED);
+            }
+        }
+    }
+}
@@ -5,12 +5,15 @@
  */
 package com.github.toolarium.sanitize.content.impl.bleach.util;
 
+import java.io.ByteArrayInputStream;
 import java.io.File;
+import java.io.FileInputStream;
 import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
 import java.io.PushbackInputStream;
+import java.nio.channels.FileChannel;
 import java.util.Arrays;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -70,28 +73,51 @@ public final class StreamUtils {
             return false;
         }
 
-        stream.mark(header.length);
-
         byte[] contentMagic = new byte[header.length];
-        int length;
+        int length = peek(name, stream, contentMagic);
+        return length == header.length && Arrays.equals(contentMagic, header);
+    }
+
+
+    /**
+     * Read the first bytes of the content without to consume them. The stream must support mark or pushback.
+     *
+     * @param name the name
+     * @param stream the stream
+     * @param buffer the buffer to read into
+     * @return the number of bytes which are read into the buffer
+     */
+    public int peek(String name, InputStream stream, byte[] buffer) {
+        if (stream == null || buffer == null || buffer.length == 0) {
+            return 0;
+        }
+
+        stream.mark(buffer.length);
+
+        int length = 0;
         try {
-            length = stream.read(contentMagic);
-
-            if (stream instanceof CloseShieldInputStream) {
-                CloseShieldInputStream pin1 = (CloseShieldInputStream) stream;
-                pin1.unread(contentMagic, 0, length);
-            } else if (stream instanceof PushbackInputStream) {
-                PushbackInputStream pin = (PushbackInputStream) stream;
-                pin.unread(contentMagic, 0, length);
+            while (length < buffer.length) {
+                int read = stream.read(buffer, length, buffer.length - length);
+                if (read < 0) {
+                    break;
+                }
+
+                length += read;
+            }
+
+            if (stream instanceof PushbackInputStream) {
+                if (length > 0) {
+                    ((PushbackInputStream) stream).unread(buffer, 0, length);
+                }
             } else {
                 stream.reset();
             }
         } catch (IOException e) {
             LOG.info("Could not verify the content header of [" + name + "]:" + e.getMessage(), e);
-            return false;
+            return 0;
         }
 
-        return length == header.length && Arrays.equals(contentMagic, header);
+        return length;
     }
 
 
@@ -100,17 +126,75 @@ public final class StreamUtils {
      *
      * @param is the input stream
      * @param os the output stream
+     * @return the number of copied bytes
      * @throws IOException In case of an I/O error
      */
-    public void copy(InputStream is, OutputStream os) throws IOException {
-        byte[] buffer = new byte[10024];
-        int len;
-        while ((len = is.read(buffer)) != -1) {
-            os.write(buffer, 0, len);
+    public long copy(InputStream is, OutputStream os) throws IOException {
+        byte[] buffer = BufferPool.getInstance().acquire();
+        try {
+            long count = 0;
+            int len;
+            while ((len = is.read(buffer)) != -1) {
+                os.write(buffer, 0, len);
+                count += len;
+            }
+
+            return count;
+        } finally {
+            BufferPool.getInstance().release(buffer);
         }
     }
 
 
+    /**
+     * Transfer a stream as is (pass-through). In case the source and the sink are file based the content
+     * is transfered by the file channels (zero-copy), otherwise a pooled buffer is used.
+     *
+     * @param is the input stream
+     * @param os the output stream
+     * @return the number of transfered bytes
+     * @throws IOException In case of an I/O error
+     */
+    public long transfer(InputStream is, OutputStream os) throws IOException {
+        if (is instanceof CloseShieldInputStream || is instanceof ByteArrayInputStream) {
+            // they write their buffered content directly
+            return is.transferTo(os);
+        }
+
+        if (is instanceof FileInputStream && os instanceof FileOutputStream) {
+            return transfer(((FileInputStream) is).getChannel(), ((FileOutputStream) os).getChannel());
+        }
+
+        return copy(is, os);
+    }
+
+
+    /**
+     * Transfer the remaining content of a file channel into another file channel.
+     *
+     * @param in the input channel
+     * @param out the output channel
+     * @return the number of transfered bytes
+     * @throws IOException In case of an I/O error
+     */
+    public long transfer(FileChannel in, FileChannel out) throws IOException {
+        long position = in.position();
+        long size = in.size();
+        long count = 0;
+        while (position + count < size) {
+            long len = in.transferTo(position + count, size - position - count, out);
+            if (len <= 0) {
+                break;
+            }
+
+            count += len;
+        }
+
+        in.position(position + count);
+        return count;
+    }
+
+
     /**
      * Store a stream into a file
      *
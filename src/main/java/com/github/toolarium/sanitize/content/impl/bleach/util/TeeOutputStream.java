@@ -0,0 +1,62 @@
+/*
+ * TeeOutputStream.java
+ *
+ * Copyright by toolarium, all rights reserved.
+ */
+package com.github.toolarium.sanitize.content.impl.bleach.util;
+
+import java.io.IOException;
+import java.io.OutputStream;
+
+
+/**
+ * Output stream which writes the content into two streams. The streams are not closed.
+ *
+ * @author Patrick Meier
+ */
+public class TeeOutputStream extends OutputStream {
+    private final OutputStream out;
+    private final OutputStream branch;
+
+
+    /**
+     * Constructor for TeeOutputStream
+     *
+     * @param out the output stream
+     * @param branch the second output stream
+     */
+    public TeeOutputStream(OutputStream out, OutputStream branch) {
+        this.out = out;
+        this.branch = branch;
+    }
+
+
+    /**
+     * @see java.io.OutputStream#write(int)
+     */
+    @Override
+    public void write(int b) throws IOException {
+        out.write(b);
+        branch.write(b);
+    }
+
+
+    /**
+     * @see java.io.OutputStream#write(byte[], int, int)
+     */
+    @Override
+    public void write(byte[] b, int off, int len) throws IOException {
+        out.write(b, off, len);
+        branch.write(b, off, len);
+    }
+
+
+    /**
+     * @see java.io.OutputStream#flush()
+     */
+    @Override
+    public void flush() throws IOException {
+        out.flush();
+        branch.flush();
+    }
+}
@@ -5,25 +5,60 @@
  */
 package com.github.toolarium.sanitize.content;
 
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertFalse;
 import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
 import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
 import static org.junit.jupiter.api.Assertions.assertThrows;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 
+import com.github.toolarium.sanitize.content.dto.SanitizeContentConfiguration;
 import com.github.toolarium.sanitize.content.dto.SanitizeContentCredentialAccess;
+import com.github.toolarium.sanitize.content.dto.SanitizeContentJob;
+import com.github.toolarium.sanitize.content.dto.SanitizeContentPrefilterVerdict;
 import com.github.toolarium.sanitize.content.dto.SanitizeContentResult;
+import com.github.toolarium.sanitize.content.dto.SanitizeContentThreatInformation;
 import com.github.toolarium.sanitize.content.exception.SanitizeContentException;
+import com.github.toolarium.sanitize.content.impl.SanitizeContentProcessorImpl;
+import com.github.toolarium.sanitize.content.impl.SanitizeContentResultCache;
+import com.github.toolarium.sanitize.content.impl.bleach.SanitizeContentBleacherRegistry;
+import com.github.toolarium.sanitize.content.impl.bleach.impl.pdf.PDFMemoryGovernor;
 import com.github.toolarium.sanitize.content.impl.bleach.impl.pdf.PDFSanitizeContentBleacher;
+import com.github.toolarium.sanitize.content.impl.bleach.impl.pdf.PDFSanitizeContentBleacherProvider;
 import com.github.toolarium.sanitize.content.impl.bleach.impl.pdf.PDFSanitizeSections;
 import com.github.toolarium.sanitize.content.pdf.util.PDFUtil;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
 import java.io.FileInputStream;
 import java.io.FileNotFoundException;
 import java.io.FileOutputStream;
 import java.io.IOException;
+import java.io.ObjectOutputStream;
+import java.io.Serializable;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import org.apache.pdfbox.cos.COSArray;
+import org.apache.pdfbox.cos.COSDictionary;
+import org.apache.pdfbox.cos.COSName;
+import org.apache.pdfbox.cos.COSStream;
+import org.apache.pdfbox.pdmodel.PDDocument;
+import org.apache.pdfbox.pdmodel.PDPageContentStream;
+import org.apache.pdfbox.pdmodel.interactive.form.PDAcroForm;
 import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
 
 
 /**
@@ -240,6 +275,473 @@ public class SanitizeContentTest {
     }
 
 
+    /**
+     * Test the pass-through of an unsupported file
+     * 
+     * @throws IOException In case of an I/O error
+     */
+    @Test
+    public void testPassThrough() throws IOException {
+        
+        String filename = "test.png";
+        SanitizeContentResult result = SanitizeContentFactory.getInstance().getSanitizeContentProcessor().sanitize(filename, 
+                new FileInputStream(Paths.get(SRC_TEST_RESOURCES, filename).toFile()),
+                new FileOutputStream(Paths.get(BUILD, "pass-through-" + filename).toFile()), 
+                null);
+        
+        assertNotNull(result);
+        assertFalse(result.isModifiedContent());
+        assertEquals(Files.size(Paths.get(SRC_TEST_RESOURCES, filename)), result.getCopiedBytes());
+        assertEquals(Files.size(Paths.get(SRC_TEST_RESOURCES, filename)), Files.size(Paths.get(BUILD, "pass-through-" + filename)));
+    }
+
+
+    /**
+     * Test the file based sanitizing
+     * 
+     * @throws SanitizeContentException In case of a sanitizing error
+     */
+    @Test
+    public void testPathFileNeedsToBeSanitized() throws SanitizeContentException {
+        
+        String filename = "FileNeedsToBeSanitized.pdf";
+        SanitizeContentResult result = SanitizeContentFactory.getInstance().getSanitizeContentProcessor().sanitize(Paths.get(SRC_TEST_RESOURCES, filename), 
+                Paths.get(BUILD, "path-" + filename), 
+                null);
+        
+        assertNotNull(result);
+        assertEquals(PDFSanitizeContentBleacher.APPLICATION_PDF, result.getContentType());
+        assertTrue(result.isModifiedContent());
+        assertEquals(0, result.getCopiedBytes());
+        assertEquals(1, result.getThreadInformationList().size());
+        assertEquals(PDFSanitizeSections.DOCUMENT_CATALOG_ACTION.name(), result.getThreadInformationList().get(0).getSection());
+        assertEquals("OpenAction", result.getThreadInformationList().get(0).getDescription());
+    }
+
+
+    /**
+     * Test the file based pass-through of an unsupported file
+     * 
+     * @throws IOException In case of an I/O error
+     */
+    @Test
+    public void testPathPassThrough() throws IOException {
+        
+        String filename = "test.png";
+        SanitizeContentResult result = SanitizeContentFactory.getInstance().getSanitizeContentProcessor().sanitize(Paths.get(SRC_TEST_RESOURCES, filename), 
+                Paths.get(BUILD, "path-" + filename), 
+                null);
+        
+        assertNotNull(result);
+        assertFalse(result.isModifiedContent());
+        assertEquals(Files.size(Paths.get(SRC_TEST_RESOURCES, filename)), result.getCopiedBytes());
+        assertEquals(Files.size(Paths.get(SRC_TEST_RESOURCES, filename)), Files.size(Paths.get(BUILD, "path-" + filename)));
+    }
+
+
+    /**
+     * Test the asynchronous batch sanitizing
+     * 
+     * @throws Exception In case of an error
+     */
+    @Test
+    public void testSanitizeAll() throws Exception {
+        
+        SanitizeContentConfiguration configuration = new SanitizeContentConfiguration();
+        configuration.setMaxConcurrentSanitizing(2);
+        configuration.setMaxInFlightBytes(1024L);
+        
+        List<SanitizeContentJob> jobs = new ArrayList<SanitizeContentJob>();
+        jobs.add(new SanitizeContentJob(Paths.get(SRC_TEST_RESOURCES, "FileNeedsToBeSanitized.pdf"), Paths.get(BUILD, "async-FileNeedsToBeSanitized.pdf"), null));
+        jobs.add(new SanitizeContentJob(Paths.get(SRC_TEST_RESOURCES, "FileNeedsToBeSanitized2.pdf"), Paths.get(BUILD, "async-FileNeedsToBeSanitized2.pdf"), null));
+        jobs.add(new SanitizeContentJob(Paths.get(SRC_TEST_RESOURCES, "test.png"), Paths.get(BUILD, "async-test.png"), null));
+        
+        ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+        jobs.add(new SanitizeContentJob("test.pdf", new FileInputStream(Paths.get(SRC_TEST_RESOURCES, "test.pdf").toFile()), outputStream, null));
+        
+        List<CompletableFuture<SanitizeContentResult>> futures = SanitizeContentFactory.getInstance().getSanitizeContentProcessor(configuration).sanitizeAll(jobs);
+        assertEquals(jobs.size(), futures.size());
+        assertEquals(1, futures.get(0).get().getThreadInformationList().size());
+        assertEquals(14, futures.get(1).get().getThreadInformationList().size());
+        assertEquals(Files.size(Paths.get(SRC_TEST_RESOURCES, "test.png")), futures.get(2).get().getCopiedBytes());
+        assertFalse(futures.get(3).get().isModifiedContent());
+        assertTrue(outputStream.size() > 0);
+        
+        CompletableFuture<SanitizeContentResult> future = SanitizeContentFactory.getInstance().getSanitizeContentProcessor().sanitizeAsync("test.pdf", 
+                new FileInputStream(Paths.get(SRC_TEST_RESOURCES, "test-protected.pdf").toFile()),
+                new ByteArrayOutputStream(), 
+                null);
+        ExecutionException e = assertThrows(ExecutionException.class, () -> future.get());
+        assertTrue(e.getCause() instanceof SanitizeContentException);
+    }
+
+
+    /**
+     * Test the shared processor, the concurrent invocations don't share their threats
+     * 
+     * @throws Exception In case of an error
+     */
+    @Test
+    public void testSharedProcessor() throws Exception {
+        assertSame(SanitizeContentFactory.getInstance().getSanitizeContentProcessor(), SanitizeContentFactory.getInstance().getSanitizeContentProcessor());
+        assertSame(SanitizeContentFactory.getInstance().getSanitizeContentProcessor(new SanitizeContentConfiguration()), 
+                   SanitizeContentFactory.getInstance().getSanitizeContentProcessor(new SanitizeContentConfiguration()));
+
+        // the processor keeps a copy of the configuration, a modification gets another processor
+        SanitizeContentConfiguration configuration = new SanitizeContentConfiguration();
+        ISanitizeContentProcessor configurationProcessor = SanitizeContentFactory.getInstance().getSanitizeContentProcessor(configuration);
+        configuration.setPdfDeepObjectScan(true);
+        assertNotSame(configurationProcessor, SanitizeContentFactory.getInstance().getSanitizeContentProcessor(configuration));
+        configuration.setPdfDeepObjectScan(false);
+        assertSame(configurationProcessor, SanitizeContentFactory.getInstance().getSanitizeContentProcessor(configuration));
+
+        // the least recently used processor is evicted
+        for (int i = 0; i < SanitizeContentFactory.MAX_PROCESSORS; i++) {
+            SanitizeContentConfiguration otherConfiguration = new SanitizeContentConfiguration();
+            otherConfiguration.setMaxNestingDepth(1000 + i);
+            SanitizeContentFactory.getInstance().getSanitizeContentProcessor(otherConfiguration);
+        }
+        assertNotSame(configurationProcessor, SanitizeContentFactory.getInstance().getSanitizeContentProcessor(configuration));
+
+        byte[] content = Files.readAllBytes(Paths.get(SRC_TEST_RESOURCES, "FileNeedsToBeSanitized2.pdf"));
+        ISanitizeContentProcessor processor = SanitizeContentFactory.getInstance().getSanitizeContentProcessor();
+        List<CompletableFuture<SanitizeContentResult>> futures = new ArrayList<CompletableFuture<SanitizeContentResult>>();
+        for (int i = 0; i < 8; i++) {
+            futures.add(CompletableFuture.supplyAsync(() -> {
+                try {
+                    return processor.sanitize("FileNeedsToBeSanitized2.pdf", new ByteArrayInputStream(content), new ByteArrayOutputStream(), null);
+                } catch (SanitizeContentException e) {
+                    throw new IllegalStateException(e);
+                }
+            }));
+        }
+
+        for (CompletableFuture<SanitizeContentResult> future : futures) {
+            assertEquals(14, future.get().getThreadInformationList().size());
+        }
+    }
+
+
+    /**
+     * Test the PDF memory settings, the scratch file falls back to temp files in case the global budget is exhausted
+     * 
+     * @throws SanitizeContentException In case of a sanitizing error
+     */
+    @Test
+    public void testPDFMemorySettings() throws SanitizeContentException {
+        
+        SanitizeContentConfiguration configuration = new SanitizeContentConfiguration();
+        configuration.setPdfMaxMainMemoryBytes(4096);
+        configuration.setPdfScratchDirectory(Paths.get(BUILD).toFile());
+        
+        long maxMainMemoryBytes = PDFMemoryGovernor.getInstance().getMaxMainMemoryBytes();
+        SanitizeContentFactory.getInstance().setPDFGlobalMaxMainMemoryBytes(0);
+        try {
+            String filename = "FileNeedsToBeSanitized2.pdf";
+            SanitizeContentResult result = SanitizeContentFactory.getInstance().getSanitizeContentProcessor(configuration).sanitize(Paths.get(SRC_TEST_RESOURCES, filename), 
+                    Paths.get(BUILD, "memory-" + filename), 
+                    null);
+
+            assertNotNull(result);
+            assertEquals(14, result.getThreadInformationList().size());
+            assertEquals(0, PDFMemoryGovernor.getInstance().getReservedMainMemoryBytes());
+        } finally {
+            SanitizeContentFactory.getInstance().setPDFGlobalMaxMainMemoryBytes(maxMainMemoryBytes);
+        }
+    }
+
+
+    /**
+     * Test the result cache, a duplicate is not parsed again
+     * 
+     * @param tempDirectory the temp directory
+     * @throws IOException In case of an I/O error
+     */
+    @Test
+    public void testResultCache(@TempDir Path tempDirectory) throws IOException {
+        
+        SanitizeContentConfiguration configuration = new SanitizeContentConfiguration();
+        configuration.setResultCacheMaxMemoryBytes(8L * 1024L * 1024L);
+        configuration.setResultCacheDirectory(tempDirectory.resolve("result-cache").toFile());
+        SanitizeContentResultCache cache = SanitizeContentResultCache.getInstance(configuration.getResultCacheMaxMemoryBytes(), configuration.getResultCacheDirectory(), configuration.getResultCacheMaxDiskBytes());
+        long hitCount = cache.getHitCount();
+        
+        String filename = "FileNeedsToBeSanitized2.pdf";
+        ByteArrayOutputStream outputStream1 = new ByteArrayOutputStream();
+        SanitizeContentResult result1 = SanitizeContentFactory.getInstance().getSanitizeContentProcessor(configuration).sanitize(filename, 
+                new FileInputStream(Paths.get(SRC_TEST_RESOURCES, filename).toFile()),
+                outputStream1, 
+                null);
+        
+        ByteArrayOutputStream outputStream2 = new ByteArrayOutputStream();
+        SanitizeContentResult result2 = SanitizeContentFactory.getInstance().getSanitizeContentProcessor(configuration).sanitize(filename, 
+                new FileInputStream(Paths.get(SRC_TEST_RESOURCES, filename).toFile()),
+                outputStream2, 
+                null);
+
+        assertEquals(hitCount + 1, cache.getHitCount());
+        assertEquals(14, result2.getThreadInformationList().size());
+        assertEquals(result1, result2);
+        assertArrayEquals(outputStream1.toByteArray(), outputStream2.toByteArray());
+        
+        SanitizeContentResult result3 = SanitizeContentFactory.getInstance().getSanitizeContentProcessor(configuration).sanitize(Paths.get(SRC_TEST_RESOURCES, filename), 
+                tempDirectory.resolve("cached-" + filename), 
+                null);
+        assertEquals(hitCount + 2, cache.getHitCount());
+        assertEquals(result1, result3);
+        assertArrayEquals(outputStream1.toByteArray(), Files.readAllBytes(tempDirectory.resolve("cached-" + filename)));
+
+        // the parallelism doesn't change the output and the types are compared in a canonical order
+        configuration.getPdfAttachmentStripTypes().addAll(Arrays.asList(".exe", ".JS", ".bat"));
+        SanitizeContentFactory.getInstance().getSanitizeContentProcessor(configuration).sanitize(filename, new FileInputStream(Paths.get(SRC_TEST_RESOURCES, filename).toFile()), new ByteArrayOutputStream(), null);
+        assertEquals(hitCount + 2, cache.getHitCount());
+
+        SanitizeContentConfiguration equivalentConfiguration = new SanitizeContentConfiguration(configuration);
+        equivalentConfiguration.setPdfEmbeddedFileParallelism(4);
+        equivalentConfiguration.setSpillThreshold(1024L);
+        equivalentConfiguration.setPdfAttachmentStripTypes(new LinkedHashSet<String>(Arrays.asList(".js", ".BAT", ".exe")));
+        SanitizeContentFactory.getInstance().getSanitizeContentProcessor(equivalentConfiguration).sanitize(filename, new FileInputStream(Paths.get(SRC_TEST_RESOURCES, filename).toFile()), new ByteArrayOutputStream(), null);
+        assertEquals(hitCount + 3, cache.getHitCount());
+
+        // a processor of another registry doesn't share the result
+        SanitizeContentBleacherRegistry registry = new SanitizeContentBleacherRegistry(Arrays.asList(new PDFSanitizeContentBleacherProvider() { }));
+        new SanitizeContentProcessorImpl(configuration, registry).sanitize(filename, new FileInputStream(Paths.get(SRC_TEST_RESOURCES, filename).toFile()), new ByteArrayOutputStream(), null);
+        assertEquals(hitCount + 3, cache.getHitCount());
+    }
+
+
+    /**
+     * Test the on-disk tier of the result cache, only the classes of a result are deserialized
+     * 
+     * @param tempDirectory the temp directory
+     * @throws IOException In case of an I/O error
+     */
+    @Test
+    @SuppressWarnings({"rawtypes", "unchecked"})
+    public void testResultCacheFilter(@TempDir Path tempDirectory) throws IOException {
+        File directory = tempDirectory.toFile();
+        SanitizeContentResultCache cache = new SanitizeContentResultCache(0, directory, 1024L * 1024L);
+
+        SanitizeContentResult result = new SanitizeContentResult();
+        result.setContentType(PDFSanitizeContentBleacher.APPLICATION_PDF);
+        result.setPrefilterVerdict(SanitizeContentPrefilterVerdict.SUSPICIOUS);
+        result.getThreadInformationList().add(new SanitizeContentThreatInformation(PDFSanitizeSections.PAGE_ACTION.name(), "Action", "JavaScript"));
+        result.getNestedResultList().add(new SanitizeContentResult());
+        writeDiskEntry(directory, "result", result);
+        ByteArrayOutputStream os = new ByteArrayOutputStream();
+        assertEquals(result, cache.get("result", os));
+        assertEquals("content", new String(os.toByteArray(), StandardCharsets.ISO_8859_1));
+
+        // any other class is rejected and the entry is removed, even inside a result
+        List<Object> foreignList = new ArrayList<Object>();
+        foreignList.add(new HashMap<String, String>());
+        SanitizeContentResult foreignResult = new SanitizeContentResult();
+        foreignResult.getNestedResultList().addAll((List) foreignList);
+        writeDiskEntry(directory, "foreign", foreignResult);
+        assertNull(cache.get("foreign", new ByteArrayOutputStream()));
+        assertFalse(new File(directory, "foreign.result").exists());
+    }
+
+
+    /**
+     * Test the scan only mode, it detects the same threats as the sanitizing
+     * 
+     * @throws FileNotFoundException In case the file could not be found 
+     * @throws SanitizeContentException In case of a sanitizing error
+     */
+    @Test
+    public void testScan() throws SanitizeContentException, FileNotFoundException {
+        
+        String filename = "FileNeedsToBeSanitized2.pdf";
+        SanitizeContentResult result = SanitizeContentFactory.getInstance().getSanitizeContentProcessor().sanitize(filename, 
+                new FileInputStream(Paths.get(SRC_TEST_RESOURCES, filename).toFile()),
+                new ByteArrayOutputStream(), 
+                null);
+        
+        SanitizeContentResult scanResult = SanitizeContentFactory.getInstance().getSanitizeContentProcessor().scan(filename, 
+                new FileInputStream(Paths.get(SRC_TEST_RESOURCES, filename).toFile()),
+                null);
+        assertEquals(result, scanResult);
+        
+        SanitizeContentResult pathScanResult = SanitizeContentFactory.getInstance().getSanitizeContentProcessor().scan(Paths.get(SRC_TEST_RESOURCES, filename), null);
+        assertEquals(result, pathScanResult);
+
+        scanResult = SanitizeContentFactory.getInstance().getSanitizeContentProcessor().scan(Paths.get(SRC_TEST_RESOURCES, "test.png"), null);
+        assertNull(scanResult.getContentType());
+        assertTrue(scanResult.getThreadInformationList().isEmpty());
+    }
+
+
+    /**
+     * Test the copy of the original bytes of a clean document
+     * 
+     * @throws IOException In case of an I/O error
+     */
+    @Test
+    public void testCopyCleanContent() throws IOException {
+        
+        SanitizeContentConfiguration configuration = new SanitizeContentConfiguration();
+        configuration.setCopyCleanContent(true);
+        
+        String filename = "test.pdf";
+        ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+        SanitizeContentResult result = SanitizeContentFactory.getInstance().getSanitizeContentProcessor(configuration).sanitize(filename, 
+                new FileInputStream(Paths.get(SRC_TEST_RESOURCES, filename).toFile()),
+                outputStream, 
+                null);
+        
+        assertFalse(result.isModifiedContent());
+        assertEquals(Files.size(Paths.get(SRC_TEST_RESOURCES, filename)), result.getCopiedBytes());
+        assertArrayEquals(Files.readAllBytes(Paths.get(SRC_TEST_RESOURCES, filename)), outputStream.toByteArray());
+
+        filename = "FileNeedsToBeSanitized.pdf";
+        outputStream = new ByteArrayOutputStream();
+        result = SanitizeContentFactory.getInstance().getSanitizeContentProcessor(configuration).sanitize(filename, 
+                new FileInputStream(Paths.get(SRC_TEST_RESOURCES, filename).toFile()),
+                outputStream, 
+                null);
+
+        assertTrue(result.isModifiedContent());
+        assertEquals(0, result.getCopiedBytes());
+        assertFalse(Arrays.equals(Files.readAllBytes(Paths.get(SRC_TEST_RESOURCES, filename)), outputStream.toByteArray()));
+    }
+
+
+    /**
+     * Test the deep object scan, it finds the script outside of the known sections and checks every object once
+     * 
+     * @throws IOException In case of an I/O error
+     */
+    @Test
+    public void testDeepObjectScan() throws IOException {
+        PDDocument document = PDFUtil.getInstance().createPDFDocument();
+        document.getDocumentCatalog().setOpenAction(PDFUtil.getInstance().createAlertAction());
+        PDPageContentStream stream = PDFUtil.getInstance().addContentStream(document);
+        PDFUtil.getInstance().addText(stream);
+        PDFUtil.getInstance().close(stream);
+
+        // a script action which is not referenced by a known section
+        COSDictionary scriptAction = new COSDictionary();
+        scriptAction.setItem(COSName.S, COSName.getPDFName("JavaScript"));
+        scriptAction.setString(COSName.JS, "app.alert('hidden');");
+        PDAcroForm acroForm = new PDAcroForm(document);
+        acroForm.getCOSObject().setItem(COSName.getPDFName("Hidden"), scriptAction);
+
+        // a script action in the dictionary of a stream
+        COSDictionary streamScriptAction = new COSDictionary();
+        streamScriptAction.setItem(COSName.S, COSName.getPDFName("JavaScript"));
+        streamScriptAction.setString(COSName.JS, "app.alert('stream');");
+        COSStream hiddenStream = document.getDocument().createCOSStream();
+        hiddenStream.setItem(COSName.getPDFName("Hidden"), streamScriptAction);
+        acroForm.getCOSObject().setItem(COSName.getPDFName("HiddenStream"), hiddenStream);
+        document.getDocumentCatalog().setAcroForm(acroForm);
+        byte[] content = PDFUtil.getInstance().getPDFDocument(document);
+        document.close();
+
+        String filename = "deep-object-scan.pdf";
+        SanitizeContentResult result = SanitizeContentFactory.getInstance().getSanitizeContentProcessor().sanitize(filename, new ByteArrayInputStream(content), new ByteArrayOutputStream(), null);
+        assertEquals(1, result.getThreadInformationList().size());
+        assertEquals(PDFSanitizeSections.DOCUMENT_CATALOG_ACTION.name(), result.getThreadInformationList().get(0).getSection());
+
+        SanitizeContentConfiguration configuration = new SanitizeContentConfiguration();
+        configuration.setPdfDeepObjectScan(true);
+        result = SanitizeContentFactory.getInstance().getSanitizeContentProcessor(configuration).sanitize(filename, new ByteArrayInputStream(content), new ByteArrayOutputStream(), null);
+        assertEquals(5, result.getThreadInformationList().size());
+        assertEquals(PDFSanitizeSections.DOCUMENT_CATALOG_ACTION.name(), result.getThreadInformationList().get(0).getSection());
+        for (int i = 1; i < result.getThreadInformationList().size(); i++) {
+            assertEquals(PDFSanitizeSections.NAMES_JAVASCRIPT_ACTION.name(), result.getThreadInformationList().get(i).getSection());
+        }
+
+        // the open action is owned by its section, the scan doesn't report it twice
+        SanitizeContentResult scanResult = SanitizeContentFactory.getInstance().getSanitizeContentProcessor(configuration).scan(filename, new ByteArrayInputStream(content), null);
+        assertEquals(result.getThreadInformationList(), scanResult.getThreadInformationList());
+    }
+
+
+    /**
+     * Test the limits of the deep object scan on deeply nested arrays
+     * 
+     * @throws IOException In case of an I/O error
+     */
+    @Test
+    public void testDeepObjectScanLimits() throws IOException {
+        PDDocument document = PDFUtil.getInstance().createPDFDocument();
+        PDPageContentStream stream = PDFUtil.getInstance().addContentStream(document);
+        PDFUtil.getInstance().addText(stream);
+        PDFUtil.getInstance().close(stream);
+
+        COSArray nestedArray = new COSArray();
+        COSArray currentArray = nestedArray;
+        for (int i = 0; i < 150; i++) {
+            COSArray childArray = new COSArray();
+            currentArray.add(childArray);
+            currentArray = childArray;
+        }
+
+        PDAcroForm acroForm = new PDAcroForm(document);
+        acroForm.getCOSObject().setItem(COSName.getPDFName("Nested"), nestedArray);
+        document.getDocumentCatalog().setAcroForm(acroForm);
+        byte[] content = PDFUtil.getInstance().getPDFDocument(document);
+        document.close();
+
+        String filename = "deep-object-scan-limits.pdf";
+        SanitizeContentConfiguration configuration = new SanitizeContentConfiguration();
+        configuration.setPdfDeepObjectScan(true);
+        SanitizeContentResult result = SanitizeContentFactory.getInstance().getSanitizeContentProcessor(configuration).scan(filename, new ByteArrayInputStream(content), null);
+        assertEquals(1, result.getThreadInformationList().size());
+        assertEquals(PDFSanitizeSections.OBJECT_LIMIT.name(), result.getThreadInformationList().get(0).getSection());
+        assertEquals("Maximum object depth exceeded", result.getThreadInformationList().get(0).getDescription());
+
+        configuration.setPdfMaxObjectDepth(200);
+        result = SanitizeContentFactory.getInstance().getSanitizeContentProcessor(configuration).scan(filename, new ByteArrayInputStream(content), null);
+        assertTrue(result.getThreadInformationList().isEmpty());
+
+        configuration.setPdfMaxCrawledObjects(50);
+        result = SanitizeContentFactory.getInstance().getSanitizeContentProcessor(configuration).scan(filename, new ByteArrayInputStream(content), null);
+        assertEquals(1, result.getThreadInformationList().size());
+        assertEquals("Maximum number of crawled objects exceeded", result.getThreadInformationList().get(0).getDescription());
+
+        configuration.setPdfFailOnObjectLimit(true);
+        assertThrows(SanitizeContentException.class, () -> SanitizeContentFactory.getInstance().getSanitizeContentProcessor(configuration).sanitize(filename, new ByteArrayInputStream(content), new ByteArrayOutputStream(), null));
+    }
+
+
+    /**
+     * Test the raw byte prefilter, a clean document is not bleached further and a suspicious document has the same threats
+     * 
+     * @throws IOException In case of an I/O error
+     */
+    @Test
+    public void testPrefilter() throws IOException {
+        PDDocument document = PDFUtil.getInstance().createPDFDocument();
+        PDPageContentStream stream = PDFUtil.getInstance().addContentStream(document);
+        PDFUtil.getInstance().addText(stream);
+        PDFUtil.getInstance().close(stream);
+        byte[] content = PDFUtil.getInstance().getPDFDocument(document);
+        document.close();
+
+        SanitizeContentConfiguration configuration = new SanitizeContentConfiguration();
+        configuration.setPdfPrefilter(true);
+        SanitizeContentResult result = SanitizeContentFactory.getInstance().getSanitizeContentProcessor(configuration).sanitize("prefilter.pdf", 
+                new ByteArrayInputStream(content), new ByteArrayOutputStream(), null);
+        assertEquals(SanitizeContentPrefilterVerdict.CLEAN, result.getPrefilterVerdict());
+        assertFalse(result.isPrefilterHit());
+        assertNull(result.getPrefilterMatch());
+        assertTrue(result.getThreadInformationList().isEmpty());
+
+        String filename = "FileNeedsToBeSanitized2.pdf";
+        SanitizeContentResult expectedResult = SanitizeContentFactory.getInstance().getSanitizeContentProcessor().scan(Paths.get(SRC_TEST_RESOURCES, filename), null);
+        assertEquals(SanitizeContentPrefilterVerdict.NOT_APPLIED, expectedResult.getPrefilterVerdict());
+
+        result = SanitizeContentFactory.getInstance().getSanitizeContentProcessor(configuration).scan(Paths.get(SRC_TEST_RESOURCES, filename), null);
+        assertEquals(SanitizeContentPrefilterVerdict.SUSPICIOUS, result.getPrefilterVerdict());
+        assertTrue(result.isPrefilterHit());
+        assertEquals("/JavaScript", result.getPrefilterMatch());
+        assertEquals(14, result.getThreadInformationList().size());
+        assertEquals(expectedResult.getThreadInformationList(), result.getThreadInformationList());
+    }
+
+
     /**
      * Test the PDF file usage
      * 
@@ -264,4 +766,23 @@ public class SanitizeContentTest {
         assertEquals("OpenAction", result.getThreadInformationList().get(0).getDescription());
         assertEquals("", result.getThreadInformationList().get(0).getActionCode());
     }
+
+
+    /**
+     * Write an entry of the on-disk tier of the result cache
+     *
+     * @param directory the directory of the cache
+     * @param key the key
+     * @param result the serialized result
+     * @throws IOException In case of an I/O error
+     */
+    private void writeDiskEntry(File directory, String key, Serializable result) throws IOException {
+        ByteArrayOutputStream os = new ByteArrayOutputStream();
+        try (ObjectOutputStream oos = new ObjectOutputStream(os)) {
+            oos.writeObject(result);
+        }
+
+        Files.write(new File(directory, key + ".result").toPath(), os.toByteArray());
+        Files.write(new File(directory, key + ".content").toPath(), "content".getBytes(StandardCharsets.ISO_8859_1));
+    }
 }
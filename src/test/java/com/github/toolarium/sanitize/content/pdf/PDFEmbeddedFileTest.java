@@ -5,10 +5,14 @@
  */
 package com.github.toolarium.sanitize.content.pdf;
 
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 
+import com.github.toolarium.sanitize.content.SanitizeContentFactory;
+import com.github.toolarium.sanitize.content.dto.SanitizeContentConfiguration;
 import com.github.toolarium.sanitize.content.dto.SanitizeContentResult;
 import com.github.toolarium.sanitize.content.impl.bleach.impl.pdf.PDFSanitizeContentBleacher;
 import com.github.toolarium.sanitize.content.impl.bleach.impl.pdf.PDFSanitizeSections;
@@ -19,11 +23,17 @@ import java.io.ByteArrayInputStream;
 import java.io.ByteArrayOutputStream;
 import java.io.FileInputStream;
 import java.io.IOException;
+import java.io.InputStream;
 import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
 import java.nio.file.Paths;
 import java.util.Calendar;
 import java.util.LinkedHashMap;
 import java.util.Map;
+import java.util.Random;
+import org.apache.pdfbox.cos.COSName;
+import org.apache.pdfbox.cos.COSStream;
 import org.apache.pdfbox.pdmodel.PDDocument;
 import org.apache.pdfbox.pdmodel.PDDocumentNameDictionary;
 import org.apache.pdfbox.pdmodel.PDEmbeddedFilesNameTreeNode;
@@ -140,4 +150,363 @@ public class PDFEmbeddedFileTest {
         assertEquals("OpenAction", result.getThreadInformationList().get(0).getDescription());
         assertEquals(PDFUtil.getInstance().createAlertAction().getAction(), result.getThreadInformationList().get(0).getActionCode());
     }
+
+
+    /**
+     * Test the concurrent sanitizing of embedded files, it has the same result as the sanitizing one after another
+     * 
+     * @throws IOException In case of an I/O error 
+     */
+    @Test
+    public void testConcurrentEmbeddedFiles() throws IOException {
+        PDDocument document = PDFUtil.getInstance().createPDFDocument();
+        Map<String, PDComplexFileSpecification> nameMap = new LinkedHashMap<String, PDComplexFileSpecification>();
+        for (int i = 0; i < 8; i++) {
+            // every second embedded file has an open action
+            PDDocument embeddedPDF = PDFUtil.getInstance().createSampleDocument();
+            if (i % 2 == 0) {
+                embeddedPDF.getDocumentCatalog().setOpenAction(PDFUtil.getInstance().createAlertAction());
+            }
+
+            byte[] pdfContent = PDFUtil.getInstance().getPDFDocument(embeddedPDF);
+            embeddedPDF.close();
+
+            PDEmbeddedFile embeddedFile = new PDEmbeddedFile(document, new ByteArrayInputStream(pdfContent));
+            embeddedFile.setSize(pdfContent.length);
+            embeddedFile.setSubtype(PDFSanitizeContentBleacher.APPLICATION_PDF);
+
+            PDComplexFileSpecification spec = new PDComplexFileSpecification();
+            spec.setFile("embeddedPDFTestFile" + i + ".pdf");
+            spec.setEmbeddedFile(embeddedFile);
+            nameMap.put(spec.getFile(), spec);
+        }
+
+        PDEmbeddedFilesNameTreeNode treeNode = new PDEmbeddedFilesNameTreeNode();
+        treeNode.setNames(nameMap);
+        PDDocumentNameDictionary documentNameDictionary = new PDDocumentNameDictionary(document.getDocumentCatalog());
+        documentNameDictionary.setEmbeddedFiles(treeNode);
+        document.getDocumentCatalog().setNames(documentNameDictionary);
+
+        PDPageContentStream stream = PDFUtil.getInstance().addContentStream(document);
+        PDFUtil.getInstance().addText(stream);
+        PDFUtil.getInstance().close(stream);
+        byte[] content = PDFUtil.getInstance().getPDFDocument(document);
+        document.close();
+
+        SanitizeContentResult result = SanitizeContentFactory.getInstance().getSanitizeContentProcessor().sanitize("test-embeddedfiles", new ByteArrayInputStream(content), new ByteArrayOutputStream(), null);
+        assertEquals(4, result.getThreadInformationList().size());
+
+        SanitizeContentConfiguration configuration = new SanitizeContentConfiguration();
+        configuration.setPdfEmbeddedFileParallelism(4);
+        ByteArrayOutputStream os = new ByteArrayOutputStream();
+        SanitizeContentResult concurrentResult = SanitizeContentFactory.getInstance().getSanitizeContentProcessor(configuration).sanitize("test-embeddedfiles", new ByteArrayInputStream(content), os, null);
+        assertEquals(result.getThreadInformationList(), concurrentResult.getThreadInformationList());
+
+        SanitizeContentResult scanResult = SanitizeContentFactory.getInstance().getSanitizeContentProcessor(configuration).scan("test-embeddedfiles", new ByteArrayInputStream(content), null);
+        assertEquals(result.getThreadInformationList(), scanResult.getThreadInformationList());
+
+        // the sanitized embedded files have no threats anymore
+        SanitizeContentResult sanitizedResult = SanitizeContentFactory.getInstance().getSanitizeContentProcessor().scan("test-embeddedfiles", new ByteArrayInputStream(os.toByteArray()), null);
+        assertTrue(sanitizedResult.getThreadInformationList().isEmpty());
+    }
+
+
+    /**
+     * Test the dispatch of nested embedded files, every level has its own result and the nesting depth is limited
+     * 
+     * @throws IOException In case of an I/O error 
+     */
+    @Test
+    public void testNestedEmbeddedFiles() throws IOException {
+        PDDocument innerPDF = PDFUtil.getInstance().createSampleDocument();
+        innerPDF.getDocumentCatalog().setOpenAction(PDFUtil.getInstance().createAlertAction());
+        byte[] innerContent = PDFUtil.getInstance().getPDFDocument(innerPDF);
+        innerPDF.close();
+
+        Map<String, byte[]> embeddedFileMap = new LinkedHashMap<String, byte[]>();
+        embeddedFileMap.put("level2.pdf", innerContent);
+        byte[] middleContent = createDocument(embeddedFileMap);
+
+        // the image is not supported by a bleacher, it is removed without a parse attempt
+        embeddedFileMap = new LinkedHashMap<String, byte[]>();
+        embeddedFileMap.put("level1.pdf", middleContent);
+        embeddedFileMap.put("test.png", Files.readAllBytes(Paths.get("src", "test", "resources", "test.png")));
+        byte[] content = createDocument(embeddedFileMap);
+
+        SanitizeContentResult result = SanitizeContentFactory.getInstance().getSanitizeContentProcessor().sanitize("test-nested", new ByteArrayInputStream(content), new ByteArrayOutputStream(), null);
+        assertEquals(2, result.getThreadInformationList().size());
+        assertEquals("OpenAction", result.getThreadInformationList().get(0).getDescription());
+        assertEquals(PDFSanitizeSections.EMBEDDED_FILE.name(), result.getThreadInformationList().get(1).getSection());
+        assertEquals("test.png", result.getThreadInformationList().get(1).getActionCode());
+        assertEquals(1, result.getNestedResultList().size());
+
+        SanitizeContentResult level1Result = result.getNestedResultList().get(0);
+        assertEquals("level1.pdf", level1Result.getName());
+        assertEquals(PDFSanitizeContentBleacher.APPLICATION_PDF, level1Result.getContentType());
+        assertEquals(1, level1Result.getThreadInformationList().size());
+        assertEquals(1, level1Result.getNestedResultList().size());
+
+        SanitizeContentResult level2Result = level1Result.getNestedResultList().get(0);
+        assertEquals("level2.pdf", level2Result.getName());
+        assertEquals(result.getThreadInformationList().subList(0, 1), level2Result.getThreadInformationList());
+        assertTrue(level2Result.getNestedResultList().isEmpty());
+
+        SanitizeContentResult scanResult = SanitizeContentFactory.getInstance().getSanitizeContentProcessor().scan("test-nested", new ByteArrayInputStream(content), null);
+        assertEquals(result.getNestedResultList(), scanResult.getNestedResultList());
+
+        // the embedded files of the first level are not decoded anymore
+        SanitizeContentConfiguration configuration = new SanitizeContentConfiguration();
+        configuration.setMaxNestingDepth(1);
+        SanitizeContentResult limitedResult = SanitizeContentFactory.getInstance().getSanitizeContentProcessor(configuration).sanitize("test-nested", new ByteArrayInputStream(content), new ByteArrayOutputStream(), null);
+        assertEquals(2, limitedResult.getThreadInformationList().size());
+        assertEquals(PDFSanitizeSections.NESTING_LIMIT.name(), limitedResult.getThreadInformationList().get(0).getSection());
+        assertEquals("level2.pdf", limitedResult.getThreadInformationList().get(0).getActionCode());
+        assertTrue(limitedResult.getNestedResultList().get(0).getNestedResultList().isEmpty());
+    }
+
+
+    /**
+     * Test the decoding guard against a decompression bomb, the decoding of the embedded file is aborted
+     * 
+     * @throws IOException In case of an I/O error 
+     */
+    @Test
+    public void testDecompressionBomb() throws IOException {
+        // the zeros are compressed by a ratio of about 1000
+        byte[] bombContent = new byte[16 * 1024 * 1024];
+        byte[] header = "%PDF-1.4\n".getBytes(StandardCharsets.ISO_8859_1);
+        System.arraycopy(header, 0, bombContent, 0, header.length);
+
+        PDDocument document = PDFUtil.getInstance().createSampleDocument();
+        PDEmbeddedFile embeddedFile = new PDEmbeddedFile(document, new ByteArrayInputStream(bombContent), COSName.FLATE_DECODE);
+        PDComplexFileSpecification spec = new PDComplexFileSpecification();
+        spec.setFile("bomb.pdf");
+        spec.setEmbeddedFile(embeddedFile);
+
+        Map<String, PDComplexFileSpecification> nameMap = new LinkedHashMap<String, PDComplexFileSpecification>();
+        nameMap.put(spec.getFile(), spec);
+        PDEmbeddedFilesNameTreeNode treeNode = new PDEmbeddedFilesNameTreeNode();
+        treeNode.setNames(nameMap);
+        PDDocumentNameDictionary documentNameDictionary = new PDDocumentNameDictionary(document.getDocumentCatalog());
+        documentNameDictionary.setEmbeddedFiles(treeNode);
+        document.getDocumentCatalog().setNames(documentNameDictionary);
+        byte[] content = PDFUtil.getInstance().getPDFDocument(document);
+        document.close();
+
+        SanitizeContentResult result = SanitizeContentFactory.getInstance().getSanitizeContentProcessor().sanitize("test-bomb", new ByteArrayInputStream(content), new ByteArrayOutputStream(), null);
+        assertEquals(2, result.getThreadInformationList().size());
+        assertEquals(PDFSanitizeSections.DECODING_LIMIT.name(), result.getThreadInformationList().get(0).getSection());
+        assertEquals("Maximum decoding ratio exceeded", result.getThreadInformationList().get(0).getDescription());
+        assertEquals("bomb.pdf", result.getThreadInformationList().get(0).getActionCode());
+        assertEquals(PDFSanitizeSections.EMBEDDED_FILE.name(), result.getThreadInformationList().get(1).getSection());
+        assertEquals("bomb.pdf", result.getThreadInformationList().get(1).getActionCode());
+        assertTrue(result.getNestedResultList().isEmpty());
+
+        SanitizeContentResult scanResult = SanitizeContentFactory.getInstance().getSanitizeContentProcessor().scan("test-bomb", new ByteArrayInputStream(content), null);
+        assertEquals(result.getThreadInformationList(), scanResult.getThreadInformationList());
+
+        // the ratio is not checked, the decoded size of the document is limited
+        SanitizeContentConfiguration configuration = new SanitizeContentConfiguration();
+        configuration.setMaxDecodingRatio(0);
+        configuration.setMaxDecodedDocumentSize(1024L * 1024L);
+        SanitizeContentResult limitedResult = SanitizeContentFactory.getInstance().getSanitizeContentProcessor(configuration).sanitize("test-bomb", new ByteArrayInputStream(content), new ByteArrayOutputStream(), null);
+        assertEquals(2, limitedResult.getThreadInformationList().size());
+        assertEquals("Maximum decoded document size exceeded", limitedResult.getThreadInformationList().get(0).getDescription());
+
+        // the concurrent sanitizing registers the same threats
+        configuration.setPdfEmbeddedFileParallelism(4);
+        SanitizeContentResult concurrentResult = SanitizeContentFactory.getInstance().getSanitizeContentProcessor(configuration).sanitize("test-bomb", new ByteArrayInputStream(content), new ByteArrayOutputStream(), null);
+        assertEquals(limitedResult.getThreadInformationList(), concurrentResult.getThreadInformationList());
+
+        // without limit the embedded file is decoded, it is no valid document and removed
+        configuration.setMaxDecodedDocumentSize(SanitizeContentConfiguration.DEFAULT_MAX_DECODED_DOCUMENT_SIZE);
+        SanitizeContentResult unlimitedResult = SanitizeContentFactory.getInstance().getSanitizeContentProcessor(configuration).sanitize("test-bomb", new ByteArrayInputStream(content), new ByteArrayOutputStream(), null);
+        assertEquals(1, unlimitedResult.getThreadInformationList().size());
+        assertEquals(PDFSanitizeSections.EMBEDDED_FILE.name(), unlimitedResult.getThreadInformationList().get(0).getSection());
+
+        configuration.setPdfEmbeddedFileParallelism(1);
+        SanitizeContentResult serialResult = SanitizeContentFactory.getInstance().getSanitizeContentProcessor(configuration).sanitize("test-bomb", new ByteArrayInputStream(content), new ByteArrayOutputStream(), null);
+        assertEquals(unlimitedResult.getThreadInformationList(), serialResult.getThreadInformationList());
+    }
+
+
+    /**
+     * Test the attachment policy, it decides on the metadata of an embedded file without to decode it
+     * 
+     * @throws IOException In case of an I/O error 
+     */
+    @Test
+    public void testAttachmentPolicy() throws IOException {
+        PDDocument embeddedPDF = PDFUtil.getInstance().createSampleDocument();
+        embeddedPDF.getDocumentCatalog().setOpenAction(PDFUtil.getInstance().createAlertAction());
+        byte[] pdfContent = PDFUtil.getInstance().getPDFDocument(embeddedPDF);
+        embeddedPDF.close();
+
+        Map<String, byte[]> embeddedFileMap = new LinkedHashMap<String, byte[]>();
+        embeddedFileMap.put("sample.pdf", pdfContent);
+        embeddedFileMap.put("test.png", Files.readAllBytes(Paths.get("src", "test", "resources", "test.png")));
+        byte[] content = createDocument(embeddedFileMap);
+
+        // the embedded document is stripped, the image is kept
+        SanitizeContentConfiguration configuration = new SanitizeContentConfiguration();
+        configuration.getPdfAttachmentStripTypes().add(".PDF");
+        configuration.getPdfAttachmentKeepTypes().add(".png");
+        ByteArrayOutputStream os = new ByteArrayOutputStream();
+        SanitizeContentResult result = SanitizeContentFactory.getInstance().getSanitizeContentProcessor(configuration).sanitize("test-policy", new ByteArrayInputStream(content), os, null);
+        assertEquals(1, result.getThreadInformationList().size());
+        assertEquals(PDFSanitizeSections.ATTACHMENT_POLICY.name(), result.getThreadInformationList().get(0).getSection());
+        assertEquals("sample.pdf", result.getThreadInformationList().get(0).getActionCode());
+        assertTrue(result.getNestedResultList().isEmpty());
+
+        SanitizeContentResult scanResult = SanitizeContentFactory.getInstance().getSanitizeContentProcessor(configuration).scan("test-policy", new ByteArrayInputStream(content), null);
+        assertEquals(result.getThreadInformationList(), scanResult.getThreadInformationList());
+
+        try (PDDocument document = PDDocument.load(os.toByteArray())) {
+            Map<String, PDComplexFileSpecification> nameMap = document.getDocumentCatalog().getNames().getEmbeddedFiles().getNames();
+            assertNull(nameMap.get("sample.pdf").getEmbeddedFile());
+            assertNotNull(nameMap.get("test.png").getEmbeddedFile());
+        }
+
+        // the declared size strips both embedded files, one after another and concurrently in the same order
+        configuration = new SanitizeContentConfiguration();
+        configuration.setPdfAttachmentMaxSize(100);
+        result = SanitizeContentFactory.getInstance().getSanitizeContentProcessor(configuration).sanitize("test-policy", new ByteArrayInputStream(content), new ByteArrayOutputStream(), null);
+        assertEquals(2, result.getThreadInformationList().size());
+        assertEquals("sample.pdf", result.getThreadInformationList().get(0).getActionCode());
+        assertEquals("test.png", result.getThreadInformationList().get(1).getActionCode());
+
+        configuration.setPdfEmbeddedFileParallelism(2);
+        SanitizeContentResult concurrentResult = SanitizeContentFactory.getInstance().getSanitizeContentProcessor(configuration).sanitize("test-policy", new ByteArrayInputStream(content), new ByteArrayOutputStream(), null);
+        assertEquals(result.getThreadInformationList(), concurrentResult.getThreadInformationList());
+    }
+
+
+    /**
+     * Test the copy of a clean document with an unsupported embedded file, its removal is a threat and the document is not copied
+     * 
+     * @throws IOException In case of an I/O error 
+     */
+    @Test
+    public void testCopyCleanContentWithUnsupportedEmbeddedFile() throws IOException {
+        byte[] executableContent = new byte[1024];
+        executableContent[0] = 'M';
+        executableContent[1] = 'Z';
+
+        PDDocument embeddedPDF = PDFUtil.getInstance().createSampleDocument();
+        byte[] pdfContent = PDFUtil.getInstance().getPDFDocument(embeddedPDF);
+        embeddedPDF.close();
+
+        Map<String, byte[]> embeddedFileMap = new LinkedHashMap<String, byte[]>();
+        embeddedFileMap.put("setup.exe", executableContent);
+        embeddedFileMap.put("sample.pdf", pdfContent);
+        byte[] content = createDocument(embeddedFileMap);
+
+        SanitizeContentConfiguration configuration = new SanitizeContentConfiguration();
+        configuration.setCopyCleanContent(true);
+        ByteArrayOutputStream os = new ByteArrayOutputStream();
+        SanitizeContentResult result = SanitizeContentFactory.getInstance().getSanitizeContentProcessor(configuration).sanitize("test-copy-clean", new ByteArrayInputStream(content), os, null);
+        assertTrue(result.isModifiedContent());
+        assertEquals(0, result.getCopiedBytes());
+        assertEquals(1, result.getThreadInformationList().size());
+        assertEquals(PDFSanitizeSections.EMBEDDED_FILE.name(), result.getThreadInformationList().get(0).getSection());
+        assertEquals("Unsupported embedded file", result.getThreadInformationList().get(0).getDescription());
+        assertEquals("setup.exe", result.getThreadInformationList().get(0).getActionCode());
+
+        try (PDDocument document = PDDocument.load(os.toByteArray())) {
+            Map<String, PDComplexFileSpecification> nameMap = document.getDocumentCatalog().getNames().getEmbeddedFiles().getNames();
+            assertNull(nameMap.get("setup.exe").getEmbeddedFile());
+            assertNotNull(nameMap.get("sample.pdf").getEmbeddedFile());
+        }
+
+        SanitizeContentResult scanResult = SanitizeContentFactory.getInstance().getSanitizeContentProcessor(configuration).scan("test-copy-clean", new ByteArrayInputStream(content), null);
+        assertEquals(result.getThreadInformationList(), scanResult.getThreadInformationList());
+
+        // the concurrent sanitizing registers the same threat and doesn't copy the document either
+        configuration.setPdfEmbeddedFileParallelism(2);
+        SanitizeContentResult concurrentResult = SanitizeContentFactory.getInstance().getSanitizeContentProcessor(configuration).sanitize("test-copy-clean", new ByteArrayInputStream(content), new ByteArrayOutputStream(), null);
+        assertEquals(result.getThreadInformationList(), concurrentResult.getThreadInformationList());
+        assertEquals(0, concurrentResult.getCopiedBytes());
+    }
+
+
+    /**
+     * Test a large embedded file, its sanitized content is streamed into the new embedded file and the size is counted while it is written
+     * 
+     * @throws IOException In case of an I/O error 
+     */
+    @Test
+    public void testLargeEmbeddedFile() throws IOException {
+        // the random data can't be compressed, the embedded document is larger than the spill threshold
+        byte[] data = new byte[4 * 1024 * 1024];
+        new Random(17).nextBytes(data);
+        PDDocument embeddedPDF = PDFUtil.getInstance().createSampleDocument();
+        COSStream dataStream = embeddedPDF.getDocument().createCOSStream();
+        try (OutputStream os = dataStream.createRawOutputStream()) {
+            os.write(data);
+        }
+
+        embeddedPDF.getDocumentCatalog().getCOSObject().setItem(COSName.getPDFName("LargeData"), dataStream);
+        embeddedPDF.getDocumentCatalog().setOpenAction(PDFUtil.getInstance().createAlertAction());
+        byte[] pdfContent = PDFUtil.getInstance().getPDFDocument(embeddedPDF);
+        embeddedPDF.close();
+        assertTrue(pdfContent.length > SanitizeContentConfiguration.DEFAULT_SPILL_THRESHOLD);
+
+        Map<String, byte[]> embeddedFileMap = new LinkedHashMap<String, byte[]>();
+        embeddedFileMap.put("large.pdf", pdfContent);
+        byte[] content = createDocument(embeddedFileMap);
+
+        ByteArrayOutputStream os = new ByteArrayOutputStream();
+        SanitizeContentResult result = SanitizeContentFactory.getInstance().getSanitizeContentProcessor().sanitize("test-large", new ByteArrayInputStream(content), os, null);
+        assertEquals(1, result.getThreadInformationList().size());
+        assertEquals("OpenAction", result.getThreadInformationList().get(0).getDescription());
+        assertEquals(1, result.getNestedResultList().size());
+
+        // the size of the new embedded file is the length of its decoded content
+        byte[] sanitizedContent;
+        try (PDDocument document = PDDocument.load(os.toByteArray())) {
+            PDEmbeddedFile embeddedFile = document.getDocumentCatalog().getNames().getEmbeddedFiles().getNames().get("large.pdf").getEmbeddedFile();
+            sanitizedContent = embeddedFile.toByteArray();
+            assertEquals(sanitizedContent.length, embeddedFile.getSize());
+            assertTrue(sanitizedContent.length > data.length);
+        }
+
+        try (PDDocument document = PDDocument.load(sanitizedContent)) {
+            assertNull(document.getDocumentCatalog().getOpenAction());
+            try (InputStream is = ((COSStream) document.getDocumentCatalog().getCOSObject().getDictionaryObject("LargeData")).createInputStream()) {
+                assertArrayEquals(data, is.readAllBytes());
+            }
+        }
+    }
+
+
+    /**
+     * Create a document with embedded files
+     *
+     * @param embeddedFileMap the embedded files
+     * @return the document
+     * @throws IOException In case of an I/O error
+     */
+    private byte[] createDocument(Map<String, byte[]> embeddedFileMap) throws IOException {
+        PDDocument document = PDFUtil.getInstance().createSampleDocument();
+        Map<String, PDComplexFileSpecification> nameMap = new LinkedHashMap<String, PDComplexFileSpecification>();
+        for (Map.Entry<String, byte[]> entry : embeddedFileMap.entrySet()) {
+            PDEmbeddedFile embeddedFile = new PDEmbeddedFile(document, new ByteArrayInputStream(entry.getValue()));
+            embeddedFile.setSize(entry.getValue().length);
+
+            PDComplexFileSpecification spec = new PDComplexFileSpecification();
+            spec.setFile(entry.getKey());
+            spec.setEmbeddedFile(embeddedFile);
+            nameMap.put(spec.getFile(), spec);
+        }
+
+        PDEmbeddedFilesNameTreeNode treeNode = new PDEmbeddedFilesNameTreeNode();
+        treeNode.setNames(nameMap);
+        PDDocumentNameDictionary documentNameDictionary = new PDDocumentNameDictionary(document.getDocumentCatalog());
+        documentNameDictionary.setEmbeddedFiles(treeNode);
+        document.getDocumentCatalog().setNames(documentNameDictionary);
+
+        byte[] content = PDFUtil.getInstance().getPDFDocument(document);
+        document.close();
+        return content;
+    }
 }
@@ -0,0 +1,93 @@
+/*
+ * PDFObjectThreatRuleTableTest.java
+ *
+ * Copyright by toolarium, all rights reserved.
+ */
+package com.github.toolarium.sanitize.content.pdf;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import com.github.toolarium.sanitize.content.impl.bleach.impl.pdf.PDFObjectThreatRule;
+import com.github.toolarium.sanitize.content.impl.bleach.impl.pdf.PDFObjectThreatRuleTable;
+import com.github.toolarium.sanitize.content.impl.bleach.impl.pdf.PDFSanitizeSections;
+import org.apache.pdfbox.cos.COSName;
+import org.apache.pdfbox.cos.COSString;
+import org.junit.jupiter.api.Test;
+
+
+/**
+ * Test the threat rules of the PDF object crawl
+ *
+ * @author Patrick Meier
+ */
+public class PDFObjectThreatRuleTableTest {
+
+    /**
+     * Test the default rules
+     */
+    @Test
+    public void testDefaultRules() {
+        PDFObjectThreatRuleTable ruleTable = new PDFObjectThreatRuleTable(PDFObjectThreatRule.DEFAULT_RULES);
+        assertEquals(PDFObjectThreatRule.JS, ruleTable.match(COSName.JS, new COSString("app.alert(1);")));
+        assertEquals(PDFObjectThreatRule.JAVA_SCRIPT, ruleTable.match(COSName.JAVA_SCRIPT, new COSString("app.alert(1);")));
+        assertEquals(PDFObjectThreatRule.JAVA_SCRIPT_ACTION, ruleTable.match(COSName.S, COSName.JAVA_SCRIPT));
+        assertEquals(PDFObjectThreatRule.ADDITIONAL_ACTION, ruleTable.match(COSName.AA, null));
+        assertNull(ruleTable.match(COSName.S, COSName.getPDFName("Launch")));
+        assertNull(ruleTable.match(COSName.S, new COSString("JavaScript")));
+        assertNull(ruleTable.match(COSName.TYPE, COSName.ANNOT));
+    }
+
+
+    /**
+     * Test the registration of additional rules
+     */
+    @Test
+    public void testRegisterRules() {
+        PDFObjectThreatRuleTable ruleTable = new PDFObjectThreatRuleTable(PDFObjectThreatRule.DEFAULT_RULES);
+        ruleTable.register(PDFObjectThreatRule.LAUNCH_ACTION);
+        ruleTable.register(PDFObjectThreatRule.RICH_MEDIA_CONTENT);
+        assertEquals(6, ruleTable.getRuleList().size());
+
+        assertEquals(PDFObjectThreatRule.LAUNCH_ACTION, ruleTable.match(COSName.S, COSName.getPDFName("Launch")));
+        assertEquals(PDFObjectThreatRule.JAVA_SCRIPT_ACTION, ruleTable.match(COSName.S, COSName.JAVA_SCRIPT));
+        assertEquals(PDFObjectThreatRule.RICH_MEDIA_CONTENT, ruleTable.match(COSName.getPDFName("RichMediaContent"), null));
+        assertEquals(PDFSanitizeSections.OBJECT_ACTION, ruleTable.match(COSName.S, COSName.getPDFName("Launch")).getSection());
+
+        // a rule of any value applies to the other values of the same key
+        PDFObjectThreatRule anyAction = new PDFObjectThreatRule("S", null, PDFSanitizeSections.OBJECT_ACTION, "Action", PDFObjectThreatRule.Action.REPORT);
+        ruleTable.register(anyAction);
+        assertEquals(anyAction, ruleTable.match(COSName.S, COSName.getPDFName("URI")));
+        assertEquals(PDFObjectThreatRule.LAUNCH_ACTION, ruleTable.match(COSName.S, COSName.getPDFName("Launch")));
+
+        assertTrue(ruleTable.unregister(PDFObjectThreatRule.LAUNCH_ACTION));
+        assertFalse(ruleTable.unregister(PDFObjectThreatRule.LAUNCH_ACTION));
+        assertEquals(anyAction, ruleTable.match(COSName.S, COSName.getPDFName("Launch")));
+    }
+
+
+    /**
+     * Test the snapshot and the fingerprint of the rules
+     */
+    @Test
+    public void testSnapshot() {
+        PDFObjectThreatRuleTable ruleTable = new PDFObjectThreatRuleTable(PDFObjectThreatRule.DEFAULT_RULES);
+        PDFObjectThreatRuleTable snapshot = ruleTable.snapshot();
+        String fingerprint = ruleTable.getFingerprint();
+        assertEquals(fingerprint, snapshot.getFingerprint());
+        assertEquals(fingerprint, new PDFObjectThreatRuleTable(PDFObjectThreatRule.DEFAULT_RULES).getFingerprint());
+
+        // a registration doesn't change the snapshot
+        ruleTable.register(PDFObjectThreatRule.LAUNCH_ACTION);
+        assertEquals(PDFObjectThreatRule.LAUNCH_ACTION, ruleTable.match(COSName.S, COSName.getPDFName("Launch")));
+        assertNull(snapshot.match(COSName.S, COSName.getPDFName("Launch")));
+        assertEquals(fingerprint, snapshot.getFingerprint());
+        assertNotEquals(fingerprint, ruleTable.getFingerprint());
+
+        ruleTable.unregister(PDFObjectThreatRule.LAUNCH_ACTION);
+        assertEquals(fingerprint, ruleTable.getFingerprint());
+    }
+}
@@ -9,11 +9,15 @@ import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertNotNull;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 
+import com.github.toolarium.sanitize.content.SanitizeContentFactory;
+import com.github.toolarium.sanitize.content.dto.SanitizeContentConfiguration;
 import com.github.toolarium.sanitize.content.dto.SanitizeContentResult;
 import com.github.toolarium.sanitize.content.impl.bleach.impl.pdf.PDFSanitizeContentBleacher;
 import com.github.toolarium.sanitize.content.impl.bleach.impl.pdf.PDFSanitizeSections;
 import com.github.toolarium.sanitize.content.pdf.util.PDFSanitizeTestUtil;
 import com.github.toolarium.sanitize.content.pdf.util.PDFUtil;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.util.Arrays;
 import org.apache.pdfbox.pdmodel.PDDocument;
@@ -154,6 +158,50 @@ public class PDFSanitizeContentAnnotationTest {
     }
     
     
+    /**
+     * Test the parallel detection of the page actions, it has the same result as the serial detection
+     *
+     * @throws IOException In case of an I/O error
+     */
+    @Test
+    public void sanitizePageActionsParallel() throws IOException {
+        PDDocument document = PDFUtil.getInstance().createPDFDocument();
+        PDAnnotationLink sharedLink = null;
+        for (int i = 0; i < 40; i++) {
+            PDPage page = PDFUtil.getInstance().addPage(document);
+            if (i % 2 == 0) {
+                PDPageAdditionalActions actions = new PDPageAdditionalActions();
+                actions.setO(PDFUtil.getInstance().createAlertAction());
+                page.setActions(actions);
+            }
+
+            PDAnnotationLink link = new PDAnnotationLink();
+            link.setAction(PDFUtil.getInstance().createAlertAction());
+            if (sharedLink == null) {
+                sharedLink = link;
+                page.setAnnotations(Arrays.asList(link));
+            } else {
+                // the first link is referenced by the second page as well, it is only checked once
+                page.setAnnotations(Arrays.asList(sharedLink, link));
+            }
+        }
+
+        byte[] content = PDFUtil.getInstance().getPDFDocument(document);
+        document.close();
+
+        SanitizeContentResult result = SanitizeContentFactory.getInstance().getSanitizeContentProcessor().sanitize("test-page-actions-serial", new ByteArrayInputStream(content), new ByteArrayOutputStream(), null);
+        assertEquals(60, result.getThreadInformationList().size());
+
+        SanitizeContentConfiguration configuration = new SanitizeContentConfiguration();
+        configuration.setPdfParallelPageThreshold(1);
+        SanitizeContentResult parallelResult = SanitizeContentFactory.getInstance().getSanitizeContentProcessor(configuration).sanitize("test-page-actions-parallel", new ByteArrayInputStream(content), new ByteArrayOutputStream(), null);
+        assertEquals(result.getThreadInformationList(), parallelResult.getThreadInformationList());
+
+        SanitizeContentResult scanResult = SanitizeContentFactory.getInstance().getSanitizeContentProcessor(configuration).scan("test-page-actions-parallel", new ByteArrayInputStream(content), null);
+        assertEquals(result.getThreadInformationList(), scanResult.getThreadInformationList());
+    }
+
+
     /**
      * Test acro form actions
      * 
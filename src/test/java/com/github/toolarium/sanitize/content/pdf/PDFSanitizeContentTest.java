@@ -5,14 +5,21 @@
  */
 package com.github.toolarium.sanitize.content.pdf;
 
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertFalse;
 import static org.junit.jupiter.api.Assertions.assertNotNull;
 import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 
 import com.github.toolarium.sanitize.content.SanitizeContentFactory;
+import com.github.toolarium.sanitize.content.dto.SanitizeContentConfiguration;
+import com.github.toolarium.sanitize.content.dto.SanitizeContentParsePolicy;
 import com.github.toolarium.sanitize.content.dto.SanitizeContentResult;
+import com.github.toolarium.sanitize.content.dto.SanitizeContentThreatInformation;
+import com.github.toolarium.sanitize.content.exception.SanitizeContentException;
+import com.github.toolarium.sanitize.content.exception.SanitizeContentExceptionReason;
 import com.github.toolarium.sanitize.content.impl.bleach.impl.pdf.PDFSanitizeContentBleacher;
 import com.github.toolarium.sanitize.content.impl.bleach.impl.pdf.PDFSanitizeSections;
 import com.github.toolarium.sanitize.content.pdf.util.PDFSanitizeTestUtil;
@@ -20,6 +27,9 @@ import com.github.toolarium.sanitize.content.pdf.util.PDFUtil;
 import java.io.ByteArrayInputStream;
 import java.io.ByteArrayOutputStream;
 import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.zip.DeflaterOutputStream;
 import org.apache.pdfbox.pdmodel.PDDocument;
 import org.apache.pdfbox.pdmodel.PDPageContentStream;
 import org.junit.jupiter.api.Test;
@@ -104,4 +114,220 @@ public class PDFSanitizeContentTest {
         assertNotNull(result.getThreadInformationList());
         assertTrue(result.getThreadInformationList().isEmpty());
     }
+
+
+    /**
+     * Test the copy of the unmodified objects
+     *
+     * @throws IOException In case of an I/O error
+     */
+    @Test
+    public void testCopyUnmodifiedObjects() throws IOException {
+        PDDocument document = PDFUtil.getInstance().createPDFDocument();
+        document.getDocumentCatalog().setOpenAction(PDFUtil.getInstance().createAlertAction());
+
+        PDPageContentStream stream = new PDPageContentStream(document, PDFUtil.getInstance().addPage(document), PDPageContentStream.AppendMode.APPEND, false);
+        for (int i = 0; i < 100; i++) {
+            PDFUtil.getInstance().addText(stream);
+        }
+        PDFUtil.getInstance().close(stream);
+        byte[] content = PDFUtil.getInstance().getPDFDocument(document);
+        document.close();
+
+        ByteArrayOutputStream os = new ByteArrayOutputStream();
+        SanitizeContentResult result = SanitizeContentFactory.getInstance().getSanitizeContentProcessor().sanitize("test-copy", new ByteArrayInputStream(content), os, null);
+
+        SanitizeContentConfiguration configuration = new SanitizeContentConfiguration();
+        configuration.setPdfCopyUnmodifiedObjects(true);
+        ByteArrayOutputStream copiedOutputStream = new ByteArrayOutputStream();
+        SanitizeContentResult copiedResult = SanitizeContentFactory.getInstance().getSanitizeContentProcessor(configuration).sanitize("test-copy", new ByteArrayInputStream(content), copiedOutputStream, null);
+        assertEquals(result.getThreadInformationList(), copiedResult.getThreadInformationList());
+        assertTrue(copiedResult.isModifiedContent());
+
+        // the page content is copied, the catalog with the open action is serialized again
+        assertTrue(copiedResult.getCopiedBytes() > 0);
+        assertFalse(new String(copiedOutputStream.toByteArray(), StandardCharsets.ISO_8859_1).contains("app.alert"));
+        PDFSanitizeTestUtil.getInstance().assertValidPDF(copiedOutputStream.toByteArray());
+    }
+
+
+    /**
+     * Test the incremental update
+     *
+     * @throws IOException In case of an I/O error
+     */
+    @Test
+    public void testIncrementalUpdate() throws IOException {
+        PDDocument document = PDFUtil.getInstance().createPDFDocument();
+        document.getDocumentCatalog().setOpenAction(PDFUtil.getInstance().createAlertAction());
+        PDFUtil.getInstance().addPage(document);
+        byte[] content = PDFUtil.getInstance().getPDFDocument(document);
+        document.close();
+
+        ByteArrayOutputStream os = new ByteArrayOutputStream();
+        SanitizeContentResult result = SanitizeContentFactory.getInstance().getSanitizeContentProcessor().sanitize("test-incremental", new ByteArrayInputStream(content), os, null);
+
+        SanitizeContentConfiguration configuration = new SanitizeContentConfiguration();
+        configuration.setPdfIncrementalUpdate(true);
+        ByteArrayOutputStream incrementalOutputStream = new ByteArrayOutputStream();
+        SanitizeContentResult incrementalResult = SanitizeContentFactory.getInstance().getSanitizeContentProcessor(configuration).sanitize("test-incremental", new ByteArrayInputStream(content), incrementalOutputStream, null);
+
+        // the active content remains in the original revision
+        assertEquals(result.getThreadInformationList().size() + 1, incrementalResult.getThreadInformationList().size());
+        assertEquals(result.getThreadInformationList(), incrementalResult.getThreadInformationList().subList(0, result.getThreadInformationList().size()));
+        SanitizeContentThreatInformation threatInformation = incrementalResult.getThreadInformationList().get(result.getThreadInformationList().size());
+        assertEquals(PDFSanitizeSections.ORIGINAL_REVISION.name(), threatInformation.getSection());
+
+        // the update is appended to the original revision
+        byte[] incrementalContent = incrementalOutputStream.toByteArray();
+        assertTrue(incrementalContent.length > content.length);
+        assertArrayEquals(content, Arrays.copyOf(incrementalContent, content.length));
+        PDFSanitizeTestUtil.getInstance().assertValidPDF(incrementalContent);
+    }
+
+
+    /**
+     * Test the parse policy with a broken cross reference
+     *
+     * @throws IOException In case of an I/O error
+     */
+    @Test
+    public void testParsePolicy() throws IOException {
+        PDDocument document = PDFUtil.getInstance().createPDFDocument();
+        PDPageContentStream stream = new PDPageContentStream(document, PDFUtil.getInstance().addPage(document), PDPageContentStream.AppendMode.APPEND, false);
+        for (int i = 0; i < 2000; i++) {
+            PDFUtil.getInstance().addText(stream);
+        }
+        PDFUtil.getInstance().close(stream);
+        byte[] content = PDFUtil.getInstance().getPDFDocument(document);
+        document.close();
+
+        // the start of the cross reference points to the header
+        String text = new String(content, StandardCharsets.ISO_8859_1);
+        int start = text.lastIndexOf("startxref") + "startxref".length();
+        while (Character.isWhitespace(text.charAt(start))) {
+            start++;
+        }
+        int end = start;
+        while (Character.isDigit(text.charAt(end))) {
+            end++;
+        }
+        char[] offset = new char[end - start];
+        Arrays.fill(offset, '0');
+        offset[offset.length - 1] = '1';
+        byte[] brokenContent = (text.substring(0, start) + new String(offset) + text.substring(end)).getBytes(StandardCharsets.ISO_8859_1);
+
+        SanitizeContentConfiguration configuration = new SanitizeContentConfiguration();
+        assertEquals(SanitizeContentParsePolicy.LENIENT, configuration.getPdfParsePolicy());
+        SanitizeContentResult result = SanitizeContentFactory.getInstance().getSanitizeContentProcessor(configuration).sanitize("test-lenient", new ByteArrayInputStream(brokenContent), new ByteArrayOutputStream(), null);
+        assertNotNull(result.getContentType());
+
+        configuration.setPdfParsePolicy(SanitizeContentParsePolicy.STRICT);
+        SanitizeContentException e = assertThrows(SanitizeContentException.class, () -> SanitizeContentFactory.getInstance().getSanitizeContentProcessor(configuration)
+                .sanitize("test-strict", new ByteArrayInputStream(brokenContent), new ByteArrayOutputStream(), null));
+        assertEquals(SanitizeContentExceptionReason.MALFORMED_CONTENT, e.getReason());
+
+        // the repair of the cross reference reads the document again
+        configuration.setPdfParsePolicy(SanitizeContentParsePolicy.LENIENT_WITH_BUDGET);
+        configuration.setPdfParseScanBudgetFactor(1);
+        e = assertThrows(SanitizeContentException.class, () -> SanitizeContentFactory.getInstance().getSanitizeContentProcessor(configuration)
+                .sanitize("test-budget", new ByteArrayInputStream(brokenContent), new ByteArrayOutputStream(), null));
+        assertEquals(SanitizeContentExceptionReason.SCAN_BUDGET_EXCEEDED, e.getReason());
+
+        // the well-formed document is read about once
+        configuration.setPdfParseScanBudgetFactor(2);
+        result = SanitizeContentFactory.getInstance().getSanitizeContentProcessor(configuration).sanitize("test-budget", new ByteArrayInputStream(content), new ByteArrayOutputStream(), null);
+        assertNotNull(result.getContentType());
+    }
+
+
+    /**
+     * Test the decoding guard of the prefilter against a decompression bomb in an object stream
+     *
+     * @throws IOException In case of an I/O error
+     */
+    @Test
+    public void testObjectStreamDecompressionBomb() throws IOException {
+        // the blanks are compressed by a ratio of about 1000
+        byte[] objectStreamContent = new byte[16 * 1024 * 1024];
+        Arrays.fill(objectStreamContent, (byte) ' ');
+        byte[] objects = "6 0 <</Producer(test)>>".getBytes(StandardCharsets.ISO_8859_1);
+        System.arraycopy(objects, 0, objectStreamContent, 0, objects.length);
+        byte[] content = createObjectStreamDocument(objectStreamContent);
+
+        // without prefilter the object stream is decoded by PDFBox, it is only limited by the scratch file
+        SanitizeContentConfiguration configuration = new SanitizeContentConfiguration();
+        SanitizeContentResult result = SanitizeContentFactory.getInstance().getSanitizeContentProcessor(configuration).scan("test-bomb", new ByteArrayInputStream(content), null);
+        assertTrue(result.getThreadInformationList().isEmpty());
+
+        configuration.setPdfPrefilter(true);
+        SanitizeContentException e = assertThrows(SanitizeContentException.class, () -> SanitizeContentFactory.getInstance().getSanitizeContentProcessor(configuration)
+                .sanitize("test-bomb", new ByteArrayInputStream(content), new ByteArrayOutputStream(), null));
+        assertEquals(SanitizeContentExceptionReason.DECODING_LIMIT_EXCEEDED, e.getReason());
+
+        e = assertThrows(SanitizeContentException.class, () -> SanitizeContentFactory.getInstance().getSanitizeContentProcessor(configuration)
+                .scan("test-bomb", new ByteArrayInputStream(content), null));
+        assertEquals(SanitizeContentExceptionReason.DECODING_LIMIT_EXCEEDED, e.getReason());
+    }
+
+
+    /**
+     * Create a document with a cross reference stream and one object stream, the object of it is the document information
+     *
+     * @param objectStreamContent the decoded content of the object stream, it starts with the offset of the object 6
+     * @return the document
+     * @throws IOException In case of an I/O error
+     */
+    private byte[] createObjectStreamDocument(byte[] objectStreamContent) throws IOException {
+        ByteArrayOutputStream encodedContent = new ByteArrayOutputStream();
+        try (DeflaterOutputStream os = new DeflaterOutputStream(encodedContent)) {
+            os.write(objectStreamContent);
+        }
+
+        ByteArrayOutputStream document = new ByteArrayOutputStream();
+        long[] offsets = new long[6];
+        document.write("%PDF-1.5\n".getBytes(StandardCharsets.ISO_8859_1));
+        offsets[1] = document.size();
+        document.write("1 0 obj\n<</Type/Catalog/Pages 2 0 R>>\nendobj\n".getBytes(StandardCharsets.ISO_8859_1));
+        offsets[2] = document.size();
+        document.write("2 0 obj\n<</Type/Pages/Kids[3 0 R]/Count 1>>\nendobj\n".getBytes(StandardCharsets.ISO_8859_1));
+        offsets[3] = document.size();
+        document.write("3 0 obj\n<</Type/Page/Parent 2 0 R/MediaBox[0 0 612 792]>>\nendobj\n".getBytes(StandardCharsets.ISO_8859_1));
+        offsets[4] = document.size();
+        document.write(("4 0 obj\n<</Type/ObjStm/N 1/First 4/Filter/FlateDecode/Length " + encodedContent.size() + ">>\nstream\n").getBytes(StandardCharsets.ISO_8859_1));
+        encodedContent.writeTo(document);
+        document.write("\nendstream\nendobj\n".getBytes(StandardCharsets.ISO_8859_1));
+        offsets[5] = document.size();
+
+        // the entries of the objects 0 to 6, the object 6 is the first object of the object stream 4
+        ByteArrayOutputStream xref = new ByteArrayOutputStream();
+        writeXrefEntry(xref, 0, 0, 0xFFFF);
+        for (int i = 1; i < offsets.length; i++) {
+            writeXrefEntry(xref, 1, offsets[i], 0);
+        }
+        writeXrefEntry(xref, 2, 4, 0);
+
+        document.write(("5 0 obj\n<</Type/XRef/Size 7/W[1 4 2]/Root 1 0 R/Info 6 0 R/Length " + xref.size() + ">>\nstream\n").getBytes(StandardCharsets.ISO_8859_1));
+        xref.writeTo(document);
+        document.write(("\nendstream\nendobj\nstartxref\n" + offsets[5] + "\n%%EOF\n").getBytes(StandardCharsets.ISO_8859_1));
+        return document.toByteArray();
+    }
+
+
+    /**
+     * Write an entry of a cross reference stream with the widths 1, 4 and 2
+     *
+     * @param xref the cross reference stream
+     * @param type the type
+     * @param field2 the second field
+     * @param field3 the third field
+     */
+    private void writeXrefEntry(ByteArrayOutputStream xref, int type, long field2, int field3) {
+        xref.write(type);
+        for (int shift = 24; shift >= 0; shift -= 8) {
+            xref.write((int) (field2 >> shift) & 0xFF);
+        }
+        xref.write((field3 >> 8) & 0xFF);
+        xref.write(field3 & 0xFF);
+    }
 }
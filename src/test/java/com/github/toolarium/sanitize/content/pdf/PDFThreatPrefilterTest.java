@@ -0,0 +1,101 @@
+/*
+ * PDFThreatPrefilterTest.java
+ *
+ * Copyright by toolarium, all rights reserved.
+ */
+package com.github.toolarium.sanitize.content.pdf;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import com.github.toolarium.sanitize.content.impl.bleach.impl.pdf.PDFThreatPrefilter;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import org.junit.jupiter.api.Test;
+
+
+/**
+ * Test the raw byte prefilter of the PDF bleacher
+ *
+ * @author Patrick Meier
+ */
+public class PDFThreatPrefilterTest {
+
+    /**
+     * Test the name tokens
+     *
+     * @throws IOException In case of an I/O error
+     */
+    @Test
+    public void testTokens() throws IOException {
+        assertNull(scan("<< /Type /Annot /Annots [1 0 R] /AcroForm 3 0 R /Author (x) >>").getMatch());
+        assertNull(scan("/OpenActionX /JSX /URIs").getMatch());
+        assertEquals("/A", scan("<</Type/Annot/A 5 0 R>>").getMatch());
+        assertEquals("/AA", scan("<</AA<</O 3 0 R>>>>").getMatch());
+        assertEquals("/JavaScript", scan("<</S/JavaScript/JS(app.alert(1);)>>").getMatch());
+        assertEquals("/URI", scan("<</S/URI/URI(https://toolarium.com)>>").getMatch());
+        assertEquals("/OpenAction", scan("/OpenAction").getMatch());
+    }
+
+
+    /**
+     * Test a name with a hex escape
+     *
+     * @throws IOException In case of an I/O error
+     */
+    @Test
+    public void testEscapedName() throws IOException {
+        assertEquals(PDFThreatPrefilter.ESCAPED_NAME, scan("<</S/Java#53cript>>").getMatch());
+        assertNull(scan("<</Title(#1)>>").getMatch());
+    }
+
+
+    /**
+     * Test the object stream and a token which is split over two buffers
+     *
+     * @throws IOException In case of an I/O error
+     */
+    @Test
+    public void testObjectStream() throws IOException {
+        PDFThreatPrefilter.Scan scan = scan("<</Type/ObjStm/N 3/First 12>>");
+        assertFalse(scan.isMatched());
+        assertTrue(scan.hasObjectStream());
+
+        byte[] content = "1 0 obj <</Open".getBytes(StandardCharsets.US_ASCII);
+        scan = PDFThreatPrefilter.getInstance().newScan();
+        scan.update(content, 0, content.length);
+        content = "Action 2 0 R>>".getBytes(StandardCharsets.US_ASCII);
+        scan.update(content, 0, content.length);
+        scan.finish();
+        assertEquals("/OpenAction", scan.getMatch());
+    }
+
+
+    /**
+     * Test additional tokens
+     *
+     * @throws IOException In case of an I/O error
+     */
+    @Test
+    public void testAdditionalTokens() throws IOException {
+        PDFThreatPrefilter prefilter = new PDFThreatPrefilter(Arrays.asList("/Launch", "/RichMediaContent"));
+        assertEquals("/RichMediaContent", prefilter.scan(new ByteArrayInputStream("<</RichMediaContent 3 0 R>>".getBytes(StandardCharsets.US_ASCII))).getMatch());
+        assertNull(prefilter.scan(new ByteArrayInputStream("<</OpenAction 3 0 R>>".getBytes(StandardCharsets.US_ASCII))).getMatch());
+    }
+
+
+    /**
+     * Scan a content with the default tokens
+     *
+     * @param content the content
+     * @return the scan
+     * @throws IOException In case of an I/O error
+     */
+    private PDFThreatPrefilter.Scan scan(String content) throws IOException {
+        return PDFThreatPrefilter.getInstance().scan(new ByteArrayInputStream(content.getBytes(StandardCharsets.US_ASCII)));
+    }
+}
@@ -0,0 +1,86 @@
+/*
+ * ContentHandOffBufferTest.java
+ *
+ * Copyright by toolarium, all rights reserved.
+ */
+package com.github.toolarium.sanitize.content.util;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import com.github.toolarium.sanitize.content.impl.bleach.util.ContentHandOffBuffer;
+import com.github.toolarium.sanitize.content.impl.bleach.util.StreamUtils;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import org.junit.jupiter.api.Test;
+
+
+/**
+ * Test the content hand-off buffer
+ * 
+ * @author Patrick Meier
+ */
+public class ContentHandOffBufferTest {
+
+    /**
+     * Test the in memory buffer
+     * 
+     * @throws IOException In case of an I/O error 
+     */
+    @Test
+    public void testInMemory() throws IOException {
+        byte[] content = "in memory content".getBytes();
+        ContentHandOffBuffer buffer = new ContentHandOffBuffer(1024, null);
+        buffer.write(content);
+
+        assertFalse(buffer.isSpilled());
+        assertEquals(content.length, buffer.size());
+        assertArrayEquals(content, read(buffer));
+        buffer.release();
+    }
+
+
+    /**
+     * Test the spill to a temp file
+     * 
+     * @throws IOException In case of an I/O error 
+     */
+    @Test
+    public void testSpill() throws IOException {
+        byte[] content = "spilled content".getBytes();
+        ContentHandOffBuffer buffer = new ContentHandOffBuffer(4, null);
+        buffer.write(content, 0, 3);
+        assertFalse(buffer.isSpilled());
+        buffer.write(content, 3, content.length - 3);
+        assertTrue(buffer.isSpilled());
+        
+        File file = buffer.getFile();
+        assertNotNull(file);
+        assertEquals(content.length, buffer.size());
+        assertArrayEquals(content, read(buffer));
+
+        // read twice
+        assertArrayEquals(content, read(buffer));
+        
+        buffer.release();
+        assertFalse(file.exists());
+    }
+
+    
+    /**
+     * Read the content of the buffer
+     *
+     * @param buffer the buffer
+     * @return the content
+     * @throws IOException In case of an I/O error
+     */
+    private byte[] read(ContentHandOffBuffer buffer) throws IOException {
+        ByteArrayOutputStream os = new ByteArrayOutputStream();
+        StreamUtils.getInstance().copy(buffer.getInputStream(), os);
+        return os.toByteArray();
+    }
+}
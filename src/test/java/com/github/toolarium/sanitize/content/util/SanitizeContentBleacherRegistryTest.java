@@ -0,0 +1,154 @@
+/*
+ * SanitizeContentBleacherRegistryTest.java
+ *
+ * Copyright by toolarium, all rights reserved.
+ */
+package com.github.toolarium.sanitize.content.util;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import com.github.toolarium.sanitize.content.dto.SanitizeContentConfiguration;
+import com.github.toolarium.sanitize.content.dto.SanitizeContentResult;
+import com.github.toolarium.sanitize.content.impl.SanitizeContentProcessorImpl;
+import com.github.toolarium.sanitize.content.impl.bleach.ISanitizeContentBleacher;
+import com.github.toolarium.sanitize.content.impl.bleach.ISanitizeContentBleacherProvider;
+import com.github.toolarium.sanitize.content.impl.bleach.SanitizeContentBleacherRegistry;
+import com.github.toolarium.sanitize.content.impl.bleach.impl.pdf.PDFSanitizeContentBleacher;
+import com.github.toolarium.sanitize.content.impl.bleach.impl.pdf.PDFSanitizeContentBleacherProvider;
+import java.io.ByteArrayOutputStream;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.nio.file.Paths;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.jupiter.api.Test;
+
+
+/**
+ * Test the sanitize content bleacher registry
+ * 
+ * @author Patrick Meier
+ */
+public class SanitizeContentBleacherRegistryTest {
+
+    /**
+     * Test the providers of the service loader
+     */
+    @Test
+    public void testServiceLoader() {
+        SanitizeContentBleacherRegistry registry = SanitizeContentBleacherRegistry.getInstance();
+        assertEquals(1, registry.getProviderList().size());
+        assertEquals(PDFSanitizeContentBleacher.APPLICATION_PDF, registry.getProviderList().get(0).getContentType());
+
+        byte[] header = "%PDF-1.7".getBytes();
+        assertEquals(registry.getProviderList(), registry.lookup(header, header.length));
+        assertTrue(registry.lookup(header, 3).isEmpty());
+        assertTrue(registry.lookup("%PNG".getBytes(), 4).isEmpty());
+    }
+
+
+    /**
+     * Test the prefix table, the longest matching signature comes first
+     */
+    @Test
+    public void testPrefixTable() {
+        TestProvider zip = new TestProvider("application/zip", new byte[] {'P', 'K'});
+        TestProvider docx = new TestProvider("application/docx", new byte[] {'P', 'K', 3, 4});
+        TestProvider gif = new TestProvider("image/gif", "GIF87a".getBytes(), "GIF89a".getBytes());
+        SanitizeContentBleacherRegistry registry = new SanitizeContentBleacherRegistry(Arrays.asList(zip, docx, gif));
+        assertEquals(6, registry.getSignatureLength());
+
+        assertEquals(Arrays.asList(docx, zip), registry.lookup(new byte[] {'P', 'K', 3, 4, 0, 0}, 6));
+        assertEquals(Arrays.asList(zip), registry.lookup(new byte[] {'P', 'K', 5, 6, 0, 0}, 6));
+        assertEquals(Arrays.asList(gif), registry.lookup("GIF89a".getBytes(), 6));
+        assertTrue(registry.lookup("GIF90a".getBytes(), 6).isEmpty());
+        assertTrue(registry.lookup(new byte[0], 0).isEmpty());
+    }
+
+
+    /**
+     * Test the shared bleachers of a processor, the embedded files are sanitized by the same bleacher as the document
+     *
+     * @throws IOException In case of an I/O error
+     */
+    @Test
+    public void testSharedBleacher() throws IOException {
+        CountingProvider provider = new CountingProvider();
+        SanitizeContentProcessorImpl processor = new SanitizeContentProcessorImpl(new SanitizeContentConfiguration(), new SanitizeContentBleacherRegistry(Arrays.asList(provider)));
+        for (int i = 0; i < 2; i++) {
+            SanitizeContentResult result = processor.sanitize("test-open-action.pdf", new FileInputStream(Paths.get("src/test/resources", "test-open-action.pdf").toFile()), new ByteArrayOutputStream(), null);
+            assertFalse(result.getNestedResultList().isEmpty());
+        }
+
+        assertEquals(1, provider.bleacherCount.get());
+    }
+
+
+    /**
+     * Defines the PDF provider which counts the created bleachers.
+     */
+    private static class CountingProvider extends PDFSanitizeContentBleacherProvider {
+        private final AtomicInteger bleacherCount = new AtomicInteger();
+
+
+        /**
+         * @see com.github.toolarium.sanitize.content.impl.bleach.impl.pdf.PDFSanitizeContentBleacherProvider#createBleacher(com.github.toolarium.sanitize.content.dto.SanitizeContentConfiguration)
+         */
+        @Override
+        public ISanitizeContentBleacher createBleacher(SanitizeContentConfiguration configuration) {
+            bleacherCount.incrementAndGet();
+            return super.createBleacher(configuration);
+        }
+    }
+
+
+    /**
+     * Test provider
+     */
+    private static class TestProvider implements ISanitizeContentBleacherProvider {
+        private final String contentType;
+        private final List<byte[]> magicSignatures;
+
+
+        /**
+         * Constructor for TestProvider
+         *
+         * @param contentType the content type
+         * @param magicSignatures the magic signatures
+         */
+        TestProvider(String contentType, byte[]... magicSignatures) {
+            this.contentType = contentType;
+            this.magicSignatures = Arrays.asList(magicSignatures);
+        }
+
+
+        /**
+         * @see com.github.toolarium.sanitize.content.impl.bleach.ISanitizeContentBleacherProvider#getContentType()
+         */
+        @Override
+        public String getContentType() {
+            return contentType;
+        }
+
+
+        /**
+         * @see com.github.toolarium.sanitize.content.impl.bleach.ISanitizeContentBleacherProvider#getMagicSignatures()
+         */
+        @Override
+        public List<byte[]> getMagicSignatures() {
+            return magicSignatures;
+        }
+
+
+        /**
+         * @see com.github.toolarium.sanitize.content.impl.bleach.ISanitizeContentBleacherProvider#createBleacher(com.github.toolarium.sanitize.content.dto.SanitizeContentConfiguration)
+         */
+        @Override
+        public ISanitizeContentBleacher createBleacher(SanitizeContentConfiguration configuration) {
+            return null;
+        }
+    }
+}
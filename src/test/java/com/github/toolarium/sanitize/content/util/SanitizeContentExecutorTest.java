@@ -0,0 +1,77 @@
+/*
+ * SanitizeContentExecutorTest.java
+ *
+ * Copyright by toolarium, all rights reserved.
+ */
+package com.github.toolarium.sanitize.content.util;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import com.github.toolarium.sanitize.content.dto.SanitizeContentResult;
+import com.github.toolarium.sanitize.content.impl.SanitizeContentExecutor;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import org.junit.jupiter.api.Test;
+
+
+/**
+ * Test the sanitize content executor
+ *
+ * @author Patrick Meier
+ */
+public class SanitizeContentExecutorTest {
+
+    /**
+     * Test the cancel of a pending and of a running job, both release their limits
+     *
+     * @throws Exception In case of an error
+     */
+    @Test
+    public void testCancel() throws Exception {
+        SanitizeContentExecutor executor = new SanitizeContentExecutor(1, 1000);
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch interrupted = new CountDownLatch(1);
+        CompletableFuture<SanitizeContentResult> runningFuture = executor.submit(100, () -> {
+            started.countDown();
+            try {
+                Thread.sleep(TimeUnit.MINUTES.toMillis(1));
+            } catch (InterruptedException e) {
+                interrupted.countDown();
+            }
+
+            return new SanitizeContentResult();
+        });
+
+        AtomicBoolean pendingJobExecuted = new AtomicBoolean(false);
+        CompletableFuture<SanitizeContentResult> pendingFuture = executor.submit(200, () -> {
+            pendingJobExecuted.set(true);
+            return new SanitizeContentResult();
+        });
+
+        assertTrue(started.await(10, TimeUnit.SECONDS));
+        assertEquals(1, executor.getRunning());
+        assertEquals(100, executor.getInFlightBytes());
+
+        // the pending job is removed from the queue, it has no limits yet
+        assertTrue(pendingFuture.cancel(true));
+        assertEquals(1, executor.getRunning());
+        assertEquals(100, executor.getInFlightBytes());
+
+        // the running job is interrupted and its limits are released at once
+        assertTrue(runningFuture.cancel(true));
+        assertTrue(interrupted.await(10, TimeUnit.SECONDS));
+        assertEquals(0, executor.getRunning());
+        assertEquals(0, executor.getInFlightBytes());
+
+        // the next job gets the released limits
+        assertNotNull(executor.submit(1000, () -> new SanitizeContentResult()).get(10, TimeUnit.SECONDS));
+        assertFalse(pendingJobExecuted.get());
+        assertEquals(0, executor.getRunning());
+        assertEquals(0, executor.getInFlightBytes());
+    }
+}